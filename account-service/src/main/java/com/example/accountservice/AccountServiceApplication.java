@@ -8,9 +8,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @Slf4j
 public class AccountServiceApplication {
 
@@ -22,9 +24,6 @@ public class AccountServiceApplication {
     public CommandLineRunner initializeApplication(OpenTelemetry openTelemetry) {
         return args -> {
             // Log service startup with OpenTelemetry info
-            String serviceName = openTelemetry.getSdkContextStorage()
-                    .toString();
-            
             log.info("Account Service started successfully");
             log.info("OpenTelemetry initialized with context propagators: {}", 
                      openTelemetry.getPropagators().getClass().getSimpleName());
@@ -0,0 +1,118 @@
+package com.example.accountservice.aggregate;
+
+import com.example.accountservice.model.Account;
+import com.example.accountservice.model.BalanceSummary;
+import com.example.accountservice.model.UserBalanceSummary;
+import com.example.accountservice.repository.AccountChangeListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Balance totals and account counts, per user and overall, kept up to date as accounts are
+ * written so that summaries never scan the store.
+ * <p>
+ * Each write adjusts the totals by the difference between the previous and the new account,
+ * which is O(1) and exact, since balances are added as {@link BigDecimal}. Listener calls are
+ * serialized by the store, so the running totals need no locking of their own; readers get
+ * immutable summaries that are replaced wholesale. A multi-account write such as a transfer
+ * publishes the overall summary once, so it is never seen half applied.
+ */
+@Component
+public class BalanceAggregates implements AccountChangeListener {
+
+    private final Map<String, UserBalanceSummary> byUser = new ConcurrentHashMap<>();
+    private volatile BalanceSummary overall = new BalanceSummary(0, 0, BigDecimal.ZERO);
+
+    // Only touched from listener calls, which the store makes one at a time
+    private long accountCount;
+    private BigDecimal totalBalance = BigDecimal.ZERO;
+
+    /**
+     * @return totals over every account
+     */
+    public BalanceSummary getOverall() {
+        return overall;
+    }
+
+    /**
+     * @param userId the owning user ID
+     * @return totals over the user's accounts, zero if the user has none
+     */
+    public UserBalanceSummary getUser(String userId) {
+        UserBalanceSummary summary = byUser.get(userId);
+        return summary != null ? summary : new UserBalanceSummary(userId, 0, BigDecimal.ZERO);
+    }
+
+    @Override
+    public void onSaved(Account previous, Account saved) {
+        apply(previous, saved);
+        publish();
+    }
+
+    @Override
+    public void onSavedAll(List<Account> previous, List<Account> saved) {
+        for (int i = 0; i < saved.size(); i++) {
+            apply(previous.get(i), saved.get(i));
+        }
+        publish();
+    }
+
+    @Override
+    public void onDeleted(Account removed) {
+        apply(removed, null);
+        publish();
+    }
+
+    @Override
+    public void onRestored(List<Account> previous, List<Account> restored) {
+        onSavedAll(previous, restored);
+    }
+
+    private void apply(Account removed, Account added) {
+        if (removed != null && added != null && Objects.equals(removed.getUserId(), added.getUserId())) {
+            // An update within one user, such as a balance change, is a single adjustment
+            BigDecimal delta = balanceOf(added).subtract(balanceOf(removed));
+            totalBalance = totalBalance.add(delta);
+            adjustUser(added.getUserId(), 0, delta);
+            return;
+        }
+        if (removed != null) {
+            accountCount--;
+            totalBalance = totalBalance.subtract(balanceOf(removed));
+            adjustUser(removed.getUserId(), -1, balanceOf(removed).negate());
+        }
+        if (added != null) {
+            accountCount++;
+            totalBalance = totalBalance.add(balanceOf(added));
+            adjustUser(added.getUserId(), 1, balanceOf(added));
+        }
+    }
+
+    private void adjustUser(String userId, long accounts, BigDecimal balance) {
+        if (userId == null) {
+            return;
+        }
+        byUser.compute(userId, (id, current) -> {
+            long count = (current != null ? current.getAccountCount() : 0) + accounts;
+            if (count == 0) {
+                // Returning null from compute drops the user entry entirely
+                return null;
+            }
+            BigDecimal total = current != null ? current.getTotalBalance().add(balance) : balance;
+            return new UserBalanceSummary(id, count, total);
+        });
+    }
+
+    private void publish() {
+        overall = new BalanceSummary(accountCount, byUser.size(), totalBalance);
+    }
+
+    private static BigDecimal balanceOf(Account account) {
+        return account.getBalance() != null ? account.getBalance() : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.accountservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Choice and sizing of the account store behind {@code AccountService}, bound from {@code account-store.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "account-store")
+public class AccountStoreProperties {
+
+    /**
+     * Store implementation: INDEXED keeps account objects in concurrent maps with lock-free reads,
+     * COLUMNAR keeps them as primitive columns for a much smaller footprint at large counts.
+     */
+    private Engine engine = Engine.INDEXED;
+
+    private Columnar columnar = new Columnar();
+
+    private Persistence persistence = new Persistence();
+
+    public enum Engine {
+        INDEXED,
+        COLUMNAR
+    }
+
+    @Data
+    public static class Columnar {
+
+        /**
+         * Allocate columns outside the Java heap, so they are neither copied nor scanned by the GC.
+         * Counts against -XX:MaxDirectMemorySize instead of -Xmx.
+         */
+        private boolean offHeap = true;
+
+        /**
+         * Rows to allocate up front; columns double when full.
+         */
+        private int initialCapacity = 1024;
+    }
+
+    @Data
+    public static class Persistence {
+
+        /**
+         * Log every write and snapshot the store to disk, and restore it from there on startup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding the write-ahead log segments and snapshots.
+         */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "account-store");
+
+        /**
+         * GROUP: a write is acknowledged once it is on disk; concurrent writes share one fsync.
+         * PERIODIC: writes are acknowledged at once and flushed every flush-interval, so a crash
+         * may lose the last interval of writes.
+         */
+        private CommitMode commitMode = CommitMode.GROUP;
+
+        /**
+         * How often writes nobody waits for are flushed to disk.
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Size at which the write-ahead log moves on to a new segment file.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Take a snapshot once this much has been logged since the last one, bounding recovery time.
+         */
+        private DataSize snapshotAfter = DataSize.ofMegabytes(256);
+
+        /**
+         * Take a snapshot at least this often while there are writes.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(10);
+
+        public enum CommitMode {
+            GROUP,
+            PERIODIC
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.accountservice.config;
+
+import com.example.observability.admission.AdmissionProperties;
+import com.example.observability.admission.ConcurrencyLimitInterceptor;
+import com.example.observability.admission.ConcurrencyLimiters;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers {@link ConcurrencyLimitInterceptor} unless {@code admission.enabled} is false.
+ */
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+@ConditionalOnProperty(prefix = "admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    private final ConcurrencyLimitInterceptor interceptor;
+
+    public AdmissionConfig(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.interceptor = new ConcurrencyLimitInterceptor(
+                new ConcurrencyLimiters(properties, meterRegistry), properties.getRetryAfter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor);
+    }
+}
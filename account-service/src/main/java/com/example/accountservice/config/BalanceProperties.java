@@ -0,0 +1,36 @@
+package com.example.accountservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for deposits, withdrawals and transfers, bound from {@code balance.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "balance")
+public class BalanceProperties {
+
+    /**
+     * Number of locks that account IDs are hashed onto, rounded up to a power of two. More stripes
+     * mean fewer unrelated accounts waiting on each other.
+     */
+    private int lockStripes = 1024;
+
+    private Idempotency idempotency = new Idempotency();
+
+    @Data
+    public static class Idempotency {
+
+        /**
+         * How long the outcome of a request with an Idempotency-Key is remembered for retries.
+         */
+        private Duration retention = Duration.ofHours(24);
+
+        /**
+         * Upper bound on remembered keys; the oldest are forgotten first when it is reached.
+         */
+        private int maxKeys = 100_000;
+    }
+}
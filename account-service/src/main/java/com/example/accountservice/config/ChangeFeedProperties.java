@@ -0,0 +1,31 @@
+package com.example.accountservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings for the account change feed served under {@code /api/accounts/changes}, bound from {@code change-feed.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "change-feed")
+public class ChangeFeedProperties {
+
+    /**
+     * Number of most recent changes kept for consumers resuming after a disconnect. Consumers
+     * further behind than this have to take a new snapshot.
+     */
+    private int retention = 100_000;
+
+    /**
+     * How often an idle stream sends a heartbeat with the latest sequence.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long a single change stream stays open before the consumer is asked to reconnect.
+     * Must stay below the MVC async request timeout (30s by default in Tomcat).
+     */
+    private Duration maxStreamDuration = Duration.ofSeconds(25);
+}
@@ -0,0 +1,26 @@
+package com.example.accountservice.config;
+
+import com.example.accountservice.fault.FaultInjectionFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Registers {@link FaultInjectionFilter} when {@code fault-injection.enabled} is set, e.g.
+ * {@code --fault-injection.enabled=true --fault-injection.latency=300ms --fault-injection.latency-rate=0.1}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "fault-injection", name = "enabled", havingValue = "true")
+public class FaultInjectionConfig {
+
+    @Bean
+    public FilterRegistrationBean<FaultInjectionFilter> faultInjectionFilter(FaultInjectionProperties properties) {
+        FilterRegistrationBean<FaultInjectionFilter> registration =
+                new FilterRegistrationBean<>(new FaultInjectionFilter(properties));
+        // Behind the observation filter, so injected delays and errors show up on the server span
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 10);
+        return registration;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.accountservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Artificial faults for exercising callers' timeouts, hedging and circuit breaking against a
+ * local instance, bound from {@code fault-injection.*}. Off unless explicitly enabled.
+ */
+@Data
+@ConfigurationProperties(prefix = "fault-injection")
+public class FaultInjectionProperties {
+
+    /**
+     * Inject faults into matching requests.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Regular expression matched against the whole request path.
+     */
+    private String path = "/api/accounts/.*";
+
+    /**
+     * Delay added to a delayed request.
+     */
+    private Duration latency = Duration.ZERO;
+
+    /**
+     * Fraction of matching requests that are delayed, from 0.0 to 1.0.
+     */
+    private double latencyRate = 0.0;
+
+    /**
+     * Fraction of matching requests answered with an error instead of being handled, from 0.0 to 1.0.
+     */
+    private double errorRate = 0.0;
+
+    /**
+     * HTTP status of injected errors.
+     */
+    private int errorStatus = 503;
+}
@@ -0,0 +1,27 @@
+package com.example.accountservice.config;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Serves {@code application/x-jackson-smile} to clients that ask for it, alongside JSON.
+ * <p>
+ * Smile is a binary encoding of the Jackson data model: it skips number formatting and string
+ * escaping, and refers back to field names already written, so a list of accounts is smaller
+ * and cheaper to encode and parse than its JSON form. Spring MVC would register a Smile
+ * converter on its own, but with a mapper of its own defaults; this one is built from Boot's
+ * {@link Jackson2ObjectMapperBuilder}, so both encodings carry the same fields and formats.
+ * JSON stays first in the converter list and is what clients without an {@code Accept} header
+ * get.
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
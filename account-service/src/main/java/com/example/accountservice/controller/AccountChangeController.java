@@ -0,0 +1,77 @@
+package com.example.accountservice.controller;
+
+import com.example.accountservice.feed.AccountChangeFeed;
+import com.example.accountservice.service.AccountService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Change feed for consumers that keep a local copy of account ownership.
+ * <p>
+ * A consumer bootstraps from {@code /snapshot}, then follows {@code /api/accounts/changes} with the
+ * epoch and sequence from the snapshot's end marker. A stream ends after a bounded time and the
+ * consumer reconnects from the last sequence it applied; 410 Gone means it has to take a new snapshot.
+ */
+@RestController
+@RequestMapping("/api/accounts/changes")
+public class AccountChangeController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final AccountService accountService;
+    private final AccountChangeFeed accountChangeFeed;
+    private final ObjectWriter ndjsonWriter;
+
+    public AccountChangeController(AccountService accountService,
+                                   AccountChangeFeed accountChangeFeed,
+                                   ObjectMapper objectMapper) {
+        this.accountService = accountService;
+        this.accountChangeFeed = accountChangeFeed;
+        this.ndjsonWriter = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @GetMapping(produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamChanges(@RequestParam String epoch,
+                                                               @RequestParam long after) {
+        if (!accountChangeFeed.canResume(epoch, after)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+                accountChangeFeed.stream(writer, after);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    @GetMapping(value = "/snapshot", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> snapshot() {
+        // The body is written on an MVC async thread, so carry the request's trace context over
+        Context context = Context.current();
+        StreamingResponseBody body = outputStream -> {
+            try (Scope ignored = context.makeCurrent();
+                 SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+                accountService.exportSnapshot(writer);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+}
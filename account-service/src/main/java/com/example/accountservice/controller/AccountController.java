@@ -1,16 +1,38 @@
 package com.example.accountservice.controller;
 
 import com.example.accountservice.model.Account;
+import com.example.accountservice.model.BalanceSummary;
+import com.example.accountservice.model.BalanceUpdate;
+import com.example.accountservice.model.CursorPage;
+import com.example.accountservice.model.Transfer;
+import com.example.accountservice.model.TransferRequest;
+import com.example.accountservice.model.UserBalanceSummary;
 import com.example.accountservice.service.AccountService;
+import com.example.accountservice.service.BalanceRejectedException;
+import com.example.accountservice.service.BalanceService;
+import com.example.observability.admission.ConcurrencyLimited;
+import com.example.observability.admission.Priority;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -18,19 +40,75 @@ import java.util.Map;
 @RequestMapping("/api/accounts")
 public class AccountController {
 
+    // Upper bound on user IDs per batch request, keeps a single request from pinning a thread;
+    // user-service refuses to start with a larger account-service.batch.max-size
+    private static final int MAX_BATCH_USERS = 1000;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final AccountService accountService;
+    private final BalanceService balanceService;
+    private final ObjectWriter ndjsonWriter;
 
     @Autowired
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, BalanceService balanceService, ObjectMapper objectMapper) {
         this.accountService = accountService;
+        this.balanceService = balanceService;
+        // One JSON document per line; the stream itself is closed by the servlet container
+        this.ndjsonWriter = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
+    // The original unpaged array, kept for existing clients; /page and /export bound memory
     @GetMapping
+    @ConcurrencyLimited(Priority.SHEDDABLE)
     public List<Account> getAllAccounts() {
         return accountService.getAllAccounts();
     }
 
+    @GetMapping("/page")
+    @ConcurrencyLimited(Priority.SHEDDABLE)
+    public ResponseEntity<CursorPage<Account>> getAccountsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(accountService.getAccountsPage(cursor, limit));
+        } catch (IllegalArgumentException e) {
+            // Malformed cursor
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportAccounts() {
+        // The body is written on an MVC async thread, so carry the request's trace context over
+        Context context = Context.current();
+        StreamingResponseBody body = outputStream -> {
+            try (Scope ignored = context.makeCurrent();
+                 SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+                accountService.exportAccounts(writer);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    @GetMapping("/summary")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public BalanceSummary getBalanceSummary() {
+        return accountService.getBalanceSummary();
+    }
+
     @GetMapping("/{id}")
+    @ConcurrencyLimited(Priority.CRITICAL)
     public ResponseEntity<Account> getAccountById(@PathVariable String id) {
         return accountService.getAccountById(id)
                 .map(ResponseEntity::ok)
@@ -38,7 +116,73 @@ public class AccountController {
     }
     
     @GetMapping("/user/{userId}")
+    @ConcurrencyLimited(Priority.CRITICAL)
     public List<Account> getAccountsByUserId(@PathVariable String userId) {
         return accountService.getAccountsByUserId(userId);
     }
+    
+    @GetMapping("/user/{userId}/summary")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public UserBalanceSummary getUserBalanceSummary(@PathVariable String userId) {
+        return accountService.getUserBalanceSummary(userId);
+    }
+    
+    @PostMapping("/users")
+    @ConcurrencyLimited(Priority.CRITICAL)
+    public ResponseEntity<Map<String, List<Account>>> getAccountsByUserIds(@RequestBody List<String> userIds) {
+        if (userIds.size() > MAX_BATCH_USERS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(accountService.getAccountsByUserIds(new LinkedHashSet<>(userIds)));
+    }
+
+    @PostMapping("/{id}/deposit")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public ResponseEntity<Account> deposit(@PathVariable String id,
+                                           @RequestBody BalanceUpdate update,
+                                           @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        try {
+            return ResponseEntity.ok(balanceService.deposit(id, update.getAmount(), idempotencyKey));
+        } catch (BalanceRejectedException e) {
+            return ResponseEntity.status(statusOf(e)).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/{id}/withdraw")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public ResponseEntity<Account> withdraw(@PathVariable String id,
+                                            @RequestBody BalanceUpdate update,
+                                            @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        try {
+            return ResponseEntity.ok(balanceService.withdraw(id, update.getAmount(), idempotencyKey));
+        } catch (BalanceRejectedException e) {
+            return ResponseEntity.status(statusOf(e)).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/transfers")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public ResponseEntity<Transfer> transfer(@RequestBody TransferRequest request,
+                                             @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        try {
+            return ResponseEntity.ok(balanceService.transfer(request.getFromAccountId(), request.getToAccountId(),
+                    request.getAmount(), idempotencyKey));
+        } catch (BalanceRejectedException e) {
+            return ResponseEntity.status(statusOf(e)).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private static HttpStatus statusOf(BalanceRejectedException e) {
+        return switch (e.getReason()) {
+            case ACCOUNT_NOT_FOUND -> HttpStatus.NOT_FOUND;
+            case INSUFFICIENT_FUNDS -> HttpStatus.CONFLICT;
+            case IDEMPOTENCY_KEY_REUSED -> HttpStatus.UNPROCESSABLE_ENTITY;
+        };
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.accountservice.fault;
+
+import com.example.accountservice.config.FaultInjectionProperties;
+import io.opentelemetry.api.trace.Span;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Turns this service into a fault-injecting stub: a configured fraction of matching requests
+ * is delayed, and another fraction fails with an error status before reaching the controller.
+ * Injected faults are marked on the server span so they can be told apart from real ones.
+ */
+@Slf4j
+public class FaultInjectionFilter extends OncePerRequestFilter {
+
+    private final FaultInjectionProperties properties;
+    private final Pattern path;
+
+    public FaultInjectionFilter(FaultInjectionProperties properties) {
+        this.properties = properties;
+        this.path = Pattern.compile(properties.getPath());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !path.matcher(request.getRequestURI()).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        if (random.nextDouble() < properties.getLatencyRate()) {
+            Span.current().setAttribute("fault.latency_ms", properties.getLatency().toMillis());
+            try {
+                Thread.sleep(properties.getLatency().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if (random.nextDouble() < properties.getErrorRate()) {
+            Span.current().setAttribute("fault.error", true);
+            log.debug("Injecting {} for {}", properties.getErrorStatus(), request.getRequestURI());
+            response.sendError(properties.getErrorStatus(), "Injected fault");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.accountservice.feed;
+
+import com.example.accountservice.config.ChangeFeedProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.model.AccountChange;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ordered log of account writes, numbered from 1 in commit order.
+ * <p>
+ * The most recent {@code retention} changes are kept in a ring buffer, so a consumer can resume
+ * from the last sequence it applied. A consumer that fell further behind, or that followed an
+ * earlier incarnation of this service (a different epoch), has to start over from a snapshot.
+ */
+@Component
+public class AccountChangeFeed implements AccountChangeListener {
+
+    private static final int MAX_CHANGES_PER_WRITE = 1000;
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final AccountChange[] ring;
+    private final long heartbeatNanos;
+    private final long maxStreamNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long headSequence;
+
+    public AccountChangeFeed(ChangeFeedProperties properties, MeterRegistry meterRegistry) {
+        this.ring = new AccountChange[properties.getRetention()];
+        this.heartbeatNanos = properties.getHeartbeatInterval().toNanos();
+        this.maxStreamNanos = properties.getMaxStreamDuration().toNanos();
+
+        Gauge.builder("account.feed.sequence", this, AccountChangeFeed::getHeadSequence)
+                .description("Sequence number of the latest account change")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the identity of this feed; sequences from another epoch are meaningless here
+     */
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return the sequence of the latest change, 0 if there has been none
+     */
+    public long getHeadSequence() {
+        lock.lock();
+        try {
+            return headSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onSaved(Account previous, Account saved) {
+        AccountChange.Type type = previous == null ? AccountChange.Type.CREATED : AccountChange.Type.UPDATED;
+        append(type, saved, saved.getId(), saved.getUserId());
+        if (previous != null && previous.getUserId() != null && !Objects.equals(previous.getUserId(), saved.getUserId())) {
+            // Tell consumers keyed by owner that the old owner lost the account
+            append(AccountChange.Type.DELETED, null, previous.getId(), previous.getUserId());
+        }
+    }
+
+    @Override
+    public void onDeleted(Account removed) {
+        append(AccountChange.Type.DELETED, null, removed.getId(), removed.getUserId());
+    }
+
+    private void append(AccountChange.Type type, Account account, String accountId, String userId) {
+        lock.lock();
+        try {
+            long sequence = ++headSequence;
+            ring[(int) (sequence % ring.length)] = AccountChange.of(sequence, type, account, accountId, userId);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param epoch the epoch the consumer's sequence belongs to
+     * @param afterSequence the last sequence the consumer applied
+     * @return true if every change after that sequence is still retained
+     */
+    public boolean canResume(String epoch, long afterSequence) {
+        lock.lock();
+        try {
+            return this.epoch.equals(epoch)
+                    && afterSequence <= headSequence
+                    && headSequence - afterSequence <= ring.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the changes after a sequence, waiting for one if there are none yet
+     *
+     * @param afterSequence the last sequence the consumer applied
+     * @param maxChanges upper bound on the number of changes returned
+     * @param timeout how long to wait when no change is available, in nanoseconds
+     * @return the changes in sequence order, empty if none arrived in time
+     * @throws IllegalStateException if the requested changes are no longer retained
+     */
+    public List<AccountChange> awaitAfter(long afterSequence, int maxChanges, long timeout) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeout;
+            while (headSequence <= afterSequence && remaining > 0) {
+                remaining = appended.awaitNanos(remaining);
+            }
+            if (headSequence - afterSequence > ring.length) {
+                throw new IllegalStateException("Changes after sequence " + afterSequence + " are no longer retained");
+            }
+            long last = Math.min(headSequence, afterSequence + maxChanges);
+            List<AccountChange> changes = new ArrayList<>((int) Math.max(0, last - afterSequence));
+            for (long sequence = afterSequence + 1; sequence <= last; sequence++) {
+                changes.add(ring[(int) (sequence % ring.length)]);
+            }
+            return changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the heartbeat line for the current head
+     */
+    public AccountChange heartbeat() {
+        return AccountChange.marker(getHeadSequence(), AccountChange.Type.HEARTBEAT, epoch);
+    }
+
+    /**
+     * Write the changes after a sequence as they happen, with heartbeats while idle, until the
+     * maximum stream duration is reached or the changes are no longer retained
+     *
+     * @param writer the destination, typically an NDJSON response body
+     * @param afterSequence the last sequence the consumer applied
+     * @return the number of changes written
+     */
+    public long stream(SequenceWriter writer, long afterSequence) throws IOException {
+        long deadline = System.nanoTime() + maxStreamNanos;
+        long sequence = afterSequence;
+        long written = 0;
+        try {
+            while (deadline - System.nanoTime() > 0) {
+                List<AccountChange> changes = awaitAfter(sequence, MAX_CHANGES_PER_WRITE,
+                        Math.min(heartbeatNanos, deadline - System.nanoTime()));
+                if (changes.isEmpty()) {
+                    writer.write(heartbeat());
+                } else {
+                    for (AccountChange change : changes) {
+                        writer.write(change);
+                    }
+                    sequence = changes.get(changes.size() - 1).getSequence();
+                    written += changes.size();
+                }
+                writer.flush();
+            }
+        } catch (IllegalStateException e) {
+            // Overrun while streaming: end the stream, the consumer's resume attempt is refused and it re-snapshots
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return written;
+    }
+}
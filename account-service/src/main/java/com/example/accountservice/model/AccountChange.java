@@ -0,0 +1,46 @@
+package com.example.accountservice.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the account change feed.
+ * <p>
+ * Changes carry the full account after the write (none for deletes), so replaying them in
+ * sequence order over any older state converges on the current one. Snapshot lines carry the
+ * sequence the snapshot started at; heartbeats and the snapshot end marker carry the latest
+ * sequence and the feed epoch, which changes whenever the service restarts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountChange {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        SNAPSHOT,
+        SNAPSHOT_END,
+        HEARTBEAT
+    }
+
+    private long sequence;
+    private Type type;
+    private long timestamp;
+    private String accountId;
+    private String userId;
+    private Account account;
+    private String epoch;
+
+    public static AccountChange of(long sequence, Type type, Account account, String accountId, String userId) {
+        return new AccountChange(sequence, type, System.currentTimeMillis(), accountId, userId, account, null);
+    }
+
+    public static AccountChange marker(long sequence, Type type, String epoch) {
+        return new AccountChange(sequence, type, System.currentTimeMillis(), null, null, null, epoch);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.accountservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals over every account in the store.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSummary {
+    private long accountCount;
+    private long userCount;
+    private BigDecimal totalBalance;
+}
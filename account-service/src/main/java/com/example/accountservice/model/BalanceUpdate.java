@@ -0,0 +1,17 @@
+package com.example.accountservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Body of a deposit or withdrawal: the positive amount to add to or take from the balance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceUpdate {
+    private BigDecimal amount;
+}
@@ -0,0 +1,19 @@
+package com.example.accountservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * A completed transfer, with both accounts as they were right after it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Transfer {
+    private Account from;
+    private Account to;
+    private BigDecimal amount;
+}
@@ -0,0 +1,16 @@
+package com.example.accountservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequest {
+    private String fromAccountId;
+    private String toAccountId;
+    private BigDecimal amount;
+}
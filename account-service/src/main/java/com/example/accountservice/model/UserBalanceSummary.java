@@ -0,0 +1,19 @@
+package com.example.accountservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals over the accounts of one user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBalanceSummary {
+    private String userId;
+    private long accountCount;
+    private BigDecimal totalBalance;
+}
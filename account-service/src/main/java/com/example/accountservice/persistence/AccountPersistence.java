@@ -0,0 +1,305 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the account store on disk: every write is logged to a {@link WriteAheadLog} as it commits,
+ * the store is snapshotted in the background, and {@link #recover()} rebuilds it on startup from
+ * the latest snapshot plus the log written after it.
+ * <p>
+ * Log records are queued inside the store's write lock, so in commit order, and written outside
+ * it. In GROUP commit mode a writer calls {@link #awaitDurable()} once its write returns, and
+ * writers that arrive together share one fsync; in PERIODIC mode a background thread flushes
+ * every {@code flush-interval}. After each snapshot the log segments it covers are deleted.
+ * <p>
+ * A failed flush leaves the log unusable: writers should call {@link #checkWritable()} before
+ * changing the store, and undo their change if {@link #awaitDurable()} fails.
+ * <p>
+ * Does nothing unless {@code account-store.persistence.enabled} is set. Flush, snapshot and
+ * recovery activity is published under {@code account.persistence.*}.
+ */
+@Component
+@Slf4j
+public class AccountPersistence implements AccountChangeListener {
+
+    private static final int RESTORE_CHUNK_SIZE = 10_000;
+
+    private final AccountStoreProperties.Persistence settings;
+    private final ObjectProvider<AccountRepository> accountRepository;
+    private final Timer flushTimer;
+    private final DistributionSummary flushRecords;
+    private final Timer snapshotTimer;
+    private final Timer recoveryTimer;
+
+    private volatile WriteAheadLog wal;
+    private ScheduledExecutorService scheduler;
+    // Written by recovery and then only by the snapshot task
+    private volatile long snapshotSequence;
+    private volatile long writtenBytesAtSnapshot;
+    private volatile long snapshotTakenAt;
+
+    public AccountPersistence(AccountStoreProperties properties,
+                              ObjectProvider<AccountRepository> accountRepository,
+                              MeterRegistry meterRegistry) {
+        this.settings = properties.getPersistence();
+        this.accountRepository = accountRepository;
+
+        this.flushTimer = Timer.builder("account.persistence.flush")
+                .description("Time to write and fsync a batch of write-ahead log records")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.flushRecords = DistributionSummary.builder("account.persistence.flush.records")
+                .description("Write-ahead log records made durable by one fsync")
+                .register(meterRegistry);
+        this.snapshotTimer = Timer.builder("account.persistence.snapshot")
+                .description("Time to write a snapshot of the account store")
+                .register(meterRegistry);
+        this.recoveryTimer = Timer.builder("account.persistence.recovery")
+                .description("Time to restore the account store from disk on startup")
+                .register(meterRegistry);
+        Gauge.builder("account.persistence.log.size", this, persistence -> persistence.getLogBytesSinceSnapshot())
+                .description("Bytes logged since the last snapshot, which recovery has to replay")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Restore the account store from disk and start logging writes. Must run before the store is
+     * first written.
+     *
+     * @return the number of accounts restored
+     */
+    public synchronized int recover() {
+        if (!settings.isEnabled() || wal != null) {
+            return 0;
+        }
+        Path directory = settings.getDirectory();
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(directory);
+            AccountRepository repository = accountRepository.getObject();
+            long fromSequence = AccountSnapshots.latestSequence(directory);
+
+            // The log tail is small next to the snapshot: collect its final state per account first,
+            // so the snapshot can stream into the store without an intermediate copy of everything
+            Map<String, Account> tail = new LinkedHashMap<>();
+            long lastSequence = WriteAheadLog.replay(directory, fromSequence, (sequence, type, payload) -> {
+                switch (type) {
+                    case WriteAheadLog.PUT -> putLast(tail, AccountRecords.readAccount(payload));
+                    case WriteAheadLog.PUT_ALL -> {
+                        for (int count = payload.getInt(); count > 0; count--) {
+                            putLast(tail, AccountRecords.readAccount(payload));
+                        }
+                    }
+                    // A null value marks the account as deleted
+                    case WriteAheadLog.DELETE -> tail.put(AccountRecords.readString(payload), null);
+                    default -> throw new IllegalStateException("Unknown write-ahead log record type "
+                            + type + " at sequence " + sequence);
+                }
+            });
+
+            List<Account> chunk = new ArrayList<>(RESTORE_CHUNK_SIZE);
+            long[] restored = new long[1];
+            AccountSnapshots.readLatest(directory, account -> {
+                if (!tail.containsKey(account.getId())) {
+                    chunk.add(account);
+                    if (chunk.size() == RESTORE_CHUNK_SIZE) {
+                        repository.restore(chunk);
+                        restored[0] += chunk.size();
+                        chunk.clear();
+                    }
+                }
+            });
+            for (Account account : tail.values()) {
+                if (account != null) {
+                    chunk.add(account);
+                }
+            }
+            repository.restore(chunk);
+            restored[0] += chunk.size();
+
+            this.wal = WriteAheadLog.open(directory, settings.getSegmentSize().toBytes(), lastSequence);
+            this.snapshotSequence = fromSequence;
+            this.snapshotTakenAt = System.nanoTime();
+            startBackgroundTasks();
+
+            long elapsed = System.nanoTime() - start;
+            recoveryTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("Restored {} accounts from {}: the snapshot at sequence {} plus {} logged changes, in {} ms",
+                     restored[0], directory, fromSequence, lastSequence - fromSequence,
+                     TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return (int) restored[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore the account store from " + directory, e);
+        }
+    }
+
+    /**
+     * Refuse to change the store once the write-ahead log has failed, since no later write could
+     * be made durable
+     *
+     * @throws UncheckedIOException if an earlier flush failed
+     */
+    public void checkWritable() {
+        WriteAheadLog current = wal;
+        if (current != null && current.isFailed()) {
+            throw new UncheckedIOException(new IOException(
+                    "Account write-ahead log failed earlier, refusing writes until restart"));
+        }
+    }
+
+    /**
+     * Wait until every write made so far is on disk. Returns at once in PERIODIC commit mode or
+     * when persistence is disabled.
+     *
+     * @throws UncheckedIOException if the flush failed; the writes it covered are not on disk
+     */
+    public void awaitDurable() {
+        WriteAheadLog current = wal;
+        if (current == null || settings.getCommitMode() == AccountStoreProperties.Persistence.CommitMode.PERIODIC) {
+            return;
+        }
+        flush(current, current.getAppendedSequence());
+    }
+
+    @Override
+    public void onSaved(Account previous, Account saved) {
+        WriteAheadLog current = requireLog();
+        if (current != null) {
+            current.appendPut(saved);
+        }
+    }
+
+    @Override
+    public void onSavedAll(List<Account> previous, List<Account> saved) {
+        WriteAheadLog current = requireLog();
+        if (current != null) {
+            current.appendPutAll(saved);
+        }
+    }
+
+    @Override
+    public void onDeleted(Account removed) {
+        WriteAheadLog current = requireLog();
+        if (current != null) {
+            current.appendDelete(removed.getId());
+        }
+    }
+
+    private static void putLast(Map<String, Account> tail, Account account) {
+        // Re-inserting moves the account to the end, so the tail restores in last-write order
+        tail.remove(account.getId());
+        tail.put(account.getId(), account);
+    }
+
+    private WriteAheadLog requireLog() {
+        WriteAheadLog current = wal;
+        if (current == null && settings.isEnabled()) {
+            throw new IllegalStateException("Account store written before it was restored from disk");
+        }
+        return current;
+    }
+
+    private void flush(WriteAheadLog current, long sequence) {
+        long start = System.nanoTime();
+        try {
+            int records = current.flush(sequence);
+            if (records > 0) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                flushRecords.record(records);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write the account write-ahead log", e);
+        }
+    }
+
+    private void startBackgroundTasks() {
+        this.scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "account-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushMillis = settings.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flush(wal, wal.getAppendedSequence());
+            } catch (RuntimeException e) {
+                log.error("Background flush of the account write-ahead log failed", e);
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (isSnapshotDue()) {
+                    snapshot();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Account store snapshot failed, the write-ahead log keeps growing until one succeeds", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private boolean isSnapshotDue() {
+        if (wal.getAppendedSequence() == snapshotSequence) {
+            return false;
+        }
+        return getLogBytesSinceSnapshot() >= settings.getSnapshotAfter().toBytes()
+                || System.nanoTime() - snapshotTakenAt >= settings.getSnapshotInterval().toNanos();
+    }
+
+    private synchronized void snapshot() throws IOException {
+        long start = System.nanoTime();
+        // Listeners run after the store is updated, so the store already reflects this sequence
+        long sequence = wal.getAppendedSequence();
+        wal.roll();
+        long writtenBytes = wal.getWrittenBytes();
+
+        long count = AccountSnapshots.write(settings.getDirectory(), sequence, accountRepository.getObject());
+        wal.deleteCoveredSegments(sequence);
+        AccountSnapshots.deleteOlderThan(settings.getDirectory(), sequence);
+
+        this.snapshotSequence = sequence;
+        this.writtenBytesAtSnapshot = writtenBytes;
+        this.snapshotTakenAt = System.nanoTime();
+        snapshotTimer.record(snapshotTakenAt - start, TimeUnit.NANOSECONDS);
+        log.info("Snapshotted {} accounts at sequence {} in {} ms", count, sequence,
+                 TimeUnit.NANOSECONDS.toMillis(snapshotTakenAt - start));
+    }
+
+    private long getLogBytesSinceSnapshot() {
+        return wal != null ? wal.getWrittenBytes() - writtenBytesAtSnapshot : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        if (wal == null) {
+            return;
+        }
+        // No interrupts: an interrupted channel write closes the channel and would lose the queue
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        wal.close();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.model.Account;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of accounts shared by the write-ahead log and snapshots.
+ * <p>
+ * Strings are a length followed by UTF-8 bytes, balances a length followed by the unscaled
+ * value's two's-complement bytes and then the scale; a length of -1 stands for null.
+ */
+final class AccountRecords {
+
+    private AccountRecords() {
+    }
+
+    static void writeAccount(DataOutputStream out, Account account) throws IOException {
+        writeString(out, account.getId());
+        writeString(out, account.getName());
+        writeString(out, account.getAccountNumber());
+        writeDecimal(out, account.getBalance());
+        writeString(out, account.getUserId());
+    }
+
+    static Account readAccount(ByteBuffer in) {
+        return new Account(readString(in), readString(in), readString(in), readDecimal(in), readString(in));
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.model.Account;
+import com.example.accountservice.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time copies of the account store, named after the write-ahead log sequence they start from.
+ * <p>
+ * A snapshot file is {@code [magic][version][sequence]}, the accounts, then {@code [count][crc32]}
+ * with the checksum covering everything before it. It is written under a temporary name, forced
+ * to disk and renamed into place, so a crash never leaves a partial snapshot behind. Reading maps
+ * the file into memory and decodes it in place.
+ * <p>
+ * Snapshots are fuzzy: the store is read page by page while writes continue, so a snapshot may
+ * already contain changes logged after its sequence. Replaying those again on recovery is
+ * harmless, because each log record carries the account's full state and they apply in order.
+ */
+@Slf4j
+final class AccountSnapshots {
+
+    private static final int MAGIC = 0x41434E54;
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 16;
+    private static final int TRAILER_BYTES = 12;
+    private static final int PAGE_SIZE = 1000;
+
+    private AccountSnapshots() {
+    }
+
+    /**
+     * Write a snapshot of the store and make it the latest one
+     *
+     * @param sequence the last log sequence applied to the store before reading started
+     * @return the number of accounts written
+     */
+    static long write(Path directory, long sequence, AccountRepository repository) throws IOException {
+        Path target = pathOf(directory, sequence);
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sequence);
+
+            String afterId = null;
+            List<Account> page;
+            do {
+                page = repository.findPage(afterId, PAGE_SIZE);
+                for (Account account : page) {
+                    AccountRecords.writeAccount(out, account);
+                }
+                count += page.size();
+                if (!page.isEmpty()) {
+                    afterId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == PAGE_SIZE);
+
+            out.writeLong(count);
+            out.flush();
+            // The checksum itself is written past the checked stream
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+            file.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(directory);
+        return count;
+    }
+
+    /**
+     * @return the log sequence the latest snapshot starts from, 0 if there is no snapshot
+     */
+    static long latestSequence(Path directory) throws IOException {
+        List<Path> snapshots = snapshotPaths(directory);
+        return snapshots.isEmpty() ? 0 : sequenceOf(snapshots.get(snapshots.size() - 1));
+    }
+
+    /**
+     * Load the latest snapshot, if any
+     *
+     * @param sink receives every account in the snapshot
+     * @return the log sequence the snapshot starts from, 0 if there is no snapshot
+     */
+    static long readLatest(Path directory, Consumer<Account> sink) throws IOException {
+        List<Path> snapshots = snapshotPaths(directory);
+        if (snapshots.isEmpty()) {
+            return 0;
+        }
+        Path path = snapshots.get(snapshots.size() - 1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + TRAILER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Account snapshot " + path + " has an invalid size of " + size + " bytes");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int checked = (int) size - Integer.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, checked));
+            if ((int) crc.getValue() != buffer.getInt(checked)) {
+                throw new IllegalStateException("Account snapshot " + path + " is corrupt");
+            }
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("Account snapshot " + path + " has an unknown format");
+            }
+            long sequence = buffer.getLong(8);
+            if (sequence != sequenceOf(path)) {
+                throw new IllegalStateException("Account snapshot " + path + " starts from sequence " + sequence);
+            }
+            long expected = buffer.getLong(checked - Long.BYTES);
+
+            ByteBuffer accounts = buffer.slice(HEADER_BYTES, (int) size - HEADER_BYTES - TRAILER_BYTES);
+            long count = 0;
+            while (accounts.hasRemaining()) {
+                sink.accept(AccountRecords.readAccount(accounts));
+                count++;
+            }
+            if (count != expected) {
+                throw new IllegalStateException("Account snapshot " + path + " holds " + count
+                        + " accounts, expected " + expected);
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Delete snapshots older than the given one, and temporary files left by an interrupted write
+     */
+    static void deleteOlderThan(Path directory, long sequence) throws IOException {
+        for (Path path : snapshotPaths(directory)) {
+            if (sequenceOf(path) < sequence) {
+                Files.deleteIfExists(path);
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(file -> file.getFileName().toString().endsWith(SUFFIX + TEMP_SUFFIX)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static List<Path> snapshotPaths(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static Path pathOf(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static void forceDirectory(Path directory) {
+        // Makes the rename durable; not every platform can open a directory for this
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Could not force directory {}: {}", directory, e.getMessage());
+        }
+    }
+}
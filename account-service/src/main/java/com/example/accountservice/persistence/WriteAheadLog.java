@@ -0,0 +1,359 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.model.Account;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of account writes, kept in segment files named after the sequence of their first record.
+ * <p>
+ * Each record is stored as {@code [length][crc32][payload]}, the payload being the record's
+ * sequence, its type and the account or account ID. Appending only queues the encoded record;
+ * {@link #flush(long)} writes everything queued so far with one gathering write and one fsync,
+ * so callers waiting for durability at the same time share a single disk flush (group commit).
+ * <p>
+ * A failed flush cuts the segment back to where the batch started, so none of its records is
+ * replayed after a restart, and fails every later flush: the batch is gone, and logging past it
+ * would leave a gap.
+ * <p>
+ * On recovery a torn or corrupt record at the end of the newest segment is a write that never
+ * completed and is cut off. Damage anywhere else means acknowledged writes are lost, and fails recovery.
+ */
+@Slf4j
+final class WriteAheadLog implements AutoCloseable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte PUT_ALL = 3;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final long segmentBytes;
+
+    // Guarded by this: records encoded in commit order but not written yet
+    private List<ByteBuffer> queued = new ArrayList<>();
+    private long appendedSequence;
+
+    // Guarded by flushLock: the open segment and everything written to it
+    private final Object flushLock = new Object();
+    private FileChannel segment;
+    private long segmentSize;
+    private volatile IOException failure;
+    private volatile long durableSequence;
+    private volatile long writtenBytes;
+
+    private WriteAheadLog(Path directory, long segmentBytes, long lastSequence) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.appendedSequence = lastSequence;
+        this.durableSequence = lastSequence;
+        openSegment(lastSequence + 1);
+    }
+
+    /**
+     * Open the log for appending after recovery
+     *
+     * @param lastSequence the last sequence recovered; new records are numbered from the next one
+     */
+    static WriteAheadLog open(Path directory, long segmentBytes, long lastSequence) throws IOException {
+        return new WriteAheadLog(directory, segmentBytes, lastSequence);
+    }
+
+    /**
+     * Queue a record that stores an account
+     *
+     * @return the record's sequence
+     */
+    synchronized long appendPut(Account account) {
+        long sequence = appendedSequence + 1;
+        queued.add(encode(sequence, PUT, out -> AccountRecords.writeAccount(out, account)));
+        return appendedSequence = sequence;
+    }
+
+    /**
+     * Queue a single record that stores several accounts, so recovery applies all of them or none
+     *
+     * @return the record's sequence
+     */
+    synchronized long appendPutAll(List<Account> accounts) {
+        long sequence = appendedSequence + 1;
+        queued.add(encode(sequence, PUT_ALL, out -> {
+            out.writeInt(accounts.size());
+            for (Account account : accounts) {
+                AccountRecords.writeAccount(out, account);
+            }
+        }));
+        return appendedSequence = sequence;
+    }
+
+    /**
+     * Queue a record that removes an account
+     *
+     * @return the record's sequence
+     */
+    synchronized long appendDelete(String accountId) {
+        long sequence = appendedSequence + 1;
+        queued.add(encode(sequence, DELETE, out -> AccountRecords.writeString(out, accountId)));
+        return appendedSequence = sequence;
+    }
+
+    synchronized long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * @return true once a flush has failed; no record appended since can become durable
+     */
+    boolean isFailed() {
+        return failure != null;
+    }
+
+    long getDurableSequence() {
+        return durableSequence;
+    }
+
+    /**
+     * @return bytes written to the log since it was opened
+     */
+    long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * Make every record up to a sequence durable, together with anything else queued by then
+     *
+     * @param sequence the sequence to wait for
+     * @return the number of records this call wrote, 0 if another caller's flush already covered them
+     */
+    int flush(long sequence) throws IOException {
+        if (durableSequence >= sequence) {
+            return 0;
+        }
+        synchronized (flushLock) {
+            // Whoever held the lock before us may have flushed our records along with theirs
+            if (durableSequence >= sequence) {
+                return 0;
+            }
+            return flushQueued();
+        }
+    }
+
+    /**
+     * Flush what is queued and continue in a new segment, so the older segments can be deleted
+     * once a snapshot covers them
+     */
+    void roll() throws IOException {
+        synchronized (flushLock) {
+            flushQueued();
+            if (segmentSize > 0) {
+                segment.close();
+                openSegment(durableSequence + 1);
+            }
+        }
+    }
+
+    /**
+     * Delete the segments whose records are all at or before a sequence
+     *
+     * @param sequence the sequence a durable snapshot covers
+     */
+    void deleteCoveredSegments(long sequence) throws IOException {
+        List<Path> segments = segmentPaths(directory);
+        // A segment ends where the next one starts; the newest one is still being written
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (firstSequenceOf(segments.get(i + 1)) <= sequence + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (flushLock) {
+            if (failure == null) {
+                flushQueued();
+            }
+            segment.close();
+        }
+    }
+
+    /**
+     * Read back every record after a sequence, oldest first, cutting off a torn tail
+     *
+     * @param afterSequence records up to this sequence are already covered by a snapshot
+     * @param replay receives each later record's sequence, type and remaining payload
+     * @return the highest sequence in the log, or {@code afterSequence} if it is higher
+     */
+    static long replay(Path directory, long afterSequence, Replay replay) throws IOException {
+        long lastSequence = afterSequence;
+        List<Path> segments = segmentPaths(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int position = 0;
+                while (position < buffer.capacity()) {
+                    int payloadBytes = validPayloadBytes(buffer, position);
+                    if (payloadBytes < 0) {
+                        if (i < segments.size() - 1) {
+                            throw new IllegalStateException("Corrupt write-ahead log record at offset "
+                                    + position + " of " + path + " before the end of the log");
+                        }
+                        log.warn("Discarding torn write-ahead log tail at offset {} of {} ({} bytes)",
+                                 position, path, buffer.capacity() - position);
+                        channel.truncate(position);
+                        break;
+                    }
+                    ByteBuffer payload = buffer.slice(position + HEADER_BYTES, payloadBytes);
+                    long sequence = payload.getLong();
+                    byte type = payload.get();
+                    if (sequence > afterSequence) {
+                        replay.apply(sequence, type, payload);
+                        lastSequence = Math.max(lastSequence, sequence);
+                    }
+                    position += HEADER_BYTES + payloadBytes;
+                }
+            }
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Receives records read back by {@link #replay}
+     */
+    interface Replay {
+        void apply(long sequence, byte type, ByteBuffer payload);
+    }
+
+    private int flushQueued() throws IOException {
+        if (failure != null) {
+            throw new IOException("Write-ahead log in " + directory + " failed earlier", failure);
+        }
+        List<ByteBuffer> batch;
+        long lastSequence;
+        synchronized (this) {
+            batch = queued;
+            lastSequence = appendedSequence;
+            queued = new ArrayList<>();
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (segmentSize >= segmentBytes) {
+                segment.close();
+                openSegment(durableSequence + 1);
+            }
+            ByteBuffer[] buffers = batch.toArray(ByteBuffer[]::new);
+            long bytes = 0;
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+            }
+            long written = 0;
+            while (written < bytes) {
+                written += segment.write(buffers);
+            }
+            segment.force(false);
+            segmentSize += bytes;
+            writtenBytes += bytes;
+        } catch (IOException e) {
+            // The batch is gone from the queue; carrying on would leave a gap in the log
+            failure = e;
+            discardPartialBatch();
+            throw e;
+        }
+        durableSequence = lastSequence;
+        return batch.size();
+    }
+
+    /**
+     * Cut off whatever part of a failed batch reached the segment, so that recovery does not bring
+     * back writes whose callers were told they failed
+     */
+    private void discardPartialBatch() {
+        try {
+            segment.truncate(segmentSize);
+            segment.force(false);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+            log.error("Could not cut the failed batch off write-ahead log segment in {}; "
+                      + "recovery may replay writes that were reported as failed", directory, e);
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        this.segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.segmentSize = segment.size();
+    }
+
+    private static ByteBuffer encode(long sequence, byte type, PayloadWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(sequence);
+            out.writeByte(type);
+            writer.write(out);
+            byte[] payload = bytes.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+            record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int validPayloadBytes(ByteBuffer buffer, int position) {
+        if (position + HEADER_BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length < Long.BYTES + 1 || position + HEADER_BYTES + length > buffer.capacity()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + HEADER_BYTES, length));
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    private static List<Path> segmentPaths(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded sequences sort in log order
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
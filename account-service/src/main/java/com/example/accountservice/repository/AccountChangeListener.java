@@ -0,0 +1,46 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.Account;
+
+import java.util.List;
+
+/**
+ * Notified of every write to the account store, in commit order.
+ * Called while the store's write lock is held, so implementations must be quick and must not call back into the store.
+ */
+public interface AccountChangeListener {
+
+    /**
+     * @param previous the account that was replaced, or null for an insert
+     * @param saved the account as stored
+     */
+    void onSaved(Account previous, Account saved);
+
+    /**
+     * Several accounts saved in one write, such as both sides of a transfer. Reported one by one
+     * through {@link #onSaved} unless overridden to handle them as a unit.
+     *
+     * @param previous the replaced accounts in the order of {@code saved}, null for inserts
+     * @param saved the accounts as stored
+     */
+    default void onSavedAll(List<Account> previous, List<Account> saved) {
+        for (int i = 0; i < saved.size(); i++) {
+            onSaved(previous.get(i), saved.get(i));
+        }
+    }
+
+    /**
+     * @param removed the account that was deleted
+     */
+    void onDeleted(Account removed);
+
+    /**
+     * Accounts loaded from persistent storage at startup rather than written. Ignored unless
+     * overridden, as they are not new changes.
+     *
+     * @param previous the replaced accounts in the order of {@code restored}, null for inserts
+     * @param restored the accounts as stored
+     */
+    default void onRestored(List<Account> previous, List<Account> restored) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.Account;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage abstraction for accounts.
+ * Implementations must be safe for concurrent readers and writers.
+ */
+public interface AccountRepository {
+
+    /**
+     * Find an account by its primary key
+     *
+     * @param id the account ID
+     * @return an Optional containing the account if found, or empty if not found
+     */
+    Optional<Account> findById(String id);
+
+    /**
+     * Find an account by its account number
+     *
+     * @param accountNumber the account number, e.g. ACC001
+     * @return an Optional containing the account if found, or empty if not found
+     */
+    Optional<Account> findByAccountNumber(String accountNumber);
+
+    /**
+     * Find all accounts owned by a user
+     *
+     * @param userId the owning user ID
+     * @return an immutable list of the user's accounts, empty if the user has none
+     */
+    List<Account> findByUserId(String userId);
+
+    /**
+     * @return an immutable snapshot of every account in the store
+     */
+    List<Account> findAll();
+
+    /**
+     * Keyset page over all accounts, ordered by ID
+     *
+     * @param afterId only return accounts whose ID sorts after this one, or null to start from the beginning
+     * @param limit maximum number of accounts to return
+     * @return up to {@code limit} accounts in ID order
+     */
+    List<Account> findPage(String afterId, int limit);
+
+    /**
+     * Insert or replace an account, keyed by its ID
+     *
+     * @param account the account to store
+     * @return the stored account
+     */
+    Account save(Account account);
+
+    /**
+     * Insert or replace several accounts in one write, so that listeners see them as a single commit
+     *
+     * @param accounts the accounts to store, with distinct IDs
+     * @return the stored accounts, in the same order
+     */
+    List<Account> saveAll(List<Account> accounts);
+
+    /**
+     * Load accounts restored from persistent storage, replacing any with the same ID. Listeners
+     * are told through {@link AccountChangeListener#onRestored} only, not as writes.
+     *
+     * @param accounts the accounts to load
+     */
+    void restore(Collection<Account> accounts);
+
+    /**
+     * Remove an account and all of its index entries
+     *
+     * @param id the account ID
+     * @return the removed account, or empty if it did not exist
+     */
+    Optional<Account> deleteById(String id);
+
+    /**
+     * @return the number of accounts in the store
+     */
+    int count();
+}
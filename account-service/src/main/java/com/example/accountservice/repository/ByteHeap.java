@@ -0,0 +1,115 @@
+package com.example.accountservice.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only store of short UTF-8 strings, addressed by offset and length.
+ * <p>
+ * Strings that are replaced or deleted are released, which only counts their bytes as garbage;
+ * once garbage dominates, the owner copies the live strings into a fresh heap with
+ * {@link #copyFrom} and switches its offsets over. Not thread-safe; callers guard access.
+ */
+final class ByteHeap {
+
+    private final boolean offHeap;
+    private ByteBuffer buffer;
+    private int size;
+    private int garbage;
+
+    ByteHeap(int initialBytes, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.buffer = allocate(Math.max(16, initialBytes));
+    }
+
+    /**
+     * @return the offset of the appended bytes
+     */
+    int append(byte[] bytes) {
+        if (size + bytes.length > buffer.capacity()) {
+            long grown = Math.max((long) size + bytes.length, buffer.capacity() + (buffer.capacity() >> 1));
+            if (grown > Integer.MAX_VALUE) {
+                throw new IllegalStateException("String heap exceeds " + Integer.MAX_VALUE + " bytes");
+            }
+            ByteBuffer larger = allocate((int) grown);
+            larger.put(0, buffer, 0, size);
+            buffer = larger;
+        }
+        int offset = size;
+        buffer.put(offset, bytes);
+        size += bytes.length;
+        return offset;
+    }
+
+    /**
+     * Copy a string out of another heap
+     *
+     * @return the offset of the copy in this heap
+     */
+    int copyFrom(ByteHeap source, int offset, int length) {
+        byte[] bytes = new byte[length];
+        source.buffer.get(offset, bytes);
+        return append(bytes);
+    }
+
+    /**
+     * Mark a string as no longer referenced
+     */
+    void release(int length) {
+        garbage += length;
+    }
+
+    /**
+     * @return true if released strings take up more than half of the heap
+     */
+    boolean needsCompaction() {
+        // A floor keeps small stores from compacting on nearly every replaced string
+        return garbage > 4096 && garbage > size - garbage;
+    }
+
+    int liveBytes() {
+        return size - garbage;
+    }
+
+    String get(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    boolean equalsAt(int offset, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int hashAt(int offset, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return hash;
+    }
+
+    static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    long capacityBytes() {
+        return buffer.capacity();
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        return offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+    }
+}
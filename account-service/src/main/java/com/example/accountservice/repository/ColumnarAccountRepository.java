@@ -0,0 +1,478 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Compact account store that keeps accounts in primitive columns instead of objects.
+ * <p>
+ * Each account is a row: its UUID as two longs, its balance as a long in minor units (cents),
+ * its name and user ID as codes into shared dictionaries, and its account number as a slice of
+ * a UTF-8 byte heap. Columns live in {@code ByteBuffer}s, optionally off-heap, so a large store
+ * adds almost nothing to what the garbage collector has to trace. {@link Account} objects are
+ * only materialized for the rows a caller asks for.
+ * <p>
+ * Lookups by ID and account number use open-addressing indexes holding only row numbers; each
+ * user's rows are chained through a next-row column in insertion order. Keyset paging walks an
+ * ordered index of rows that every insert and delete updates in place, so a page read never
+ * re-sorts the store. Replaced account numbers are compacted out of the byte heap once they
+ * outweigh the live ones. A read-write lock guards everything; listeners see writes in commit order.
+ * <p>
+ * Account IDs must be canonical lower-case UUIDs and balances must fit two decimal places.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "account-store", name = "engine", havingValue = "COLUMNAR")
+public class ColumnarAccountRepository implements AccountRepository {
+
+    private static final int MINOR_UNIT_SCALE = 2;
+    private static final long NULL_BALANCE = Long.MIN_VALUE;
+    private static final int NO_ROW = -1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<AccountChangeListener> listeners;
+    private final boolean offHeap;
+
+    private final PrimitiveColumn idHigh;
+    private final PrimitiveColumn idLow;
+    private final PrimitiveColumn balance;
+    private final PrimitiveColumn nameCode;
+    private final PrimitiveColumn userCode;
+    private final PrimitiveColumn numberOffset;
+    private final PrimitiveColumn numberLength;
+    private final PrimitiveColumn nextRowOfUser;
+    private ByteHeap numbers;
+
+    private final StringDictionary names = new StringDictionary();
+    private final StringDictionary userIds = new StringDictionary();
+    private int[] firstRowOfUser = new int[16];
+    private int[] lastRowOfUser = new int[16];
+
+    private final RowHashIndex byId;
+    private final RowHashIndex byAccountNumber;
+    private final SortedRowIndex sortedById;
+
+    private int rowCount;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    public ColumnarAccountRepository(AccountStoreProperties properties, ObjectProvider<AccountChangeListener> listeners) {
+        this.listeners = listeners.orderedStream().toList();
+
+        int rows = properties.getColumnar().getInitialCapacity();
+        this.offHeap = properties.getColumnar().isOffHeap();
+        this.idHigh = new PrimitiveColumn(Long.BYTES, rows, offHeap);
+        this.idLow = new PrimitiveColumn(Long.BYTES, rows, offHeap);
+        this.balance = new PrimitiveColumn(Long.BYTES, rows, offHeap);
+        this.nameCode = new PrimitiveColumn(Integer.BYTES, rows, offHeap);
+        this.userCode = new PrimitiveColumn(Integer.BYTES, rows, offHeap);
+        this.numberOffset = new PrimitiveColumn(Integer.BYTES, rows, offHeap);
+        this.numberLength = new PrimitiveColumn(Integer.BYTES, rows, offHeap);
+        this.nextRowOfUser = new PrimitiveColumn(Integer.BYTES, rows, offHeap);
+        this.numbers = new ByteHeap(rows * 8, offHeap);
+        Arrays.fill(firstRowOfUser, NO_ROW);
+        Arrays.fill(lastRowOfUser, NO_ROW);
+
+        this.byId = new RowHashIndex(rows, row -> Long.hashCode(idHigh.getLong(row) ^ idLow.getLong(row)));
+        this.byAccountNumber = new RowHashIndex(rows,
+                row -> numbers.hashAt(numberOffset.getInt(row), numberLength.getInt(row)));
+        this.sortedById = new SortedRowIndex((row, otherRow) -> compareId(row, idHigh.getLong(otherRow), idLow.getLong(otherRow)));
+    }
+
+    @Override
+    public Optional<Account> findById(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int row = findRow(uuid);
+            return row == NO_ROW ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> findByAccountNumber(String accountNumber) {
+        if (accountNumber == null) {
+            return Optional.empty();
+        }
+        byte[] bytes = accountNumber.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int row = byAccountNumber.find(ByteHeap.hash(bytes),
+                    candidate -> numbers.equalsAt(numberOffset.getInt(candidate), numberLength.getInt(candidate), bytes));
+            return row == NO_ROW ? Optional.empty() : Optional.of(materialize(row));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Account> findByUserId(String userId) {
+        lock.readLock().lock();
+        try {
+            int code = userIds.find(userId);
+            if (code == StringDictionary.NULL_CODE) {
+                return List.of();
+            }
+            List<Account> accounts = new ArrayList<>();
+            for (int row = firstRowOfUser[code]; row != NO_ROW; row = nextRowOfUser.getInt(row)) {
+                accounts.add(materialize(row));
+            }
+            return List.copyOf(accounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Account> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Account> accounts = new ArrayList<>(byId.size());
+            for (int row : byId.rows()) {
+                accounts.add(materialize(row));
+            }
+            return List.copyOf(accounts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Account> findPage(String afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            // Canonical UUID strings sort like their bits compared unsigned, but the cursor may be any string
+            IntPredicate atOrBeforeCursor = afterId == null ? row -> false
+                    : row -> new UUID(idHigh.getLong(row), idLow.getLong(row)).toString().compareTo(afterId) <= 0;
+            int[] rows = sortedById.rowsAfter(atOrBeforeCursor, limit);
+            List<Account> page = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                page.add(materialize(row));
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Account save(Account account) {
+        UUID uuid = requireUuid(account);
+        long minorUnits = toMinorUnits(account.getBalance());
+
+        lock.writeLock().lock();
+        try {
+            int row = findRow(uuid);
+            Account previous = row == NO_ROW ? null : materialize(row);
+            row = put(row, uuid, minorUnits, account, previous);
+
+            // The caller's object is not retained, so listeners get a view of what was stored
+            Account saved = materialize(row);
+            for (AccountChangeListener listener : listeners) {
+                listener.onSaved(previous, saved);
+            }
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Account> saveAll(List<Account> accounts) {
+        UUID[] uuids = new UUID[accounts.size()];
+        long[] minorUnits = new long[accounts.size()];
+        for (int i = 0; i < uuids.length; i++) {
+            uuids[i] = requireUuid(accounts.get(i));
+            minorUnits[i] = toMinorUnits(accounts.get(i).getBalance());
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<Account> previous = new ArrayList<>(uuids.length);
+            List<Account> saved = new ArrayList<>(uuids.length);
+            for (int i = 0; i < uuids.length; i++) {
+                int row = findRow(uuids[i]);
+                Account replaced = row == NO_ROW ? null : materialize(row);
+                row = put(row, uuids[i], minorUnits[i], accounts.get(i), replaced);
+                previous.add(replaced);
+                saved.add(materialize(row));
+            }
+            for (AccountChangeListener listener : listeners) {
+                listener.onSavedAll(previous, saved);
+            }
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restore(Collection<Account> accounts) {
+        lock.writeLock().lock();
+        try {
+            List<Account> previous = new ArrayList<>(accounts.size());
+            List<Account> restored = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                UUID uuid = requireUuid(account);
+                int row = findRow(uuid);
+                Account replaced = row == NO_ROW ? null : materialize(row);
+                row = put(row, uuid, toMinorUnits(account.getBalance()), account, replaced);
+                previous.add(replaced);
+                restored.add(materialize(row));
+            }
+            for (AccountChangeListener listener : listeners) {
+                listener.onRestored(previous, restored);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Account> deleteById(String id) {
+        UUID uuid = parseId(id);
+        if (uuid == null) {
+            return Optional.empty();
+        }
+        lock.writeLock().lock();
+        try {
+            int row = findRow(uuid);
+            if (row == NO_ROW) {
+                return Optional.empty();
+            }
+            Account removed = materialize(row);
+            byId.remove(row);
+            sortedById.remove(row);
+            releaseAccountNumber(row);
+            unlinkFromUser(row);
+            releaseRow(row);
+            for (AccountChangeListener listener : listeners) {
+                listener.onDeleted(removed);
+            }
+            return Optional.of(removed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int count() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bytes held by the columns, indexes and sort order, excluding the small dictionaries
+     */
+    public long footprintBytes() {
+        lock.readLock().lock();
+        try {
+            return idHigh.capacityBytes() + idLow.capacityBytes() + balance.capacityBytes()
+                    + nameCode.capacityBytes() + userCode.capacityBytes()
+                    + numberOffset.capacityBytes() + numberLength.capacityBytes() + nextRowOfUser.capacityBytes()
+                    + numbers.capacityBytes() + byId.capacityBytes() + byAccountNumber.capacityBytes()
+                    + sortedById.capacityBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int put(int row, UUID uuid, long minorUnits, Account account, Account previous) {
+        if (previous != null) {
+            if (!Objects.equals(previous.getAccountNumber(), account.getAccountNumber())) {
+                releaseAccountNumber(row);
+                writeAccountNumber(row, account.getAccountNumber());
+            }
+            if (!Objects.equals(previous.getUserId(), account.getUserId())) {
+                unlinkFromUser(row);
+                linkToUser(row, userIds.encode(account.getUserId()));
+            }
+        } else {
+            row = allocateRow();
+            idHigh.putLong(row, uuid.getMostSignificantBits());
+            idLow.putLong(row, uuid.getLeastSignificantBits());
+            byId.insert(row);
+            sortedById.insert(row);
+            writeAccountNumber(row, account.getAccountNumber());
+            linkToUser(row, userIds.encode(account.getUserId()));
+        }
+        balance.putLong(row, minorUnits);
+        nameCode.putInt(row, names.encode(account.getName()));
+        return row;
+    }
+
+    private Account materialize(int row) {
+        int length = numberLength.getInt(row);
+        long minorUnits = balance.getLong(row);
+        return new Account(
+                new UUID(idHigh.getLong(row), idLow.getLong(row)).toString(),
+                names.decode(nameCode.getInt(row)),
+                length < 0 ? null : numbers.get(numberOffset.getInt(row), length),
+                minorUnits == NULL_BALANCE ? null : BigDecimal.valueOf(minorUnits, MINOR_UNIT_SCALE),
+                userIds.decode(userCode.getInt(row)));
+    }
+
+    private int findRow(UUID uuid) {
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        return byId.find(Long.hashCode(high ^ low),
+                row -> idHigh.getLong(row) == high && idLow.getLong(row) == low);
+    }
+
+    private int allocateRow() {
+        return freeCount > 0 ? freeRows[--freeCount] : rowCount++;
+    }
+
+    private void releaseRow(int row) {
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeRows.length * 2);
+        }
+        freeRows[freeCount++] = row;
+    }
+
+    private void writeAccountNumber(int row, String accountNumber) {
+        if (accountNumber == null) {
+            numberLength.putInt(row, -1);
+            return;
+        }
+        byte[] bytes = accountNumber.getBytes(StandardCharsets.UTF_8);
+        numberOffset.putInt(row, numbers.append(bytes));
+        numberLength.putInt(row, bytes.length);
+        byAccountNumber.insert(row);
+    }
+
+    private void releaseAccountNumber(int row) {
+        int length = numberLength.getInt(row);
+        if (length < 0) {
+            return;
+        }
+        byAccountNumber.remove(row);
+        numbers.release(length);
+        if (numbers.needsCompaction()) {
+            compactAccountNumbers(row);
+        }
+    }
+
+    /**
+     * Copy the account numbers of all live rows into a fresh heap, leaving the released ones behind
+     *
+     * @param releasedRow a row whose number was just released and must not be copied
+     */
+    private void compactAccountNumbers(int releasedRow) {
+        ByteHeap compacted = new ByteHeap(numbers.liveBytes(), offHeap);
+        for (int row : byId.rows()) {
+            int length = numberLength.getInt(row);
+            if (row != releasedRow && length >= 0) {
+                numberOffset.putInt(row, compacted.copyFrom(numbers, numberOffset.getInt(row), length));
+            }
+        }
+        numbers = compacted;
+    }
+
+    private void linkToUser(int row, int code) {
+        userCode.putInt(row, code);
+        nextRowOfUser.putInt(row, NO_ROW);
+        if (code == StringDictionary.NULL_CODE) {
+            return;
+        }
+        if (code >= firstRowOfUser.length) {
+            int grown = Math.max(code + 1, firstRowOfUser.length * 2);
+            int oldLength = firstRowOfUser.length;
+            firstRowOfUser = Arrays.copyOf(firstRowOfUser, grown);
+            lastRowOfUser = Arrays.copyOf(lastRowOfUser, grown);
+            Arrays.fill(firstRowOfUser, oldLength, grown, NO_ROW);
+            Arrays.fill(lastRowOfUser, oldLength, grown, NO_ROW);
+        }
+        if (lastRowOfUser[code] == NO_ROW) {
+            firstRowOfUser[code] = row;
+        } else {
+            nextRowOfUser.putInt(lastRowOfUser[code], row);
+        }
+        lastRowOfUser[code] = row;
+    }
+
+    private void unlinkFromUser(int row) {
+        int code = userCode.getInt(row);
+        if (code == StringDictionary.NULL_CODE) {
+            return;
+        }
+        // Users own a handful of accounts, so walking the chain is cheap
+        int previous = NO_ROW;
+        for (int current = firstRowOfUser[code]; current != NO_ROW; current = nextRowOfUser.getInt(current)) {
+            if (current == row) {
+                int next = nextRowOfUser.getInt(row);
+                if (previous == NO_ROW) {
+                    firstRowOfUser[code] = next;
+                } else {
+                    nextRowOfUser.putInt(previous, next);
+                }
+                if (lastRowOfUser[code] == row) {
+                    lastRowOfUser[code] = previous;
+                }
+                return;
+            }
+            previous = current;
+        }
+    }
+
+    private int compareId(int row, long high, long low) {
+        int byHigh = Long.compareUnsigned(idHigh.getLong(row), high);
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(idLow.getLong(row), low);
+    }
+
+    private static UUID requireUuid(Account account) {
+        Objects.requireNonNull(account.getId(), "account id must not be null");
+        UUID uuid = parseId(account.getId());
+        if (uuid == null) {
+            throw new IllegalArgumentException("Columnar store requires canonical UUID account ids: " + account.getId());
+        }
+        return uuid;
+    }
+
+    private static UUID parseId(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            // fromString also accepts upper case, which would not round-trip
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            return NULL_BALANCE;
+        }
+        try {
+            return amount.setScale(MINOR_UNIT_SCALE).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Balance must fit a long number of cents: " + amount, e);
+        }
+    }
+}
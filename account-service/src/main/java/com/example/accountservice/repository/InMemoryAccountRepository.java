@@ -0,0 +1,210 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.Account;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory account store with O(1) lookups by id, account number and user id.
+ * <p>
+ * Reads never take a lock: the primary and account-number indexes are {@link ConcurrentHashMap}s
+ * and the per-user index holds immutable lists that are replaced wholesale on every write
+ * (copy-on-write), so a reader always sees a complete list of a user's accounts.
+ * Writes are serialized so that all indexes move together, and an update replaces index entries in
+ * place rather than removing and re-adding them, so an existing account never drops out of a lookup.
+ * A sorted view by ID backs keyset paging.
+ * {@link AccountChangeListener}s see each write inside the same critical section, so in commit order.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "account-store", name = "engine", havingValue = "INDEXED", matchIfMissing = true)
+public class InMemoryAccountRepository implements AccountRepository {
+
+    private final Map<String, Account> byId = new ConcurrentHashMap<>();
+    private final NavigableMap<String, Account> orderedById = new ConcurrentSkipListMap<>();
+    private final Map<String, Account> byAccountNumber = new ConcurrentHashMap<>();
+    private final Map<String, List<Account>> byUserId = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final List<AccountChangeListener> listeners;
+
+    public InMemoryAccountRepository(ObjectProvider<AccountChangeListener> listeners) {
+        this.listeners = listeners.orderedStream().toList();
+    }
+
+    @Override
+    public Optional<Account> findById(String id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    @Override
+    public Optional<Account> findByAccountNumber(String accountNumber) {
+        return Optional.ofNullable(byAccountNumber.get(accountNumber));
+    }
+
+    @Override
+    public List<Account> findByUserId(String userId) {
+        return byUserId.getOrDefault(userId, List.of());
+    }
+
+    @Override
+    public List<Account> findAll() {
+        return List.copyOf(byId.values());
+    }
+
+    @Override
+    public List<Account> findPage(String afterId, int limit) {
+        NavigableMap<String, Account> remaining = afterId == null ? orderedById : orderedById.tailMap(afterId, false);
+        List<Account> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Account account : remaining.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(account);
+        }
+        return page;
+    }
+
+    @Override
+    public Account save(Account account) {
+        Objects.requireNonNull(account.getId(), "account id must not be null");
+        synchronized (writeLock) {
+            Account previous = put(account);
+            for (AccountChangeListener listener : listeners) {
+                listener.onSaved(previous, account);
+            }
+            return account;
+        }
+    }
+
+    @Override
+    public List<Account> saveAll(List<Account> accounts) {
+        for (Account account : accounts) {
+            Objects.requireNonNull(account.getId(), "account id must not be null");
+        }
+        synchronized (writeLock) {
+            List<Account> previous = new ArrayList<>(accounts.size());
+            for (Account account : accounts) {
+                previous.add(put(account));
+            }
+            for (AccountChangeListener listener : listeners) {
+                listener.onSavedAll(previous, accounts);
+            }
+            return accounts;
+        }
+    }
+
+    @Override
+    public void restore(Collection<Account> accounts) {
+        List<Account> restored = List.copyOf(accounts);
+        for (Account account : restored) {
+            Objects.requireNonNull(account.getId(), "account id must not be null");
+        }
+        synchronized (writeLock) {
+            List<Account> previous = new ArrayList<>(restored.size());
+            for (Account account : restored) {
+                previous.add(put(account));
+            }
+            for (AccountChangeListener listener : listeners) {
+                listener.onRestored(previous, restored);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Account> deleteById(String id) {
+        synchronized (writeLock) {
+            Account removed = byId.remove(id);
+            if (removed != null) {
+                orderedById.remove(id);
+                unindex(removed);
+                for (AccountChangeListener listener : listeners) {
+                    listener.onDeleted(removed);
+                }
+            }
+            return Optional.ofNullable(removed);
+        }
+    }
+
+    @Override
+    public int count() {
+        return byId.size();
+    }
+
+    private Account put(Account account) {
+        Account previous = byId.get(account.getId());
+        // Secondary indexes first so a reader that finds the id can also find it by user; the new
+        // entries go in before stale ones come out, so a moved account is briefly under both keys
+        if (account.getAccountNumber() != null) {
+            byAccountNumber.put(account.getAccountNumber(), account);
+        }
+        if (account.getUserId() != null) {
+            byUserId.compute(account.getUserId(), (userId, current) -> replaceOrAppend(current, account));
+        }
+        if (previous != null) {
+            if (previous.getAccountNumber() != null
+                    && !previous.getAccountNumber().equals(account.getAccountNumber())) {
+                byAccountNumber.remove(previous.getAccountNumber(), previous);
+            }
+            if (previous.getUserId() != null && !previous.getUserId().equals(account.getUserId())) {
+                byUserId.computeIfPresent(previous.getUserId(), (userId, current) -> without(current, account.getId()));
+            }
+        }
+        orderedById.put(account.getId(), account);
+        byId.put(account.getId(), account);
+        return previous;
+    }
+
+    private void unindex(Account account) {
+        if (account.getAccountNumber() != null) {
+            byAccountNumber.remove(account.getAccountNumber(), account);
+        }
+        if (account.getUserId() != null) {
+            byUserId.computeIfPresent(account.getUserId(), (userId, current) -> without(current, account.getId()));
+        }
+    }
+
+    /**
+     * @return the list with the account replacing the entry with its id, keeping its position,
+     *         or appended if it has none
+     */
+    private static List<Account> replaceOrAppend(List<Account> current, Account account) {
+        if (current == null) {
+            return List.of(account);
+        }
+        List<Account> updated = new ArrayList<>(current.size() + 1);
+        boolean replaced = false;
+        for (Account existing : current) {
+            if (!replaced && existing.getId().equals(account.getId())) {
+                updated.add(account);
+                replaced = true;
+            } else {
+                updated.add(existing);
+            }
+        }
+        if (!replaced) {
+            updated.add(account);
+        }
+        return List.copyOf(updated);
+    }
+
+    private static List<Account> without(List<Account> current, String accountId) {
+        List<Account> updated = new ArrayList<>(current.size());
+        for (Account existing : current) {
+            if (!existing.getId().equals(accountId)) {
+                updated.add(existing);
+            }
+        }
+        // Returning null from computeIfPresent drops the user entry entirely
+        return updated.isEmpty() ? null : List.copyOf(updated);
+    }
+}
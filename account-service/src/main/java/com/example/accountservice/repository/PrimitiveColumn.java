@@ -0,0 +1,65 @@
+package com.example.accountservice.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Growable column of fixed-width primitive values in a {@link ByteBuffer}, on the heap or off it.
+ * Not thread-safe; callers guard access.
+ */
+final class PrimitiveColumn {
+
+    private final int width;
+    private final boolean offHeap;
+    private ByteBuffer buffer;
+
+    PrimitiveColumn(int width, int initialRows, boolean offHeap) {
+        this.width = width;
+        this.offHeap = offHeap;
+        this.buffer = allocate(Math.max(1, initialRows) * width);
+    }
+
+    long getLong(int row) {
+        return buffer.getLong(row * width);
+    }
+
+    void putLong(int row, long value) {
+        ensureRows(row + 1);
+        buffer.putLong(row * width, value);
+    }
+
+    int getInt(int row) {
+        return buffer.getInt(row * width);
+    }
+
+    void putInt(int row, int value) {
+        ensureRows(row + 1);
+        buffer.putInt(row * width, value);
+    }
+
+    /**
+     * @return bytes held by this column, used or not
+     */
+    long capacityBytes() {
+        return buffer.capacity();
+    }
+
+    private void ensureRows(int rows) {
+        long required = (long) rows * width;
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long grown = Math.max(required, buffer.capacity() + (buffer.capacity() >> 1));
+        if (grown > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Column exceeds " + Integer.MAX_VALUE + " bytes");
+        }
+        ByteBuffer larger = allocate((int) grown);
+        larger.put(0, buffer, 0, buffer.capacity());
+        buffer = larger;
+    }
+
+    private ByteBuffer allocate(int bytes) {
+        ByteBuffer allocated = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        return allocated.order(ByteOrder.nativeOrder());
+    }
+}
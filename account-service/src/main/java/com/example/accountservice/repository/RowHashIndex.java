@@ -0,0 +1,136 @@
+package com.example.accountservice.repository;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing hash index from a key to a row number, storing only the row in each slot.
+ * <p>
+ * Keys live in the columns, not in the index: the owner supplies the hash of a row's key and,
+ * for lookups, a predicate matching rows against the wanted key. Linear probing with
+ * backward-shift deletion keeps probe chains short without tombstones. At most half of the
+ * slots are used. Not thread-safe; callers guard access.
+ */
+final class RowHashIndex {
+
+    @FunctionalInterface
+    interface RowHasher {
+        int hashOfRow(int row);
+    }
+
+    private static final int EMPTY = 0;
+
+    private final RowHasher hasher;
+    private int[] slots;
+    private int size;
+
+    RowHashIndex(int expectedRows, RowHasher hasher) {
+        this.hasher = hasher;
+        this.slots = new int[tableSize(expectedRows)];
+    }
+
+    /**
+     * @return the row whose key has this hash and matches, or -1
+     */
+    int find(int hash, IntPredicate matches) {
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; slots[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (matches.test(row)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a row whose key is not in the index yet
+     */
+    void insert(int row) {
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int mask = slots.length - 1;
+        int slot = spread(hasher.hashOfRow(row)) & mask;
+        while (slots[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+        size++;
+    }
+
+    /**
+     * Remove a row; its key columns must still hold the indexed key
+     */
+    void remove(int row) {
+        int mask = slots.length - 1;
+        int slot = spread(hasher.hashOfRow(row)) & mask;
+        while (slots[slot] != row + 1) {
+            if (slots[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Shift later entries of the probe chain back into the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; slots[next] != EMPTY; next = (next + 1) & mask) {
+            int home = spread(hasher.hashOfRow(slots[next] - 1)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = EMPTY;
+        size--;
+    }
+
+    /**
+     * @return every indexed row, in no particular order
+     */
+    int[] rows() {
+        int[] rows = new int[size];
+        int count = 0;
+        for (int slot : slots) {
+            if (slot != EMPTY) {
+                rows[count++] = slot - 1;
+            }
+        }
+        return rows;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long capacityBytes() {
+        return (long) slots.length * Integer.BYTES;
+    }
+
+    private void rehash(int tableSize) {
+        int[] old = slots;
+        slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int entry : old) {
+            if (entry != EMPTY) {
+                int slot = spread(hasher.hashOfRow(entry - 1)) & mask;
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        // Fibonacci hashing, so that keys with similar low bits still spread over the table
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+
+    private static int tableSize(int expectedRows) {
+        int size = 16;
+        while (size < expectedRows * 2L) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.accountservice.repository;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Ordered index of row numbers, kept sorted by a key that lives in the columns.
+ * <p>
+ * Rows are held in a list of small sorted blocks. An insert or delete binary-searches the
+ * blocks, then the block, and shifts at most one block's worth of entries; a full block splits
+ * in two and a block that shrinks to a quarter merges into its neighbour. Reads walk the blocks
+ * in order, so paging never has to wait for a full re-sort after writes. Not thread-safe;
+ * callers guard access.
+ */
+final class SortedRowIndex {
+
+    @FunctionalInterface
+    interface RowComparator {
+        int compare(int row, int otherRow);
+    }
+
+    static final int BLOCK_SIZE = 512;
+
+    private final RowComparator comparator;
+    private int[][] blocks = new int[16][];
+    private int[] blockSizes = new int[16];
+    private int blockCount;
+    private int size;
+
+    SortedRowIndex(RowComparator comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Add a row whose key is not in the index yet
+     */
+    void insert(int row) {
+        if (blockCount == 0) {
+            insertBlock(0, new int[BLOCK_SIZE], 0);
+        }
+        int block = blockOf(row);
+        if (blockSizes[block] == BLOCK_SIZE) {
+            split(block);
+            if (comparator.compare(row, blocks[block + 1][0]) > 0) {
+                block++;
+            }
+        }
+        int[] entries = blocks[block];
+        int count = blockSizes[block];
+        int position = -search(entries, count, row) - 1;
+        System.arraycopy(entries, position, entries, position + 1, count - position);
+        entries[position] = row;
+        blockSizes[block]++;
+        size++;
+    }
+
+    /**
+     * Remove a row; its key columns must still hold the indexed key
+     */
+    void remove(int row) {
+        if (blockCount == 0) {
+            return;
+        }
+        int block = blockOf(row);
+        int[] entries = blocks[block];
+        int count = blockSizes[block];
+        int position = search(entries, count, row);
+        if (position < 0 || entries[position] != row) {
+            return;
+        }
+        System.arraycopy(entries, position + 1, entries, position, count - position - 1);
+        blockSizes[block]--;
+        size--;
+
+        if (blockSizes[block] == 0) {
+            removeBlock(block);
+        } else if (blockSizes[block] <= BLOCK_SIZE / 4) {
+            // Merge into a neighbour that has room, so sparse blocks do not pile up after deletes
+            if (block + 1 < blockCount && blockSizes[block] + blockSizes[block + 1] <= BLOCK_SIZE / 2) {
+                merge(block);
+            } else if (block > 0 && blockSizes[block - 1] + blockSizes[block] <= BLOCK_SIZE / 2) {
+                merge(block - 1);
+            }
+        }
+    }
+
+    /**
+     * Collect rows in key order, starting after a cursor
+     *
+     * @param atOrBeforeCursor true for the rows that sort at or before the cursor; must hold for a
+     *                         prefix of the order
+     * @param limit the maximum number of rows
+     * @return up to {@code limit} rows following the cursor, in key order
+     */
+    int[] rowsAfter(IntPredicate atOrBeforeCursor, int limit) {
+        // First block whose last row is past the cursor
+        int low = 0;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (atOrBeforeCursor.test(blocks[mid][blockSizes[mid] - 1])) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int[] rows = new int[(int) Math.min(limit, size)];
+        int count = 0;
+        for (int block = low; block < blockCount && count < rows.length; block++) {
+            int[] entries = blocks[block];
+            int position = 0;
+            if (block == low) {
+                int end = blockSizes[block];
+                while (position < end) {
+                    int mid = (position + end) >>> 1;
+                    if (atOrBeforeCursor.test(entries[mid])) {
+                        position = mid + 1;
+                    } else {
+                        end = mid;
+                    }
+                }
+            }
+            int take = Math.min(blockSizes[block] - position, rows.length - count);
+            System.arraycopy(entries, position, rows, count, take);
+            count += take;
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long capacityBytes() {
+        return (long) blockCount * BLOCK_SIZE * Integer.BYTES + (long) blocks.length * (Integer.BYTES + 8);
+    }
+
+    /**
+     * @return the block the row belongs in: the last block whose first row sorts at or before it
+     */
+    private int blockOf(int row) {
+        int low = 1;
+        int high = blockCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comparator.compare(blocks[mid][0], row) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Binary search within a block
+     *
+     * @return the position of the row's key, or {@code -(insertion point) - 1} if absent
+     */
+    private int search(int[] entries, int count, int row) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = comparator.compare(entries[mid], row);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void split(int block) {
+        int half = BLOCK_SIZE / 2;
+        int[] upper = new int[BLOCK_SIZE];
+        System.arraycopy(blocks[block], half, upper, 0, BLOCK_SIZE - half);
+        blockSizes[block] = half;
+        insertBlock(block + 1, upper, BLOCK_SIZE - half);
+    }
+
+    private void merge(int block) {
+        System.arraycopy(blocks[block + 1], 0, blocks[block], blockSizes[block], blockSizes[block + 1]);
+        blockSizes[block] += blockSizes[block + 1];
+        removeBlock(block + 1);
+    }
+
+    private void insertBlock(int block, int[] entries, int count) {
+        if (blockCount == blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            blockSizes = Arrays.copyOf(blockSizes, blockSizes.length * 2);
+        }
+        System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+        System.arraycopy(blockSizes, block, blockSizes, block + 1, blockCount - block);
+        blocks[block] = entries;
+        blockSizes[block] = count;
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block - 1);
+        System.arraycopy(blockSizes, block + 1, blockSizes, block, blockCount - block - 1);
+        blocks[--blockCount] = null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.accountservice.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each distinct string a dense int code, so that a column of repetitive strings
+ * stores 4 bytes per row. Codes are never reused. Not thread-safe; callers guard access.
+ */
+final class StringDictionary {
+
+    static final int NULL_CODE = -1;
+
+    private final List<String> values = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * @return the code of the string, assigning a new one if it has none yet
+     */
+    int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return the code of the string, or {@link #NULL_CODE} if it was never encoded
+     */
+    int find(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code != null ? code : NULL_CODE;
+    }
+
+    String decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+}
@@ -1,60 +1,183 @@
 package com.example.accountservice.service;
 
+import com.example.accountservice.aggregate.BalanceAggregates;
+import com.example.accountservice.feed.AccountChangeFeed;
 import com.example.accountservice.model.Account;
+import com.example.accountservice.model.AccountChange;
+import com.example.accountservice.model.BalanceSummary;
+import com.example.accountservice.model.CursorPage;
+import com.example.accountservice.model.UserBalanceSummary;
+import com.example.accountservice.persistence.AccountPersistence;
+import com.example.accountservice.repository.AccountRepository;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
-import io.opentelemetry.api.trace.Tracer;
-import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class AccountService {
 
-    private final List<Account> accounts = new ArrayList<>();
-    private final Tracer tracer;
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    private final AccountRepository accountRepository;
+    private final AccountChangeFeed accountChangeFeed;
+    private final AccountPersistence accountPersistence;
+    private final BalanceAggregates balanceAggregates;
 
     @Autowired
-    public AccountService(Tracer tracer) {
-        this.tracer = tracer;
+    public AccountService(AccountRepository accountRepository, AccountChangeFeed accountChangeFeed,
+                          AccountPersistence accountPersistence, BalanceAggregates balanceAggregates) {
+        this.accountRepository = accountRepository;
+        this.accountChangeFeed = accountChangeFeed;
+        this.accountPersistence = accountPersistence;
+        this.balanceAggregates = balanceAggregates;
+        
+        // Restore what was persisted before the first write, and only seed a store that starts out empty
+        accountPersistence.recover();
+        if (accountRepository.count() > 0) {
+            log.info("AccountService initialized with {} restored accounts", accountRepository.count());
+            return;
+        }
         
         // Initialize with some sample account data with user IDs
         // User 1 accounts
         String user1Id = "user1";
-        accounts.add(new Account(UUID.randomUUID().toString(), "John Doe", "ACC001", BigDecimal.valueOf(1000.00), user1Id));
-        accounts.add(new Account(UUID.randomUUID().toString(), "John Doe", "ACC004", BigDecimal.valueOf(500.75), user1Id));
+        accountRepository.save(new Account(UUID.randomUUID().toString(), "John Doe", "ACC001", BigDecimal.valueOf(1000.00), user1Id));
+        accountRepository.save(new Account(UUID.randomUUID().toString(), "John Doe", "ACC004", BigDecimal.valueOf(500.75), user1Id));
         
         // User 2 accounts
         String user2Id = "user2";
-        accounts.add(new Account(UUID.randomUUID().toString(), "Jane Smith", "ACC002", BigDecimal.valueOf(2500.50), user2Id));
+        accountRepository.save(new Account(UUID.randomUUID().toString(), "Jane Smith", "ACC002", BigDecimal.valueOf(2500.50), user2Id));
         
         // User 3 accounts
         String user3Id = "user3";
-        accounts.add(new Account(UUID.randomUUID().toString(), "Bob Johnson", "ACC003", BigDecimal.valueOf(750.25), user3Id));
-        accounts.add(new Account(UUID.randomUUID().toString(), "Bob Johnson", "ACC005", BigDecimal.valueOf(1250.60), user3Id));
+        accountRepository.save(new Account(UUID.randomUUID().toString(), "Bob Johnson", "ACC003", BigDecimal.valueOf(750.25), user3Id));
+        accountRepository.save(new Account(UUID.randomUUID().toString(), "Bob Johnson", "ACC005", BigDecimal.valueOf(1250.60), user3Id));
+        try {
+            accountPersistence.awaitDurable();
+        } catch (UncheckedIOException e) {
+            // The store was empty before seeding, so taking the seed back means deleting everything
+            accountRepository.findAll().forEach(account -> accountRepository.deleteById(account.getId()));
+            throw e;
+        }
         
-        log.info("AccountService initialized with {} accounts", accounts.size());
+        log.info("AccountService initialized with {} accounts", accountRepository.count());
     }
 
+    /**
+     * Get every account at once, for the original unpaged listing; large stores should be read
+     * with {@link #getAccountsPage} or {@link #exportAccounts} instead
+     */
     @WithSpan("AccountService.getAllAccounts")
     public List<Account> getAllAccounts() {
         log.info("Retrieving all accounts");
+        List<Account> accounts = accountRepository.findAll();
+        Span.current().setAttribute("accounts.count", accounts.size());
+        return accounts;
+    }
+
+    /**
+     * Get one keyset page of all accounts, ordered by ID
+     * 
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @param limit maximum number of accounts on the page
+     * @return the page, with a cursor for the next one if more accounts may follow
+     */
+    @WithSpan("AccountService.getAccountsPage")
+    public CursorPage<Account> getAccountsPage(String cursor, int limit) {
+        log.debug("Retrieving accounts page, limit: {}", limit);
         Span span = Span.current();
+        
+        List<Account> accounts = accountRepository.findPage(CursorPage.decodeCursor(cursor), limit);
         span.setAttribute("accounts.count", accounts.size());
         
-        // If random balances are enabled, update balances before returning
-        return accounts;
+        String nextCursor = accounts.size() < limit ? null
+                : CursorPage.encodeCursor(accounts.get(accounts.size() - 1).getId());
+        return new CursorPage<>(accounts, nextCursor);
+    }
+    
+    /**
+     * Write every account, in ID order, to a streaming sequence writer.
+     * Accounts are read a chunk at a time so memory stays bounded regardless of store size.
+     * 
+     * @param writer the destination, typically an NDJSON response body
+     * @return the number of accounts written
+     */
+    @WithSpan("AccountService.exportAccounts")
+    public long exportAccounts(SequenceWriter writer) throws IOException {
+        log.info("Exporting all accounts");
+        Span span = Span.current();
+        
+        long exported = 0;
+        String afterId = null;
+        List<Account> chunk;
+        do {
+            chunk = accountRepository.findPage(afterId, EXPORT_CHUNK_SIZE);
+            for (Account account : chunk) {
+                writer.write(account);
+            }
+            writer.flush();
+            exported += chunk.size();
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == EXPORT_CHUNK_SIZE);
+        
+        span.setAttribute("accounts.exported", exported);
+        log.info("Exported {} accounts", exported);
+        return exported;
+    }
+    
+    /**
+     * Write a snapshot of every account for bootstrapping a change feed consumer: one SNAPSHOT
+     * line per account, then a SNAPSHOT_END line with the sequence to resume the feed from.
+     * <p>
+     * The snapshot is not taken under a lock, so it may already contain changes made after the
+     * sequence it starts at. Replaying those changes again is harmless, because each one carries
+     * the full account state and they are applied in order.
+     * 
+     * @param writer the destination, typically an NDJSON response body
+     * @return the number of accounts written
+     */
+    @WithSpan("AccountService.exportSnapshot")
+    public long exportSnapshot(SequenceWriter writer) throws IOException {
+        Span span = Span.current();
+        long sequence = accountChangeFeed.getHeadSequence();
+        log.info("Exporting account snapshot at sequence {}", sequence);
+        
+        long exported = 0;
+        String afterId = null;
+        List<Account> chunk;
+        do {
+            chunk = accountRepository.findPage(afterId, EXPORT_CHUNK_SIZE);
+            for (Account account : chunk) {
+                writer.write(AccountChange.of(sequence, AccountChange.Type.SNAPSHOT, account,
+                        account.getId(), account.getUserId()));
+            }
+            writer.flush();
+            exported += chunk.size();
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == EXPORT_CHUNK_SIZE);
+        writer.write(AccountChange.marker(sequence, AccountChange.Type.SNAPSHOT_END, accountChangeFeed.getEpoch()));
+        
+        span.setAttribute("accounts.exported", exported);
+        span.setAttribute("feed.sequence", sequence);
+        return exported;
     }
     
     /**
@@ -65,14 +188,12 @@ public class AccountService {
      */
     @WithSpan("AccountService.getAccountById")
     public java.util.Optional<Account> getAccountById(String id) {
-        log.info("Finding account by ID: {}", id);
+        log.debug("Finding account by ID: {}", id);
         Span span = Span.current();
         span.setAttribute("account.id", id);
         
         try {
-            java.util.Optional<Account> accountOpt = accounts.stream()
-                    .filter(account -> account.getId().equals(id))
-                    .findFirst();
+            java.util.Optional<Account> accountOpt = accountRepository.findById(id);
             
             if (accountOpt.isPresent()) {
                 span.setAttribute("account.found", true);
@@ -99,15 +220,13 @@ public class AccountService {
      */
     @WithSpan("AccountService.getAccountsByUserId")
     public List<Account> getAccountsByUserId(String userId) {
-        log.info("Finding accounts for user ID: {}", userId);
+        log.debug("Finding accounts for user ID: {}", userId);
         
         Span span = Span.current();
         span.setAttribute("user.id", userId);
         
         try {
-            List<Account> userAccounts = accounts.stream()
-                    .filter(account -> userId.equals(account.getUserId()))
-                    .collect(Collectors.toList());
+            List<Account> userAccounts = accountRepository.findByUserId(userId);
             
             span.setAttribute("accounts.count", userAccounts.size());
             log.info("Found {} accounts for user ID: {}", userAccounts.size(), userId);
@@ -120,4 +239,65 @@ public class AccountService {
             throw e;
         }
     }
+    
+    /**
+     * Find the accounts for many users in one call
+     * 
+     * @param userIds the user IDs to search for
+     * @return accounts grouped by user ID, with an empty list for users that have no accounts
+     */
+    @WithSpan("AccountService.getAccountsByUserIds")
+    public Map<String, List<Account>> getAccountsByUserIds(Collection<String> userIds) {
+        log.debug("Finding accounts for {} user IDs", userIds.size());
+        
+        Span span = Span.current();
+        span.setAttribute("users.count", userIds.size());
+        
+        try {
+            Map<String, List<Account>> accountsByUser = new LinkedHashMap<>();
+            int total = 0;
+            for (String userId : userIds) {
+                List<Account> userAccounts = accountRepository.findByUserId(userId);
+                accountsByUser.put(userId, userAccounts);
+                total += userAccounts.size();
+            }
+            
+            span.setAttribute("accounts.count", total);
+            log.info("Found {} accounts for {} user IDs", total, accountsByUser.size());
+            
+            return accountsByUser;
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            log.error("Error while finding accounts for user IDs: {}", userIds, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Totals over every account, maintained as accounts are written
+     * 
+     * @return the account count, user count and total balance
+     */
+    @WithSpan("AccountService.getBalanceSummary")
+    public BalanceSummary getBalanceSummary() {
+        BalanceSummary summary = balanceAggregates.getOverall();
+        Span.current().setAttribute("accounts.count", summary.getAccountCount());
+        return summary;
+    }
+    
+    /**
+     * Totals over the accounts of one user, maintained as accounts are written
+     * 
+     * @param userId the user ID
+     * @return the user's account count and total balance, zero if the user has no accounts
+     */
+    @WithSpan("AccountService.getUserBalanceSummary")
+    public UserBalanceSummary getUserBalanceSummary(String userId) {
+        Span span = Span.current();
+        span.setAttribute("user.id", userId);
+        UserBalanceSummary summary = balanceAggregates.getUser(userId);
+        span.setAttribute("accounts.count", summary.getAccountCount());
+        return summary;
+    }
 }
@@ -0,0 +1,24 @@
+package com.example.accountservice.service;
+
+/**
+ * A deposit, withdrawal or transfer that was refused without changing any balance.
+ */
+public class BalanceRejectedException extends RuntimeException {
+
+    public enum Reason {
+        ACCOUNT_NOT_FOUND,
+        INSUFFICIENT_FUNDS,
+        IDEMPOTENCY_KEY_REUSED
+    }
+
+    private final Reason reason;
+
+    public BalanceRejectedException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
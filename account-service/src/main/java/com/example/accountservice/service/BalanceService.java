@@ -0,0 +1,331 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.config.BalanceProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.model.Transfer;
+import com.example.accountservice.persistence.AccountPersistence;
+import com.example.accountservice.repository.AccountRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Deposits, withdrawals and transfers between accounts.
+ * <p>
+ * Each balance change is a read-modify-write of the stored account under a lock striped by
+ * account ID, so concurrent changes to one account never lose an update while changes to
+ * unrelated accounts rarely wait on each other. A transfer takes the stripes of both accounts
+ * in stripe order, which rules out deadlocks between opposite transfers, and stores both sides
+ * in one write. Writers wait for durability after releasing their locks, so concurrent
+ * writes share disk flushes. A write whose flush fails is taken back with a compensating write
+ * before the error is returned, so the store never shows money that is not on disk, and no
+ * further writes are accepted once the log has failed.
+ * <p>
+ * Requests may carry an idempotency key; a retry with the same key returns the first outcome.
+ * Every operation runs in its own span, and timings are published as {@code account.balance.operations}.
+ */
+@Service
+@Slf4j
+public class BalanceService {
+
+    private static final int MAX_SCALE = 2;
+
+    private static final List<String> OPERATIONS = List.of("deposit", "withdraw", "transfer");
+    private static final Map<BalanceRejectedException.Reason, String> REJECTION_OUTCOMES =
+            new EnumMap<>(BalanceRejectedException.Reason.class);
+
+    static {
+        for (BalanceRejectedException.Reason reason : BalanceRejectedException.Reason.values()) {
+            REJECTION_OUTCOMES.put(reason, reason.name().toLowerCase());
+        }
+    }
+
+    private final AccountRepository accountRepository;
+    private final AccountPersistence accountPersistence;
+    private final Tracer tracer;
+    // Timers by operation, then outcome, registered up front so recording needs no registry lookup
+    private final Map<String, Map<String, Timer>> timers = new HashMap<>();
+    private final ReentrantLock[] stripes;
+    private final IdempotencyKeys idempotencyKeys;
+
+    public BalanceService(AccountRepository accountRepository,
+                          AccountPersistence accountPersistence,
+                          BalanceProperties properties,
+                          Tracer tracer,
+                          MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.accountPersistence = accountPersistence;
+        this.tracer = tracer;
+        List<String> outcomes = new ArrayList<>(List.of("success", "invalid", "error"));
+        outcomes.addAll(REJECTION_OUTCOMES.values());
+        for (String operation : OPERATIONS) {
+            Map<String, Timer> byOutcome = new HashMap<>();
+            for (String outcome : outcomes) {
+                byOutcome.put(outcome, Timer.builder("account.balance.operations")
+                        .description("Deposits, withdrawals and transfers by outcome")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry));
+            }
+            timers.put(operation, byOutcome);
+        }
+
+        int stripeCount = Integer.highestOneBit(Math.max(1, properties.getLockStripes() - 1)) << 1;
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        BalanceProperties.Idempotency idempotency = properties.getIdempotency();
+        this.idempotencyKeys = new IdempotencyKeys(idempotency.getRetention().toNanos(), idempotency.getMaxKeys());
+    }
+
+    /**
+     * Add money to an account
+     *
+     * @param accountId the account to credit
+     * @param amount a positive amount with at most two decimal places
+     * @param idempotencyKey the client's key for safe retries, or null
+     * @return the account with its new balance
+     */
+    public Account deposit(String accountId, BigDecimal amount, String idempotencyKey) {
+        return traced("deposit", idempotencyKey, span -> {
+            span.setAttribute("account.id", accountId);
+            requireValidAmount(amount);
+            return idempotencyKeys.execute(idempotencyKey, "deposit:" + accountId + ":" + amount.stripTrailingZeros().toPlainString(),
+                    attempt -> durably(applyDelta(accountId, amount, span, attempt), () -> reverseDelta(accountId, amount), attempt),
+                    () -> span.setAttribute("idempotency.replayed", true));
+        });
+    }
+
+    /**
+     * Take money from an account, refusing to overdraw it
+     *
+     * @param accountId the account to debit
+     * @param amount a positive amount with at most two decimal places
+     * @param idempotencyKey the client's key for safe retries, or null
+     * @return the account with its new balance
+     */
+    public Account withdraw(String accountId, BigDecimal amount, String idempotencyKey) {
+        return traced("withdraw", idempotencyKey, span -> {
+            span.setAttribute("account.id", accountId);
+            requireValidAmount(amount);
+            return idempotencyKeys.execute(idempotencyKey, "withdraw:" + accountId + ":" + amount.stripTrailingZeros().toPlainString(),
+                    attempt -> durably(applyDelta(accountId, amount.negate(), span, attempt),
+                            () -> reverseDelta(accountId, amount.negate()), attempt),
+                    () -> span.setAttribute("idempotency.replayed", true));
+        });
+    }
+
+    /**
+     * Move money between two accounts atomically, refusing to overdraw the source
+     *
+     * @param fromAccountId the account to debit
+     * @param toAccountId the account to credit, different from the source
+     * @param amount a positive amount with at most two decimal places
+     * @param idempotencyKey the client's key for safe retries, or null
+     * @return both accounts with their new balances
+     */
+    public Transfer transfer(String fromAccountId, String toAccountId, BigDecimal amount, String idempotencyKey) {
+        return traced("transfer", idempotencyKey, span -> {
+            span.setAttribute("transfer.from", String.valueOf(fromAccountId));
+            span.setAttribute("transfer.to", String.valueOf(toAccountId));
+            requireValidAmount(amount);
+            if (fromAccountId == null || toAccountId == null || fromAccountId.equals(toAccountId)) {
+                throw new IllegalArgumentException("A transfer needs two different accounts");
+            }
+            String request = "transfer:" + fromAccountId + ":" + toAccountId + ":" + amount.stripTrailingZeros().toPlainString();
+            return idempotencyKeys.execute(idempotencyKey, request,
+                    attempt -> durably(applyTransfer(fromAccountId, toAccountId, amount, span, attempt),
+                            () -> reverseTransfer(fromAccountId, toAccountId, amount), attempt),
+                    () -> span.setAttribute("idempotency.replayed", true));
+        });
+    }
+
+    private Account applyDelta(String accountId, BigDecimal delta, Span span, IdempotencyKeys.Attempt attempt) {
+        accountPersistence.checkWritable();
+        ReentrantLock lock = stripeOf(accountId);
+        long waitStart = System.nanoTime();
+        lock.lock();
+        try {
+            span.setAttribute("lock.wait_us", (System.nanoTime() - waitStart) / 1000);
+            Account current = find(accountId);
+            Account updated = withBalance(current, debitOrCredit(current, delta));
+            attempt.markApplied();
+            return accountRepository.save(updated);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Transfer applyTransfer(String fromAccountId, String toAccountId, BigDecimal amount, Span span,
+                                   IdempotencyKeys.Attempt attempt) {
+        accountPersistence.checkWritable();
+        long waitStart = System.nanoTime();
+        return withTransferLocks(fromAccountId, toAccountId, () -> {
+            span.setAttribute("lock.wait_us", (System.nanoTime() - waitStart) / 1000);
+            Account from = find(fromAccountId);
+            Account to = find(toAccountId);
+            List<Account> updated = List.of(
+                    withBalance(from, debitOrCredit(from, amount.negate())),
+                    withBalance(to, debitOrCredit(to, amount)));
+            attempt.markApplied();
+            List<Account> saved = accountRepository.saveAll(updated);
+            return new Transfer(saved.get(0), saved.get(1), amount);
+        });
+    }
+
+    /**
+     * Take back a delta that could not be made durable. Other writes may have landed on the
+     * account since, so this applies the opposite delta rather than restoring the old balance,
+     * and skips the overdraft check: a compensation must not be refused.
+     */
+    private void reverseDelta(String accountId, BigDecimal delta) {
+        ReentrantLock lock = stripeOf(accountId);
+        lock.lock();
+        try {
+            Account current = find(accountId);
+            accountRepository.save(withBalance(current, balanceOf(current).subtract(delta)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reverseTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        withTransferLocks(fromAccountId, toAccountId, () -> {
+            Account from = find(fromAccountId);
+            Account to = find(toAccountId);
+            return accountRepository.saveAll(List.of(
+                    withBalance(from, balanceOf(from).add(amount)),
+                    withBalance(to, balanceOf(to).subtract(amount))));
+        });
+    }
+
+    private <T> T withTransferLocks(String fromAccountId, String toAccountId, Supplier<T> work) {
+        int fromStripe = stripeIndex(fromAccountId);
+        int toStripe = stripeIndex(toAccountId);
+        // Always lock the lower stripe first, so two transfers can never each hold the other's lock
+        ReentrantLock first = stripes[Math.min(fromStripe, toStripe)];
+        ReentrantLock second = fromStripe == toStripe ? null : stripes[Math.max(fromStripe, toStripe)];
+        first.lock();
+        try {
+            if (second != null) {
+                second.lock();
+            }
+            try {
+                return work.get();
+            } finally {
+                if (second != null) {
+                    second.unlock();
+                }
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private <T> T durably(T result, Runnable undo, IdempotencyKeys.Attempt attempt) {
+        // Outside the stripe locks, so writers waiting here share one flush
+        try {
+            accountPersistence.awaitDurable();
+        } catch (UncheckedIOException e) {
+            // Not on disk, so it must not stay visible in the store or the change feed either
+            try {
+                undo.run();
+                attempt.markUndone();
+            } catch (RuntimeException undoFailure) {
+                // The change may still be in place, so its idempotency key stays taken
+                e.addSuppressed(undoFailure);
+                log.error("Could not take back a balance change that failed to reach the disk", undoFailure);
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private Account find(String accountId) {
+        return accountRepository.findById(accountId).orElseThrow(() -> new BalanceRejectedException(
+                BalanceRejectedException.Reason.ACCOUNT_NOT_FOUND, "Account not found: " + accountId));
+    }
+
+    private static BigDecimal debitOrCredit(Account account, BigDecimal delta) {
+        BigDecimal updated = balanceOf(account).add(delta);
+        if (updated.signum() < 0) {
+            throw new BalanceRejectedException(BalanceRejectedException.Reason.INSUFFICIENT_FUNDS,
+                    "Account " + account.getId() + " has insufficient funds for " + delta.negate());
+        }
+        return updated;
+    }
+
+    private static BigDecimal balanceOf(Account account) {
+        return account.getBalance() != null ? account.getBalance() : BigDecimal.ZERO;
+    }
+
+    private static Account withBalance(Account account, BigDecimal balance) {
+        // A new object: the stored one may be shared with concurrent readers
+        return new Account(account.getId(), account.getName(), account.getAccountNumber(), balance, account.getUserId());
+    }
+
+    private static void requireValidAmount(BigDecimal amount) {
+        if (amount == null || amount.signum() <= 0 || amount.stripTrailingZeros().scale() > MAX_SCALE) {
+            throw new IllegalArgumentException("Amount must be positive with at most " + MAX_SCALE + " decimal places: " + amount);
+        }
+    }
+
+    private ReentrantLock stripeOf(String accountId) {
+        return stripes[stripeIndex(accountId)];
+    }
+
+    private int stripeIndex(String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private <T> T traced(String operation, String idempotencyKey, Function<Span, T> work) {
+        Span span = tracer.spanBuilder("BalanceService." + operation).startSpan();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try (Scope ignored = span.makeCurrent()) {
+            if (idempotencyKey != null) {
+                span.setAttribute("idempotency.key", idempotencyKey);
+            }
+            T result = work.apply(span);
+            span.setStatus(StatusCode.OK);
+            return result;
+        } catch (BalanceRejectedException e) {
+            outcome = REJECTION_OUTCOMES.get(e.getReason());
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            log.info("Rejected {}: {}", operation, e.getMessage());
+            throw e;
+        } catch (IllegalArgumentException e) {
+            outcome = "invalid";
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            throw e;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR, e.getMessage());
+            log.error("Failed to {}", operation, e);
+            throw e;
+        } finally {
+            span.end();
+            timers.get(operation).get(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
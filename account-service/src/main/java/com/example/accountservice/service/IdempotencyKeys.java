@@ -0,0 +1,133 @@
+package com.example.accountservice.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Outcomes of operations by client-supplied idempotency key, so that a retried request gets the
+ * original outcome back instead of being applied twice.
+ * <p>
+ * A key is bound to the request it first arrived with; reusing it for a different request is
+ * rejected. A retry that arrives while the original is still running waits for its outcome.
+ * Rejections are remembered like successes. An unexpected failure forgets the key so the request
+ * can be retried only if the operation had not applied its change yet; once it has, the change
+ * may have stuck, so the failure is remembered and retries get it back instead of applying the
+ * change a second time. Keys live in memory only, for {@code retention} or until
+ * {@code maxKeys} newer ones push them out, and do not survive a restart.
+ */
+class IdempotencyKeys {
+
+    private final long retentionNanos;
+    private final int maxKeys;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> byAge = new ConcurrentLinkedQueue<>();
+
+    IdempotencyKeys(long retentionNanos, int maxKeys) {
+        this.retentionNanos = retentionNanos;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Run an operation once per key
+     *
+     * @param key the client's idempotency key, or null to just run the operation
+     * @param request a description of the request, identical across retries
+     * @param operation the operation to run; it marks the attempt applied before it changes
+     *                  anything and undone if it takes the change back
+     * @param replayed called when the outcome comes from an earlier request with the key
+     * @return the outcome of the first request with the key
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, String request, Function<Attempt, T> operation, Runnable replayed) {
+        if (key == null) {
+            return operation.apply(new Attempt());
+        }
+        evictExpired();
+
+        long now = System.nanoTime();
+        Entry fresh = new Entry(key, request, now + retentionNanos);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, fresh)) != null && existing.isExpired(now)) {
+            entries.remove(key, existing);
+        }
+        if (existing != null) {
+            if (!existing.request.equals(request)) {
+                throw new BalanceRejectedException(BalanceRejectedException.Reason.IDEMPOTENCY_KEY_REUSED,
+                        "Idempotency key " + key + " was already used for a different request");
+            }
+            replayed.run();
+            try {
+                return (T) existing.outcome.join();
+            } catch (CompletionException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        }
+
+        byAge.add(fresh);
+        Attempt attempt = new Attempt();
+        try {
+            T value = operation.apply(attempt);
+            fresh.outcome.complete(value);
+            return value;
+        } catch (BalanceRejectedException e) {
+            fresh.outcome.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException e) {
+            if (!attempt.applied) {
+                // Nothing changed, so let a retry run the operation rather than repeat this error
+                entries.remove(key, fresh);
+            }
+            fresh.outcome.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        Entry oldest;
+        while ((oldest = byAge.peek()) != null && (oldest.isExpired(now) || entries.size() > maxKeys)) {
+            if (byAge.remove(oldest)) {
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    /**
+     * Whether one run of an operation has changed anything yet
+     */
+    static final class Attempt {
+
+        private volatile boolean applied;
+
+        void markApplied() {
+            applied = true;
+        }
+
+        void markUndone() {
+            applied = false;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final String request;
+        private final long expiresAt;
+        private final CompletableFuture<Object> outcome = new CompletableFuture<>();
+
+        private Entry(String key, String request, long expiresAt) {
+            this.key = key;
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.accountservice.aggregate;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.model.BalanceSummary;
+import com.example.accountservice.model.UserBalanceSummary;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import com.example.accountservice.repository.ColumnarAccountRepository;
+import com.example.accountservice.repository.InMemoryAccountRepository;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Puts the aggregates behind a real store, applies random writes and checks every summary against
+ * a full recompute over the accounts left in the store.
+ */
+class BalanceAggregatesTest {
+
+    private static final int USERS = 20;
+    private static final int ACCOUNTS = 200;
+
+    private final BalanceAggregates aggregates = new BalanceAggregates();
+
+    private AccountRepository store(String engine) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("balanceAggregates", aggregates);
+        if (engine.equals("INDEXED")) {
+            return new InMemoryAccountRepository(beanFactory.getBeanProvider(AccountChangeListener.class));
+        }
+        return new ColumnarAccountRepository(new AccountStoreProperties(),
+                beanFactory.getBeanProvider(AccountChangeListener.class));
+    }
+
+    /**
+     * Canonical UUIDs, as the columnar store requires
+     */
+    private static String id(int index) {
+        return new UUID(0, index).toString();
+    }
+
+    private static Account randomAccount(Random random, int id) {
+        // Some accounts have no owner or no balance, which the totals skip or count as zero
+        String userId = random.nextInt(50) == 0 ? null : "user" + random.nextInt(USERS);
+        BigDecimal balance = random.nextInt(50) == 0 ? null : BigDecimal.valueOf(random.nextInt(2_000_000) - 500_000, 2);
+        return new Account(id(id), "Account " + id, "N" + id, balance, userId);
+    }
+
+    private static void write(AccountRepository store, Random random) {
+        int id = random.nextInt(ACCOUNTS);
+        switch (random.nextInt(4)) {
+            case 0 -> store.deleteById(id(id));
+            // Both sides of a transfer, or any two accounts, in one write
+            case 1 -> {
+                int other = (id + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                store.saveAll(List.of(randomAccount(random, id), randomAccount(random, other)));
+            }
+            default -> store.save(randomAccount(random, id));
+        }
+    }
+
+    private void assertMatchesFullRecompute(AccountRepository store) {
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, BigDecimal> totals = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (Account account : store.findAll()) {
+            BigDecimal balance = account.getBalance() != null ? account.getBalance() : BigDecimal.ZERO;
+            total = total.add(balance);
+            if (account.getUserId() != null) {
+                counts.merge(account.getUserId(), 1L, Long::sum);
+                totals.merge(account.getUserId(), balance, BigDecimal::add);
+            }
+        }
+
+        BalanceSummary overall = aggregates.getOverall();
+        assertThat(overall.getAccountCount()).isEqualTo(store.count());
+        assertThat(overall.getUserCount()).isEqualTo(counts.size());
+        assertThat(overall.getTotalBalance()).isEqualByComparingTo(total);
+        for (int i = 0; i < USERS; i++) {
+            String userId = "user" + i;
+            UserBalanceSummary user = aggregates.getUser(userId);
+            assertThat(user.getAccountCount()).as(userId).isEqualTo(counts.getOrDefault(userId, 0L));
+            assertThat(user.getTotalBalance()).as(userId)
+                    .isEqualByComparingTo(totals.getOrDefault(userId, BigDecimal.ZERO));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"INDEXED", "COLUMNAR"})
+    void randomWritesMatchAFullRecompute(String engine) {
+        AccountRepository store = store(engine);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            write(store, random);
+            if (i % 250 == 0) {
+                assertMatchesFullRecompute(store);
+            }
+        }
+        assertMatchesFullRecompute(store);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"INDEXED", "COLUMNAR"})
+    void concurrentWritersMatchAFullRecompute(String engine) throws Exception {
+        AccountRepository store = store(engine);
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 5_000; i++) {
+                        write(store, random);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertMatchesFullRecompute(store);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"INDEXED", "COLUMNAR"})
+    void restoredAccountsAreCounted(String engine) {
+        AccountRepository store = store(engine);
+        Random random = new Random(7);
+        List<Account> restored = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            restored.add(randomAccount(random, i));
+        }
+
+        store.restore(restored);
+
+        assertMatchesFullRecompute(store);
+    }
+}
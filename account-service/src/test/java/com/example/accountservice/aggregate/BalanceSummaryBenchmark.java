@@ -0,0 +1,108 @@
+package com.example.accountservice.aggregate;
+
+import com.example.accountservice.model.Account;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import com.example.accountservice.repository.InMemoryAccountRepository;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Summary latency of {@link BalanceAggregates} against recomputing the totals from the store, run
+ * by {@code scripts/balance-summary-benchmark.sh}.
+ * <p>
+ * For each store size, loads accounts (three per user) into the indexed store with the aggregates
+ * listening, then times the overall summary against a scan of every account, and one user's
+ * summary against summing that user's accounts.
+ * <pre>
+ * BalanceSummaryBenchmark seconds size...
+ * </pre>
+ */
+public final class BalanceSummaryBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    private static volatile Object sink;
+
+    private BalanceSummaryBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int seconds = Integer.parseInt(args[0]);
+        for (int arg = 1; arg < args.length; arg++) {
+            int count = Integer.parseInt(args[arg]);
+            BalanceAggregates aggregates = new BalanceAggregates();
+            AccountRepository repository = load(aggregates, count);
+            int users = Math.max(1, count / 3);
+            Random random = new Random(11);
+
+            long aggregateOverall = time(seconds, () -> sink = aggregates.getOverall());
+            long scanOverall = time(seconds, () -> {
+                BigDecimal total = BigDecimal.ZERO;
+                for (Account account : repository.findAll()) {
+                    total = total.add(account.getBalance());
+                }
+                sink = total;
+            });
+            long aggregateUser = time(seconds, () -> sink = aggregates.getUser("user" + random.nextInt(users)));
+            long scanUser = time(seconds, () -> {
+                BigDecimal total = BigDecimal.ZERO;
+                for (Account account : repository.findByUserId("user" + random.nextInt(users))) {
+                    total = total.add(account.getBalance());
+                }
+                sink = total;
+            });
+
+            System.out.printf("%,11d accounts  overall: aggregate %,9d ns  scan %,13d ns   "
+                            + "user: aggregate %,6d ns  sum of accounts %,6d ns%n",
+                    count, aggregateOverall, scanOverall, aggregateUser, scanUser);
+        }
+    }
+
+    private static AccountRepository load(BalanceAggregates aggregates, int count) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("balanceAggregates", aggregates);
+        AccountRepository repository =
+                new InMemoryAccountRepository(beanFactory.getBeanProvider(AccountChangeListener.class));
+        Random random = new Random(7);
+        List<Account> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            batch.add(new Account(new UUID(random.nextLong(), random.nextLong()).toString(), "Checking",
+                    String.format("ACC%010d", i), BigDecimal.valueOf(random.nextInt(10_000_000), 2), "user" + i / 3));
+            if (batch.size() == BATCH || i == count - 1) {
+                repository.restore(batch);
+                batch.clear();
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Warm up for a second, then run for {@code seconds}
+     *
+     * @return the mean nanoseconds per call
+     */
+    private static long time(int seconds, Runnable call) {
+        run(1, call);
+        return run(seconds, call);
+    }
+
+    private static long run(int seconds, Runnable call) {
+        long calls = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long now;
+        do {
+            call.run();
+            calls++;
+            now = System.nanoTime();
+        } while (now < end);
+        return (now - start) / calls;
+    }
+}
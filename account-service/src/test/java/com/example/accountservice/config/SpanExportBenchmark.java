@@ -0,0 +1,211 @@
+package com.example.accountservice.config;
+
+import com.example.observability.tracing.TracingProperties;
+import com.sun.management.ThreadMXBean;
+import com.sun.net.httpserver.HttpServer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * CPU and allocation of the span export pipeline per 10k requests, run by
+ * {@code scripts/span-export-benchmark.sh}.
+ * <p>
+ * Every request is a sampled server span with {@code steps} child spans, sent at a steady
+ * {@code rate} so the batch processor keeps up as it would in production. Compares the pipeline
+ * as it used to be built, the OTLP exporter plus a {@link LoggingSpanExporter} on its own batch
+ * processor, with the OTLP exporter alone, both with the default {@code tracing.export.batch.*}
+ * settings. OTLP goes to a local collector that discards the batches; console lines are formatted
+ * but not written to a terminal. CPU and allocation are summed over the process's threads except
+ * the collector's.
+ * <pre>
+ * SpanExportBenchmark requests steps rate
+ * </pre>
+ */
+public final class SpanExportBenchmark {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final String COLLECTOR_THREAD = "collector";
+
+    private SpanExportBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int requests = Integer.parseInt(args[0]);
+        int steps = Integer.parseInt(args[1]);
+        int rate = Integer.parseInt(args[2]);
+
+        Logger rootLogger = LogManager.getLogManager().getLogger("");
+        for (Handler handler : rootLogger.getHandlers()) {
+            rootLogger.removeHandler(handler);
+        }
+        rootLogger.addHandler(new StreamHandler(OutputStream.nullOutputStream(), new SimpleFormatter()));
+
+        HttpServer collector = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        collector.setExecutor(Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, COLLECTOR_THREAD);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        collector.createContext("/v1/traces", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        collector.start();
+        String endpoint = "http://127.0.0.1:" + collector.getAddress().getPort() + "/v1/traces";
+
+        try {
+            for (boolean logging : new boolean[] {true, false, true, false}) {
+                run(logging, endpoint, requests, steps, rate);
+            }
+        } finally {
+            collector.stop(0);
+        }
+    }
+
+    private static void run(boolean logging, String endpoint, int requests, int steps, int rate) {
+        TracingProperties.Batch batch = new TracingProperties().getExport().getBatch();
+        CountingSpanExporter otlp = new CountingSpanExporter(OtlpHttpSpanExporter.builder()
+                .setEndpoint(endpoint)
+                .build());
+        List<SpanProcessor> processors = new ArrayList<>();
+        if (logging) {
+            processors.add(BatchSpanProcessor.builder(new LoggingSpanExporter()).build());
+        }
+        processors.add(BatchSpanProcessor.builder(otlp)
+                .setMaxQueueSize(batch.getMaxQueueSize())
+                .setMaxExportBatchSize(batch.getMaxExportBatchSize())
+                .setScheduleDelay(batch.getScheduleDelay())
+                .setExporterTimeout(batch.getExporterTimeout())
+                .build());
+        SpanProcessor processor = SpanProcessor.composite(processors);
+        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+                .setSampler(Sampler.alwaysOn())
+                .addSpanProcessor(processor)
+                .build();
+        Tracer tracer = tracerProvider.get("benchmark");
+
+        // Warm up, and start the exporter threads so that they are counted from the first request
+        send(tracer, Math.min(requests, 20_000), steps, rate);
+        processor.forceFlush().join(30, TimeUnit.SECONDS);
+        long exportedBefore = otlp.exported.get();
+
+        Map<Long, long[]> before = threadUsage();
+        send(tracer, requests, steps, rate);
+        processor.forceFlush().join(30, TimeUnit.SECONDS);
+        Map<Long, long[]> after = threadUsage();
+
+        long cpu = 0;
+        long allocated = 0;
+        for (Map.Entry<Long, long[]> thread : after.entrySet()) {
+            long[] start = before.getOrDefault(thread.getKey(), new long[2]);
+            cpu += thread.getValue()[0] - start[0];
+            allocated += thread.getValue()[1] - start[1];
+        }
+        long spans = (long) requests * (1 + steps);
+        long exported = otlp.exported.get() - exportedBefore;
+        System.out.printf("%-14s %,8.1f ms CPU  %,8.1f MB allocated per 10k requests  (%,d of %,d spans exported)%n",
+                logging ? "otlp + logging" : "otlp",
+                cpu / 1e6 * 10_000 / requests, allocated / 1e6 * 10_000 / requests, exported, spans);
+        tracerProvider.shutdown().join(30, TimeUnit.SECONDS);
+    }
+
+    private static void send(Tracer tracer, int requests, int steps, int rate) {
+        long interval = TimeUnit.SECONDS.toNanos(1) * 100 / rate;
+        long next = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            Span root = tracer.spanBuilder("GET /api/accounts/{id}").setSpanKind(SpanKind.SERVER)
+                    .setAttribute("http.request.method", "GET")
+                    .setAttribute("url.path", "/api/accounts/" + i)
+                    .startSpan();
+            Context parent = Context.root().with(root);
+            for (int step = 0; step < steps; step++) {
+                tracer.spanBuilder("step").setParent(parent).startSpan().end();
+            }
+            root.setAttribute("http.response.status_code", 200L);
+            root.end();
+            if (i % 100 == 99) {
+                next += interval;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * @return CPU nanoseconds and allocated bytes by thread ID, leaving out the collector's threads
+     */
+    private static Map<Long, long[]> threadUsage() {
+        Map<Long, long[]> usage = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().equals(COLLECTOR_THREAD)) {
+                long id = thread.getId();
+                usage.put(id, new long[] {THREADS.getThreadCpuTime(id), THREADS.getThreadAllocatedBytes(id)});
+            }
+        }
+        return usage;
+    }
+
+    private static final class CountingSpanExporter implements SpanExporter {
+
+        private final SpanExporter delegate;
+        private final AtomicLong exported = new AtomicLong();
+
+        CountingSpanExporter(SpanExporter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            CompletableResultCode result = delegate.export(spans);
+            result.whenComplete(() -> {
+                if (result.isSuccess()) {
+                    exported.addAndGet(spans.size());
+                }
+            });
+            return result;
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return delegate.flush();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return delegate.shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.accountservice.controller;
+
+import com.example.accountservice.config.WireFormatConfig;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.model.CursorPage;
+import com.example.accountservice.service.AccountService;
+import com.example.accountservice.service.BalanceService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AccountControllerTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final AccountService accountService = mock(AccountService.class);
+    private final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new AccountController(accountService, mock(BalanceService.class), new ObjectMapper()))
+            .setMessageConverters(new MappingJackson2HttpMessageConverter(),
+                    new WireFormatConfig().smileHttpMessageConverter(Jackson2ObjectMapperBuilder.json()))
+            .build();
+
+    private final List<Account> accounts = List.of(
+            new Account("a1", "John Doe", "ACC001", BigDecimal.ONE, "user1"),
+            new Account("a2", "Jane Smith", "ACC002", BigDecimal.TEN, "user2"));
+
+    @Test
+    void listingStaysAnUnpagedArray() throws Exception {
+        when(accountService.getAllAccounts()).thenReturn(accounts);
+
+        mockMvc.perform(get("/api/accounts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    void pagesAreServedFromTheirOwnPath() throws Exception {
+        when(accountService.getAccountsPage(null, 100)).thenReturn(new CursorPage<>(accounts, null));
+
+        mockMvc.perform(get("/api/accounts/page"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void servesSmileToClientsThatPreferIt() throws Exception {
+        when(accountService.getAccountsByUserId("user1")).thenReturn(accounts);
+
+        byte[] body = mockMvc.perform(get("/api/accounts/user/user1")
+                        .header("Accept", "application/x-jackson-smile, application/json;q=0.9"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<Account> decoded = new ObjectMapper(new SmileFactory()).readValue(body, new TypeReference<>() {
+        });
+        assertThat(decoded).isEqualTo(accounts);
+    }
+
+    @Test
+    void jsonStaysTheDefaultForOtherClients() throws Exception {
+        when(accountService.getAccountsByUserId("user1")).thenReturn(accounts);
+
+        for (String accept : new String[] {null, "*/*", "application/json"}) {
+            mockMvc.perform(accept != null ? get("/api/accounts/user/user1").header("Accept", accept)
+                            : get("/api/accounts/user/user1"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                    .andExpect(jsonPath("$", hasSize(2)));
+        }
+    }
+}
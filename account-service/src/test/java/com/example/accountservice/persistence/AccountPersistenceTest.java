@@ -0,0 +1,150 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import com.example.accountservice.repository.InMemoryAccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Restarts a store wired to {@link AccountPersistence} on the same directory, the way a crashed
+ * or stopped service would come back up
+ */
+class AccountPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<AccountPersistence> started = new ArrayList<>();
+
+    private record Store(AccountRepository repository, AccountPersistence persistence) {
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        for (AccountPersistence persistence : started) {
+            persistence.shutdown();
+        }
+    }
+
+    private Store start(Duration snapshotInterval) {
+        AccountStoreProperties properties = new AccountStoreProperties();
+        properties.getPersistence().setEnabled(true);
+        properties.getPersistence().setDirectory(directory);
+        properties.getPersistence().setSnapshotInterval(snapshotInterval);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        AccountPersistence persistence = new AccountPersistence(properties,
+                beanFactory.getBeanProvider(AccountRepository.class), new SimpleMeterRegistry());
+        beanFactory.registerSingleton("accountPersistence", persistence);
+        AccountRepository repository = new InMemoryAccountRepository(beanFactory.getBeanProvider(AccountChangeListener.class));
+        beanFactory.registerSingleton("accountRepository", repository);
+        persistence.recover();
+        started.add(persistence);
+        return new Store(repository, persistence);
+    }
+
+    /**
+     * Stop after the last acknowledged write; nothing is left queued, so the disk holds exactly
+     * what a crash at this point would leave behind
+     */
+    private void crash(Store store) throws Exception {
+        started.remove(store.persistence());
+        store.persistence().shutdown();
+    }
+
+    private static Account account(String id, String balance) {
+        return new Account(id, "Checking", "N-" + id, new BigDecimal(balance), "u1");
+    }
+
+    private static List<Account> sorted(List<Account> accounts) {
+        return accounts.stream().sorted(Comparator.comparing(Account::getId)).toList();
+    }
+
+    @Test
+    void restoresFromTheLogAlone() throws Exception {
+        Store store = start(Duration.ofHours(1));
+        store.repository().save(account("a1", "1.00"));
+        store.repository().saveAll(List.of(account("a2", "2.00"), account("a3", "3.00")));
+        store.repository().save(account("a1", "1.50"));
+        store.repository().deleteById("a3");
+        store.persistence().awaitDurable();
+        crash(store);
+
+        Store restarted = start(Duration.ofHours(1));
+
+        assertThat(sorted(restarted.repository().findAll()))
+                .containsExactly(account("a1", "1.50"), account("a2", "2.00"));
+    }
+
+    @Test
+    void restoresFromASnapshotPlusTheLogWrittenAfterIt() throws Exception {
+        Store store = start(Duration.ofMillis(100));
+        for (int i = 0; i < 50; i++) {
+            store.repository().save(account("a" + i, i + ".00"));
+        }
+        store.persistence().awaitDurable();
+        await().atMost(Duration.ofSeconds(10)).until(() -> files("snapshot-").size() == 1);
+
+        // After the snapshot: an update, a delete and a new account, only in the log
+        store.repository().save(account("a1", "100.00"));
+        store.repository().deleteById("a2");
+        store.repository().save(account("b1", "7.00"));
+        store.persistence().awaitDurable();
+        crash(store);
+
+        Store restarted = start(Duration.ofHours(1));
+
+        List<Account> restored = restarted.repository().findAll();
+        assertThat(restored).hasSize(50);
+        assertThat(restarted.repository().findById("a1")).get().extracting(Account::getBalance).isEqualTo(new BigDecimal("100.00"));
+        assertThat(restarted.repository().findById("a2")).isEmpty();
+        assertThat(restarted.repository().findById("b1")).isPresent();
+        assertThat(restarted.repository().findById("a49")).get().extracting(Account::getBalance).isEqualTo(new BigDecimal("49.00"));
+    }
+
+    @Test
+    void tornTailAfterTheLastAcknowledgedWriteIsDiscarded() throws Exception {
+        Store store = start(Duration.ofHours(1));
+        store.repository().save(account("a1", "1.00"));
+        store.repository().save(account("a2", "2.00"));
+        store.persistence().awaitDurable();
+        crash(store);
+        List<Path> segments = files("wal-");
+        Files.write(segments.get(segments.size() - 1), new byte[] {0, 0, 0, 64, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        Store restarted = start(Duration.ofHours(1));
+        restarted.repository().save(account("a3", "3.00"));
+        restarted.persistence().awaitDurable();
+        crash(restarted);
+
+        assertThat(sorted(start(Duration.ofHours(1)).repository().findAll())).extracting(Account::getId)
+                .containsExactly("a1", "a2", "a3");
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)
+                    && !path.getFileName().toString().endsWith(".tmp")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.accountservice.persistence;
+
+import com.example.accountservice.model.Account;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteAheadLogTest {
+
+    private static final long SEGMENT_BYTES = 1 << 20;
+
+    @TempDir
+    Path directory;
+
+    private static Account account(int i) {
+        return new Account("a" + i, "Checking", "N" + i, new BigDecimal("10.0" + i), "u1");
+    }
+
+    private void writeRecords(int from, int to, long segmentBytes) throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, segmentBytes, from - 1L)) {
+            for (int i = from; i <= to; i++) {
+                wal.appendPut(account(i));
+                // One flush per record, so a small segment size rolls between records
+                wal.flush(i);
+            }
+        }
+    }
+
+    private List<String> replayedIds() throws IOException {
+        List<String> ids = new ArrayList<>();
+        WriteAheadLog.replay(directory, 0, (sequence, type, payload) -> ids.add(AccountRecords.readAccount(payload).getId()));
+        return ids;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wal-")).sorted().toList();
+        }
+    }
+
+    @Test
+    void replaysRecordsInOrderWithTheirSequences() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, SEGMENT_BYTES, 0)) {
+            wal.appendPut(account(1));
+            wal.appendPutAll(List.of(account(2), account(3)));
+            wal.appendDelete("a1");
+            assertThat(wal.flush(wal.getAppendedSequence())).isEqualTo(3);
+            assertThat(wal.getDurableSequence()).isEqualTo(3);
+        }
+
+        List<String> records = new ArrayList<>();
+        long last = WriteAheadLog.replay(directory, 0, (sequence, type, payload) -> records.add(sequence + ":" + type));
+
+        assertThat(last).isEqualTo(3);
+        assertThat(records).containsExactly("1:" + WriteAheadLog.PUT, "2:" + WriteAheadLog.PUT_ALL, "3:" + WriteAheadLog.DELETE);
+    }
+
+    @Test
+    void tornTailIsCutOffAndTheLogContinuesAfterIt() throws IOException {
+        writeRecords(1, 3, SEGMENT_BYTES);
+        Path segment = segments().get(0);
+        long intactSize = Files.size(segment);
+        // A crash in the middle of a write: a header promising more payload than made it to disk
+        Files.write(segment, ByteBuffer.allocate(12).putInt(200).putInt(0).putInt(42).array(), StandardOpenOption.APPEND);
+
+        assertThat(replayedIds()).containsExactly("a1", "a2", "a3");
+        assertThat(Files.size(segment)).isEqualTo(intactSize);
+
+        writeRecords(4, 4, SEGMENT_BYTES);
+        assertThat(replayedIds()).containsExactly("a1", "a2", "a3", "a4");
+    }
+
+    @Test
+    void checksumMismatchInTheLastRecordIsCutOff() throws IOException {
+        writeRecords(1, 3, SEGMENT_BYTES);
+        Path segment = segments().get(0);
+        long size = Files.size(segment);
+        flipByte(segment, size - 2);
+
+        assertThat(replayedIds()).containsExactly("a1", "a2");
+        assertThat(Files.size(segment)).isLessThan(size);
+    }
+
+    @Test
+    void corruptionBeforeTheEndOfTheLogFailsRecovery() throws IOException {
+        // Tiny segments: every flush after the first starts a new one
+        writeRecords(1, 3, 1);
+        List<Path> segments = segments();
+        assertThat(segments).hasSize(3);
+        flipByte(segments.get(0), Files.size(segments.get(0)) - 2);
+
+        assertThatThrownBy(this::replayedIds)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("before the end of the log");
+    }
+
+    @Test
+    void replaySkipsRecordsCoveredByASnapshot() throws IOException {
+        writeRecords(1, 5, SEGMENT_BYTES);
+
+        List<Long> sequences = new ArrayList<>();
+        long last = WriteAheadLog.replay(directory, 3, (sequence, type, payload) -> sequences.add(sequence));
+
+        assertThat(sequences).containsExactly(4L, 5L);
+        assertThat(last).isEqualTo(5);
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, position);
+            one.put(0, (byte) (one.get(0) ^ 0xFF)).rewind();
+            channel.write(one, position);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.Account;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency of the indexed store against the linear scan it replaced, run by
+ * {@code scripts/account-lookup-benchmark.sh}; one store size per JVM.
+ * <p>
+ * Loads {@code count} accounts (three per user) into both an {@link InMemoryAccountRepository}
+ * and a plain list, then times lookups of random accounts by ID, account number and user ID. The
+ * list is searched with {@code stream().filter()}, as {@code AccountService} used to.
+ * <pre>
+ * AccountLookupBenchmark count seconds
+ * </pre>
+ */
+public final class AccountLookupBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    private static volatile Object sink;
+
+    private AccountLookupBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int count = Integer.parseInt(args[0]);
+        int seconds = Integer.parseInt(args[1]);
+
+        AccountRepository repository =
+                new InMemoryAccountRepository(new DefaultListableBeanFactory().getBeanProvider(AccountChangeListener.class));
+        List<Account> list = new ArrayList<>(count);
+        String[] ids = new String[count];
+        Random random = new Random(7);
+        List<Account> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+            Account account = new Account(ids[i], "Checking", accountNumber(i),
+                    BigDecimal.valueOf(random.nextInt(10_000_000), 2), "user" + i / 3);
+            list.add(account);
+            batch.add(account);
+            if (batch.size() == BATCH || i == count - 1) {
+                repository.restore(batch);
+                batch.clear();
+            }
+        }
+
+        Random lookups = new Random(11);
+        int users = Math.max(1, count / 3);
+        report(count, "by id", seconds,
+                () -> sink = repository.findById(ids[lookups.nextInt(count)]),
+                () -> {
+                    String id = ids[lookups.nextInt(count)];
+                    sink = list.stream().filter(account -> account.getId().equals(id)).findFirst();
+                });
+        report(count, "by number", seconds,
+                () -> sink = repository.findByAccountNumber(accountNumber(lookups.nextInt(count))),
+                () -> {
+                    String number = accountNumber(lookups.nextInt(count));
+                    sink = list.stream().filter(account -> account.getAccountNumber().equals(number)).findFirst();
+                });
+        report(count, "by user", seconds,
+                () -> sink = repository.findByUserId("user" + lookups.nextInt(users)),
+                () -> {
+                    String userId = "user" + lookups.nextInt(users);
+                    sink = list.stream().filter(account -> userId.equals(account.getUserId())).toList();
+                });
+    }
+
+    private static String accountNumber(int i) {
+        return String.format("ACC%010d", i);
+    }
+
+    private static void report(int count, String lookup, int seconds, Runnable indexed, Runnable scan) {
+        long[] indexedResult = time(seconds, indexed);
+        long[] scanResult = time(seconds, scan);
+        System.out.printf("%,11d accounts  %-9s  indexed %,9d ns/op (%,d ops)   scan %,14d ns/op (%,d ops)%n",
+                count, lookup, indexedResult[1] / indexedResult[0], indexedResult[0],
+                scanResult[1] / scanResult[0], scanResult[0]);
+    }
+
+    /**
+     * Warm up for a second, then run for {@code seconds}
+     *
+     * @return the number of calls and the nanoseconds they took
+     */
+    private static long[] time(int seconds, Runnable call) {
+        run(1, call);
+        return run(seconds, call);
+    }
+
+    private static long[] run(int seconds, Runnable call) {
+        long calls = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long now;
+        do {
+            call.run();
+            calls++;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[] {calls, now - start};
+    }
+}
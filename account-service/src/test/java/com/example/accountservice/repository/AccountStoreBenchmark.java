@@ -0,0 +1,151 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint and GC pause benchmark of the account stores, run by
+ * {@code scripts/account-store-benchmark.sh}; one store per JVM so that they do not share a heap.
+ * <p>
+ * Loads {@code count} accounts (three per user, four distinct names) into the store, measures the
+ * heap and direct memory they retain after a full GC, then runs a read and update mix for a fixed
+ * time while recording every GC pause.
+ * <pre>
+ * AccountStoreBenchmark INDEXED|COLUMNAR|COLUMNAR_OFF_HEAP count churnSeconds
+ * </pre>
+ */
+public final class AccountStoreBenchmark {
+
+    private static final String[] NAMES = {"Checking", "Savings", "Credit Card", "Brokerage"};
+    private static final int BATCH = 10_000;
+
+    private static final List<Long> pausesMicros = new ArrayList<>();
+
+    private AccountStoreBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String engine = args[0];
+        int count = Integer.parseInt(args[1]);
+        int churnSeconds = Integer.parseInt(args[2]);
+        recordGcPauses();
+
+        AccountRepository repository = create(engine, count);
+        Random random = new Random(7);
+        long[] idHigh = new long[count];
+        long[] idLow = new long[count];
+        long loadStart = System.nanoTime();
+        List<Account> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            idHigh[i] = id.getMostSignificantBits();
+            idLow[i] = id.getLeastSignificantBits();
+            batch.add(new Account(id.toString(), NAMES[i % NAMES.length], String.format("ACC%010d", i),
+                    BigDecimal.valueOf(random.nextInt(10_000_000), 2), "user" + i / 3));
+            if (batch.size() == BATCH || i == count - 1) {
+                repository.restore(batch);
+                batch.clear();
+            }
+        }
+        long loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - loadStart);
+        String loadPauses = pauseSummary();
+
+        // Ids kept for the churn phase are benchmark state, not store state
+        long benchmarkBytes = 2L * count * Long.BYTES;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() - benchmarkBytes;
+        long direct = directMemoryUsed();
+
+        synchronized (pausesMicros) {
+            pausesMicros.clear();
+        }
+        long reads = 0;
+        long writes = 0;
+        long churnEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(churnSeconds);
+        while (System.nanoTime() < churnEnd) {
+            for (int i = 0; i < 1000; i++) {
+                int row = random.nextInt(count);
+                Account account = repository.findById(new UUID(idHigh[row], idLow[row]).toString()).orElseThrow();
+                reads++;
+                if (i % 10 == 0) {
+                    account.setBalance(account.getBalance().add(BigDecimal.ONE));
+                    repository.save(account);
+                    writes++;
+                }
+            }
+        }
+
+        System.out.printf("%-18s accounts %,d  load %,d ms  heap %,d MB  direct %,d MB  bytes/account %,d%n",
+                engine, repository.count(), loadMillis, heap >> 20, direct >> 20, (heap + direct) / count);
+        System.out.printf("%-18s load GC   %s%n", engine, loadPauses);
+        System.out.printf("%-18s churn GC  %s  (%,d reads, %,d writes in %d s)%n",
+                engine, pauseSummary(), reads, writes, churnSeconds);
+    }
+
+    private static AccountRepository create(String engine, int count) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        if (engine.equals("INDEXED")) {
+            return new InMemoryAccountRepository(beanFactory.getBeanProvider(AccountChangeListener.class));
+        }
+        AccountStoreProperties properties = new AccountStoreProperties();
+        properties.getColumnar().setOffHeap(engine.equals("COLUMNAR_OFF_HEAP"));
+        properties.getColumnar().setInitialCapacity(count);
+        return new ColumnarAccountRepository(properties, beanFactory.getBeanProvider(AccountChangeListener.class));
+    }
+
+    private static void recordGcPauses() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // Concurrent cycles run alongside the application; only stop-the-world pauses count
+                if (!info.getGcName().contains("Concurrent") && !info.getGcCause().equals("System.gc()")) {
+                    synchronized (pausesMicros) {
+                        pausesMicros.add(info.getGcInfo().getDuration() * 1000);
+                    }
+                }
+            }, null, null);
+        }
+    }
+
+    private static String pauseSummary() {
+        long[] pauses;
+        synchronized (pausesMicros) {
+            pauses = pausesMicros.stream().mapToLong(Long::longValue).toArray();
+        }
+        if (pauses.length == 0) {
+            return "no pauses";
+        }
+        Arrays.sort(pauses);
+        long total = Arrays.stream(pauses).sum();
+        return String.format("%,d pauses  total %,d ms  p99 %,d ms  max %,d ms", pauses.length, total / 1000,
+                pauses[(int) Math.min(pauses.length - 1, Math.ceil(pauses.length * 0.99) - 1)] / 1000,
+                pauses[pauses.length - 1] / 1000);
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.model.Account;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ColumnarAccountRepositoryTest {
+
+    private final ColumnarAccountRepository repository = new ColumnarAccountRepository(new AccountStoreProperties(),
+            new DefaultListableBeanFactory().getBeanProvider(AccountChangeListener.class));
+
+    private static Account account(String number, String userId) {
+        return new Account(UUID.randomUUID().toString(), "Checking", number, new BigDecimal("1.50"), userId);
+    }
+
+    @Test
+    void pagingSeesInsertsAndDeletesMadeBetweenPages() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            ids.add(repository.save(account("N" + i, "u" + (i % 10))).getId());
+        }
+
+        List<String> walked = new ArrayList<>();
+        String cursor = null;
+        List<String> inserted = new ArrayList<>();
+        while (true) {
+            List<Account> page = repository.findPage(cursor, 100);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(account -> walked.add(account.getId()));
+            cursor = page.get(page.size() - 1).getId();
+            // Writes between pages: one account ahead of the cursor appears, one disappears
+            Account added = account("X" + inserted.size(), "u1");
+            repository.save(added);
+            inserted.add(added.getId());
+            repository.deleteById(ids.remove(ids.size() - 1));
+        }
+
+        assertThat(walked).isSorted().doesNotHaveDuplicates();
+        List<String> expected = new ArrayList<>();
+        repository.findAll().forEach(account -> expected.add(account.getId()));
+        expected.sort(null);
+        assertThat(repository.findPage(null, Integer.MAX_VALUE)).extracting(Account::getId).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void replacedAccountNumbersAreCompactedAway() {
+        Account stable = repository.save(account("STABLE-0001", "u1"));
+        Account changing = repository.save(account("N-0", "u2"));
+        long footprint = repository.footprintBytes();
+
+        for (int i = 1; i <= 100_000; i++) {
+            changing.setAccountNumber("N-" + i);
+            repository.save(changing);
+        }
+
+        // Without compaction a million bytes of old numbers would still be held
+        assertThat(repository.footprintBytes()).isLessThan(footprint + 64 * 1024);
+        assertThat(repository.findByAccountNumber("N-100000")).get().extracting(Account::getId).isEqualTo(changing.getId());
+        assertThat(repository.findByAccountNumber("N-99999")).isEmpty();
+        assertThat(repository.findByAccountNumber("STABLE-0001")).get().isEqualTo(stable);
+        assertThat(repository.findById(stable.getId())).get().extracting(Account::getAccountNumber).isEqualTo("STABLE-0001");
+    }
+
+    @Test
+    void deletedAccountNumbersAreReleased() {
+        long footprint = repository.footprintBytes();
+        for (int round = 0; round < 50; round++) {
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                ids.add(repository.save(account("ROUND-" + round + "-" + i, "u1")).getId());
+            }
+            ids.forEach(repository::deleteById);
+        }
+        Account last = repository.save(account("LAST", "u1"));
+
+        assertThat(repository.count()).isEqualTo(1);
+        assertThat(repository.findByAccountNumber("LAST")).get().isEqualTo(last);
+        assertThat(repository.footprintBytes()).isLessThan(footprint + 256 * 1024);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.accountservice.repository;
+
+import com.example.accountservice.model.Account;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryAccountRepositoryTest {
+
+    private final InMemoryAccountRepository repository = new InMemoryAccountRepository(
+            new DefaultListableBeanFactory().getBeanProvider(AccountChangeListener.class));
+
+    @Test
+    void updateKeepsAccountInPlaceInItsUsersList() {
+        repository.save(new Account("a1", "Checking", "N1", BigDecimal.ONE, "u1"));
+        repository.save(new Account("a2", "Savings", "N2", BigDecimal.ONE, "u1"));
+
+        repository.save(new Account("a1", "Checking", "N1", BigDecimal.TEN, "u1"));
+
+        assertThat(repository.findByUserId("u1")).extracting(Account::getId).containsExactly("a1", "a2");
+        assertThat(repository.findByUserId("u1").get(0).getBalance()).isEqualTo(BigDecimal.TEN);
+        assertThat(repository.findByAccountNumber("N1")).get().extracting(Account::getBalance).isEqualTo(BigDecimal.TEN);
+    }
+
+    @Test
+    void updateMovesAccountBetweenUsersAndNumbers() {
+        repository.save(new Account("a1", "Checking", "N1", BigDecimal.ONE, "u1"));
+
+        repository.save(new Account("a1", "Checking", "N9", BigDecimal.ONE, "u2"));
+
+        assertThat(repository.findByUserId("u1")).isEmpty();
+        assertThat(repository.findByUserId("u2")).extracting(Account::getId).containsExactly("a1");
+        assertThat(repository.findByAccountNumber("N1")).isEmpty();
+        assertThat(repository.findByAccountNumber("N9")).isPresent();
+    }
+
+    @Test
+    void readersNeverMissAnAccountThatIsBeingUpdated() throws InterruptedException {
+        repository.save(new Account("a1", "Checking", "N1", BigDecimal.ZERO, "u1"));
+        repository.save(new Account("a2", "Savings", "N2", BigDecimal.ZERO, "u1"));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                List<Account> accounts = repository.findByUserId("u1");
+                if (accounts.size() != 2 || repository.findByAccountNumber("N1").isEmpty()) {
+                    misses.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100_000; i++) {
+            repository.save(new Account("a1", "Checking", "N1", BigDecimal.valueOf(i), "u1"));
+        }
+        done.set(true);
+        reader.join();
+
+        assertThat(misses).hasValue(0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.accountservice.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedRowIndexTest {
+
+    private final long[] keys = new long[20_000];
+    private final SortedRowIndex index = new SortedRowIndex((row, otherRow) -> Long.compare(keys[row], keys[otherRow]));
+
+    @Test
+    void staysSortedThroughRandomInsertsAndDeletes() {
+        Random random = new Random(42);
+        TreeSet<Long> expected = new TreeSet<>();
+        List<Integer> live = new ArrayList<>();
+        for (int row = 0; row < keys.length; row++) {
+            long key;
+            do {
+                key = random.nextLong();
+            } while (!expected.add(key));
+            keys[row] = key;
+            index.insert(row);
+            live.add(row);
+            // Delete about a third as we go, splitting and merging blocks along the way
+            if (random.nextInt(3) == 0) {
+                int removed = live.remove(random.nextInt(live.size()));
+                expected.remove(keys[removed]);
+                index.remove(removed);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        assertThat(keysOf(index.rowsAfter(row -> false, Integer.MAX_VALUE))).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void pagesFollowTheCursorAcrossBlocks() {
+        for (int row = 0; row < 3 * SortedRowIndex.BLOCK_SIZE; row++) {
+            // Inserted in reverse, so every insert lands in the first block
+            keys[row] = 10L * (3 * SortedRowIndex.BLOCK_SIZE - row);
+            index.insert(row);
+        }
+
+        List<Long> walked = new ArrayList<>();
+        long cursor = Long.MIN_VALUE;
+        while (true) {
+            long after = cursor;
+            int[] page = index.rowsAfter(row -> keys[row] <= after, 100);
+            if (page.length == 0) {
+                break;
+            }
+            walked.addAll(keysOf(page));
+            cursor = keys[page[page.length - 1]];
+        }
+
+        assertThat(walked).hasSize(3 * SortedRowIndex.BLOCK_SIZE).isSorted();
+        // A cursor between two keys starts at the next one
+        assertThat(keysOf(index.rowsAfter(row -> keys[row] <= 15, 2))).containsExactly(20L, 30L);
+        assertThat(index.rowsAfter(row -> true, 10)).isEmpty();
+    }
+
+    @Test
+    void deletingEverythingLeavesAnEmptyIndex() {
+        for (int row = 0; row < 2000; row++) {
+            keys[row] = row;
+            index.insert(row);
+        }
+        for (int row = 0; row < 2000; row++) {
+            index.remove(row);
+        }
+
+        assertThat(index.size()).isZero();
+        assertThat(index.rowsAfter(row -> false, 10)).isEmpty();
+        index.insert(7);
+        assertThat(index.rowsAfter(row -> false, 10)).containsExactly(7);
+    }
+
+    private List<Long> keysOf(int[] rows) {
+        List<Long> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(keys[row]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.model.Account;
+import com.example.accountservice.persistence.AccountPersistence;
+import com.example.accountservice.repository.AccountRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Exports 10M synthetic accounts through {@link AccountService#exportAccounts} in a separate JVM
+ * with a fixed heap ceiling. The accounts are generated page by page as the export asks for them,
+ * so only the export itself has to fit: their NDJSON alone is well over a gigabyte.
+ */
+class AccountExportHeapTest {
+
+    private static final long ACCOUNTS = 10_000_000;
+    private static final String HEAP_CEILING = "-Xmx64m";
+
+    @Test
+    void exportOfTenMillionAccountsFitsUnderHeapCeiling() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, HEAP_CEILING, "-XX:+UseSerialGC",
+                "-cp", System.getProperty("java.class.path"), Exporter.class.getName(), String.valueOf(ACCOUNTS))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(5, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(process.exitValue()).as(output).isZero();
+        assertThat(output).contains("exported " + ACCOUNTS + " accounts in " + ACCOUNTS + " lines");
+    }
+
+    static class Exporter {
+
+        public static void main(String[] args) throws IOException {
+            long accounts = Long.parseLong(args[0]);
+            AccountService accountService = new AccountService(new SyntheticAccountRepository(accounts), null,
+                    mock(AccountPersistence.class), null);
+            LineCountingStream body = new LineCountingStream();
+            long exported;
+            try (SequenceWriter writer = new ObjectMapper().writer()
+                    .withRootValueSeparator("\n")
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValues(body)) {
+                exported = accountService.exportAccounts(writer);
+            }
+            // The separator goes between records, so the last one has no newline of its own
+            System.out.println("exported " + exported + " accounts in " + (body.lines + 1) + " lines");
+        }
+    }
+
+    /**
+     * Read-only store of {@code count} accounts whose IDs sort in creation order; every page is
+     * built on demand, so the store itself takes no heap.
+     */
+    private static final class SyntheticAccountRepository implements AccountRepository {
+
+        private final long count;
+
+        private SyntheticAccountRepository(long count) {
+            this.count = count;
+        }
+
+        private static String id(long index) {
+            return String.format("acc%010d", index);
+        }
+
+        @Override
+        public List<Account> findPage(String afterId, int limit) {
+            long from = afterId == null ? 0 : Long.parseLong(afterId.substring(3)) + 1;
+            List<Account> page = new ArrayList<>(limit);
+            for (long i = from; i < Math.min(count, from + limit); i++) {
+                page.add(new Account(id(i), "Account " + i, "ACC" + i, BigDecimal.valueOf(i % 100_000, 2),
+                        "user" + (i % 1_000_000)));
+            }
+            return page;
+        }
+
+        @Override
+        public int count() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public Optional<Account> findById(String id) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Account> findByAccountNumber(String accountNumber) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Account> findByUserId(String userId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Account> findAll() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Account save(Account account) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<Account> saveAll(List<Account> accounts) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void restore(Collection<Account> accounts) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Account> deleteById(String id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class LineCountingStream extends OutputStream {
+
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.config.BalanceProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.persistence.AccountPersistence;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import com.example.accountservice.repository.InMemoryAccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+class BalanceServiceTest {
+
+    private final AccountRepository repository = new InMemoryAccountRepository(
+            new DefaultListableBeanFactory().getBeanProvider(AccountChangeListener.class));
+    private final AccountPersistence persistence = mock(AccountPersistence.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BalanceService balanceService = new BalanceService(repository, persistence, new BalanceProperties(),
+            OpenTelemetry.noop().getTracer("test"), meterRegistry);
+
+    BalanceServiceTest() {
+        repository.save(new Account("a1", "Checking", "N1", new BigDecimal("100.00"), "u1"));
+        repository.save(new Account("a2", "Savings", "N2", new BigDecimal("50.00"), "u1"));
+    }
+
+    private BigDecimal balance(String accountId) {
+        return repository.findById(accountId).orElseThrow().getBalance();
+    }
+
+    private static UncheckedIOException diskFull() {
+        return new UncheckedIOException(new IOException("No space left on device"));
+    }
+
+    @Test
+    void timesEveryOperationOnTimersRegisteredUpFront() {
+        assertThat(meterRegistry.get("account.balance.operations").timers()).hasSize(3 * 6);
+
+        balanceService.deposit("a1", new BigDecimal("1.00"), null);
+        assertThatThrownBy(() -> balanceService.withdraw("a1", new BigDecimal("500.00"), null))
+                .isInstanceOf(BalanceRejectedException.class);
+
+        assertThat(meterRegistry.get("account.balance.operations").tags("operation", "deposit", "outcome", "success")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("account.balance.operations").tags("operation", "withdraw", "outcome", "insufficient_funds")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("account.balance.operations").timers()).hasSize(3 * 6);
+    }
+
+    @Test
+    void depositThatFailsToReachTheDiskIsTakenBack() {
+        doThrow(diskFull()).when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.deposit("a1", new BigDecimal("25.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(balance("a1")).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void withdrawalThatFailsToReachTheDiskIsTakenBack() {
+        doThrow(diskFull()).when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.withdraw("a1", new BigDecimal("100.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(balance("a1")).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void transferThatFailsToReachTheDiskIsTakenBackOnBothSides() {
+        doThrow(diskFull()).when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.transfer("a1", "a2", new BigDecimal("30.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(balance("a1")).isEqualByComparingTo("100.00");
+        assertThat(balance("a2")).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void takingBackADepositKeepsWritesMadeInTheMeantime() {
+        // While the failing deposit waits for its flush, another writer adds 5.00 to the same account
+        doAnswer(invocation -> {
+            Account current = repository.findById("a1").orElseThrow();
+            current = new Account("a1", "Checking", "N1", current.getBalance().add(new BigDecimal("5.00")), "u1");
+            repository.save(current);
+            throw diskFull();
+        }).when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.deposit("a1", new BigDecimal("25.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(balance("a1")).isEqualByComparingTo("105.00");
+    }
+
+    @Test
+    void noWriteIsAppliedOnceTheLogHasFailed() {
+        doThrow(diskFull()).when(persistence).checkWritable();
+
+        assertThatThrownBy(() -> balanceService.deposit("a1", new BigDecimal("25.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> balanceService.transfer("a1", "a2", new BigDecimal("1.00"), null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        assertThat(balance("a1")).isEqualByComparingTo("100.00");
+        assertThat(balance("a2")).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void retryAfterATakenBackWriteAppliesItOnce() {
+        doThrow(diskFull()).doNothing().when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.transfer("a1", "a2", new BigDecimal("30.00"), "key-1"))
+                .isInstanceOf(UncheckedIOException.class);
+        balanceService.transfer("a1", "a2", new BigDecimal("30.00"), "key-1");
+        balanceService.transfer("a1", "a2", new BigDecimal("30.00"), "key-1");
+
+        assertThat(balance("a1")).isEqualByComparingTo("70.00");
+        assertThat(balance("a2")).isEqualByComparingTo("80.00");
+    }
+
+    @Test
+    void retryOfAWriteThatCouldNotBeTakenBackRepeatsTheFailure() {
+        // The destination disappears while the flush is pending, so the transfer cannot be undone
+        doAnswer(invocation -> {
+            repository.deleteById("a2");
+            throw diskFull();
+        }).doNothing().when(persistence).awaitDurable();
+
+        assertThatThrownBy(() -> balanceService.transfer("a1", "a2", new BigDecimal("30.00"), "key-1"))
+                .isInstanceOf(UncheckedIOException.class);
+        repository.save(new Account("a2", "Savings", "N2", new BigDecimal("50.00"), "u1"));
+
+        assertThatThrownBy(() -> balanceService.transfer("a1", "a2", new BigDecimal("30.00"), "key-1"))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThat(balance("a1")).isEqualByComparingTo("70.00");
+        assertThat(balance("a2")).isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    void concurrentRetriedTransfersConserveMoneyAndApplyEachKeyOnce() throws Exception {
+        int accounts = 8;
+        int keys = 2000;
+        for (int i = 0; i < accounts; i++) {
+            repository.save(new Account("s" + i, "Stress", "S" + i, new BigDecimal("100.00"), "u2"));
+        }
+        // Each key is always sent with the same transfer, as a client retrying it would
+        Random random = new Random(42);
+        List<String[]> transfers = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            int from = random.nextInt(accounts);
+            int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+            transfers.add(new String[] {"s" + from, "s" + to, BigDecimal.valueOf(1 + random.nextInt(4000), 2).toPlainString()});
+        }
+        // One flush in five fails, so many writes are taken back and retried
+        doAnswer(invocation -> {
+            if (ThreadLocalRandom.current().nextInt(5) == 0) {
+                throw diskFull();
+            }
+            return null;
+        }).when(persistence).awaitDurable();
+
+        Set<Integer> succeeded = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int worker = 0; worker < 8; worker++) {
+                workers.add(executor.submit(() -> {
+                    // Every key is sent several times, often by two workers at once
+                    for (int send = 0; send < keys; send++) {
+                        int key = ThreadLocalRandom.current().nextInt(keys);
+                        String[] transfer = transfers.get(key);
+                        try {
+                            balanceService.transfer(transfer[0], transfer[1], new BigDecimal(transfer[2]), "key-" + key);
+                            succeeded.add(key);
+                        } catch (BalanceRejectedException | UncheckedIOException e) {
+                            // Refused, or taken back and open to a retry
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, BigDecimal> expected = new ConcurrentHashMap<>();
+        for (int i = 0; i < accounts; i++) {
+            expected.put("s" + i, new BigDecimal("100.00"));
+        }
+        for (int key : succeeded) {
+            String[] transfer = transfers.get(key);
+            BigDecimal amount = new BigDecimal(transfer[2]);
+            expected.merge(transfer[0], amount.negate(), BigDecimal::add);
+            expected.merge(transfer[1], amount, BigDecimal::add);
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            assertThat(balance("s" + i)).as("s" + i).isEqualByComparingTo(expected.get("s" + i));
+            total = total.add(balance("s" + i));
+        }
+        assertThat(total).isEqualByComparingTo("800.00");
+        assertThat(succeeded).hasSizeGreaterThan(keys / 10);
+    }
+}
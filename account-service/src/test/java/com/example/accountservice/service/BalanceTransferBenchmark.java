@@ -0,0 +1,132 @@
+package com.example.accountservice.service;
+
+import com.example.accountservice.config.AccountStoreProperties;
+import com.example.accountservice.config.BalanceProperties;
+import com.example.accountservice.model.Account;
+import com.example.accountservice.persistence.AccountPersistence;
+import com.example.accountservice.repository.AccountChangeListener;
+import com.example.accountservice.repository.AccountRepository;
+import com.example.accountservice.repository.InMemoryAccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput from one thread up to {@code maxThreads}, run by
+ * {@code scripts/balance-transfer-benchmark.sh}.
+ * <p>
+ * Each thread makes transfers of one cent between random accounts of an in-memory store of
+ * {@code accounts}, with persistence off. With spread traffic any two accounts are picked; with
+ * hot traffic {@code hotPercent} of the transfers go to or from one hot account, so those
+ * threads queue on its lock. After each run the total balance is checked against the start.
+ * <pre>
+ * BalanceTransferBenchmark seconds maxThreads accounts hotPercent
+ * </pre>
+ */
+public final class BalanceTransferBenchmark {
+
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private BalanceTransferBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.parseInt(args[0]);
+        int maxThreads = Integer.parseInt(args[1]);
+        int accounts = Integer.parseInt(args[2]);
+        int hotPercent = Integer.parseInt(args[3]);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        AccountRepository repository = new InMemoryAccountRepository(beanFactory.getBeanProvider(AccountChangeListener.class));
+        beanFactory.registerSingleton("accountRepository", repository);
+        AccountPersistence persistence = new AccountPersistence(new AccountStoreProperties(),
+                beanFactory.getBeanProvider(AccountRepository.class), new SimpleMeterRegistry());
+        BalanceService balanceService = new BalanceService(repository, persistence, new BalanceProperties(),
+                OpenTelemetry.noop().getTracer("benchmark"), new SimpleMeterRegistry());
+        String[] ids = new String[accounts];
+        List<Account> opening = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = "acc-" + i;
+            opening.add(new Account(ids[i], "Checking", "N" + i, OPENING_BALANCE, "user" + i));
+        }
+        repository.saveAll(opening);
+        BigDecimal total = OPENING_BALANCE.multiply(BigDecimal.valueOf(accounts));
+
+        for (int percent : new int[] {0, hotPercent}) {
+            // Warm up with every thread, so that the JIT and lock inflation are settled before the one-thread run
+            run(balanceService, ids, maxThreads, percent, seconds);
+            double single = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                long[] result = run(balanceService, ids, threads, percent, seconds);
+                double perSecond = result[0] * 1e9 / result[1];
+                if (threads == 1) {
+                    single = perSecond;
+                }
+                System.out.printf("%-6s %3d%% hot  %3d threads  %,10.0f transfers/s  %5.2fx%n",
+                        percent == 0 ? "spread" : "hot", percent, threads, perSecond, perSecond / single);
+                if (threads < maxThreads && threads * 2 > maxThreads) {
+                    threads = maxThreads / 2;
+                }
+            }
+            BigDecimal now = repository.findAll().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+            if (now.compareTo(total) != 0) {
+                throw new IllegalStateException("Money was not conserved: " + now + " instead of " + total);
+            }
+        }
+    }
+
+    /**
+     * @return the number of transfers and the nanoseconds they took
+     */
+    private static long[] run(BalanceService balanceService, String[] ids, int threads, int hotPercent, int seconds)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<Long>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    go.await();
+                    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+                    long transfers = 0;
+                    while (System.nanoTime() < end) {
+                        // Account 0 is the hot one; spread traffic leaves it out
+                        int from = random.nextInt(100) < hotPercent ? 0 : 1 + random.nextInt(ids.length - 1);
+                        int to = 1 + random.nextInt(ids.length - 1);
+                        if (from == to) {
+                            continue;
+                        }
+                        if (random.nextBoolean()) {
+                            balanceService.transfer(ids[from], ids[to], AMOUNT, null);
+                        } else {
+                            balanceService.transfer(ids[to], ids[from], AMOUNT, null);
+                        }
+                        transfers++;
+                    }
+                    return transfers;
+                }));
+            }
+            long start = System.nanoTime();
+            go.countDown();
+            long transfers = 0;
+            for (Future<Long> worker : workers) {
+                transfers += worker.get();
+            }
+            return new long[] {transfers, System.nanoTime() - start};
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
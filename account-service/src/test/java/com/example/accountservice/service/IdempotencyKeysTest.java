@@ -0,0 +1,127 @@
+package com.example.accountservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyKeysTest {
+
+    private final IdempotencyKeys keys = new IdempotencyKeys(Duration.ofMinutes(1).toNanos(), 1000);
+    private final AtomicInteger runs = new AtomicInteger();
+    private final AtomicInteger replays = new AtomicInteger();
+
+    @Test
+    void retryGetsTheFirstOutcomeWithoutRunningAgain() {
+        assertThat(run("r")).isEqualTo(1);
+        assertThat(run("r")).isEqualTo(1);
+
+        assertThat(runs).hasValue(1);
+        assertThat(replays).hasValue(1);
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        run("r");
+
+        assertThatThrownBy(() -> run("other"))
+                .isInstanceOfSatisfying(BalanceRejectedException.class, e -> assertThat(e.getReason())
+                        .isEqualTo(BalanceRejectedException.Reason.IDEMPOTENCY_KEY_REUSED));
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void rejectionIsRemembered() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> keys.execute("k", "r", attempt -> {
+                runs.incrementAndGet();
+                throw new BalanceRejectedException(BalanceRejectedException.Reason.INSUFFICIENT_FUNDS, "no");
+            }, replays::incrementAndGet)).isInstanceOf(BalanceRejectedException.class);
+        }
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void failureBeforeTheChangeLetsARetryRunAgain() {
+        assertThatThrownBy(() -> keys.execute("k", "r", attempt -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("before");
+        }, replays::incrementAndGet)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(run("r")).isEqualTo(2);
+        assertThat(replays).hasValue(0);
+    }
+
+    @Test
+    void failureAfterAnUndoneChangeLetsARetryRunAgain() {
+        assertThatThrownBy(() -> keys.execute("k", "r", attempt -> {
+            runs.incrementAndGet();
+            attempt.markApplied();
+            attempt.markUndone();
+            throw new IllegalStateException("taken back");
+        }, replays::incrementAndGet)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(run("r")).isEqualTo(2);
+    }
+
+    @Test
+    void failureAfterTheChangeIsRepeatedInsteadOfRunningAgain() {
+        IllegalStateException failure = new IllegalStateException("after");
+        assertThatThrownBy(() -> keys.execute("k", "r", attempt -> {
+            runs.incrementAndGet();
+            attempt.markApplied();
+            throw failure;
+        }, replays::incrementAndGet)).isSameAs(failure);
+
+        assertThatThrownBy(() -> run("r")).isSameAs(failure);
+        assertThat(runs).hasValue(1);
+        assertThat(replays).hasValue(1);
+    }
+
+    @Test
+    void concurrentRetryWaitsForTheOriginal() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> original = executor.submit(() -> keys.execute("k", "r", attempt -> {
+                started.countDown();
+                await(release);
+                return runs.incrementAndGet();
+            }, replays::incrementAndGet));
+            started.await();
+            Future<Integer> retry = executor.submit(() -> keys.execute("k", "r", attempt -> runs.incrementAndGet(),
+                    replays::incrementAndGet));
+
+            assertThat(retry.isDone()).isFalse();
+            release.countDown();
+
+            assertThat(original.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int run(String request) {
+        return keys.execute("k", request, attempt -> runs.incrementAndGet(), replays::incrementAndGet);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.observability.admission;
+
+/**
+ * Gradient estimate of the in-flight limit that keeps an endpoint's latency near its baseline,
+ * after Netflix's Gradient2 limit.
+ * <p>
+ * Completed requests are collected in windows of at least {@code window} and
+ * {@code minWindowSamples} requests. When a window closes, its average RTT is compared with a
+ * baseline, an exponential average of the window averages over {@code baselineWindow}:
+ * <pre>
+ *     gradient = clamp(tolerance * baseline / average, 0.5, 1)
+ *     newLimit = limit * gradient + sqrt(limit)
+ * </pre>
+ * so the limit shrinks while requests take longer than {@code tolerance} times the baseline, and
+ * otherwise grows by the square root of the limit, the queue it is allowed to build. The new
+ * limit is smoothed into the old one. It is left alone when less than half of it was in use
+ * during the window, so an endpoint that is not busy does not drift to the maximum.
+ * <p>
+ * Not thread-safe: {@link EndpointLimiter} calls it under its own lock.
+ */
+final class AdaptiveLimit {
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final double baselineWeight;
+
+    private double limit;
+    private double baselineNanos;
+    private double gradient = 1.0;
+
+    private long windowStartNanos;
+    private long windowRttNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    AdaptiveLimit(AdmissionProperties properties, long nowNanos) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.tolerance = properties.getTolerance();
+        this.smoothing = properties.getSmoothing();
+        this.windowNanos = properties.getWindow().toNanos();
+        this.minWindowSamples = Math.max(1, properties.getMinWindowSamples());
+        this.baselineWeight = Math.min(1.0, (double) windowNanos / properties.getBaselineWindow().toNanos());
+        this.limit = Math.min(maxLimit, Math.max(minLimit, properties.getInitialLimit()));
+        this.windowStartNanos = nowNanos;
+    }
+
+    /**
+     * Record a completed request
+     *
+     * @param rttNanos time from admission to completion
+     * @param inFlight requests in flight when it was admitted, itself included
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return true if the sample closed a window and the limit was re-evaluated
+     */
+    boolean onSample(long rttNanos, int inFlight, long nowNanos) {
+        windowRttNanos += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        if (nowNanos - windowStartNanos < windowNanos || windowSamples < minWindowSamples) {
+            return false;
+        }
+        update((double) windowRttNanos / windowSamples, windowMaxInFlight);
+        windowStartNanos = nowNanos;
+        windowRttNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+        return true;
+    }
+
+    private void update(double averageNanos, int maxInFlight) {
+        if (baselineNanos == 0) {
+            baselineNanos = averageNanos;
+        } else {
+            if (baselineNanos > 2 * averageNanos) {
+                // Latency fell well below the baseline, e.g. after warm-up, catch up faster
+                baselineNanos *= 0.95;
+            }
+            baselineNanos += baselineWeight * (averageNanos - baselineNanos);
+        }
+        gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineNanos / averageNanos));
+        if (maxInFlight < limit / 2) {
+            return;
+        }
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.min(maxLimit, Math.max(minLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the gradient of the latest window, below 1 when latency exceeded the tolerance
+     */
+    double getGradient() {
+        return gradient;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.observability.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limits on {@code @ConcurrencyLimited} controller methods, bound from
+ * {@code admission.*}. Every endpoint learns its own limit with the same settings.
+ */
+@Data
+@ConfigurationProperties(prefix = "admission")
+public class AdmissionProperties {
+
+    /**
+     * Reject requests beyond the endpoints' concurrency limits.
+     */
+    private boolean enabled = true;
+
+    /**
+     * In-flight limit of an endpoint before any latency has been measured.
+     */
+    private int initialLimit = 20;
+
+    /**
+     * Lowest limit an endpoint's latency can push it to.
+     */
+    private int minLimit = 4;
+
+    /**
+     * Highest limit an endpoint can grow to, at most the server's request threads for
+     * synchronous endpoints.
+     */
+    private int maxLimit = 200;
+
+    /**
+     * How far the average latency of a window may exceed the baseline, as a ratio, before the
+     * limit shrinks.
+     */
+    private double tolerance = 1.5;
+
+    /**
+     * Weight of each window's new limit against the previous one, from 0.0 to 1.0.
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * Minimum duration of a measurement window; the limit is re-evaluated once per window.
+     */
+    private Duration window = Duration.ofMillis(100);
+
+    /**
+     * Minimum completed requests in a window, so that a quiet endpoint's limit is not moved
+     * by a handful of samples.
+     */
+    private int minWindowSamples = 10;
+
+    /**
+     * Time over which the baseline latency follows sustained changes.
+     */
+    private Duration baselineWindow = Duration.ofSeconds(10);
+
+    /**
+     * Value of the {@code Retry-After} header on rejected requests, rounded up to seconds.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
@@ -0,0 +1,114 @@
+package com.example.observability.admission;
+
+import io.opentelemetry.api.trace.Span;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies {@link ConcurrencyLimited} to controller methods.
+ * <p>
+ * A request is admitted before the handler runs, or answered straight away with 503 and
+ * {@code Retry-After}, and its permit is released when the response completes: after the
+ * handler for synchronous requests, and when the async context completes for handlers that
+ * return a {@code Mono} or a streaming body. Only responses below 500 feed their RTT into the
+ * limit, since failures often return early and would make the endpoint look faster than it is.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final ConcurrencyLimiters limiters;
+    private final String retryAfterSeconds;
+    private final Map<Method, Optional<EndpointLimiter>> limitersByMethod = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimiters limiters, Duration retryAfter) {
+        this.limiters = limiters;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async dispatches carry the result of a request that was already admitted
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        EndpointLimiter limiter = limitersByMethod.computeIfAbsent(handlerMethod.getMethod(),
+                method -> limiterFor(handlerMethod)).orElse(null);
+        if (limiter == null) {
+            return true;
+        }
+        EndpointLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            Span.current().setAttribute("admission.rejected", true);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return false;
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, permit);
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof EndpointLimiter.Permit permit) {
+            request.getAsyncContext().addListener(new PermitReleasingListener(permit, response));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        // Also runs after the async dispatch of a Mono result, ahead of the listener
+        if (!request.isAsyncStarted() && request.getAttribute(PERMIT_ATTRIBUTE) instanceof EndpointLimiter.Permit permit) {
+            permit.release(ex == null && response.getStatus() < 500);
+        }
+    }
+
+    private Optional<EndpointLimiter> limiterFor(HandlerMethod handlerMethod) {
+        ConcurrencyLimited limited = handlerMethod.getMethodAnnotation(ConcurrencyLimited.class);
+        if (limited == null) {
+            return Optional.empty();
+        }
+        String endpoint = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+        return Optional.of(limiters.forEndpoint(endpoint, limited.value()));
+    }
+
+    /**
+     * Releases the permit of an async request once its response is complete, whatever the outcome.
+     */
+    private record PermitReleasingListener(EndpointLimiter.Permit permit, HttpServletResponse response)
+            implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.release(response.getStatus() < 500);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // onComplete follows
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // onComplete follows
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.observability.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a controller method behind its own adaptive concurrency limit. Requests beyond the limit
+ * are answered with 503 and {@code Retry-After} before the method runs.
+ *
+ * @see ConcurrencyLimitInterceptor
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimited {
+
+    /**
+     * @return the endpoint's priority when the service is overloaded
+     */
+    Priority value() default Priority.NORMAL;
+}
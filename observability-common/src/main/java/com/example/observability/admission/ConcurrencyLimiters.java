@@ -0,0 +1,50 @@
+package com.example.observability.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The service's endpoint limiters, which lower priority endpoints consult to decide whether to
+ * yield.
+ */
+public class ConcurrencyLimiters {
+
+    private final AdmissionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointLimiter> byEndpoint = new ConcurrentHashMap<>();
+    private final List<EndpointLimiter> limiters = new CopyOnWriteArrayList<>();
+
+    public ConcurrencyLimiters(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param endpoint the endpoint name, used as a metric tag
+     * @param priority the endpoint's priority, fixed by the first call for a name
+     * @return the endpoint's limiter, created on first use
+     */
+    public EndpointLimiter forEndpoint(String endpoint, Priority priority) {
+        return byEndpoint.computeIfAbsent(endpoint, name -> {
+            EndpointLimiter limiter = new EndpointLimiter(name, priority, this, properties, meterRegistry);
+            limiters.add(limiter);
+            return limiter;
+        });
+    }
+
+    /**
+     * @return true if an endpoint more important than the given priority is currently congested
+     */
+    boolean isCongestedAbove(Priority priority, long nowNanos) {
+        for (EndpointLimiter limiter : limiters) {
+            if (limiter.getPriority().compareTo(priority) < 0 && limiter.isCongested(nowNanos)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.observability.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for one endpoint: admits requests while fewer than its {@link AdaptiveLimit}
+ * are in flight and feeds their RTTs back into it.
+ * <p>
+ * An endpoint also yields to more important ones. While an endpoint of higher priority is
+ * congested, meaning its latest window ran over the latency tolerance or it rejected requests
+ * at its own limit, this endpoint's share of its limit is halved every window, down to a single
+ * request in flight. Once the pressure is gone the share grows back by a tenth per window.
+ * <p>
+ * Admission is a compare-and-set on the in-flight count. The limit and share are re-evaluated
+ * under the instance lock, at most once per window.
+ */
+public class EndpointLimiter {
+
+    private static final double YIELD_FACTOR = 0.5;
+    private static final double RECOVERY_STEP = 0.1;
+
+    private final Priority priority;
+    private final ConcurrencyLimiters limiters;
+    private final long windowNanos;
+    private final AdaptiveLimit adaptiveLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private volatile int effectiveLimit;
+    private volatile long nextShareUpdateNanos;
+    private volatile boolean rejectedAtLimit;
+    private volatile boolean congested;
+    private volatile long congestionExpiresNanos;
+    private double share = 1.0;
+
+    private final Counter rejectedForLimit;
+    private final Counter rejectedForYield;
+
+    EndpointLimiter(String endpoint,
+                    Priority priority,
+                    ConcurrencyLimiters limiters,
+                    AdmissionProperties properties,
+                    MeterRegistry meterRegistry) {
+        this.priority = priority;
+        this.limiters = limiters;
+        this.windowNanos = properties.getWindow().toNanos();
+        long now = System.nanoTime();
+        this.adaptiveLimit = new AdaptiveLimit(properties, now);
+        this.limit = adaptiveLimit.getLimit();
+        this.effectiveLimit = limit;
+        this.nextShareUpdateNanos = now + windowNanos;
+
+        Tags tags = Tags.of("endpoint", endpoint, "priority", priority.name());
+        Gauge.builder("admission.limit", this, EndpointLimiter::getLimit)
+                .description("Concurrency limit learned from the endpoint's latency")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("admission.limit.effective", this, EndpointLimiter::getEffectiveLimit)
+                .description("Concurrency limit applied to the endpoint, after yielding to higher priorities")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("admission.inflight", inFlight, AtomicInteger::get)
+                .description("Requests admitted to the endpoint and not yet completed")
+                .tags(tags)
+                .register(meterRegistry);
+        this.rejectedForLimit = rejectionCounter(meterRegistry, tags, "limit");
+        this.rejectedForYield = rejectionCounter(meterRegistry, tags, "yield");
+    }
+
+    /**
+     * Try to admit a request
+     *
+     * @return the permit to release when the request completes, or null if it must be rejected
+     */
+    public Permit tryAcquire() {
+        long now = System.nanoTime();
+        if (priority != Priority.CRITICAL && now - nextShareUpdateNanos >= 0) {
+            // Also runs while nothing is admitted, so a yielding endpoint recovers
+            updateShare(now);
+        }
+        int admitLimit = effectiveLimit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= admitLimit) {
+                if (current >= limit) {
+                    rejectedAtLimit = true;
+                    rejectedForLimit.increment();
+                } else {
+                    rejectedForYield.increment();
+                }
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(now, current + 1);
+            }
+        }
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getEffectiveLimit() {
+        return effectiveLimit;
+    }
+
+    /**
+     * @return true if the latest window, if recent, showed latency over the tolerance or rejections at the limit
+     */
+    boolean isCongested(long nowNanos) {
+        return congested && nowNanos - congestionExpiresNanos < 0;
+    }
+
+    private void release(Permit permit, boolean recordRtt) {
+        inFlight.decrementAndGet();
+        if (!recordRtt) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (adaptiveLimit.onSample(now - permit.startNanos, permit.inFlight, now)) {
+                congested = adaptiveLimit.getGradient() < 1.0 || rejectedAtLimit;
+                congestionExpiresNanos = now + 2 * windowNanos;
+                rejectedAtLimit = false;
+                limit = adaptiveLimit.getLimit();
+                effectiveLimit = Math.max(1, (int) (limit * share));
+            }
+        }
+    }
+
+    private synchronized void updateShare(long now) {
+        if (now - nextShareUpdateNanos < 0) {
+            // Another thread got here first
+            return;
+        }
+        nextShareUpdateNanos = now + windowNanos;
+        if (limiters.isCongestedAbove(priority, now)) {
+            share *= YIELD_FACTOR;
+        } else {
+            share = Math.min(1.0, share + RECOVERY_STEP);
+        }
+        effectiveLimit = Math.max(1, (int) (limit * share));
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, Tags tags, String reason) {
+        return Counter.builder("admission.rejected")
+                .description("Requests rejected at the endpoint's own limit or while yielding to higher priorities")
+                .tags(tags)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * An admitted request. Must be released exactly once; further calls are ignored.
+     */
+    public final class Permit {
+
+        private final long startNanos;
+        private final int inFlight;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long startNanos, int inFlight) {
+            this.startNanos = startNanos;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * @param recordRtt whether the request's RTT says anything about the endpoint's capacity,
+         *                  false e.g. for failures that returned early
+         */
+        public void release(boolean recordRtt) {
+            if (released.compareAndSet(false, true)) {
+                EndpointLimiter.this.release(this, recordRtt);
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.observability.admission;
+
+/**
+ * How much an endpoint matters when the service is overloaded, from most to least important.
+ * An endpoint gives up its share of capacity while a more important one is congested.
+ */
+public enum Priority {
+    /**
+     * Served ahead of everything else; never yields.
+     */
+    CRITICAL,
+    /**
+     * Yields to CRITICAL endpoints.
+     */
+    NORMAL,
+    /**
+     * Shed first: yields to CRITICAL and NORMAL endpoints.
+     */
+    SHEDDABLE
+}
@@ -0,0 +1,188 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Logback encoder writing one JSON object per line.
+ * <p>
+ * Every event carries {@code @timestamp}, {@code level}, {@code thread}, {@code logger} and
+ * {@code message}, followed by the MDC entries (including the {@code trace_id} and
+ * {@code span_id} added by {@link TraceContextAsyncAppender}) and a {@code stack_trace} when
+ * there is an exception. The line is encoded straight to UTF-8 in a per-thread buffer that is
+ * reused across events, and the timestamp text is reused within a second, so the only
+ * per-event allocation is the returned byte array.
+ */
+public class JsonLogEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] NO_BYTES = new byte[0];
+    private static final String MICROMETER_TRACE_ID = "traceId";
+    private static final String MICROMETER_SPAN_ID = "spanId";
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final ThreadLocal<LineBuffer> buffers = ThreadLocal.withInitial(LineBuffer::new);
+
+    @Override
+    public byte[] headerBytes() {
+        return NO_BYTES;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        LineBuffer line = buffers.get();
+        line.reset();
+
+        line.raw("{\"@timestamp\":\"");
+        line.timestamp(event.getTimeStamp());
+        line.raw("\"");
+        line.field("level", event.getLevel().toString());
+        line.field("thread", event.getThreadName());
+        line.field("logger", event.getLoggerName());
+        line.field("message", event.getFormattedMessage());
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        boolean traced = mdc.containsKey(TraceContextAsyncAppender.TRACE_ID);
+        for (Map.Entry<String, String> entry : mdc.entrySet()) {
+            // Micrometer Tracing puts the same IDs in the MDC under its own names
+            if (traced && (MICROMETER_TRACE_ID.equals(entry.getKey()) || MICROMETER_SPAN_ID.equals(entry.getKey()))) {
+                continue;
+            }
+            line.field(entry.getKey(), entry.getValue());
+        }
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            line.field("stack_trace", ThrowableProxyUtil.asString(throwable));
+        }
+        line.raw("}\n");
+        return line.toByteArray();
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return NO_BYTES;
+    }
+
+    /**
+     * Growable UTF-8 buffer for one line, owned by a single thread.
+     */
+    private static final class LineBuffer {
+
+        private static final int INITIAL_BYTES = 512;
+        private static final int MAX_RETAINED_BYTES = 64 * 1024;
+
+        private byte[] bytes = new byte[INITIAL_BYTES];
+        private int length;
+        private long cachedSecond = Long.MIN_VALUE;
+        private byte[] cachedSecondText = NO_BYTES;
+
+        void reset() {
+            if (bytes.length > MAX_RETAINED_BYTES) {
+                // Do not keep a huge buffer around after an exceptionally long event
+                bytes = new byte[INITIAL_BYTES];
+            }
+            length = 0;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        void timestamp(long epochMillis) {
+            long second = Math.floorDiv(epochMillis, 1000);
+            if (second != cachedSecond) {
+                // "2024-01-01T00:00:00Z" without the zone, formatted once per second
+                String text = Instant.ofEpochSecond(second).toString();
+                cachedSecondText = text.substring(0, text.length() - 1).getBytes(StandardCharsets.US_ASCII);
+                cachedSecond = second;
+            }
+            ensure(cachedSecondText.length + 5);
+            System.arraycopy(cachedSecondText, 0, bytes, length, cachedSecondText.length);
+            length += cachedSecondText.length;
+            int millis = (int) Math.floorMod(epochMillis, 1000);
+            bytes[length++] = '.';
+            bytes[length++] = (byte) ('0' + millis / 100);
+            bytes[length++] = (byte) ('0' + millis / 10 % 10);
+            bytes[length++] = (byte) ('0' + millis % 10);
+            bytes[length++] = 'Z';
+        }
+
+        void field(String name, String value) {
+            raw(",\"");
+            escaped(name);
+            raw("\":");
+            if (value == null) {
+                raw("null");
+                return;
+            }
+            raw("\"");
+            escaped(value);
+            raw("\"");
+        }
+
+        void raw(String ascii) {
+            ensure(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                bytes[length++] = (byte) ascii.charAt(i);
+            }
+        }
+
+        private void escaped(String value) {
+            // Worst case is six bytes per char, for \\u00XX escapes
+            ensure(value.length() * 6);
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x20 || c == '"' || c == '\\') {
+                    control(c);
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | c >> 6);
+                    bytes[length++] = (byte) (0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | codePoint >> 18);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | codePoint & 0x3F);
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | c >> 12);
+                    bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    bytes[length++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+
+        private void control(char c) {
+            bytes[length++] = '\\';
+            switch (c) {
+                case '"' -> bytes[length++] = '"';
+                case '\\' -> bytes[length++] = '\\';
+                case '\n' -> bytes[length++] = 'n';
+                case '\r' -> bytes[length++] = 'r';
+                case '\t' -> bytes[length++] = 't';
+                default -> {
+                    bytes[length++] = 'u';
+                    bytes[length++] = '0';
+                    bytes[length++] = '0';
+                    bytes[length++] = HEX[c >> 4];
+                    bytes[length++] = HEX[c & 0xF];
+                }
+            }
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logback turbo filter that rate limits repetitive hot-path log statements.
+ * <p>
+ * Applies to loggers whose name starts with one of the configured prefixes, and only to events at
+ * {@code level} or below (INFO by default), so warnings and errors always get through. Each
+ * matching logger has its own limit of {@code maxPerSecond} events, with bursts of up to one
+ * second's worth; events over the limit are denied before logback builds them, which is the
+ * cheapest place to drop a log line. Several filters can be declared with different prefixes to
+ * give loggers different limits.
+ */
+public class LogRateLimitFilter extends TurboFilter {
+
+    private static final Limit UNLIMITED = new Limit(0);
+
+    private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+    private final LongAdder suppressed = new LongAdder();
+    private List<String> prefixes = List.of();
+    private Level level = Level.INFO;
+    private double maxPerSecond;
+
+    /**
+     * Comma-separated logger name prefixes the limit applies to.
+     */
+    public void setLoggers(String loggers) {
+        List<String> parsed = new ArrayList<>();
+        for (String prefix : loggers.split(",")) {
+            if (!prefix.isBlank()) {
+                parsed.add(prefix.trim());
+            }
+        }
+        this.prefixes = List.copyOf(parsed);
+    }
+
+    /**
+     * Most severe level that is rate limited.
+     */
+    public void setLevel(String level) {
+        this.level = Level.toLevel(level, Level.INFO);
+    }
+
+    /**
+     * Events per second allowed for each matching logger, 0 for no limit.
+     */
+    public void setMaxPerSecond(double maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // A null format is an isXxxEnabled() check, which must not use up the budget
+        if (format == null || level.toInt() > this.level.toInt() || !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        Limit limit = limits.get(logger.getName());
+        if (limit == null) {
+            limit = limits.computeIfAbsent(logger.getName(), this::limitFor);
+        }
+        if (limit == UNLIMITED || limit.tryAcquire(System.nanoTime())) {
+            return FilterReply.NEUTRAL;
+        }
+        suppressed.increment();
+        return FilterReply.DENY;
+    }
+
+    /**
+     * Events denied so far by this filter.
+     */
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    private Limit limitFor(String loggerName) {
+        if (maxPerSecond > 0) {
+            for (String prefix : prefixes) {
+                if (loggerName.startsWith(prefix)) {
+                    return new Limit(maxPerSecond);
+                }
+            }
+        }
+        return UNLIMITED;
+    }
+
+    /**
+     * Generic cell rate limiter: tracks the theoretical arrival time of the next event and admits
+     * an event as long as that time is no more than one second ahead of now. Lock-free.
+     */
+    private static final class Limit {
+
+        private static final long BURST_NANOS = 1_000_000_000L;
+
+        private final long intervalNanos;
+        private final AtomicLong nextArrival = new AtomicLong(Long.MIN_VALUE);
+
+        Limit(double perSecond) {
+            this.intervalNanos = perSecond > 0 ? Math.max(1, (long) (1_000_000_000L / perSecond)) : 0;
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = nextArrival.get();
+                long start = current == Long.MIN_VALUE || current - now < 0 ? now : current;
+                if (start - now >= BURST_NANOS) {
+                    return false;
+                }
+                if (nextArrival.compareAndSet(current, start + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
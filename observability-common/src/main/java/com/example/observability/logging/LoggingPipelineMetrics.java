@@ -0,0 +1,55 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+
+/**
+ * Publishes the state of the logging pipeline configured in {@code logback-spring.xml}:
+ * {@code logging.queue.depth} and {@code logging.events.dropped{reason=queue_full}} for each
+ * {@link TraceContextAsyncAppender} on the root logger, and
+ * {@code logging.events.dropped{reason=rate_limited}} for each {@link LogRateLimitFilter}, tagged
+ * with the appender or filter name as {@code source}.
+ */
+public class LoggingPipelineMetrics {
+
+    public LoggingPipelineMetrics(MeterRegistry meterRegistry) {
+        if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext loggerContext)) {
+            return;
+        }
+        Iterator<Appender<ILoggingEvent>> appenders =
+                loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+        while (appenders.hasNext()) {
+            if (appenders.next() instanceof TraceContextAsyncAppender appender) {
+                Gauge.builder("logging.queue.depth", appender, TraceContextAsyncAppender::getNumberOfElementsInQueue)
+                        .description("Log events waiting for the asynchronous writer")
+                        .tag("appender", appender.getName())
+                        .register(meterRegistry);
+                FunctionCounter.builder("logging.events.dropped", appender, TraceContextAsyncAppender::getDiscardedCount)
+                        .description("Log events dropped by the logging pipeline")
+                        .tag("source", appender.getName())
+                        .tag("reason", "queue_full")
+                        .register(meterRegistry);
+            }
+        }
+        int index = 0;
+        for (TurboFilter filter : loggerContext.getTurboFilterList()) {
+            if (filter instanceof LogRateLimitFilter rateLimitFilter) {
+                String name = rateLimitFilter.getName() != null ? rateLimitFilter.getName() : "rate-limit-" + index++;
+                FunctionCounter.builder("logging.events.dropped", rateLimitFilter, LogRateLimitFilter::getSuppressedCount)
+                        .description("Log events dropped by the logging pipeline")
+                        .tag("source", name)
+                        .tag("reason", "rate_limited")
+                        .register(meterRegistry);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import org.slf4j.MDC;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logback {@link AsyncAppender} that stamps each event with the trace and span IDs of the
+ * OpenTelemetry context current on the logging thread.
+ * <p>
+ * Events are handed to a bounded ring buffer and written by a single background worker, so the
+ * request thread only pays for building the event. The IDs are copied into the event's MDC as
+ * {@code trace_id} and {@code span_id} before it is queued, because by the time the worker
+ * encodes it the span is no longer current.
+ */
+public class TraceContextAsyncAppender extends AsyncAppender {
+
+    public static final String TRACE_ID = "trace_id";
+    public static final String SPAN_ID = "span_id";
+
+    private final LongAdder discarded = new LongAdder();
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        // Same shedding as the base class, counted: below WARN near the threshold, anything when full
+        if ((isQueueBelowDiscardingThreshold() && isDiscardable(event))
+                || (isNeverBlock() && getRemainingCapacity() == 0)) {
+            discarded.increment();
+            return;
+        }
+        super.append(event);
+    }
+
+    @Override
+    protected void preprocess(ILoggingEvent event) {
+        SpanContext spanContext = Span.current().getSpanContext();
+        if (spanContext.isValid() && event instanceof LoggingEvent loggingEvent) {
+            Map<String, String> mdc = MDC.getCopyOfContextMap();
+            if (mdc == null) {
+                mdc = new HashMap<>(4);
+            }
+            mdc.put(TRACE_ID, spanContext.getTraceId());
+            mdc.put(SPAN_ID, spanContext.getSpanId());
+            try {
+                loggingEvent.setMDCPropertyMap(mdc);
+            } catch (IllegalStateException e) {
+                // The MDC of this event was already captured elsewhere; keep it as it is
+            }
+        }
+        super.preprocess(event);
+    }
+
+    /**
+     * Events dropped because the queue was at its discarding threshold or full.
+     */
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.observability.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Span processor whose delegate, the export pipeline, is built only when {@link #initialize()}
+ * is called, so that creating exporters and replaying the disk buffer can happen after the
+ * application has started serving.
+ * <p>
+ * Until then, ended spans wait in a bounded list and are handed to the delegate in order once
+ * it is installed; spans beyond {@code maxPendingSpans} are dropped and counted. If the delegate
+ * cannot be built, spans are discarded from then on. The delegate must not need
+ * {@code onStart}, which holds for batch span processors.
+ */
+@Slf4j
+public class DeferredSpanProcessor implements SpanProcessor {
+
+    private final Callable<SpanProcessor> factory;
+    private final int maxPendingSpans;
+    private final Counter droppedSpans;
+    private final AtomicBoolean initialized = new AtomicBoolean();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+    private final CompletableFuture<SpanProcessor> installed = new CompletableFuture<>();
+
+    // Guarded by this until the delegate is installed, then null
+    private List<ReadableSpan> pending = new ArrayList<>();
+    private volatile SpanProcessor delegate;
+
+    public DeferredSpanProcessor(Callable<SpanProcessor> factory, int maxPendingSpans, MeterRegistry meterRegistry) {
+        this.factory = factory;
+        this.maxPendingSpans = maxPendingSpans;
+        this.droppedSpans = Counter.builder("tracing.deferred.dropped")
+                .description("Spans dropped because they ended before span export was initialized and too many were pending")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build and install the delegate on the calling thread. Only the first call has an effect.
+     */
+    public void initialize() {
+        if (!initialized.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        SpanProcessor built;
+        try {
+            built = factory.call();
+        } catch (Exception e) {
+            log.error("Span export could not be initialized, spans will not be exported", e);
+            built = SpanProcessor.composite();
+        }
+        int handedOver;
+        synchronized (this) {
+            handedOver = pending.size();
+            for (ReadableSpan span : pending) {
+                built.onEnd(span);
+            }
+            pending = null;
+            delegate = built;
+        }
+        installed.complete(built);
+        log.info("Span export initialized in {} ms, {} pending spans handed over",
+                (System.nanoTime() - start) / 1_000_000, handedOver);
+    }
+
+    /**
+     * Call {@link #initialize()} on a new daemon thread.
+     */
+    public void initializeInBackground() {
+        if (initialized.get()) {
+            return;
+        }
+        Thread thread = new Thread(this::initialize, "span-export-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        SpanProcessor target = delegate;
+        if (target == null) {
+            synchronized (this) {
+                target = delegate;
+                if (target == null) {
+                    if (pending.size() < maxPendingSpans) {
+                        pending.add(span);
+                    } else {
+                        droppedSpans.increment();
+                    }
+                    return;
+                }
+            }
+        }
+        target.onEnd(span);
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        SpanProcessor target = delegate;
+        return target != null ? target.forceFlush() : CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        if (!shutdown.compareAndSet(false, true) || !initialized.get()) {
+            // Never initialized: there is nothing to flush the pending spans to
+            return CompletableResultCode.ofSuccess();
+        }
+        // Let an initialization in progress finish, so the spans it was handed are flushed
+        CompletableResultCode result = new CompletableResultCode();
+        installed.thenAccept(target -> {
+            CompletableResultCode stopped = target.shutdown();
+            stopped.whenComplete(() -> {
+                if (stopped.isSuccess()) {
+                    result.succeed();
+                } else {
+                    result.fail();
+                }
+            });
+        });
+        return result;
+    }
+}
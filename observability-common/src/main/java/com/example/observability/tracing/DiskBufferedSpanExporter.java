@@ -0,0 +1,172 @@
+package com.example.observability.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps the OTLP/HTTP span exporter with a {@link SpanSegmentLog} on local disk, so spans survive
+ * a collector outage instead of piling up in the batch span processor queue and being dropped.
+ * <p>
+ * While the log is empty, batches go straight to the delegate; a batch the delegate fails to
+ * export is spilled to the log. While the log holds anything, new batches are appended to it
+ * without touching the network, which keeps the processor draining at disk speed when the
+ * collector flaps. A background thread replays the log oldest first by posting the stored OTLP
+ * protobuf requests to the same endpoint, and live export resumes once the log is drained.
+ * <p>
+ * Delivery is at least once: batches replayed right before a crash may be sent again on restart.
+ */
+@Slf4j
+public class DiskBufferedSpanExporter implements SpanExporter {
+
+    private static final String PROTOBUF = "application/x-protobuf";
+
+    private final SpanExporter delegate;
+    private final SpanSegmentLog segmentLog;
+    private final URI endpoint;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService replayer;
+    private final Counter spilled;
+    private final Counter replayed;
+    private final Counter rejected;
+
+    public DiskBufferedSpanExporter(SpanExporter delegate,
+                                    SpanSegmentLog segmentLog,
+                                    String endpoint,
+                                    Duration timeout,
+                                    Duration replayInterval,
+                                    MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.segmentLog = segmentLog;
+        this.endpoint = URI.create(endpoint);
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+        this.replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "span-buffer-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.spilled = batchCounter(meterRegistry, "spilled");
+        this.replayed = batchCounter(meterRegistry, "replayed");
+        this.rejected = batchCounter(meterRegistry, "rejected");
+        FunctionCounter.builder("tracing.buffer.batches", segmentLog, SpanSegmentLog::evictedRecords)
+                .description("Span batches spilled to, replayed from or discarded by the disk buffer")
+                .tag("outcome", "evicted")
+                .register(meterRegistry);
+        Gauge.builder("tracing.buffer.pending", segmentLog, SpanSegmentLog::pendingBytes)
+                .description("Bytes of spans waiting in the disk buffer")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        long intervalMillis = replayInterval.toMillis();
+        replayer.scheduleWithFixedDelay(this::replay, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        if (!segmentLog.isEmpty()) {
+            // Collector was unreachable recently: keep ordering and stay off the network until replay catches up
+            spill(spans);
+            return CompletableResultCode.ofSuccess();
+        }
+
+        CompletableResultCode result = delegate.export(spans);
+        CompletableResultCode outcome = new CompletableResultCode();
+        result.whenComplete(() -> {
+            if (!result.isSuccess()) {
+                spill(spans);
+            }
+            outcome.succeed();
+        });
+        return outcome;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        replayer.shutdownNow();
+        segmentLog.close();
+        return delegate.shutdown();
+    }
+
+    private void spill(Collection<SpanData> spans) {
+        try {
+            TraceRequestMarshaler request = TraceRequestMarshaler.create(spans);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(request.getBinarySerializedSize());
+            request.writeBinaryTo(bytes);
+            if (segmentLog.append(bytes.toByteArray())) {
+                spilled.increment();
+            } else {
+                rejected.increment();
+                log.warn("Dropped a batch of {} spans too large for a span buffer segment", spans.size());
+            }
+        } catch (IOException e) {
+            log.warn("Failed to buffer {} spans on disk: {}", spans.size(), e.getMessage());
+        }
+    }
+
+    private void replay() {
+        try {
+            SpanSegmentLog.Record record;
+            while ((record = segmentLog.peek()) != null) {
+                int status = post(record.payload());
+                if (status / 100 == 2) {
+                    replayed.increment();
+                } else if (status / 100 == 4 && status != 408 && status != 429) {
+                    // Retrying a request the collector refuses would block the log forever
+                    rejected.increment();
+                    log.warn("Collector rejected a buffered span batch with status {}, discarding it", status);
+                } else {
+                    return;
+                }
+                segmentLog.commit(record);
+            }
+        } catch (IOException e) {
+            log.debug("Span buffer replay to {} failed: {}", endpoint, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Span buffer replay failed", e);
+        }
+    }
+
+    private int post(byte[] payload) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", PROTOBUF)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(payload))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static Counter batchCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("tracing.buffer.batches")
+                .description("Span batches spilled to, replayed from or discarded by the disk buffer")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps how many spans per second the delegate may sample. Spans the delegate would sample
+ * beyond the limit are dropped.
+ * <p>
+ * Uses the generic cell rate algorithm: a single CAS-updated "theoretical arrival time" admits
+ * one span per interval and allows bursts of up to one second's worth. There are no locks or
+ * allocations on the decision path.
+ */
+public final class RateLimitingSampler implements Sampler {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Sampler delegate;
+    private final double maxPerSecond;
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public RateLimitingSampler(Sampler delegate, double maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new IllegalArgumentException("maxPerSecond must be positive: " + maxPerSecond);
+        }
+        this.delegate = delegate;
+        this.maxPerSecond = maxPerSecond;
+        this.intervalNanos = Math.max(1, (long) (NANOS_PER_SECOND / maxPerSecond));
+        this.burstToleranceNanos = Math.max(0, NANOS_PER_SECOND - intervalNanos);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext,
+                                       String traceId,
+                                       String name,
+                                       SpanKind spanKind,
+                                       Attributes attributes,
+                                       List<LinkData> parentLinks) {
+        SamplingResult result = delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        if (result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE && !tryAcquire()) {
+            return SamplingResult.drop();
+        }
+        return result;
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = theoreticalArrival.get();
+            long arrival = Math.max(current, now);
+            if (arrival - now > burstToleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "RateLimitingSampler{maxPerSecond=" + maxPerSecond + ", delegate=" + delegate.getDescription() + "}";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+/**
+ * Turns the delegate's drop decisions into record-only ones, so that spans reach the span
+ * processors while only sampled spans are exported.
+ * <p>
+ * Lets {@link SpanMetricsProcessor} count requests however aggressively traces are sampled.
+ * Record-only spans still carry the unsampled flag, so downstream services and the export
+ * pipeline treat them exactly like dropped spans.
+ * <p>
+ * A recorded span costs an SDK span object, its attributes and a pass through every processor,
+ * where a dropped span is a shared no-op. Limited to local roots, an unsampled request records
+ * only its server span and its other spans stay dropped, which keeps the overhead of unsampled
+ * traces close to the head sampler's bound. Recording every span is only worth it for tail
+ * sampling, which has to see whole traces to decide.
+ */
+public final class RecordingSampler implements Sampler {
+
+    private final Sampler delegate;
+    private final boolean localRootsOnly;
+
+    /**
+     * @param delegate       the sampler deciding which spans are exported
+     * @param localRootsOnly record dropped spans only if they have no parent in this service
+     */
+    public RecordingSampler(Sampler delegate, boolean localRootsOnly) {
+        this.delegate = delegate;
+        this.localRootsOnly = localRootsOnly;
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext,
+                                       String traceId,
+                                       String name,
+                                       SpanKind spanKind,
+                                       Attributes attributes,
+                                       List<LinkData> parentLinks) {
+        SamplingResult result = delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        if (result.getDecision() == SamplingDecision.DROP && (!localRootsOnly || isLocalRoot(parentContext))) {
+            return SamplingResult.recordOnly();
+        }
+        return result;
+    }
+
+    private static boolean isLocalRoot(Context parentContext) {
+        SpanContext parent = Span.fromContext(parentContext).getSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+
+    @Override
+    public String getDescription() {
+        return "RecordingSampler{delegate=" + delegate.getDescription() + ", localRootsOnly=" + localRootsOnly + "}";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Picks a sampler per endpoint: the first rule whose span-name pattern matches the whole span name,
+ * or whose path pattern matches the request path set by {@link SamplingContextFilter}, decides.
+ * Otherwise the fallback sampler does.
+ */
+public final class RuleBasedSampler implements Sampler {
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Sampler fallback;
+
+    public RuleBasedSampler(Sampler fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * Add a rule, evaluated after the rules added before it
+     *
+     * @param spanNamePattern regular expression matched against the whole span name, or null
+     * @param pathPattern regular expression matched against the whole request path, or null
+     * @param sampler the sampler used for matching spans
+     * @return this sampler
+     */
+    public RuleBasedSampler addRule(String spanNamePattern, String pathPattern, Sampler sampler) {
+        if (spanNamePattern == null && pathPattern == null) {
+            throw new IllegalArgumentException("A sampling rule needs a span name or path pattern");
+        }
+        rules.add(new Rule(compile(spanNamePattern), compile(pathPattern), sampler));
+        return this;
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext,
+                                       String traceId,
+                                       String name,
+                                       SpanKind spanKind,
+                                       Attributes attributes,
+                                       List<LinkData> parentLinks) {
+        String path = parentContext.get(SamplingContextFilter.REQUEST_PATH);
+        for (Rule rule : rules) {
+            if (rule.matches(name, path)) {
+                return rule.sampler().shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+            }
+        }
+        return fallback.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
+
+    @Override
+    public String getDescription() {
+        StringBuilder description = new StringBuilder("RuleBasedSampler{rules=[");
+        for (int i = 0; i < rules.size(); i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(rules.get(i));
+        }
+        return description.append("], fallback=").append(fallback.getDescription()).append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+
+    private static Pattern compile(String pattern) {
+        return pattern != null ? Pattern.compile(pattern) : null;
+    }
+
+    private record Rule(Pattern spanName, Pattern path, Sampler sampler) {
+
+        boolean matches(String name, String requestPath) {
+            return (spanName != null && spanName.matcher(name).matches())
+                    || (path != null && requestPath != null && path.matcher(requestPath).matches());
+        }
+
+        @Override
+        public String toString() {
+            return "{spanName=" + spanName + ", path=" + path + "} -> " + sampler.getDescription();
+        }
+    }
+}
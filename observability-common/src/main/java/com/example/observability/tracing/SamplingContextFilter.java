@@ -0,0 +1,34 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Makes the request path visible to samplers.
+ * <p>
+ * HTTP server spans are started before the route is known and get their final name later, so
+ * a sampler cannot tell endpoints apart by span name. This filter runs ahead of the observation
+ * filter and stores the path in the current OpenTelemetry context, which the server span then
+ * receives as its parent context.
+ */
+public class SamplingContextFilter extends OncePerRequestFilter {
+
+    public static final ContextKey<String> REQUEST_PATH = ContextKey.named("sampling.request-path");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try (Scope ignored = Context.current().with(REQUEST_PATH, request.getRequestURI()).makeCurrent()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.prometheus.metrics.model.registry.MultiCollector;
+import io.prometheus.metrics.model.snapshots.ClassicHistogramBuckets;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.Exemplar;
+import io.prometheus.metrics.model.snapshots.Exemplars;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.Labels;
+import io.prometheus.metrics.model.snapshots.MetricSnapshots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Derives rate, error and duration (RED) metrics from spans in-process and publishes them on the
+ * Prometheus endpoint, so that they stay exact whatever fraction of traces is exported.
+ * <p>
+ * For each span name and kind it keeps a latency histogram with log-linear buckets, two per power
+ * of two from 16&micro;s to about 34s, in the style of HdrHistogram, exposed as
+ * {@code span_duration_seconds}, and span counts by status code exposed as
+ * {@code span_calls_total{status_code}}. Each histogram bucket keeps the trace and span ID of the
+ * latest sampled span that fell into it as an exemplar, so a latency bucket links to a trace
+ * that was actually exported.
+ * <p>
+ * Recording a span is lock-free: after the first span of a name, it is a map lookup, two
+ * counter increments and three plain array writes for the exemplar. The SDK's
+ * {@link ReadableSpan} has no status accessor and the status is set on the span directly, so one
+ * {@code toSpanData()} view is taken per span to read it. Once the span has ended that view
+ * copies nothing: it is the span's lock and one small wrapper, measured by
+ * {@code scripts/span-metrics-benchmark.sh} at about 50ns and 24 bytes. Recording the server
+ * span of an unsampled request costs about 600ns in all, and in {@link Scope#LOCAL_ROOTS} the
+ * view is taken once per request.
+ * <p>
+ * Span names beyond {@code maxSpanNames} are aggregated under {@code other} to bound
+ * cardinality.
+ */
+public class SpanMetricsProcessor implements SpanProcessor, MultiCollector {
+
+    private static final String OVERFLOW_NAME = "other";
+
+    private static final int SUB_BUCKET_BITS = 1;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MIN_EXPONENT = 14;
+    private static final int MAX_EXPONENT = 35;
+    // One bucket below 2^MIN_EXPONENT ns, the log-linear ones, and one from 2^MAX_EXPONENT ns up
+    private static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKETS + 2;
+    private static final double[] UPPER_BOUNDS_SECONDS = upperBoundsSeconds();
+    private static final SpanKind[] KINDS = SpanKind.values();
+    private static final StatusCode[] STATUS_CODES = StatusCode.values();
+
+    private final ConcurrentMap<String, Series[]> series = new ConcurrentHashMap<>();
+    private final AtomicInteger spanNames = new AtomicInteger();
+    private final int maxSpanNames;
+    private final Scope scope;
+
+    public SpanMetricsProcessor(int maxSpanNames, Scope scope) {
+        this.maxSpanNames = maxSpanNames;
+        this.scope = scope;
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (scope == Scope.LOCAL_ROOTS && !isLocalRoot(span)) {
+            return;
+        }
+        Series metrics = seriesFor(span.getName(), span.getKind());
+        metrics.record(span.getLatencyNanos(), span.toSpanData().getStatus().getStatusCode(), span.getSpanContext());
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    private Series seriesFor(String name, SpanKind kind) {
+        Series[] byKind = series.get(name);
+        if (byKind == null) {
+            byKind = series.computeIfAbsent(name, k -> reserveSpanName() ? new Series[KINDS.length] : null);
+            if (byKind == null) {
+                name = OVERFLOW_NAME;
+                byKind = series.computeIfAbsent(OVERFLOW_NAME, k -> new Series[KINDS.length]);
+            }
+        }
+        Series metrics = byKind[kind.ordinal()];
+        if (metrics == null) {
+            synchronized (byKind) {
+                metrics = byKind[kind.ordinal()];
+                if (metrics == null) {
+                    metrics = new Series(Labels.of("span_kind", kind.name(), "span_name", name));
+                    byKind[kind.ordinal()] = metrics;
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Takes one of the {@code maxSpanNames} slots. Called only while creating a name's entry, so
+     * concurrent first spans of different names cannot together exceed the limit.
+     */
+    private boolean reserveSpanName() {
+        return spanNames.getAndUpdate(n -> n < maxSpanNames ? n + 1 : n) < maxSpanNames;
+    }
+
+    static boolean isLocalRoot(ReadableSpan span) {
+        SpanContext parent = span.getParentSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+
+    @Override
+    public MetricSnapshots collect() {
+        HistogramSnapshot.Builder durations = HistogramSnapshot.builder()
+                .name("span_duration_seconds")
+                .help("Duration of spans by name and kind, including spans not sampled for export");
+        CounterSnapshot.Builder calls = CounterSnapshot.builder()
+                .name("span_calls")
+                .help("Spans ended by name, kind and status code, including spans not sampled for export");
+        for (Series[] byKind : series.values()) {
+            for (Series metrics : byKind) {
+                if (metrics != null) {
+                    metrics.collect(durations, calls);
+                }
+            }
+        }
+        return MetricSnapshots.of(durations.build(), calls.build());
+    }
+
+    @Override
+    public List<String> getPrometheusNames() {
+        return List.of("span_duration_seconds", "span_calls");
+    }
+
+    /**
+     * Spans that metrics are derived from.
+     */
+    public enum Scope {
+        /**
+         * Only the first span of a trace in this service, the server span of a request. Paired
+         * with {@link RecordingSampler} in its local roots mode, an unsampled request costs one
+         * recorded span.
+         */
+        LOCAL_ROOTS,
+        /**
+         * Every span, which requires every span of unsampled traces to be recorded as well.
+         */
+        ALL
+    }
+
+    /**
+     * Index of the bucket holding a latency: the position of the highest set bit selects the power
+     * of two, the next {@link #SUB_BUCKET_BITS} bits the slice within it.
+     */
+    static int bucketIndex(long nanos) {
+        if (nanos < 1L << MIN_EXPONENT) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket + 1;
+    }
+
+    private static double[] upperBoundsSeconds() {
+        double[] bounds = new double[BUCKETS];
+        bounds[0] = (1L << MIN_EXPONENT) / 1e9;
+        for (int exponent = MIN_EXPONENT; exponent < MAX_EXPONENT; exponent++) {
+            for (int sub = 0; sub < SUB_BUCKETS; sub++) {
+                long upper = (1L << exponent) + ((long) (sub + 1) << (exponent - SUB_BUCKET_BITS));
+                bounds[(exponent - MIN_EXPONENT) * SUB_BUCKETS + sub + 1] = upper / 1e9;
+            }
+        }
+        bounds[BUCKETS - 1] = Double.POSITIVE_INFINITY;
+        return bounds;
+    }
+
+    /**
+     * Histogram and status counts of one span name and kind.
+     */
+    private static final class Series {
+
+        private final Labels labels;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sumNanos = new LongAdder();
+        private final LongAdder[] callsByStatus = new LongAdder[STATUS_CODES.length];
+        // Latest sampled span per bucket; the three arrays are written without a lock, so an
+        // exemplar may pair the latency of one span with the IDs of another in the same bucket
+        private final AtomicReferenceArray<SpanContext> exemplarSpans = new AtomicReferenceArray<>(BUCKETS);
+        private final AtomicLongArray exemplarNanos = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray exemplarMillis = new AtomicLongArray(BUCKETS);
+
+        Series(Labels labels) {
+            this.labels = labels;
+            for (int i = 0; i < callsByStatus.length; i++) {
+                callsByStatus[i] = new LongAdder();
+            }
+        }
+
+        void record(long latencyNanos, StatusCode status, SpanContext spanContext) {
+            int bucket = bucketIndex(latencyNanos);
+            buckets.incrementAndGet(bucket);
+            sumNanos.add(latencyNanos);
+            callsByStatus[status.ordinal()].increment();
+            if (spanContext.isSampled()) {
+                exemplarNanos.lazySet(bucket, latencyNanos);
+                exemplarMillis.lazySet(bucket, System.currentTimeMillis());
+                exemplarSpans.lazySet(bucket, spanContext);
+            }
+        }
+
+        void collect(HistogramSnapshot.Builder durations, CounterSnapshot.Builder calls) {
+            long[] counts = new long[BUCKETS];
+            List<Exemplar> exemplars = new ArrayList<>();
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                SpanContext spanContext = exemplarSpans.get(i);
+                if (spanContext != null) {
+                    exemplars.add(Exemplar.builder()
+                            .value(exemplarNanos.get(i) / 1e9)
+                            .traceId(spanContext.getTraceId())
+                            .spanId(spanContext.getSpanId())
+                            .timestampMillis(exemplarMillis.get(i))
+                            .build());
+                }
+            }
+            durations.dataPoint(HistogramSnapshot.HistogramDataPointSnapshot.builder()
+                    .labels(labels)
+                    .classicHistogramBuckets(ClassicHistogramBuckets.of(UPPER_BOUNDS_SECONDS, counts))
+                    .sum(sumNanos.sum() / 1e9)
+                    .exemplars(Exemplars.of(exemplars))
+                    .build());
+            for (StatusCode status : STATUS_CODES) {
+                long count = callsByStatus[status.ordinal()].sum();
+                if (count > 0) {
+                    calls.dataPoint(CounterSnapshot.CounterDataPointSnapshot.builder()
+                            .labels(labels.add("status_code", status.name()))
+                            .value(count)
+                            .build());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.observability.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.LongPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.MetricExporter;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Republishes the self-metrics of a {@code BatchSpanProcessor} through Micrometer.
+ * <p>
+ * The processor reports {@code processedSpans} (with {@code dropped=true} for spans rejected
+ * because its queue was full) and {@code queueSize} through an OpenTelemetry meter provider.
+ * This exporter is fed by a periodic reader on that provider and turns the delta counts into
+ * {@code tracing.spans.processed{outcome=exported|dropped}} counters and a
+ * {@code tracing.spans.queued} gauge on the Prometheus endpoint.
+ */
+public class SpanPipelineMetrics implements MetricExporter {
+
+    private static final String PROCESSED_SPANS = "processedSpans";
+    private static final String QUEUE_SIZE = "queueSize";
+    private static final AttributeKey<Boolean> DROPPED = AttributeKey.booleanKey("dropped");
+
+    private final Counter exported;
+    private final Counter dropped;
+    private final AtomicLong queued = new AtomicLong();
+
+    public SpanPipelineMetrics(MeterRegistry meterRegistry, String exporter) {
+        this.exported = Counter.builder("tracing.spans.processed")
+                .description("Spans handed to the exporter or dropped by the batch span processor")
+                .tag("exporter", exporter)
+                .tag("outcome", "exported")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("tracing.spans.processed")
+                .description("Spans handed to the exporter or dropped by the batch span processor")
+                .tag("exporter", exporter)
+                .tag("outcome", "dropped")
+                .register(meterRegistry);
+        Gauge.builder("tracing.spans.queued", queued, AtomicLong::get)
+                .description("Spans waiting in the batch span processor queue")
+                .tag("exporter", exporter)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<MetricData> metrics) {
+        for (MetricData metric : metrics) {
+            if (PROCESSED_SPANS.equals(metric.getName())) {
+                for (LongPointData point : metric.getLongSumData().getPoints()) {
+                    Counter counter = Boolean.TRUE.equals(point.getAttributes().get(DROPPED)) ? dropped : exported;
+                    counter.increment(point.getValue());
+                }
+            } else if (QUEUE_SIZE.equals(metric.getName())) {
+                for (LongPointData point : metric.getLongGaugeData().getPoints()) {
+                    queued.set(point.getValue());
+                }
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+        // Deltas map directly onto Micrometer counter increments
+        return AggregationTemporality.DELTA;
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.observability.tracing;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records kept in fixed-size, memory-mapped segment files.
+ * <p>
+ * Each record is stored as {@code [length][crc32][payload]}; a zero length marks the end of a
+ * segment. Records are read back in append order from the oldest segment, and a segment file is
+ * deleted once it has been fully consumed. When appending would exceed the configured disk budget
+ * the oldest segment is evicted, so the log keeps the most recent data.
+ * <p>
+ * Appends go to the page cache and are forced to disk when a segment is rolled or the log is
+ * closed, which survives a process crash but not a power loss. On restart the records left in
+ * each segment are replayed from its start, up to the first torn or corrupt record, so records
+ * consumed just before a crash may be delivered twice.
+ */
+@Slf4j
+public class SpanSegmentLog implements AutoCloseable {
+
+    private static final String SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long pendingBytes;
+    private long evictedRecords;
+
+    public SpanSegmentLog(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("segmentBytes too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(1, maxBytes / segmentBytes);
+
+        Files.createDirectories(directory);
+        for (Path path : existingSegments()) {
+            Segment segment = Segment.open(path, segmentBytes);
+            segments.addLast(segment);
+            pendingBytes += segment.writePos;
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(Segment.create(segmentPath(0), segmentBytes));
+        }
+        while (segments.size() > maxSegments) {
+            evictOldest();
+        }
+        if (pendingBytes > 0) {
+            log.info("Recovered {} bytes of buffered spans from {} segment(s) in {}", pendingBytes, segments.size(), directory);
+        }
+    }
+
+    /**
+     * Append a record to the end of the log
+     *
+     * @param payload The record payload
+     * @return false if the record is larger than a segment and was not stored
+     */
+    public synchronized boolean append(byte[] payload) throws IOException {
+        int recordBytes = HEADER_BYTES + payload.length;
+        if (recordBytes > segmentBytes) {
+            return false;
+        }
+        Segment tail = segments.peekLast();
+        if (tail.writePos + recordBytes > segmentBytes) {
+            tail.buffer.force();
+            tail = Segment.create(segmentPath(tail.id + 1), segmentBytes);
+            segments.addLast(tail);
+            while (segments.size() > maxSegments) {
+                evictOldest();
+            }
+        }
+        tail.write(payload);
+        pendingBytes += recordBytes;
+        return true;
+    }
+
+    /**
+     * Read the oldest unconsumed record without consuming it
+     *
+     * @return The record, or null if the log is empty
+     */
+    public synchronized Record peek() throws IOException {
+        Segment head = segments.peekFirst();
+        while (head.readPos == head.writePos && segments.size() > 1) {
+            segments.removeFirst().delete();
+            head = segments.peekFirst();
+        }
+        if (head.readPos == head.writePos) {
+            return null;
+        }
+        return new Record(head.id, head.readPos, head.read(head.readPos));
+    }
+
+    /**
+     * Consume a record returned by {@link #peek()}. Does nothing if the record has since been
+     * evicted to make room for newer data.
+     *
+     * @param record The record to consume
+     */
+    public synchronized void commit(Record record) throws IOException {
+        Segment head = segments.peekFirst();
+        if (head.id != record.segmentId || head.readPos != record.position) {
+            return;
+        }
+        int recordBytes = HEADER_BYTES + record.payload.length;
+        head.readPos += recordBytes;
+        pendingBytes -= recordBytes;
+        if (head.readPos == head.writePos && segments.size() == 1) {
+            // Fully drained: start a fresh segment so a restart does not replay what was delivered
+            head.delete();
+            segments.removeFirst();
+            segments.addLast(Segment.create(segmentPath(head.id + 1), segmentBytes));
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingBytes == 0;
+    }
+
+    /**
+     * Bytes of records appended but not yet consumed, including record headers.
+     */
+    public synchronized long pendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Records discarded because the disk budget was exhausted.
+     */
+    public synchronized long evictedRecords() {
+        return evictedRecords;
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.peekLast().buffer.force();
+    }
+
+    private void evictOldest() throws IOException {
+        Segment oldest = segments.removeFirst();
+        int records = oldest.remainingRecords();
+        evictedRecords += records;
+        pendingBytes -= oldest.writePos - oldest.readPos;
+        oldest.delete();
+        log.warn("Span buffer in {} is full, discarded {} buffered batch(es) from segment {}", directory, records, oldest.id);
+    }
+
+    private List<Path> existingSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded ids sort in creation order
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%020d%s", id, SUFFIX));
+    }
+
+    /**
+     * A record read from the log, identified by its position for {@link #commit(Record)}.
+     */
+    public record Record(long segmentId, int position, byte[] payload) {
+    }
+
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePos;
+        private int readPos;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, int size) throws IOException {
+            Files.deleteIfExists(path);
+            return new Segment(idOf(path), path, map(path, size));
+        }
+
+        static Segment open(Path path, int size) throws IOException {
+            Segment segment = new Segment(idOf(path), path, map(path, size));
+            segment.writePos = segment.scanValidRecords();
+            return segment;
+        }
+
+        private static MappedByteBuffer map(Path path, int size) throws IOException {
+            // Mapping past the end grows the file with zeros; the mapping outlives the channel
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private static long idOf(Path path) {
+            String name = path.getFileName().toString();
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        }
+
+        void write(byte[] payload) {
+            // Payload and checksum first, length last: a torn write leaves a zero length or a bad checksum
+            buffer.put(writePos + HEADER_BYTES, payload);
+            buffer.putInt(writePos + 4, checksum(payload));
+            buffer.putInt(writePos, payload.length);
+            writePos += HEADER_BYTES + payload.length;
+        }
+
+        byte[] read(int position) {
+            byte[] payload = new byte[buffer.getInt(position)];
+            buffer.get(position + HEADER_BYTES, payload);
+            return payload;
+        }
+
+        int remainingRecords() {
+            int records = 0;
+            for (int pos = readPos; pos < writePos; pos += HEADER_BYTES + buffer.getInt(pos)) {
+                records++;
+            }
+            return records;
+        }
+
+        void delete() throws IOException {
+            // The mapping itself is released when the buffer is garbage collected
+            Files.deleteIfExists(path);
+        }
+
+        private int scanValidRecords() {
+            int pos = 0;
+            while (pos + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(pos);
+                if (length <= 0 || pos + HEADER_BYTES + length > buffer.capacity()) {
+                    break;
+                }
+                if (checksum(read(pos)) != buffer.getInt(pos + 4)) {
+                    log.warn("Ignoring corrupt span buffer record at offset {} of {}", pos, path);
+                    break;
+                }
+                pos += HEADER_BYTES + length;
+            }
+            return pos;
+        }
+
+        private static int checksum(byte[] payload) {
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue();
+        }
+    }
+}
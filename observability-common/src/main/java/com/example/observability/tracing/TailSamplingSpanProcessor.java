@@ -0,0 +1,390 @@
+package com.example.observability.tracing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers the spans of each trace and forwards a trace to the export pipeline only if it turns
+ * out to be worth keeping, which head sampling cannot know when the trace starts.
+ * <p>
+ * Spans are held per trace ID until the local root span (no parent, or a remote one) ends. The
+ * trace is then kept if any of its spans has an error status, if the local root took longer than
+ * the latency threshold, if it contains one of the configured span names, or if the head sampler
+ * sampled it, which makes head sampling the baseline ratio. Kept spans are handed to the
+ * delegate; the others are discarded.
+ * <p>
+ * The buffer is bounded by a total span count, which also caps the number of traces waiting, and
+ * by a per-trace span count. When it is full, the oldest waiting traces are evicted, and traces
+ * waiting longer than the decision wait are too. An evicted trace is decided on the spans it
+ * holds so far, so an error already seen is still exported.
+ * <p>
+ * A decided trace is remembered without its spans for the decision wait, so that spans ending
+ * after their local root or after an eviction (asynchronous children, hedged calls) follow the
+ * same decision. Decisions have a count limit of their own: remembering them never evicts a trace
+ * that is still waiting, and beyond the limit the oldest decisions are forgotten first. Buffer
+ * size, decisions and evictions are published through Micrometer.
+ * <p>
+ * Every span must reach this processor, so the tracer provider uses a {@link RecordingSampler}
+ * and the delegate must export unsampled spans.
+ */
+public class TailSamplingSpanProcessor implements SpanProcessor {
+
+    private final SpanProcessor delegate;
+    private final long latencyThresholdNanos;
+    private final Set<String> spanNames;
+    private final boolean keepErrors;
+    private final int maxBufferedSpans;
+    private final int maxSpansPerTrace;
+    private final int maxDecidedTraces;
+    private final long decisionWaitNanos;
+
+    // Waiting and decided traces by ID
+    private final Map<String, TraceBuffer> traces = new ConcurrentHashMap<>();
+    // Traces by arrival; those decided since are skipped and removed once they reach the head
+    private final Queue<TraceBuffer> arrivalOrder = new ConcurrentLinkedQueue<>();
+    private final Queue<TraceBuffer> decisionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waitingTraces = new AtomicInteger();
+    private final AtomicInteger decidedTraces = new AtomicInteger();
+    private final AtomicInteger bufferedSpans = new AtomicInteger();
+    private final ScheduledExecutorService sweeper;
+
+    private final Counter keptSpans;
+    private final Counter droppedSpans;
+    private final Counter truncatedSpans;
+    private final Map<String, Counter> decisionCounters = new ConcurrentHashMap<>();
+    private final Counter evictedForMemory;
+    private final Counter evictedForTimeout;
+    private final MeterRegistry meterRegistry;
+
+    public TailSamplingSpanProcessor(SpanProcessor delegate,
+                                     Duration latencyThreshold,
+                                     Set<String> spanNames,
+                                     boolean keepErrors,
+                                     int maxBufferedSpans,
+                                     int maxSpansPerTrace,
+                                     int maxDecidedTraces,
+                                     Duration decisionWait,
+                                     MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.spanNames = Set.copyOf(spanNames);
+        this.keepErrors = keepErrors;
+        this.maxBufferedSpans = maxBufferedSpans;
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.maxDecidedTraces = maxDecidedTraces;
+        this.decisionWaitNanos = decisionWait.toNanos();
+        this.meterRegistry = meterRegistry;
+
+        this.keptSpans = spanCounter("kept");
+        this.droppedSpans = spanCounter("dropped");
+        this.truncatedSpans = spanCounter("truncated");
+        this.evictedForMemory = evictionCounter("memory");
+        this.evictedForTimeout = evictionCounter("timeout");
+        Gauge.builder("tracing.tail.buffered.spans", bufferedSpans, AtomicInteger::get)
+                .description("Spans buffered while their trace awaits a tail sampling decision")
+                .register(meterRegistry);
+        Gauge.builder("tracing.tail.buffered.traces", waitingTraces, AtomicInteger::get)
+                .description("Traces awaiting a tail sampling decision")
+                .register(meterRegistry);
+        Gauge.builder("tracing.tail.decided.traces", decidedTraces, AtomicInteger::get)
+                .description("Decided traces remembered so that their late spans follow the decision")
+                .register(meterRegistry);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tail-sampling-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = Math.max(100, decisionWait.toMillis() / 4);
+        sweeper.scheduleWithFixedDelay(this::evictExpired, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        String traceId = span.getSpanContext().getTraceId();
+        boolean localRoot = isLocalRoot(span);
+        TraceBuffer trace = traces.get(traceId);
+        if (trace == null) {
+            trace = traces.computeIfAbsent(traceId, this::newTrace);
+        }
+        // The local root is always buffered, so that a truncated trace still exports its entry point
+        switch (trace.add(span, localRoot ? Integer.MAX_VALUE : maxSpansPerTrace)) {
+            case ADDED -> bufferedSpans.incrementAndGet();
+            case TRUNCATED -> truncatedSpans.increment();
+            case ALREADY_DECIDED -> {
+                // Late span of a trace whose local root already ended or that was evicted
+                forward(List.of(span), trace.isKept());
+                return;
+            }
+        }
+
+        if (localRoot) {
+            decide(trace, span);
+            removeDecidedArrivals();
+        }
+        while ((bufferedSpans.get() > maxBufferedSpans || waitingTraces.get() > maxBufferedSpans) && evictOldest()) {
+            // Keep evicting until the buffer is back under its caps
+        }
+        while (decidedTraces.get() > maxDecidedTraces && forgetOldestDecision()) {
+            // Decisions are bounded separately, so they never push out a waiting trace
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return delegate.forceFlush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        sweeper.shutdownNow();
+        // Decide everything still waiting on what it has, rather than losing it
+        for (TraceBuffer trace : traces.values()) {
+            decide(trace, null);
+        }
+        return delegate.shutdown();
+    }
+
+    private TraceBuffer newTrace(String traceId) {
+        TraceBuffer trace = new TraceBuffer(traceId, System.nanoTime());
+        arrivalOrder.add(trace);
+        waitingTraces.incrementAndGet();
+        return trace;
+    }
+
+    private static boolean isLocalRoot(ReadableSpan span) {
+        SpanContext parent = span.getParentSpanContext();
+        return !parent.isValid() || parent.isRemote();
+    }
+
+    /**
+     * Decide a trace and release its spans
+     *
+     * @param trace the buffered trace
+     * @param localRoot the local root span that just ended, or null when the trace is evicted
+     */
+    private void decide(TraceBuffer trace, ReadableSpan localRoot) {
+        List<ReadableSpan> spans;
+        String policy;
+        synchronized (trace) {
+            // Under the trace's monitor, so that a span added concurrently sees the outcome
+            if (trace.isDecided()) {
+                return;
+            }
+            spans = trace.spans;
+            policy = policy(spans, localRoot);
+            trace.decide(policy != null, System.nanoTime());
+        }
+        boolean keep = policy != null;
+        waitingTraces.decrementAndGet();
+        decisionOrder.add(trace);
+        decidedTraces.incrementAndGet();
+        bufferedSpans.addAndGet(-spans.size());
+        decisionCounter(keep ? policy : "none", keep).increment();
+        forward(spans, keep);
+    }
+
+    /**
+     * The first policy that keeps the trace, or null to drop it
+     */
+    private String policy(List<ReadableSpan> spans, ReadableSpan localRoot) {
+        if (keepErrors) {
+            for (ReadableSpan span : spans) {
+                if (span.toSpanData().getStatus().getStatusCode() == StatusCode.ERROR) {
+                    return "error";
+                }
+            }
+        }
+        if (localRoot != null && latencyThresholdNanos > 0 && localRoot.getLatencyNanos() >= latencyThresholdNanos) {
+            return "latency";
+        }
+        if (!spanNames.isEmpty()) {
+            for (ReadableSpan span : spans) {
+                if (spanNames.contains(span.getName())) {
+                    return "span_name";
+                }
+            }
+        }
+        for (ReadableSpan span : spans) {
+            if (span.getSpanContext().isSampled()) {
+                return "head_sampled";
+            }
+        }
+        return null;
+    }
+
+    private void forward(List<ReadableSpan> spans, boolean keep) {
+        if (keep) {
+            for (ReadableSpan span : spans) {
+                delegate.onEnd(span);
+            }
+            keptSpans.increment(spans.size());
+        } else {
+            droppedSpans.increment(spans.size());
+        }
+    }
+
+    /**
+     * Decide the oldest trace still waiting for its local root on the spans it has
+     *
+     * @return false if no trace was waiting
+     */
+    private boolean evictOldest() {
+        TraceBuffer oldest;
+        while ((oldest = arrivalOrder.poll()) != null) {
+            if (!oldest.isDecided()) {
+                evictedForMemory.increment();
+                decide(oldest, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop traces decided at their local root from the head of the arrival order, which then
+     * holds mostly waiting traces instead of growing with every trace of the decision wait.
+     */
+    private void removeDecidedArrivals() {
+        TraceBuffer oldest;
+        while ((oldest = arrivalOrder.peek()) != null && oldest.isDecided()) {
+            arrivalOrder.remove(oldest);
+        }
+    }
+
+    /**
+     * @return false if no decision was remembered
+     */
+    private boolean forgetOldestDecision() {
+        TraceBuffer oldest = decisionOrder.poll();
+        if (oldest == null) {
+            return false;
+        }
+        decidedTraces.decrementAndGet();
+        traces.remove(oldest.traceId, oldest);
+        return true;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        TraceBuffer oldest;
+        while ((oldest = arrivalOrder.peek()) != null
+                && (oldest.isDecided() || now - oldest.createdNanos >= decisionWaitNanos)) {
+            if (arrivalOrder.remove(oldest) && !oldest.isDecided()) {
+                evictedForTimeout.increment();
+                decide(oldest, null);
+            }
+        }
+        while ((oldest = decisionOrder.peek()) != null && now - oldest.decidedNanos() >= decisionWaitNanos) {
+            if (decisionOrder.remove(oldest)) {
+                decidedTraces.decrementAndGet();
+                traces.remove(oldest.traceId, oldest);
+            }
+        }
+    }
+
+    private Counter spanCounter(String outcome) {
+        return Counter.builder("tracing.tail.spans")
+                .description("Spans kept for export, dropped, or truncated from oversized traces by tail sampling")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Counter evictionCounter(String reason) {
+        return Counter.builder("tracing.tail.evicted")
+                .description("Traces decided before their local root ended because the buffer was full or they waited too long")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Counter decisionCounter(String policy, boolean keep) {
+        return decisionCounters.computeIfAbsent(policy, p -> Counter.builder("tracing.tail.traces")
+                .description("Tail sampling decisions by the policy that kept the trace")
+                .tag("decision", keep ? "kept" : "dropped")
+                .tag("policy", p)
+                .register(meterRegistry));
+    }
+
+    private enum AddResult { ADDED, TRUNCATED, ALREADY_DECIDED }
+
+    /**
+     * Spans of one trace ended so far, guarded by its own monitor.
+     */
+    private static final class TraceBuffer {
+
+        private final String traceId;
+        private final long createdNanos;
+        private List<ReadableSpan> spans = new ArrayList<>();
+        private boolean kept;
+        private long decidedNanos;
+
+        TraceBuffer(String traceId, long createdNanos) {
+            this.traceId = traceId;
+            this.createdNanos = createdNanos;
+        }
+
+        synchronized AddResult add(ReadableSpan span, int maxSpans) {
+            if (spans == null) {
+                return AddResult.ALREADY_DECIDED;
+            }
+            if (spans.size() >= maxSpans) {
+                return AddResult.TRUNCATED;
+            }
+            spans.add(span);
+            return AddResult.ADDED;
+        }
+
+        synchronized void decide(boolean keep, long nowNanos) {
+            spans = null;
+            kept = keep;
+            decidedNanos = nowNanos;
+        }
+
+        synchronized boolean isDecided() {
+            return spans == null;
+        }
+
+        synchronized boolean isKept() {
+            return kept;
+        }
+
+        synchronized long decidedNanos() {
+            return decidedNanos;
+        }
+    }
+}
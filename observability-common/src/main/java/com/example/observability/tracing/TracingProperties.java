@@ -0,0 +1,246 @@
+package com.example.observability.tracing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for the OpenTelemetry SDK each service builds in its {@code ObservabilityConfig}, bound
+ * from {@code tracing.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "tracing")
+public class TracingProperties {
+
+    private final Sampling sampling = new Sampling();
+
+    private final Export export = new Export();
+
+    private final SpanMetrics spanMetrics = new SpanMetrics();
+
+    private final TailSampling tailSampling = new TailSampling();
+
+    @Data
+    public static class Sampling {
+
+        /**
+         * Follow the sampling decision of the parent span, local or remote, when there is one.
+         * Rules, ratio and rate limit then only apply to root spans.
+         */
+        private boolean parentBased = true;
+
+        /**
+         * Fraction of root spans sampled when no rule matches, from 0.0 to 1.0.
+         */
+        private double ratio = 1.0;
+
+        /**
+         * Per-endpoint ratios, evaluated in order; the first matching rule wins.
+         */
+        private List<Rule> rules = new ArrayList<>();
+
+        /**
+         * Upper bound on new traces started per second, 0 for no limit.
+         */
+        private double maxTracesPerSecond = 0;
+    }
+
+    @Data
+    public static class Rule {
+
+        /**
+         * Regular expression matched against the whole span name.
+         */
+        private String spanName;
+
+        /**
+         * Regular expression matched against the whole request path, for HTTP server spans.
+         */
+        private String path;
+
+        /**
+         * Fraction of matching root spans sampled, from 0.0 to 1.0.
+         */
+        private double ratio = 1.0;
+    }
+
+    @Data
+    public static class SpanMetrics {
+
+        /**
+         * Aggregate span rate, errors and duration in-process for the Prometheus endpoint. Spans in
+         * scope that the sampler drops are then recorded but not exported, so the metrics cover
+         * every request.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Spans aggregated: LOCAL_ROOTS for each request's server span, recording one span per
+         * unsampled request, or ALL, recording every span of unsampled traces.
+         */
+        private SpanMetricsProcessor.Scope scope = SpanMetricsProcessor.Scope.LOCAL_ROOTS;
+
+        /**
+         * Distinct span names tracked; spans with further names are counted under "other".
+         */
+        private int maxSpanNames = 500;
+    }
+
+    @Data
+    public static class TailSampling {
+
+        /**
+         * Buffer each trace until its local root span ends and export it only if a policy keeps
+         * it. Traces sampled by the head sampler are always kept, so its ratio becomes the
+         * baseline; lower it when enabling this.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Keep traces containing a span with an error status.
+         */
+        private boolean keepErrors = true;
+
+        /**
+         * Keep traces whose local root span took at least this long, 0 to disable.
+         */
+        private Duration latencyThreshold = Duration.ofMillis(500);
+
+        /**
+         * Keep traces containing a span with one of these names.
+         */
+        private List<String> spanNames = new ArrayList<>();
+
+        /**
+         * Spans buffered across all traces; the oldest traces are decided early beyond it.
+         */
+        private int maxBufferedSpans = 20_000;
+
+        /**
+         * Spans buffered per trace; further spans of the trace are dropped.
+         */
+        private int maxSpansPerTrace = 1_000;
+
+        /**
+         * Decided traces remembered, without their spans, so that spans ending after the decision
+         * follow it; counted apart from the buffered spans. The oldest are forgotten beyond it.
+         */
+        private int maxDecidedTraces = 50_000;
+
+        /**
+         * Longest a trace waits for its local root span before it is decided on the spans it has.
+         */
+        private Duration decisionWait = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * How often span pipeline metrics (queue depth, exported and dropped spans) are pushed to Micrometer.
+         */
+        private Duration metricsInterval = Duration.ofSeconds(10);
+
+        /**
+         * Build exporters and batch processors in the background once the application is ready,
+         * instead of while the context starts.
+         */
+        private boolean deferred = true;
+
+        /**
+         * Spans kept for export while it is being initialized; later ones are dropped.
+         */
+        private int maxDeferredSpans = 2048;
+
+        private final Logging logging = new Logging();
+
+        private final Otlp otlp = new Otlp();
+
+        private final Batch batch = new Batch();
+
+        private final DiskBuffer diskBuffer = new DiskBuffer();
+    }
+
+    @Data
+    public static class Logging {
+
+        /**
+         * Also print every span to the console. Meant for the dev profile only.
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class Otlp {
+
+        private boolean enabled = true;
+
+        /**
+         * OTLP/HTTP traces endpoint of the collector.
+         */
+        private String endpoint = "http://localhost:4318/v1/traces";
+
+        /**
+         * Timeout of a single export request.
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Spans buffered ahead of the exporter; spans ended while the queue is full are dropped.
+         */
+        private int maxQueueSize = 2048;
+
+        /**
+         * Maximum spans per export request.
+         */
+        private int maxExportBatchSize = 512;
+
+        /**
+         * Delay between exports when the queue holds less than a full batch.
+         */
+        private Duration scheduleDelay = Duration.ofSeconds(5);
+
+        /**
+         * Maximum time an export may take before it is cancelled.
+         */
+        private Duration exporterTimeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class DiskBuffer {
+
+        /**
+         * Spill OTLP batches that cannot be delivered to a local segment log and replay them later.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding the segment files.
+         */
+        private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "span-buffer");
+
+        /**
+         * Size of each memory-mapped segment file; also the largest batch that can be buffered.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(8);
+
+        /**
+         * Disk budget for all segments; the oldest segment is discarded when it is exceeded.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+
+        /**
+         * Delay between attempts to replay buffered batches to the collector.
+         */
+        private Duration replayInterval = Duration.ofSeconds(5);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.observability.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Feeds the limit windows of synthetic samples on a synthetic clock.
+ */
+class AdaptiveLimitTest {
+
+    private final AdmissionProperties properties = new AdmissionProperties();
+    private long now;
+
+    /**
+     * Complete one window of ten requests, each with the given RTT and in-flight count
+     */
+    private void window(AdaptiveLimit limit, long rttMillis, int inFlight) {
+        for (int i = 0; i < properties.getMinWindowSamples(); i++) {
+            now += properties.getWindow().toNanos() / properties.getMinWindowSamples();
+            limit.onSample(TimeUnit.MILLISECONDS.toNanos(rttMillis), inFlight, now);
+        }
+    }
+
+    @Test
+    void growsWhileLatencyStaysNearTheBaseline() {
+        AdaptiveLimit limit = new AdaptiveLimit(properties, now);
+
+        for (int i = 0; i < 10; i++) {
+            window(limit, 10, limit.getLimit());
+        }
+
+        assertThat(limit.getGradient()).isEqualTo(1.0);
+        assertThat(limit.getLimit()).isGreaterThan(properties.getInitialLimit() + 5);
+    }
+
+    @Test
+    void shrinksWhileLatencyExceedsTheTolerance() {
+        properties.setInitialLimit(100);
+        AdaptiveLimit limit = new AdaptiveLimit(properties, now);
+        for (int i = 0; i < 5; i++) {
+            window(limit, 10, limit.getLimit());
+        }
+        int beforeOverload = limit.getLimit();
+
+        // Saturated: every request takes five times the baseline
+        window(limit, 50, limit.getLimit());
+        assertThat(limit.getGradient()).isEqualTo(0.5);
+        assertThat(limit.getLimit()).isLessThan(beforeOverload);
+
+        for (int i = 0; i < 30; i++) {
+            window(limit, 50, limit.getLimit());
+        }
+        assertThat(limit.getLimit()).isLessThan(beforeOverload / 4);
+    }
+
+    @Test
+    void staysPutWhileMostOfTheLimitIsUnused() {
+        AdaptiveLimit limit = new AdaptiveLimit(properties, now);
+
+        for (int i = 0; i < 10; i++) {
+            window(limit, 10, 2);
+        }
+        window(limit, 100, 2);
+
+        assertThat(limit.getLimit()).isEqualTo(properties.getInitialLimit());
+    }
+
+    @Test
+    void windowNeedsEnoughSamplesAndTime() {
+        AdaptiveLimit limit = new AdaptiveLimit(properties, now);
+
+        assertThat(limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 20, now + properties.getWindow().toNanos()))
+                .as("one sample is not a window").isFalse();
+        for (int i = 0; i < 20; i++) {
+            assertThat(limit.onSample(TimeUnit.MILLISECONDS.toNanos(10), 20, now + 1))
+                    .as("enough samples, but too soon").isFalse();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.observability.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitInterceptorTest {
+
+    static class Controller {
+
+        @ConcurrencyLimited(Priority.SHEDDABLE)
+        public void limited() {
+        }
+
+        public void unlimited() {
+        }
+    }
+
+    private final ConcurrencyLimitInterceptor interceptor;
+    private final HandlerMethod limited;
+    private final HandlerMethod unlimited;
+
+    ConcurrencyLimitInterceptorTest() throws NoSuchMethodException {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setInitialLimit(2);
+        properties.setMinLimit(1);
+        interceptor = new ConcurrencyLimitInterceptor(new ConcurrencyLimiters(properties, new SimpleMeterRegistry()),
+                Duration.ofMillis(1500));
+        Controller controller = new Controller();
+        limited = new HandlerMethod(controller, Controller.class.getMethod("limited"));
+        unlimited = new HandlerMethod(controller, Controller.class.getMethod("unlimited"));
+    }
+
+    private boolean admit(MockHttpServletRequest request, MockHttpServletResponse response) {
+        return interceptor.preHandle(request, response, limited);
+    }
+
+    @Test
+    void rejectsWith503AndRetryAfterOnceTheLimitIsReached() {
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        assertThat(admit(first, firstResponse)).isTrue();
+        assertThat(admit(new MockHttpServletRequest(), new MockHttpServletResponse())).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertThat(admit(new MockHttpServletRequest(), rejected)).isFalse();
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("2");
+
+        interceptor.afterCompletion(first, firstResponse, limited, null);
+        assertThat(admit(new MockHttpServletRequest(), new MockHttpServletResponse())).isTrue();
+    }
+
+    @Test
+    void methodsWithoutTheAnnotationAndAsyncDispatchesAreNotLimited() {
+        for (int i = 0; i < 2; i++) {
+            admit(new MockHttpServletRequest(), new MockHttpServletResponse());
+        }
+
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), unlimited)).isTrue();
+        MockHttpServletRequest dispatch = new MockHttpServletRequest();
+        dispatch.setDispatcherType(DispatcherType.ASYNC);
+        assertThat(admit(dispatch, new MockHttpServletResponse())).isTrue();
+    }
+
+    @Test
+    void asyncRequestHoldsItsPermitUntilTheResponseCompletes() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThat(admit(request, response)).isTrue();
+        assertThat(admit(new MockHttpServletRequest(), new MockHttpServletResponse())).isTrue();
+
+        request.startAsync();
+        interceptor.afterConcurrentHandlingStarted(request, response, limited);
+        interceptor.afterCompletion(request, response, limited, null);
+        assertThat(admit(new MockHttpServletRequest(), new MockHttpServletResponse()))
+                .as("the handler returned, but the response is still streaming").isFalse();
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        assertThat(admit(new MockHttpServletRequest(), new MockHttpServletResponse())).isTrue();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.observability.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Overloads endpoints of different priorities on the real clock, with short windows.
+ */
+class EndpointLimiterTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(20);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimiters limiters;
+
+    EndpointLimiterTest() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setInitialLimit(8);
+        properties.setMinLimit(1);
+        properties.setWindow(WINDOW);
+        properties.setMinWindowSamples(1);
+        limiters = new ConcurrencyLimiters(properties, meterRegistry);
+    }
+
+    private double rejected(String endpoint, String reason) {
+        return meterRegistry.get("admission.rejected").tag("endpoint", endpoint).tag("reason", reason).counter().count();
+    }
+
+    /**
+     * Fill the endpoint up to its limit, have one more request rejected, and close a window, which
+     * leaves it congested for the next two windows
+     */
+    private static void overload(EndpointLimiter limiter) throws InterruptedException {
+        Thread.sleep(WINDOW.toMillis() + 5);
+        List<EndpointLimiter.Permit> permits = new ArrayList<>();
+        EndpointLimiter.Permit permit;
+        while ((permit = limiter.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        for (int i = 0; i < permits.size(); i++) {
+            permits.get(i).release(i == 0);
+        }
+    }
+
+    @Test
+    void rejectsRequestsBeyondTheLimitUntilOneCompletes() {
+        EndpointLimiter limiter = limiters.forEndpoint("users", Priority.NORMAL);
+        List<EndpointLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            permits.add(limiter.tryAcquire());
+        }
+
+        assertThat(permits).doesNotContainNull();
+        assertThat(limiter.tryAcquire()).isNull();
+        assertThat(rejected("users", "limit")).isEqualTo(1);
+
+        permits.get(0).release(false);
+        permits.get(0).release(false);
+        assertThat(limiter.tryAcquire()).isNotNull();
+        assertThat(limiter.tryAcquire()).as("a permit is released only once").isNull();
+    }
+
+    @Test
+    void sheddableEndpointYieldsWhileACriticalOneIsOverloaded() throws InterruptedException {
+        EndpointLimiter critical = limiters.forEndpoint("transfer", Priority.CRITICAL);
+        EndpointLimiter sheddable = limiters.forEndpoint("export", Priority.SHEDDABLE);
+
+        for (int i = 0; i < 6 && sheddable.getEffectiveLimit() > 1; i++) {
+            overload(critical);
+            EndpointLimiter.Permit permit = sheddable.tryAcquire();
+            if (permit != null) {
+                permit.release(false);
+            }
+        }
+
+        assertThat(sheddable.getEffectiveLimit()).isEqualTo(1);
+        assertThat(critical.getEffectiveLimit()).isEqualTo(critical.getLimit());
+        EndpointLimiter.Permit only = sheddable.tryAcquire();
+        assertThat(only).isNotNull();
+        assertThat(sheddable.tryAcquire()).isNull();
+        assertThat(rejected("export", "yield")).isEqualTo(1);
+        only.release(false);
+
+        // Without pressure the share grows back a tenth per window
+        await().atMost(Duration.ofSeconds(5)).pollInterval(WINDOW).until(() -> {
+            EndpointLimiter.Permit permit = sheddable.tryAcquire();
+            if (permit != null) {
+                permit.release(false);
+            }
+            return sheddable.getEffectiveLimit() == sheddable.getLimit();
+        });
+    }
+
+    @Test
+    void overloadOfALessImportantEndpointIsNotYieldedTo() throws InterruptedException {
+        EndpointLimiter critical = limiters.forEndpoint("transfer", Priority.CRITICAL);
+        EndpointLimiter normal = limiters.forEndpoint("users", Priority.NORMAL);
+        EndpointLimiter sheddable = limiters.forEndpoint("export", Priority.SHEDDABLE);
+
+        for (int i = 0; i < 4; i++) {
+            overload(sheddable);
+            overload(normal);
+            EndpointLimiter.Permit permit = critical.tryAcquire();
+            permit.release(false);
+        }
+
+        assertThat(normal.getEffectiveLimit()).isEqualTo(normal.getLimit());
+        assertThat(critical.getEffectiveLimit()).isEqualTo(critical.getLimit());
+        assertThat(sheddable.getEffectiveLimit()).isLessThan(sheddable.getLimit());
+    }
+}
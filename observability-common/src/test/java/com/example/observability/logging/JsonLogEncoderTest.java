@@ -0,0 +1,119 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonLogEncoderTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Logger logger = new LoggerContext().getLogger("com.example.Test");
+    private final JsonLogEncoder encoder = new JsonLogEncoder();
+
+    private LoggingEvent event(String message, Map<String, String> mdc, Throwable throwable) {
+        LoggingEvent event = new LoggingEvent(Logger.class.getName(), logger, Level.INFO, message, throwable, null);
+        event.setThreadName("worker-1");
+        event.setTimeStamp(1_700_000_000_123L);
+        event.setMDCPropertyMap(mdc);
+        return event;
+    }
+
+    private JsonNode encode(LoggingEvent event) throws IOException {
+        byte[] line = encoder.encode(event);
+        assertThat(line[line.length - 1]).as("one line per event").isEqualTo((byte) '\n');
+        return OBJECT_MAPPER.readTree(line);
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        Iterator<String> iterator = node.fieldNames();
+        iterator.forEachRemaining(names::add);
+        return names;
+    }
+
+    @Test
+    void writesTheStandardFieldsThenTheMdc() throws IOException {
+        Map<String, String> mdc = new LinkedHashMap<>();
+        mdc.put("trace_id", "0af7651916cd43dd8448eb211c80319c");
+        mdc.put("span_id", "b7ad6b7169203331");
+        mdc.put("user.id", "user1");
+
+        JsonNode line = encode(event("Loaded user", mdc, null));
+
+        assertThat(fieldNames(line)).containsExactly("@timestamp", "level", "thread", "logger", "message",
+                "trace_id", "span_id", "user.id");
+        assertThat(line.get("@timestamp").asText()).isEqualTo("2023-11-14T22:13:20.123Z");
+        assertThat(line.get("level").asText()).isEqualTo("INFO");
+        assertThat(line.get("thread").asText()).isEqualTo("worker-1");
+        assertThat(line.get("logger").asText()).isEqualTo("com.example.Test");
+        assertThat(line.get("message").asText()).isEqualTo("Loaded user");
+        assertThat(line.get("user.id").asText()).isEqualTo("user1");
+    }
+
+    @Test
+    void skipsMicrometerTraceIdsOnlyWhenTheAppenderStampedItsOwn() throws IOException {
+        Map<String, String> both = new LinkedHashMap<>();
+        both.put("traceId", "micrometer");
+        both.put("spanId", "micrometer");
+        both.put("trace_id", "0af7651916cd43dd8448eb211c80319c");
+        assertThat(fieldNames(encode(event("m", both, null)))).doesNotContain("traceId", "spanId");
+
+        Map<String, String> micrometerOnly = Map.of("traceId", "micrometer");
+        assertThat(encode(event("m", micrometerOnly, null)).get("traceId").asText()).isEqualTo("micrometer");
+    }
+
+    @Test
+    void escapesEverythingJsonRequires() throws IOException {
+        String message = "quote \" backslash \\ newline \n tab \t bell \u0007 é ✓ 😀 lone \ud800 end";
+
+        JsonNode line = encode(event(message, Map.of(), null));
+
+        assertThat(line.get("message").asText())
+                .isEqualTo("quote \" backslash \\ newline \n tab \t bell \u0007 é ✓ 😀 lone ? end");
+    }
+
+    @Test
+    void addsTheStackTraceOfAnException() throws IOException {
+        JsonNode line = encode(event("failed", Map.of(), new IllegalStateException("boom")));
+
+        assertThat(line.get("stack_trace").asText())
+                .startsWith("java.lang.IllegalStateException: boom")
+                .contains("JsonLogEncoderTest");
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakIntoTheNextLine() throws IOException {
+        JsonNode longLine = encode(event("x".repeat(200_000), Map.of(), null));
+        JsonNode shortLine = encode(event("short", Map.of(), null));
+
+        assertThat(longLine.get("message").asText()).hasSize(200_000);
+        assertThat(shortLine.get("message").asText()).isEqualTo("short");
+        assertThat(new String(encoder.encode(event("short", Map.of(), null)), StandardCharsets.UTF_8))
+                .doesNotContain("xxx");
+    }
+
+    @Test
+    void timestampTextIsRefreshedWhenTheSecondChanges() throws IOException {
+        LoggingEvent first = event("m", Map.of(), null);
+        LoggingEvent second = event("m", Map.of(), null);
+        second.setTimeStamp(1_700_000_001_005L);
+
+        assertThat(encode(first).get("@timestamp").asText()).isEqualTo("2023-11-14T22:13:20.123Z");
+        assertThat(encode(second).get("@timestamp").asText()).isEqualTo("2023-11-14T22:13:21.005Z");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRateLimitFilterTest {
+
+    private final LoggerContext loggerContext = new LoggerContext();
+    private final LogRateLimitFilter filter = new LogRateLimitFilter();
+
+    LogRateLimitFilterTest() {
+        filter.setLoggers("com.example.hot, com.example.other.Hot");
+        filter.setMaxPerSecond(10);
+        loggerContext.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.DEBUG);
+    }
+
+    private FilterReply log(String loggerName, Level level) {
+        return filter.decide(null, loggerContext.getLogger(loggerName), level, "message {}", new Object[] {1}, null);
+    }
+
+    private int allowed(String loggerName, Level level, int events) {
+        int allowed = 0;
+        for (int i = 0; i < events; i++) {
+            if (log(loggerName, level) == FilterReply.NEUTRAL) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    @Test
+    void limitsEachMatchingLoggerToItsOwnBurst() {
+        assertThat(allowed("com.example.hot.Client", Level.INFO, 100)).isBetween(10, 11);
+        assertThat(allowed("com.example.hot.Server", Level.INFO, 100)).isBetween(10, 11);
+        assertThat(allowed("com.example.other.Hot", Level.DEBUG, 100)).isBetween(10, 11);
+        assertThat(filter.getSuppressedCount()).isBetween(267L, 270L);
+    }
+
+    @Test
+    void warningsAndOtherLoggersAreNeverLimited() {
+        assertThat(allowed("com.example.hot.Client", Level.INFO, 100)).isLessThan(100);
+
+        assertThat(allowed("com.example.hot.Client", Level.WARN, 100)).isEqualTo(100);
+        assertThat(allowed("com.example.hot.Client", Level.ERROR, 100)).isEqualTo(100);
+        assertThat(allowed("com.example.cold.Client", Level.INFO, 100)).isEqualTo(100);
+    }
+
+    @Test
+    void configurableLevelLimitsWarningsToo() {
+        filter.setLevel("WARN");
+
+        assertThat(allowed("com.example.hot.Client", Level.WARN, 100)).isBetween(10, 11);
+        assertThat(allowed("com.example.hot.Client", Level.ERROR, 100)).isEqualTo(100);
+    }
+
+    @Test
+    void enabledChecksAndDisabledLevelsDoNotUseTheBudget() {
+        Logger logger = loggerContext.getLogger("com.example.hot.Client");
+        logger.setLevel(Level.INFO);
+        for (int i = 0; i < 100; i++) {
+            assertThat(filter.decide(null, logger, Level.INFO, null, null, null)).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(log("com.example.hot.Client", Level.DEBUG)).isEqualTo(FilterReply.NEUTRAL);
+        }
+
+        assertThat(allowed("com.example.hot.Client", Level.INFO, 100)).isBetween(10, 11);
+    }
+
+    @Test
+    void zeroMeansNoLimit() {
+        filter.setMaxPerSecond(0);
+
+        assertThat(allowed("com.example.hot.Client", Level.INFO, 1000)).isEqualTo(1000);
+        assertThat(filter.getSuppressedCount()).isZero();
+    }
+
+    @Test
+    void deniesEventsBeforeTheyReachAppenders() {
+        loggerContext.addTurboFilter(filter);
+        Logger logger = loggerContext.getLogger("com.example.hot.Client");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+
+        for (int i = 0; i < 100; i++) {
+            logger.info("event {}", i);
+        }
+
+        assertThat(appender.list).hasSizeBetween(10, 11);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.observability.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class TraceContextAsyncAppenderTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final String SPAN_ID = "b7ad6b7169203331";
+
+    private final LoggerContext loggerContext = new LoggerContext();
+    private final Logger logger = loggerContext.getLogger("com.example.Test");
+    private final TraceContextAsyncAppender appender = new TraceContextAsyncAppender();
+
+    private void start(AppenderBase<ILoggingEvent> target, int queueSize) {
+        // Events copy the MDC through the context's adapter, which a bare context does not have
+        loggerContext.setMDCAdapter(MDC.getMDCAdapter());
+        target.setContext(loggerContext);
+        target.start();
+        appender.setContext(loggerContext);
+        appender.setQueueSize(queueSize);
+        appender.setNeverBlock(true);
+        appender.addAppender(target);
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.DEBUG);
+        logger.setAdditive(false);
+    }
+
+    @AfterEach
+    void stop() {
+        appender.stop();
+        MDC.clear();
+    }
+
+    @Test
+    void stampsTheCurrentSpanOnEachEvent() {
+        ListAppender<ILoggingEvent> target = new ListAppender<>();
+        start(target, 256);
+        Span span = Span.wrap(SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault()));
+        MDC.put("user.id", "user1");
+
+        try (Scope ignored = span.makeCurrent()) {
+            logger.info("inside");
+        }
+        logger.info("outside");
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> target.list.size() == 2);
+        ILoggingEvent inside = target.list.get(0);
+        assertThat(inside.getMDCPropertyMap())
+                .containsEntry(TraceContextAsyncAppender.TRACE_ID, TRACE_ID)
+                .containsEntry(TraceContextAsyncAppender.SPAN_ID, SPAN_ID)
+                .containsEntry("user.id", "user1");
+        assertThat(target.list.get(1).getMDCPropertyMap())
+                .doesNotContainKey(TraceContextAsyncAppender.TRACE_ID)
+                .containsEntry("user.id", "user1");
+        assertThat(inside.getThreadName()).isEqualTo(Thread.currentThread().getName());
+    }
+
+    @Test
+    void countsWhatAFullQueueDrops() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingAppender target = new BlockingAppender(release);
+        start(target, 16);
+
+        for (int i = 0; i < 100; i++) {
+            logger.info("event {}", i);
+        }
+        // Warnings are only shed once the queue is completely full
+        logger.warn("warning");
+        long discarded = appender.getDiscardedCount();
+        release.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> target.appended == 101 - discarded);
+        assertThat(discarded).isGreaterThan(0).isLessThan(101);
+    }
+
+    private static final class BlockingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final CountDownLatch release;
+        private volatile int appended;
+
+        private BlockingAppender(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            appended++;
+        }
+    }
+}
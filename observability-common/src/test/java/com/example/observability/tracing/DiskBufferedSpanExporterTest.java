@@ -0,0 +1,215 @@
+package com.example.observability.tracing;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Runs the exporter against a fake OTLP/HTTP receiver whose availability the tests control.
+ */
+class DiskBufferedSpanExporterTest {
+
+    @TempDir
+    Path bufferDirectory;
+
+    private HttpServer receiver;
+    private final AtomicInteger status = new AtomicInteger(503);
+    private final List<byte[]> accepted = new CopyOnWriteArrayList<>();
+    private final AtomicInteger refused = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private String endpoint;
+    private DiskBufferedSpanExporter exporter;
+
+    @BeforeEach
+    void startReceiver() throws IOException {
+        receiver = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        receiver.createContext("/v1/traces", exchange -> {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            int code = status.get();
+            if (code == 200) {
+                accepted.add(body);
+            } else {
+                refused.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        receiver.start();
+
+        endpoint = "http://127.0.0.1:" + receiver.getAddress().getPort() + "/v1/traces";
+        exporter = newExporter(meterRegistry);
+    }
+
+    private DiskBufferedSpanExporter newExporter(SimpleMeterRegistry registry) throws IOException {
+        SpanExporter otlp = OtlpHttpSpanExporter.builder()
+                .setEndpoint(endpoint)
+                .setTimeout(Duration.ofSeconds(2))
+                .setRetryPolicy(null)
+                .build();
+        return new DiskBufferedSpanExporter(otlp,
+                new SpanSegmentLog(bufferDirectory, 64 * 1024, 1024 * 1024),
+                endpoint, Duration.ofSeconds(2), Duration.ofMillis(50), registry);
+    }
+
+    @AfterEach
+    void stop() {
+        exporter.shutdown().join(5, TimeUnit.SECONDS);
+        receiver.stop(0);
+    }
+
+    @Test
+    void spillsWhileCollectorIsDownAndReplaysWhenItRecovers() {
+        for (int i = 0; i < 20; i++) {
+            assertThat(exporter.export(spans(10)).join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        }
+        assertThat(accepted).isEmpty();
+        assertThat(batches("spilled")).isEqualTo(20);
+
+        status.set(200);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> accepted.size() == 20);
+        assertThat(batches("replayed")).isEqualTo(20);
+        assertThat(meterRegistry.get("tracing.buffer.pending").gauge().value()).isZero();
+    }
+
+    @Test
+    void staysOffTheNetworkWhileTheBufferHoldsBatches() {
+        exporter.export(spans(5)).join(5, TimeUnit.SECONDS);
+        int attempts = refused.get();
+
+        // The collector is still down, but later batches queue behind the buffered one on disk
+        for (int i = 0; i < 10; i++) {
+            exporter.export(spans(5)).join(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(batches("spilled")).isEqualTo(11);
+        // Only replay attempts reach the receiver, at most one per replay interval
+        assertThat(refused.get() - attempts).isLessThan(10);
+    }
+
+    @Test
+    void deliversEveryBatchExactlyOnceWhileCollectorFlaps() throws InterruptedException {
+        Thread flapper = new Thread(() -> {
+            try {
+                for (int i = 0; i < 40; i++) {
+                    status.set(i % 2 == 0 ? 200 : 503);
+                    Thread.sleep(15);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        flapper.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            assertThat(exporter.export(spans(10)).join(5, TimeUnit.SECONDS).isSuccess()).isTrue();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        flapper.join();
+        status.set(200);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> accepted.size() == 100);
+        assertThat(accepted).hasSize(100);
+        // Spilling keeps the batch processor draining at disk speed, never waiting on a dead collector
+        assertThat(elapsedMillis).isLessThan(5_000);
+    }
+
+    @Test
+    void replaysBatchesBufferedBeforeARestart() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            exporter.export(spans(10)).join(5, TimeUnit.SECONDS);
+        }
+        exporter.shutdown().join(5, TimeUnit.SECONDS);
+
+        SimpleMeterRegistry restartedRegistry = new SimpleMeterRegistry();
+        exporter = newExporter(restartedRegistry);
+        assertThat(restartedRegistry.get("tracing.buffer.pending").gauge().value()).isPositive();
+        status.set(200);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> accepted.size() == 5);
+        assertThat(batches(restartedRegistry, "replayed")).isEqualTo(5);
+    }
+
+    @Test
+    void batchTheCollectorRejectsIsDiscardedInsteadOfBlockingTheBuffer() {
+        exporter.export(spans(10)).join(5, TimeUnit.SECONDS);
+        status.set(400);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> batches("rejected") == 1);
+        assertThat(meterRegistry.get("tracing.buffer.pending").gauge().value()).isZero();
+
+        // With the buffer empty again, new batches go straight to the collector
+        status.set(200);
+        exporter.export(spans(10)).join(5, TimeUnit.SECONDS);
+        assertThat(accepted).hasSize(1);
+        assertThat(batches("spilled")).isEqualTo(1);
+    }
+
+    private double batches(String outcome) {
+        return batches(meterRegistry, outcome);
+    }
+
+    private static double batches(SimpleMeterRegistry meterRegistry, String outcome) {
+        return meterRegistry.get("tracing.buffer.batches").tag("outcome", outcome).counter().count();
+    }
+
+    private static List<SpanData> spans(int count) {
+        List<SpanData> ended = new ArrayList<>(count);
+        SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(new SpanProcessor() {
+                    @Override
+                    public void onStart(Context parentContext, ReadWriteSpan span) {
+                    }
+
+                    @Override
+                    public boolean isStartRequired() {
+                        return false;
+                    }
+
+                    @Override
+                    public void onEnd(ReadableSpan span) {
+                        ended.add(span.toSpanData());
+                    }
+
+                    @Override
+                    public boolean isEndRequired() {
+                        return true;
+                    }
+                })
+                .build();
+        for (int i = 0; i < count; i++) {
+            provider.get("test").spanBuilder("span-" + i).startSpan().end();
+        }
+        provider.close();
+        return ended;
+    }
+}
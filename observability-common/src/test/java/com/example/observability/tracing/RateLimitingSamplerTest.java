@@ -0,0 +1,120 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimitingSamplerTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private static SamplingDecision decide(Sampler sampler) {
+        return decide(sampler, "span");
+    }
+
+    private static SamplingDecision decide(Sampler sampler, String spanName) {
+        return sampler.shouldSample(Context.root(), TRACE_ID, spanName, SpanKind.SERVER, Attributes.empty(), List.of())
+                .getDecision();
+    }
+
+    /**
+     * Spans earned at {@code perSecond} since {@code startNanos}
+     */
+    private static long earnedSince(long startNanos, double perSecond) {
+        return (long) Math.ceil((System.nanoTime() - startNanos) / 1e9 * perSecond);
+    }
+
+    private static int sampled(Sampler sampler, int spans) {
+        int sampled = 0;
+        for (int i = 0; i < spans; i++) {
+            if (decide(sampler) == SamplingDecision.RECORD_AND_SAMPLE) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    void admitsABurstOfOneSecondsWorthThenDrops() {
+        long start = System.nanoTime();
+        Sampler sampler = new RateLimitingSampler(Sampler.alwaysOn(), 100);
+
+        int sampled = sampled(sampler, 1000);
+
+        // The limit, plus at most the spans earned while the burst ran
+        assertThat(sampled).isBetween(100, 100 + (int) earnedSince(start, 100));
+    }
+
+    @Test
+    void admitsMoreAsTimePasses() throws InterruptedException {
+        Sampler sampler = new RateLimitingSampler(Sampler.alwaysOn(), 100);
+        sampled(sampler, 1000);
+        long drained = System.nanoTime();
+
+        Thread.sleep(200);
+
+        int sampled = sampled(sampler, 1000);
+        assertThat(sampled).isBetween(19, (int) earnedSince(drained, 100) + 1);
+    }
+
+    @Test
+    void spansTheDelegateDropsDoNotUseTheBudget() {
+        Sampler delegate = new RuleBasedSampler(Sampler.alwaysOn()).addRule("unsampled", null, Sampler.alwaysOff());
+        Sampler sampler = new RateLimitingSampler(delegate, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(decide(sampler, "unsampled")).isEqualTo(SamplingDecision.DROP);
+        }
+        assertThat(decide(sampler, "sampled")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+        assertThat(decide(sampler, "sampled")).isEqualTo(SamplingDecision.DROP);
+    }
+
+    @Test
+    void concurrentCallersShareOneLimit() throws Exception {
+        long start = System.nanoTime();
+        Sampler sampler = new RateLimitingSampler(Sampler.alwaysOn(), 200);
+        int threads = 4;
+        AtomicInteger sampled = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    go.await();
+                    sampled.addAndGet(sampled(sampler, 1000));
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(sampled.get()).isBetween(200, 200 + (int) earnedSince(start, 200));
+    }
+
+    @Test
+    void rejectsANonPositiveLimit() {
+        assertThatThrownBy(() -> new RateLimitingSampler(Sampler.alwaysOn(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
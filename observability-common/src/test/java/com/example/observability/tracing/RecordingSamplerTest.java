@@ -0,0 +1,58 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordingSamplerTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final String PARENT_SPAN_ID = "b7ad6b7169203331";
+
+    private static final Context LOCAL_PARENT = Context.root().with(Span.wrap(SpanContext.create(
+            TRACE_ID, PARENT_SPAN_ID, TraceFlags.getDefault(), TraceState.getDefault())));
+    private static final Context REMOTE_PARENT = Context.root().with(Span.wrap(SpanContext.createFromRemoteParent(
+            TRACE_ID, PARENT_SPAN_ID, TraceFlags.getDefault(), TraceState.getDefault())));
+
+    private static SamplingDecision decide(Sampler sampler, Context parent) {
+        return sampler.shouldSample(parent, TRACE_ID, "span", SpanKind.INTERNAL, Attributes.empty(), List.of())
+                .getDecision();
+    }
+
+    @Test
+    void recordsEveryDroppedSpan() {
+        Sampler sampler = new RecordingSampler(Sampler.alwaysOff(), false);
+
+        assertThat(decide(sampler, Context.root())).isEqualTo(SamplingDecision.RECORD_ONLY);
+        assertThat(decide(sampler, REMOTE_PARENT)).isEqualTo(SamplingDecision.RECORD_ONLY);
+        assertThat(decide(sampler, LOCAL_PARENT)).isEqualTo(SamplingDecision.RECORD_ONLY);
+    }
+
+    @Test
+    void recordsOnlyDroppedLocalRootsWhenLimitedToThem() {
+        Sampler sampler = new RecordingSampler(Sampler.alwaysOff(), true);
+
+        assertThat(decide(sampler, Context.root())).isEqualTo(SamplingDecision.RECORD_ONLY);
+        assertThat(decide(sampler, REMOTE_PARENT)).isEqualTo(SamplingDecision.RECORD_ONLY);
+        assertThat(decide(sampler, LOCAL_PARENT)).isEqualTo(SamplingDecision.DROP);
+    }
+
+    @Test
+    void keepsTheDelegatesSampledDecisions() {
+        Sampler sampler = new RecordingSampler(Sampler.alwaysOn(), true);
+
+        assertThat(decide(sampler, Context.root())).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+        assertThat(decide(sampler, LOCAL_PARENT)).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+}
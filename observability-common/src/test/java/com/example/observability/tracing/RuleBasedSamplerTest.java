@@ -0,0 +1,70 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RuleBasedSamplerTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private static SamplingDecision decide(Sampler sampler, String spanName, String requestPath) {
+        Context parent = requestPath != null
+                ? Context.root().with(SamplingContextFilter.REQUEST_PATH, requestPath)
+                : Context.root();
+        return sampler.shouldSample(parent, TRACE_ID, spanName, SpanKind.SERVER, Attributes.empty(), List.of())
+                .getDecision();
+    }
+
+    @Test
+    void firstMatchingRuleDecides() {
+        Sampler sampler = new RuleBasedSampler(Sampler.alwaysOn())
+                .addRule("GET /actuator/.*", null, Sampler.alwaysOff())
+                .addRule("GET /actuator/health", null, Sampler.alwaysOn());
+
+        assertThat(decide(sampler, "GET /actuator/health", null)).isEqualTo(SamplingDecision.DROP);
+        assertThat(decide(sampler, "GET /api/users", null)).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+
+    @Test
+    void spanNamePatternMustMatchTheWholeName() {
+        Sampler sampler = new RuleBasedSampler(Sampler.alwaysOn())
+                .addRule("GET /api/users", null, Sampler.alwaysOff());
+
+        assertThat(decide(sampler, "GET /api/users", null)).isEqualTo(SamplingDecision.DROP);
+        assertThat(decide(sampler, "GET /api/users/{id}", null)).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+
+    @Test
+    void pathPatternMatchesTheRequestPathFromTheContext() {
+        Sampler sampler = new RuleBasedSampler(Sampler.alwaysOn())
+                .addRule(null, "/api/users/[^/]+/accounts", Sampler.alwaysOff());
+
+        assertThat(decide(sampler, "GET", "/api/users/user1/accounts")).isEqualTo(SamplingDecision.DROP);
+        assertThat(decide(sampler, "GET", "/api/users/user1")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+        // Spans outside a request have no path and only span name rules apply
+        assertThat(decide(sampler, "GET", null)).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+
+    @Test
+    void unmatchedSpansGoToTheFallback() {
+        Sampler sampler = new RuleBasedSampler(Sampler.alwaysOff())
+                .addRule("GET /api/users", null, Sampler.alwaysOn());
+
+        assertThat(decide(sampler, "GET /api/accounts", "/api/accounts")).isEqualTo(SamplingDecision.DROP);
+    }
+
+    @Test
+    void ruleNeedsAPattern() {
+        assertThatThrownBy(() -> new RuleBasedSampler(Sampler.alwaysOn()).addRule(null, null, Sampler.alwaysOff()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
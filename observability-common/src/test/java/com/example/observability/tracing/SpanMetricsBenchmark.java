@@ -0,0 +1,129 @@
+package com.example.observability.tracing;
+
+import com.sun.management.ThreadMXBean;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of span metrics on unsampled traffic, run by {@code scripts/span-metrics-benchmark.sh}.
+ * <p>
+ * Every request is a server span with {@code steps} child spans, none of them sampled for export.
+ * Compares the head sampler alone, where unsampled spans are dropped, with span metrics over
+ * local roots and over all spans, which record spans the sampler drops. Then measures the status
+ * read that {@link SpanMetricsProcessor} does per recorded span, a {@code toSpanData()} view of
+ * an ended span, on its own.
+ * <pre>
+ * SpanMetricsBenchmark seconds steps
+ * </pre>
+ */
+public final class SpanMetricsBenchmark {
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile Object sink;
+
+    private SpanMetricsBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int seconds = Integer.parseInt(args[0]);
+        int steps = Integer.parseInt(args[1]);
+
+        for (String mode : new String[] {"DROPPED", "LOCAL_ROOTS", "ALL"}) {
+            SdkTracerProvider tracerProvider = tracerProvider(mode);
+            Tracer tracer = tracerProvider.get("benchmark");
+            run(tracer, steps, seconds);
+            long allocated = THREADS.getCurrentThreadAllocatedBytes();
+            long[] result = run(tracer, steps, seconds);
+            allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+            System.out.printf("%-12s %,8d ns/request  %,6d bytes/request  (%,d requests of 1 + %d spans)%n",
+                    mode, result[1] / result[0], allocated / result[0], result[0], steps);
+            tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+
+        SdkTracerProvider tracerProvider = tracerProvider("ALL");
+        Tracer tracer = tracerProvider.get("benchmark");
+        ReadableSpan[] spans = new ReadableSpan[10_000];
+        for (int i = 0; i < spans.length; i++) {
+            Span span = tracer.spanBuilder("GET /api/users").setSpanKind(SpanKind.SERVER)
+                    .setAttribute("http.request.method", "GET")
+                    .setAttribute("url.path", "/api/users")
+                    .setAttribute("http.response.status_code", 200L)
+                    .startSpan();
+            span.addEvent("handled");
+            span.end();
+            spans[i] = (ReadableSpan) span;
+        }
+        for (int i = 0; i < 3; i++) {
+            readStatus(spans, seconds);
+        }
+        long allocated = THREADS.getCurrentThreadAllocatedBytes();
+        long[] result = readStatus(spans, seconds);
+        allocated = THREADS.getCurrentThreadAllocatedBytes() - allocated;
+        System.out.printf("%-12s %,8d ns/span     %,6d bytes/span%n",
+                "status read", result[1] / result[0], allocated / result[0]);
+        tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+    }
+
+    private static SdkTracerProvider tracerProvider(String mode) {
+        Sampler headSampler = Sampler.parentBased(Sampler.alwaysOff());
+        if (mode.equals("DROPPED")) {
+            return SdkTracerProvider.builder().setSampler(headSampler).build();
+        }
+        SpanMetricsProcessor.Scope scope = SpanMetricsProcessor.Scope.valueOf(mode);
+        return SdkTracerProvider.builder()
+                .setSampler(new RecordingSampler(headSampler, scope == SpanMetricsProcessor.Scope.LOCAL_ROOTS))
+                .addSpanProcessor(new SpanMetricsProcessor(500, scope))
+                .build();
+    }
+
+    /**
+     * @return the number of requests and the nanoseconds they took
+     */
+    private static long[] run(Tracer tracer, int steps, int seconds) {
+        long requests = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long now;
+        do {
+            for (int i = 0; i < 1000; i++) {
+                Span root = tracer.spanBuilder("GET /api/users").setSpanKind(SpanKind.SERVER)
+                        .setAttribute("http.request.method", "GET")
+                        .setAttribute("url.path", "/api/users")
+                        .startSpan();
+                Context parent = Context.root().with(root);
+                for (int step = 0; step < steps; step++) {
+                    tracer.spanBuilder("step").setParent(parent).startSpan().end();
+                }
+                root.setAttribute("http.response.status_code", 200L);
+                root.end();
+            }
+            requests += 1000;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[] {requests, now - start};
+    }
+
+    private static long[] readStatus(ReadableSpan[] spans, int seconds) {
+        long reads = 0;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long now;
+        do {
+            for (ReadableSpan span : spans) {
+                sink = span.toSpanData().getStatus().getStatusCode();
+            }
+            reads += spans.length;
+            now = System.nanoTime();
+        } while (now < end);
+        return new long[] {reads, now - start};
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.observability.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.prometheus.metrics.model.snapshots.CounterSnapshot;
+import io.prometheus.metrics.model.snapshots.HistogramSnapshot;
+import io.prometheus.metrics.model.snapshots.MetricSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the processor through a real tracer provider, set up as the services do, and reads the
+ * snapshots the Prometheus endpoint would scrape.
+ */
+class SpanMetricsProcessorTest {
+
+    private SdkTracerProvider tracerProvider;
+    private Tracer tracer;
+    private SpanMetricsProcessor processor;
+
+    private void start(Sampler headSampler, SpanMetricsProcessor.Scope scope, int maxSpanNames) {
+        processor = new SpanMetricsProcessor(maxSpanNames, scope);
+        tracerProvider = SdkTracerProvider.builder()
+                .setSampler(new RecordingSampler(headSampler, scope == SpanMetricsProcessor.Scope.LOCAL_ROOTS))
+                .addSpanProcessor(processor)
+                .build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @AfterEach
+    void stop() {
+        if (tracerProvider != null) {
+            tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * A request: a server span with three child steps, the second of which fails if requested.
+     */
+    private Span request(String name, Context parent, boolean failed) {
+        Span root = tracer.spanBuilder(name).setParent(parent).setSpanKind(SpanKind.SERVER).startSpan();
+        for (int i = 0; i < 3; i++) {
+            Span step = tracer.spanBuilder("step").setParent(Context.root().with(root)).startSpan();
+            step.end();
+        }
+        if (failed) {
+            root.setStatus(StatusCode.ERROR);
+        }
+        root.end();
+        return root;
+    }
+
+    private long calls(String spanName, StatusCode status) {
+        return counter().getDataPoints().stream()
+                .filter(point -> point.getLabels().get("span_name").equals(spanName))
+                .filter(point -> point.getLabels().get("status_code").equals(status.name()))
+                .mapToLong(point -> (long) point.getValue())
+                .sum();
+    }
+
+    private Set<String> spanNames() {
+        Set<String> names = new HashSet<>();
+        counter().getDataPoints().forEach(point -> names.add(point.getLabels().get("span_name")));
+        return names;
+    }
+
+    private CounterSnapshot counter() {
+        return (CounterSnapshot) snapshot("span_calls");
+    }
+
+    private MetricSnapshot snapshot(String name) {
+        return processor.collect().stream()
+                .filter(metric -> metric.getMetadata().getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    void countsEveryUnsampledRequestByItsServerSpanOnly() {
+        start(Sampler.alwaysOff(), SpanMetricsProcessor.Scope.LOCAL_ROOTS, 100);
+
+        for (int i = 0; i < 100; i++) {
+            request("GET /api/users", Context.root(), i % 10 == 0);
+        }
+
+        assertThat(calls("GET /api/users", StatusCode.UNSET)).isEqualTo(90);
+        assertThat(calls("GET /api/users", StatusCode.ERROR)).isEqualTo(10);
+        assertThat(spanNames()).containsExactly("GET /api/users");
+    }
+
+    @Test
+    void stepsOfAnUnsampledRequestAreNotRecorded() {
+        start(Sampler.parentBased(Sampler.alwaysOff()), SpanMetricsProcessor.Scope.LOCAL_ROOTS, 100);
+        Span root = tracer.spanBuilder("GET /api/users").setSpanKind(SpanKind.SERVER).startSpan();
+        Span step = tracer.spanBuilder("step").setParent(Context.root().with(root)).startSpan();
+
+        assertThat(root.isRecording()).isTrue();
+        assertThat(root.getSpanContext().isSampled()).isFalse();
+        assertThat(step.isRecording()).isFalse();
+        step.end();
+        root.end();
+    }
+
+    @Test
+    void serverSpanWithARemoteParentIsALocalRoot() {
+        start(Sampler.parentBased(Sampler.alwaysOn()), SpanMetricsProcessor.Scope.LOCAL_ROOTS, 100);
+        Context remote = Context.root().with(Span.wrap(SpanContext.createFromRemoteParent(
+                "0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", TraceFlags.getDefault(),
+                TraceState.getDefault())));
+
+        request("GET /api/accounts", remote, false);
+
+        assertThat(calls("GET /api/accounts", StatusCode.UNSET)).isEqualTo(1);
+        assertThat(spanNames()).containsExactly("GET /api/accounts");
+    }
+
+    @Test
+    void allScopeCountsEverySpan() {
+        start(Sampler.alwaysOff(), SpanMetricsProcessor.Scope.ALL, 100);
+
+        for (int i = 0; i < 10; i++) {
+            request("GET /api/users", Context.root(), false);
+        }
+
+        assertThat(calls("GET /api/users", StatusCode.UNSET)).isEqualTo(10);
+        assertThat(calls("step", StatusCode.UNSET)).isEqualTo(30);
+    }
+
+    @Test
+    void exemplarsComeFromSampledSpansOnly() {
+        start(Sampler.alwaysOff(), SpanMetricsProcessor.Scope.LOCAL_ROOTS, 100);
+        request("GET /api/users", Context.root(), false);
+
+        HistogramSnapshot durations = (HistogramSnapshot) snapshot("span_duration_seconds");
+        assertThat(durations.getDataPoints()).hasSize(1);
+        assertThat(durations.getDataPoints().get(0).getCount()).isEqualTo(1);
+        assertThat(durations.getDataPoints().get(0).getExemplars().size()).isZero();
+
+        tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+        start(Sampler.alwaysOn(), SpanMetricsProcessor.Scope.LOCAL_ROOTS, 100);
+        Span sampled = request("GET /api/users", Context.root(), false);
+
+        durations = (HistogramSnapshot) snapshot("span_duration_seconds");
+        assertThat(durations.getDataPoints().get(0).getExemplars().get(0).getLabels().get("span_id"))
+                .isEqualTo(sampled.getSpanContext().getSpanId());
+    }
+
+    @Test
+    void spanNamesBeyondTheLimitAreCountedAsOtherUnderConcurrentFirstUse() throws Exception {
+        int maxSpanNames = 8;
+        int threads = 4;
+        int namesPerThread = 50;
+        start(Sampler.alwaysOn(), SpanMetricsProcessor.Scope.ALL, maxSpanNames);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < namesPerThread; i++) {
+                        tracer.spanBuilder("span-" + thread + "-" + i).startSpan().end();
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> names = spanNames();
+        assertThat(names).contains("other").hasSize(maxSpanNames + 1);
+        long total = counter().getDataPoints().stream().mapToLong(point -> (long) point.getValue()).sum();
+        assertThat(total).isEqualTo(threads * namesPerThread);
+        assertThat(calls("other", StatusCode.UNSET)).isEqualTo(threads * namesPerThread - maxSpanNames);
+    }
+
+    @Test
+    void bucketsAreLogLinearFromSixteenMicroseconds() {
+        assertThat(SpanMetricsProcessor.bucketIndex(0)).isZero();
+        assertThat(SpanMetricsProcessor.bucketIndex((1L << 14) - 1)).isZero();
+        assertThat(SpanMetricsProcessor.bucketIndex(1L << 14)).isEqualTo(1);
+        assertThat(SpanMetricsProcessor.bucketIndex((1L << 14) + (1L << 13))).isEqualTo(2);
+        assertThat(SpanMetricsProcessor.bucketIndex(1L << 15)).isEqualTo(3);
+        assertThat(SpanMetricsProcessor.bucketIndex(Long.MAX_VALUE))
+                .isEqualTo(SpanMetricsProcessor.bucketIndex(1L << 35));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.observability.tracing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpanSegmentLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictsOldestSegmentsOnceTheDiskBudgetIsReached() throws IOException {
+        // Four records of 8 + 92 bytes per 400-byte segment, two segments allowed: twelve records
+        // fill three segments, so the first one goes
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 800);
+        for (int i = 0; i < 12; i++) {
+            assertThat(log.append(payload(i))).isTrue();
+        }
+
+        assertThat(log.evictedRecords()).isEqualTo(4);
+        assertThat(text(log.peek())).startsWith("record-4 ");
+    }
+
+    @Test
+    void replaysUnconsumedRecordsAfterReopening() throws IOException {
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 4000);
+        for (int i = 0; i < 6; i++) {
+            log.append(payload(i));
+        }
+        log.commit(log.peek());
+        log.commit(log.peek());
+        log.close();
+
+        SpanSegmentLog reopened = new SpanSegmentLog(directory, 400, 4000);
+
+        // Only whole consumed segments are gone, so the rest of the first segment is delivered again
+        assertThat(text(reopened.peek())).startsWith("record-0 ");
+        int records = 0;
+        SpanSegmentLog.Record record;
+        while ((record = reopened.peek()) != null) {
+            reopened.commit(record);
+            records++;
+        }
+        assertThat(records).isEqualTo(6);
+        assertThat(reopened.isEmpty()).isTrue();
+    }
+
+    @Test
+    void refusesRecordsLargerThanASegment() throws IOException {
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 800);
+
+        assertThat(log.append(new byte[400])).isFalse();
+        assertThat(log.isEmpty()).isTrue();
+    }
+
+    @Test
+    void replayStopsAtACorruptRecordAndAppendsOverIt() throws IOException {
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 4000);
+        for (int i = 0; i < 3; i++) {
+            log.append(payload(i));
+        }
+        log.close();
+        // Flip a payload byte of the second record, so its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(100 + 8 + 20);
+            file.write('!');
+        }
+
+        SpanSegmentLog reopened = new SpanSegmentLog(directory, 400, 4000);
+        reopened.append(payload(9));
+
+        assertThat(drain(reopened)).containsExactly("record-0", "record-9");
+    }
+
+    @Test
+    void replayStopsAtATornWrite() throws IOException {
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 4000);
+        for (int i = 0; i < 3; i++) {
+            log.append(payload(i));
+        }
+        log.close();
+        // A crash between writing the third payload and its length leaves the length at zero
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(200);
+            file.writeInt(0);
+        }
+
+        assertThat(drain(new SpanSegmentLog(directory, 400, 4000))).containsExactly("record-0", "record-1");
+    }
+
+    @Test
+    void replayStopsWhereATruncatedSegmentEnds() throws IOException {
+        SpanSegmentLog log = new SpanSegmentLog(directory, 400, 4000);
+        for (int i = 0; i < 3; i++) {
+            log.append(payload(i));
+        }
+        log.close();
+        // The file ends halfway through the second record; reopening maps the rest as zeros
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.setLength(150);
+        }
+
+        assertThat(drain(new SpanSegmentLog(directory, 400, 4000))).containsExactly("record-0");
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+
+    private static List<String> drain(SpanSegmentLog log) throws IOException {
+        List<String> records = new ArrayList<>();
+        SpanSegmentLog.Record record;
+        while ((record = log.peek()) != null) {
+            records.add(text(record).trim());
+            log.commit(record);
+        }
+        return records;
+    }
+
+    private static byte[] payload(int i) {
+        return String.format("%-92s", "record-" + i + " ").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String text(SpanSegmentLog.Record record) {
+        return new String(record.payload(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.observability.tracing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the processor through a real tracer provider and counts what reaches the export side.
+ */
+class TailSamplingSpanProcessorTest {
+
+    private final List<ReadableSpan> exported = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SdkTracerProvider tracerProvider;
+    private Tracer tracer;
+
+    private void start(double headRatio, int maxBufferedSpans, int maxSpansPerTrace) {
+        start(headRatio, maxBufferedSpans, maxSpansPerTrace, 1000);
+    }
+
+    private void start(double headRatio, int maxBufferedSpans, int maxSpansPerTrace, int maxDecidedTraces) {
+        SpanProcessor collector = new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                exported.add(span);
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+        };
+        TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(collector, Duration.ofMillis(500),
+                Set.of("audit"), true, maxBufferedSpans, maxSpansPerTrace, maxDecidedTraces, Duration.ofSeconds(30), meterRegistry);
+        tracerProvider = SdkTracerProvider.builder()
+                .setSampler(new RecordingSampler(Sampler.traceIdRatioBased(headRatio), false))
+                .addSpanProcessor(processor)
+                .build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @AfterEach
+    void stop() {
+        if (tracerProvider != null) {
+            tracerProvider.shutdown().join(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private double spans(String outcome) {
+        return meterRegistry.counter("tracing.tail.spans", "outcome", outcome).count();
+    }
+
+    @Test
+    void exportsHeadSampledErrorAndSlowTracesOnly() {
+        start(0.1, 100_000, 64);
+        Random random = new Random(7);
+        int traces = 2000;
+        int spansPerTrace = 5;
+        int expectedTraces = 0;
+        for (int i = 0; i < traces; i++) {
+            boolean failed = random.nextInt(100) < 2;
+            boolean slow = random.nextInt(100) < 2;
+            long startNanos = TimeUnit.SECONDS.toNanos(1_700_000_000L + i);
+            Span root = tracer.spanBuilder("request").setStartTimestamp(startNanos, TimeUnit.NANOSECONDS).startSpan();
+            for (int child = 1; child < spansPerTrace; child++) {
+                Span span = tracer.spanBuilder("step").setParent(Context.current().with(root)).startSpan();
+                if (failed && child == 2) {
+                    span.setStatus(StatusCode.ERROR);
+                }
+                span.end();
+            }
+            root.end(startNanos + TimeUnit.MILLISECONDS.toNanos(slow ? 800 : 20), TimeUnit.NANOSECONDS);
+            if (failed || slow || root.getSpanContext().isSampled()) {
+                expectedTraces++;
+            }
+        }
+
+        assertThat(exported).hasSize(expectedTraces * spansPerTrace);
+        // A tenth from head sampling plus about four percent kept for errors and latency
+        assertThat(exported.size()).isBetween(traces * spansPerTrace / 10, traces * spansPerTrace / 5);
+        assertThat(spans("kept")).isEqualTo(exported.size());
+        assertThat(spans("dropped")).isEqualTo(traces * spansPerTrace - exported.size());
+        assertThat(meterRegistry.get("tracing.tail.buffered.spans").gauge().value()).isZero();
+    }
+
+    @Test
+    void keepsTracesContainingAConfiguredSpanName() {
+        start(0.0, 1000, 64);
+        Span root = tracer.spanBuilder("request").startSpan();
+        tracer.spanBuilder("audit").setParent(Context.current().with(root)).startSpan().end();
+        root.end();
+        tracer.spanBuilder("request").startSpan().end();
+
+        assertThat(exported).extracting(ReadableSpan::getName).containsExactly("audit", "request");
+    }
+
+    @Test
+    void spanEndingAfterItsRootFollowsTheDecision() {
+        start(0.0, 1000, 64);
+        Span kept = tracer.spanBuilder("request").startSpan();
+        Span keptLate = tracer.spanBuilder("hedge").setParent(Context.current().with(kept)).startSpan();
+        Span dropped = tracer.spanBuilder("request").startSpan();
+        Span droppedLate = tracer.spanBuilder("hedge").setParent(Context.current().with(dropped)).startSpan();
+        kept.setStatus(StatusCode.ERROR);
+        kept.end();
+        dropped.end();
+
+        keptLate.end();
+        droppedLate.end();
+
+        assertThat(exported).extracting(span -> span.getSpanContext().getTraceId())
+                .containsOnly(kept.getSpanContext().getTraceId())
+                .hasSize(2);
+    }
+
+    @Test
+    void oversizedTraceIsTruncatedButKeepsItsRoot() {
+        start(1.0, 1000, 3);
+        Span root = tracer.spanBuilder("request").startSpan();
+        for (int i = 0; i < 10; i++) {
+            tracer.spanBuilder("step").setParent(Context.current().with(root)).startSpan().end();
+        }
+        root.end();
+
+        assertThat(exported).hasSize(4);
+        assertThat(exported).extracting(ReadableSpan::getName).contains("request");
+        assertThat(spans("truncated")).isEqualTo(7);
+    }
+
+    @Test
+    void fullBufferEvictsTheOldestTraceOnWhatItHasSoFar() {
+        start(0.0, 4, 64);
+        Span failing = tracer.spanBuilder("request").startSpan();
+        Span error = tracer.spanBuilder("step").setParent(Context.current().with(failing)).startSpan();
+        error.setStatus(StatusCode.ERROR);
+        error.end();
+        Span quiet = tracer.spanBuilder("request").startSpan();
+        for (int i = 0; i < 4; i++) {
+            tracer.spanBuilder("step").setParent(Context.current().with(quiet)).startSpan().end();
+        }
+
+        assertThat(exported).containsExactly((ReadableSpan) error);
+        assertThat(meterRegistry.counter("tracing.tail.evicted", "reason", "memory").count()).isEqualTo(1);
+
+        // The evicted trace's decision still holds for its root
+        failing.end();
+        assertThat(exported).containsExactly((ReadableSpan) error, (ReadableSpan) failing);
+    }
+
+    @Test
+    void decidedTracesDoNotCountAgainstTheSpanBuffer() {
+        start(0.0, 4, 64);
+        Span kept = tracer.spanBuilder("request").startSpan();
+        Span keptLate = tracer.spanBuilder("hedge").setParent(Context.current().with(kept)).startSpan();
+        kept.setStatus(StatusCode.ERROR);
+        kept.end();
+        for (int i = 0; i < 20; i++) {
+            tracer.spanBuilder("request").startSpan().end();
+        }
+        Span waiting = tracer.spanBuilder("request").startSpan();
+        Span waitingError = tracer.spanBuilder("step").setParent(Context.current().with(waiting)).startSpan();
+        waitingError.setStatus(StatusCode.ERROR);
+        waitingError.end();
+
+        keptLate.end();
+        waiting.end();
+
+        assertThat(exported).containsExactly((ReadableSpan) kept, (ReadableSpan) keptLate,
+                (ReadableSpan) waitingError, (ReadableSpan) waiting);
+        assertThat(meterRegistry.counter("tracing.tail.evicted", "reason", "memory").count()).isZero();
+        assertThat(meterRegistry.get("tracing.tail.decided.traces").gauge().value()).isEqualTo(22);
+        assertThat(meterRegistry.get("tracing.tail.buffered.traces").gauge().value()).isZero();
+    }
+
+    @Test
+    void oldestDecisionsAreForgottenBeyondTheirLimit() {
+        start(0.0, 1000, 64, 2);
+        Span kept = tracer.spanBuilder("request").startSpan();
+        Span keptLate = tracer.spanBuilder("hedge").setParent(Context.current().with(kept)).startSpan();
+        kept.setStatus(StatusCode.ERROR);
+        kept.end();
+        tracer.spanBuilder("request").startSpan().end();
+        tracer.spanBuilder("request").startSpan().end();
+
+        // Its trace is no longer known, so the late span waits as the start of a new one
+        keptLate.end();
+
+        assertThat(exported).containsExactly((ReadableSpan) kept);
+        assertThat(meterRegistry.get("tracing.tail.decided.traces").gauge().value()).isEqualTo(2);
+        assertThat(meterRegistry.get("tracing.tail.buffered.traces").gauge().value()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Compares requests/sec of the account-service client in user-service against a local fake
+# account-service: a bare RestTemplate on the JDK's HttpURLConnection, as before, and the client
+# built from account-service.http.* over HTTP/1.1 (pooled Apache HttpClient) and HTTP/2.
+#
+#   scripts/account-client-benchmark.sh [seconds per run] [concurrent callers] [server delay ms] [extra JVM arguments...]
+#
+# HttpURLConnection keeps at most 5 idle connections per host (-Dhttp.maxConnections), so with
+# more callers than that the bare RestTemplate opens a new connection for most requests.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SECONDS_PER_RUN=${1:-10}
+CALLERS=${2:-32}
+DELAY=${3:-0}
+shift 3 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl user-service test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="user-service/target/test-classes:user-service/target/classes:$(cat "$WORK/classpath")"
+
+java -Xmx512m "${EXTRA[@]}" -cp "$CLASSPATH" \
+  com.example.userservice.config.AccountClientBenchmark "$SECONDS_PER_RUN" "$CALLERS" "$DELAY"
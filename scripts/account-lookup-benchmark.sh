@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Compares account lookups in the indexed store with the linear list scan it replaced, by ID,
+# account number and user ID, at growing store sizes.
+#
+#   scripts/account-lookup-benchmark.sh [seconds per measurement] [extra JVM arguments...]
+#
+# Each size runs in its own JVM. The 10M run (-Xmx8g) holds the accounts in both the store and
+# the list and needs about 9 GB of free memory.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SECONDS_PER_RUN=${1:-3}
+shift 1 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl account-service test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="account-service/target/test-classes:account-service/target/classes:$(cat "$WORK/classpath")"
+
+for accounts in 10000 1000000 10000000; do
+  java -Xmx8g "${EXTRA[@]}" -cp "$CLASSPATH" \
+    com.example.accountservice.repository.AccountLookupBenchmark "$accounts" "$SECONDS_PER_RUN" \
+    || echo "$accounts accounts failed (out of memory at this count?)"
+done
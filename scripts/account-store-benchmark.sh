@@ -0,0 +1,28 @@
+#!/usr/bin/env bash
+# Compares the memory footprint and GC pauses of the account stores at a large account count:
+# the indexed store of Account objects, and the columnar store on and off the Java heap.
+#
+#   scripts/account-store-benchmark.sh [accounts] [churn seconds] [extra JVM arguments...]
+#
+# Each store is loaded in its own JVM with the same heap limit, measured after a full GC, then
+# put through a read and update mix while every stop-the-world pause is recorded. The defaults
+# (10M accounts, -Xmx5g) need about 6 GB of free memory for the indexed store.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+ACCOUNTS=${1:-10000000}
+CHURN=${2:-30}
+shift 2 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl account-service test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="account-service/target/test-classes:account-service/target/classes:$(cat "$WORK/classpath")"
+
+for engine in INDEXED COLUMNAR COLUMNAR_OFF_HEAP; do
+  java -Xmx5g -XX:MaxDirectMemorySize=4g "${EXTRA[@]}" -cp "$CLASSPATH" \
+    com.example.accountservice.repository.AccountStoreBenchmark "$engine" "$ACCOUNTS" "$CHURN" \
+    || echo "$engine failed (out of memory at this count?)"
+done
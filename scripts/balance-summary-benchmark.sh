@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+# Compares balance summary latency from the running aggregates with recomputing it from the
+# account store, at growing store sizes.
+#
+#   scripts/balance-summary-benchmark.sh [seconds per measurement] [extra JVM arguments...]
+#
+# Each size is loaded into the indexed store with the aggregates listening; the overall summary
+# is timed against a scan of every account, a user's summary against summing their accounts.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SECONDS_PER_RUN=${1:-3}
+shift 1 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl account-service test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="account-service/target/test-classes:account-service/target/classes:$(cat "$WORK/classpath")"
+
+java -Xmx2g "${EXTRA[@]}" -cp "$CLASSPATH" \
+  com.example.accountservice.aggregate.BalanceSummaryBenchmark "$SECONDS_PER_RUN" 1000 10000 100000 1000000
@@ -0,0 +1,25 @@
+#!/usr/bin/env bash
+# Measures how transfer throughput scales from one thread to one per core, with transfers spread
+# over all accounts and with a share of them contending for one hot account.
+#
+#   scripts/balance-transfer-benchmark.sh [seconds per run] [max threads] [accounts] [hot percent] [extra JVM arguments...]
+#
+# Persistence is off, so this measures the striped locks and the store rather than fsync.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SECONDS_PER_RUN=${1:-5}
+MAX_THREADS=${2:-$(nproc)}
+ACCOUNTS=${3:-10000}
+HOT_PERCENT=${4:-50}
+shift 4 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl account-service test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="account-service/target/test-classes:account-service/target/classes:$(cat "$WORK/classpath")"
+
+java -Xmx1g "${EXTRA[@]}" -cp "$CLASSPATH" \
+  com.example.accountservice.service.BalanceTransferBenchmark "$SECONDS_PER_RUN" "$MAX_THREADS" "$ACCOUNTS" "$HOT_PERCENT"
@@ -0,0 +1,23 @@
+#!/usr/bin/env bash
+# Measures what span metrics cost on unsampled traffic: the head sampler dropping every span,
+# span metrics over each request's server span, and span metrics over every span.
+#
+#   scripts/span-metrics-benchmark.sh [seconds per run] [child spans per request] [extra JVM arguments...]
+#
+# Also times the status read the span metrics processor makes per recorded span on its own.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+SECONDS_PER_RUN=${1:-5}
+STEPS=${2:-5}
+shift 2 || shift $# || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+mvn -B -q -pl observability-common test-compile dependency:build-classpath \
+  -Dmdep.outputFile="$WORK/classpath" -Dmdep.includeScope=test
+CLASSPATH="observability-common/target/test-classes:observability-common/target/classes:$(cat "$WORK/classpath")"
+
+java -Xmx512m "${EXTRA[@]}" -cp "$CLASSPATH" \
+  com.example.observability.tracing.SpanMetricsBenchmark "$SECONDS_PER_RUN" "$STEPS"
@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+# Measures how long each service takes from launch to its first successful request, and its
+# resident memory at that point, for the plain jar and the fast-startup build (AOT + AppCDS).
+#
+#   mvn -B -Pfast-startup package -DskipTests
+#   scripts/startup-benchmark.sh [runs] [extra JVM or application arguments...]
+#
+# Both layouts come out of the same fast-startup build: the plain run starts the packaged jar
+# without the AOT initializers or the archive. Each run starts a single service on its own and
+# reports the median over the runs; the services' ports must be free.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+shift || true
+EXTRA=("$@")
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+now_ms() { date +%s%3N; }
+
+# run <dir> <url> <java args...>: prints "<ms to first 200> <rss kB>"
+run() {
+  local dir=$1 url=$2; shift 2
+  local start pid ms rss
+  start=$(now_ms)
+  (cd "$dir" && exec java "$@" "${EXTRA[@]}" > "$WORK/out.log" 2>&1) &
+  pid=$!
+  until curl -sf -o /dev/null "$url"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "service exited, see its output:" >&2
+      tail -20 "$WORK/out.log" >&2
+      exit 1
+    fi
+    sleep 0.02
+  done
+  ms=$(( $(now_ms) - start ))
+  rss=$(awk '/^VmRSS/ {print $2}' "/proc/$pid/status")
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  echo "$ms $rss"
+}
+
+median() { sort -n | awk '{v[NR] = $1} END {print (NR % 2) ? v[(NR + 1) / 2] : int((v[NR / 2] + v[NR / 2 + 1]) / 2)}'; }
+
+bench() {
+  local service=$1 url=$2 jar=$1-0.0.1-SNAPSHOT.jar
+  local fast=$service/target/fast-startup
+  if [[ ! -f $fast/application.jsa ]]; then
+    echo "$fast/application.jsa is missing, build with: mvn -Pfast-startup package" >&2
+    exit 1
+  fi
+  # Keep account-service's store out of the repository
+  local store=(--account-store.persistence.directory="$WORK/store")
+  [[ $service == account-service ]] || store=()
+  for mode in plain fast-startup; do
+    : > "$WORK/results"
+    for _ in $(seq "$RUNS"); do
+      if [[ $mode == plain ]]; then
+        run "$service/target" "$url" -jar "$jar" "${store[@]}" >> "$WORK/results"
+      else
+        run "$fast" "$url" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true \
+          -jar "$jar" "${store[@]}" >> "$WORK/results"
+      fi
+      rm -rf "$WORK/store"
+    done
+    printf '%-16s %-13s first request %6s ms   RSS %6s MB\n' "$service" "$mode" \
+      "$(cut -d' ' -f1 "$WORK/results" | median)" \
+      "$(( $(cut -d' ' -f2 "$WORK/results" | median) / 1024 ))"
+  done
+}
+
+bench account-service "http://localhost:8080/api/accounts/page?limit=1"
+bench user-service "http://localhost:8081/api/users/user1"
@@ -0,0 +1,273 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces concurrent per-user account lookups into batch calls to
+ * {@code POST /api/accounts/users}.
+ * <p>
+ * The first request opens a batch and schedules a flush after the configured window;
+ * requests arriving before then join it. A batch is flushed early once it holds
+ * {@code maxSize} distinct users. Each caller gets back only its own user's account IDs.
+ * <p>
+ * The window timers run on their own thread and the blocking batch calls on a pool of
+ * {@code concurrency} senders, so a slow call never delays the next flush. Each batch call is
+ * one call to {@link AccountCallGuard}: the circuit breaker records one outcome per batch, not
+ * one per coalesced caller, and a hedge resends the same batch instead of queueing its users
+ * again. A failed batch fails the callers it carried and no others.
+ */
+@Component
+@Slf4j
+public class AccountBatchClient {
+
+    // Largest batch POST /api/accounts/users accepts, see AccountController.MAX_BATCH_USERS
+    static final int SERVER_MAX_BATCH_USERS = 1000;
+
+    private final RestTemplate restTemplate;
+    private final AccountIdsReader accountIdsReader;
+    private final Tracer tracer;
+    private final AccountEndpointBalancer accountEndpointBalancer;
+    private final AccountCallGuard accountCallGuard;
+    private final AccountServiceProperties.Batch settings;
+    private final ScheduledExecutorService windowScheduler;
+    private final ExecutorService senders;
+
+    private final DistributionSummary requestsPerBatch;
+    private final DistributionSummary usersPerBatch;
+    private final Counter sizeFlushes;
+    private final Counter windowFlushes;
+    private final Timer batchLatency;
+
+    private final Object lock = new Object();
+    private Map<String, List<CompletableFuture<List<String>>>> pending = new LinkedHashMap<>();
+    private List<Span> pendingCallers = new ArrayList<>();
+    private int pendingRequests;
+    private ScheduledFuture<?> scheduledFlush;
+
+    public AccountBatchClient(RestTemplate restTemplate,
+                              AccountIdsReader accountIdsReader,
+                              Tracer tracer,
+                              AccountEndpointBalancer accountEndpointBalancer,
+                              AccountCallGuard accountCallGuard,
+                              AccountServiceProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.accountIdsReader = accountIdsReader;
+        this.tracer = tracer;
+        this.accountEndpointBalancer = accountEndpointBalancer;
+        this.accountCallGuard = accountCallGuard;
+        this.settings = properties.getBatch();
+        if (settings.getMaxSize() < 1 || settings.getMaxSize() > SERVER_MAX_BATCH_USERS) {
+            // Every full batch would be rejected by account-service
+            throw new IllegalArgumentException("account-service.batch.max-size must be between 1 and "
+                    + SERVER_MAX_BATCH_USERS + ": " + settings.getMaxSize());
+        }
+
+        this.windowScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-batch-window");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(settings.getConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "account-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.requestsPerBatch = DistributionSummary.builder("account.batch.requests")
+                .description("Caller requests absorbed by a single batch call")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.usersPerBatch = DistributionSummary.builder("account.batch.users")
+                .description("Distinct user IDs sent in a single batch call")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.sizeFlushes = Counter.builder("account.batch.flushes")
+                .description("Batch calls sent, by flush trigger")
+                .tag("trigger", "size")
+                .register(meterRegistry);
+        this.windowFlushes = Counter.builder("account.batch.flushes")
+                .description("Batch calls sent, by flush trigger")
+                .tag("trigger", "window")
+                .register(meterRegistry);
+        this.batchLatency = Timer.builder("account.batch.latency")
+                .description("Latency of batch calls to account-service")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a user for the next batch without blocking the caller
+     *
+     * @param userId the user ID
+     * @return a future completed with the user's account IDs when the batch call returns
+     */
+    public CompletableFuture<List<String>> submit(String userId) {
+        CompletableFuture<List<String>> result = new CompletableFuture<>();
+        Map<String, List<CompletableFuture<List<String>>>> full = null;
+        List<Span> fullCallers = null;
+        int fullRequests = 0;
+
+        synchronized (lock) {
+            pending.computeIfAbsent(userId, id -> new ArrayList<>(1)).add(result);
+            pendingCallers.add(Span.current());
+            pendingRequests++;
+
+            if (pending.size() >= settings.getMaxSize()) {
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                }
+                full = pending;
+                fullCallers = pendingCallers;
+                fullRequests = pendingRequests;
+                resetPending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = windowScheduler.schedule(this::flushOnWindow,
+                        settings.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        if (full != null) {
+            sizeFlushes.increment();
+            send(full, fullCallers, fullRequests);
+        }
+
+        return result;
+    }
+
+    private void flushOnWindow() {
+        Map<String, List<CompletableFuture<List<String>>>> batch;
+        List<Span> callers;
+        int requests;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                scheduledFlush = null;
+                return;
+            }
+            batch = pending;
+            callers = pendingCallers;
+            requests = pendingRequests;
+            resetPending();
+        }
+        windowFlushes.increment();
+        send(batch, callers, requests);
+    }
+
+    private void resetPending() {
+        pending = new LinkedHashMap<>();
+        pendingCallers = new ArrayList<>();
+        pendingRequests = 0;
+        scheduledFlush = null;
+    }
+
+    /**
+     * Start the batch call and complete every caller's future from it, without blocking
+     */
+    private void send(Map<String, List<CompletableFuture<List<String>>>> batch, List<Span> callers, int requests) {
+        requestsPerBatch.record(requests);
+        usersPerBatch.record(batch.size());
+
+        // The batch serves many traces, so it starts its own trace and links back to every caller
+        SpanBuilder spanBuilder = tracer.spanBuilder("FetchAccountsBatch")
+                .setParent(Context.root())
+                .setSpanKind(SpanKind.CLIENT);
+        for (Span caller : callers) {
+            if (caller.getSpanContext().isValid()) {
+                spanBuilder.addLink(caller.getSpanContext());
+            }
+        }
+        Span batchSpan = spanBuilder.startSpan();
+        batchSpan.setAttribute("http.method", "POST");
+        batchSpan.setAttribute("batch.users", batch.size());
+        batchSpan.setAttribute("batch.requests", requests);
+
+        List<String> userIds = new ArrayList<>(batch.keySet());
+        Timer.Sample sample = Timer.start();
+        // A hedge calls the supplier again and posts the same users, possibly to another instance
+        accountCallGuard.call(() -> CompletableFuture.supplyAsync(() -> post(userIds, batchSpan), senders), batchSpan)
+                .whenComplete((accountIdsByUser, error) -> {
+                    sample.stop(batchLatency);
+                    if (error == null) {
+                        batchSpan.setStatus(StatusCode.OK);
+                    } else {
+                        log.error("Batch call for {} users failed: {}", batch.size(), error.getMessage(), error);
+                        batchSpan.recordException(error);
+                        batchSpan.setStatus(StatusCode.ERROR, "Batch account fetch failed: " + error.getMessage());
+                    }
+                    batchSpan.end();
+                    batch.forEach((userId, waiters) -> {
+                        List<String> accountIds = error == null ? accountIdsByUser.getOrDefault(userId, List.of()) : null;
+                        for (CompletableFuture<List<String>> waiter : waiters) {
+                            if (error == null) {
+                                waiter.complete(accountIds);
+                            } else {
+                                waiter.completeExceptionally(error);
+                            }
+                        }
+                    });
+                });
+    }
+
+    /**
+     * One batch call to the instance picked by the balancer, blocking a sender thread
+     */
+    private Map<String, List<String>> post(List<String> userIds, Span batchSpan) {
+        AccountEndpoint endpoint = accountEndpointBalancer.choose();
+        String batchUrl = endpoint.getUrl() + "/api/accounts/users";
+        batchSpan.setAttribute("http.url", batchUrl);
+
+        long start = accountEndpointBalancer.callStarted(endpoint);
+        Exception failure = null;
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            accountIdsReader.accept(headers);
+            Map<String, List<String>> response = restTemplate.execute(batchUrl, HttpMethod.POST,
+                    restTemplate.httpEntityCallback(new HttpEntity<>(userIds, headers)),
+                    clientResponse -> accountIdsReader.readAccountIdsByUser(clientResponse.getBody(),
+                            clientResponse.getHeaders().getContentType()));
+            return response != null ? response : Collections.emptyMap();
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            accountEndpointBalancer.callFinished(endpoint, start, failure);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        windowScheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+}
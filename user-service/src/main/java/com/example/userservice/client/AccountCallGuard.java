@@ -0,0 +1,269 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Resilience layer around the downstream calls made for a {@code FetchAccounts} span.
+ * <p>
+ * A call first needs a bulkhead permit, capping the calls to account-service in flight, and
+ * then the circuit breaker's permission; either refusal fails the call immediately with a
+ * {@link CallRejectedException}. If the call is still outstanding after the hedge delay, the
+ * recent {@code percentile} latency of successful calls, a second identical call is sent
+ * (bulkhead permitting) and whichever succeeds first wins. The circuit breaker sees one
+ * outcome per guarded call, not per attempt.
+ * <p>
+ * Hedges, wins, skipped hedges and rejections are added as events to the caller's span and
+ * counted under {@code account.fetch.*}.
+ */
+@Component
+@Slf4j
+public class AccountCallGuard {
+
+    private static final AttributeKey<Long> HEDGE_DELAY_MS = AttributeKey.longKey("hedge.delay_ms");
+
+    // Recomputing the percentile takes a histogram snapshot, so the delay is refreshed at most this often
+    private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AccountServiceProperties.Hedge hedgeSettings;
+    private final Duration attemptTimeout;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService hedgeScheduler;
+
+    private final Timer attemptLatency;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+    private final Counter hedgesSkipped;
+    private final Counter circuitRejections;
+    private final Counter bulkheadRejections;
+
+    private volatile long hedgeDelayNanos;
+    private volatile long hedgeDelayComputedAt;
+
+    public AccountCallGuard(AccountServiceProperties properties, MeterRegistry meterRegistry) {
+        AccountServiceProperties.Resilience settings = properties.getResilience();
+        this.hedgeSettings = settings.getHedge();
+        this.attemptTimeout = properties.getTimeout();
+        this.bulkhead = settings.getBulkhead().isEnabled()
+                ? new Semaphore(settings.getBulkhead().getMaxConcurrentCalls())
+                : null;
+        this.circuitBreaker = settings.getCircuitBreaker().isEnabled()
+                ? new CircuitBreaker("account-service", settings.getCircuitBreaker())
+                : null;
+        this.hedgeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hedgeDelayNanos = hedgeSettings.getMaxDelay().toNanos();
+        this.hedgeDelayComputedAt = System.nanoTime();
+
+        this.attemptLatency = Timer.builder("account.fetch.latency")
+                .description("Latency of successful calls to account-service, the source of the hedge delay")
+                .publishPercentiles(hedgeSettings.getPercentile())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.hedgesSent = hedgeCounter(meterRegistry, "sent");
+        this.hedgesWon = hedgeCounter(meterRegistry, "won");
+        this.hedgesSkipped = hedgeCounter(meterRegistry, "skipped");
+        this.circuitRejections = rejectionCounter(meterRegistry, "circuit_open");
+        this.bulkheadRejections = rejectionCounter(meterRegistry, "bulkhead_full");
+
+        if (bulkhead != null) {
+            int maxConcurrentCalls = settings.getBulkhead().getMaxConcurrentCalls();
+            Gauge.builder("account.fetch.inflight", bulkhead, permits -> maxConcurrentCalls - permits.availablePermits())
+                    .description("Calls to account-service currently in flight")
+                    .register(meterRegistry);
+        }
+        if (circuitBreaker != null) {
+            Gauge.builder("account.fetch.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Run a downstream call under the bulkhead and circuit breaker, hedging it when slow
+     *
+     * @param attempt starts one call; invoked a second time for the hedge
+     * @param span the span that receives hedge and rejection events
+     * @return a future completed by the first successful attempt, or exceptionally once all attempts failed
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> attempt, Span span) {
+        if (!tryAcquireBulkhead()) {
+            bulkheadRejections.increment();
+            span.addEvent("bulkhead.rejected");
+            return CompletableFuture.failedFuture(new CallRejectedException("Too many concurrent calls to account-service"));
+        }
+        CircuitBreaker.Permit permit = circuitBreaker != null ? circuitBreaker.tryAcquirePermission() : null;
+        if (circuitBreaker != null && permit == null) {
+            releaseBulkhead();
+            circuitRejections.increment();
+            span.addEvent("circuit_breaker.rejected");
+            return CompletableFuture.failedFuture(new CallRejectedException("Circuit breaker for account-service is open"));
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicBoolean claimed = new AtomicBoolean();
+        startAttempt(attempt).whenComplete((value, error) -> settle(result, outstanding, claimed, value, error, false, span));
+
+        if (hedgeSettings.isEnabled()) {
+            long delay = hedgeDelayNanos();
+            // The hedge runs on the scheduler thread, so carry over the caller's context
+            Context context = Context.current();
+            ScheduledFuture<?> hedge = hedgeScheduler.schedule(
+                    () -> sendHedge(attempt, result, outstanding, claimed, span, context, delay),
+                    delay, TimeUnit.NANOSECONDS);
+            result.whenComplete((value, error) -> hedge.cancel(false));
+        }
+
+        if (circuitBreaker != null) {
+            result.whenComplete((value, error) -> {
+                if (error == null) {
+                    circuitBreaker.onSuccess(permit);
+                } else {
+                    circuitBreaker.onFailure(permit);
+                }
+            });
+        }
+        return result;
+    }
+
+    private <T> void sendHedge(Supplier<CompletableFuture<T>> attempt, CompletableFuture<T> result,
+                               AtomicInteger outstanding, AtomicBoolean claimed, Span span, Context context,
+                               long delay) {
+        if (result.isDone()) {
+            return;
+        }
+        if (!tryAcquireBulkhead()) {
+            hedgesSkipped.increment();
+            span.addEvent("hedge.skipped");
+            return;
+        }
+        outstanding.incrementAndGet();
+        hedgesSent.increment();
+        span.addEvent("hedge.sent", Attributes.of(HEDGE_DELAY_MS, TimeUnit.NANOSECONDS.toMillis(delay)));
+        log.debug("Hedging account-service call after {} ms", TimeUnit.NANOSECONDS.toMillis(delay));
+
+        try (Scope ignored = context.makeCurrent()) {
+            startAttempt(attempt).whenComplete((value, error) -> settle(result, outstanding, claimed, value, error, true, span));
+        }
+    }
+
+    /**
+     * Start one attempt that already holds a bulkhead permit, releasing it when the attempt completes
+     */
+    private <T> CompletableFuture<T> startAttempt(Supplier<CompletableFuture<T>> attempt) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            // Bounded so that a hung call cannot hold its bulkhead permit forever
+            future = attempt.get().orTimeout(attemptTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> {
+            releaseBulkhead();
+            if (error == null) {
+                attemptLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    private <T> void settle(CompletableFuture<T> result, AtomicInteger outstanding, AtomicBoolean claimed,
+                            T value, Throwable error, boolean hedge, Span span) {
+        if (error == null) {
+            // Completing the result runs the caller's stages, which may end the span, so record the win first
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            if (hedge) {
+                hedgesWon.increment();
+                span.addEvent("hedge.won");
+            }
+            result.complete(value);
+        } else if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private long hedgeDelayNanos() {
+        long now = System.nanoTime();
+        if (now - hedgeDelayComputedAt >= HEDGE_DELAY_REFRESH_NANOS) {
+            long observed = 0;
+            for (ValueAtPercentile percentile : attemptLatency.takeSnapshot().percentileValues()) {
+                observed = (long) percentile.value(TimeUnit.NANOSECONDS);
+            }
+            long min = hedgeSettings.getMinDelay().toNanos();
+            long max = hedgeSettings.getMaxDelay().toNanos();
+            // No samples in the current window yet: hedge late rather than double every call
+            hedgeDelayNanos = observed > 0 ? Math.max(min, Math.min(max, observed)) : max;
+            hedgeDelayComputedAt = now;
+        }
+        return hedgeDelayNanos;
+    }
+
+    private boolean tryAcquireBulkhead() {
+        return bulkhead == null || bulkhead.tryAcquire();
+    }
+
+    private void releaseBulkhead() {
+        if (bulkhead != null) {
+            bulkhead.release();
+        }
+    }
+
+    private static Counter hedgeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("account.fetch.hedges")
+                .description("Hedged calls to account-service, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("account.fetch.rejections")
+                .description("Calls to account-service refused before being sent, by reason")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    /**
+     * Thrown when the bulkhead or the circuit breaker refuses a call without sending it
+     */
+    public static class CallRejectedException extends RuntimeException {
+
+        public CallRejectedException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.userservice.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One account-service instance as seen by {@link AccountEndpointBalancer}: its outstanding calls,
+ * a decaying average of its latency, and its health and ejection state.
+ * <p>
+ * The latency average is a peak-sensitive EWMA: a sample above the average replaces it outright,
+ * so an instance that slows down is avoided at once, while recoveries are only trusted gradually.
+ * Samples are compared and blended against the same decayed value that {@link #getLatencyNanos()}
+ * reports to the balancer.
+ * <p>
+ * Each ejection lasts longer than the previous one, but every base ejection time spent back in
+ * rotation without being ejected again forgives one step, so an instance that recovered for good
+ * starts over from the base ejection time.
+ */
+public class AccountEndpoint {
+
+    private final String url;
+    private final double decayNanos;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private double latencyNanos;
+    private long latencyUpdatedAt = System.nanoTime();
+
+    private volatile boolean healthy = true;
+    private int probeFailures;
+    private int probeSuccesses;
+
+    private int consecutiveFailures;
+    private int ejections;
+    private volatile long ejectedUntil;
+    private volatile boolean ejected;
+
+    AccountEndpoint(String url, long decayNanos) {
+        this.url = url;
+        this.decayNanos = decayNanos;
+    }
+
+    /**
+     * @return the base URL of the instance
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return the decayed average latency in nanoseconds, 0 before the first sample
+     */
+    public synchronized double getLatencyNanos() {
+        return decayed(System.nanoTime());
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * @return true if the instance is ejected right now
+     */
+    public boolean isEjected() {
+        return ejected && System.nanoTime() - ejectedUntil < 0;
+    }
+
+    /**
+     * @return true if calls may be routed to the instance
+     */
+    public boolean isAvailable() {
+        return healthy && !isEjected();
+    }
+
+    /**
+     * Cost used to compare instances: latency scaled by the queue a new call would join
+     */
+    double cost() {
+        return getLatencyNanos() * (outstanding.get() + 1);
+    }
+
+    void callStarted() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Record a finished call
+     *
+     * @return true if this failure pushed the instance over the consecutive failure limit
+     */
+    synchronized boolean callFinished(long latencyNanos, boolean failed, int failureLimit) {
+        outstanding.decrementAndGet();
+        long now = System.nanoTime();
+        double weight = Math.exp(-(now - latencyUpdatedAt) / decayNanos);
+        // decayed(now) is the old average already weighted by the elapsed time, as the balancer sees it
+        double current = decayed(now);
+        this.latencyNanos = latencyNanos > current ? latencyNanos : current + latencyNanos * (1 - weight);
+        this.latencyUpdatedAt = now;
+
+        if (!failed) {
+            consecutiveFailures = 0;
+            return false;
+        }
+        return failureLimit > 0 && ++consecutiveFailures >= failureLimit && !isEjected();
+    }
+
+    /**
+     * Take the instance out of rotation, for longer on each repeated ejection
+     *
+     * @return how long the instance is ejected for, in nanoseconds
+     */
+    synchronized long eject(long baseNanos, long maxNanos) {
+        long now = System.nanoTime();
+        if (ejections > 0 && baseNanos > 0) {
+            long forgiven = Math.max(0, now - ejectedUntil) / baseNanos;
+            ejections = (int) Math.max(0, ejections - forgiven);
+        }
+        ejections++;
+        long duration = Math.min(maxNanos, baseNanos * ejections);
+        ejectedUntil = now + duration;
+        ejected = true;
+        consecutiveFailures = 0;
+        return duration;
+    }
+
+    /**
+     * Record an active health probe
+     *
+     * @return true if the health state changed
+     */
+    synchronized boolean probed(boolean success, int unhealthyThreshold, int healthyThreshold) {
+        if (success) {
+            probeFailures = 0;
+            if (!healthy && ++probeSuccesses >= healthyThreshold) {
+                healthy = true;
+                return true;
+            }
+        } else {
+            probeSuccesses = 0;
+            if (healthy && ++probeFailures >= unhealthyThreshold) {
+                healthy = false;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized int getEjections() {
+        return ejections;
+    }
+
+    private double decayed(long now) {
+        // Without fresh samples the average drifts towards zero, so an idle instance is retried eventually
+        return latencyNanos * Math.exp(-(now - latencyUpdatedAt) / decayNanos);
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side load balancer over the account-service instances in {@code account-service.urls}.
+ * <p>
+ * Each call picks an instance by the configured strategy, power of two choices or least
+ * outstanding calls, both driven by the instances' observed latency (see {@link AccountEndpoint}).
+ * Instances failing their background health probe, and instances ejected as outliers after too
+ * many consecutive failed calls, are skipped. When no instance is available, every instance is
+ * considered again rather than failing all calls.
+ * <p>
+ * Per-instance outstanding calls, latency, availability and ejections are published under
+ * {@code account.endpoint.*}, tagged with the instance URL.
+ */
+@Component
+@Slf4j
+public class AccountEndpointBalancer {
+
+    private final List<AccountEndpoint> endpoints;
+    private final AccountServiceProperties.LoadBalancing settings;
+    private final Map<AccountEndpoint, Counter> ejectionCounters = new HashMap<>();
+    private final ScheduledExecutorService healthChecker;
+    private final HttpClient healthClient;
+
+    public AccountEndpointBalancer(AccountServiceProperties properties, MeterRegistry meterRegistry) {
+        this.settings = properties.getLoadBalancing();
+        long decayNanos = settings.getLatencyDecay().toNanos();
+
+        List<AccountEndpoint> endpoints = new ArrayList<>();
+        for (String url : properties.endpointUrls()) {
+            AccountEndpoint endpoint = new AccountEndpoint(url, decayNanos);
+            endpoints.add(endpoint);
+            registerMeters(endpoint, meterRegistry);
+        }
+        this.endpoints = List.copyOf(endpoints);
+
+        AccountServiceProperties.HealthCheck healthCheck = settings.getHealthCheck();
+        if (healthCheck.isEnabled()) {
+            this.healthClient = HttpClient.newBuilder()
+                    .connectTimeout(healthCheck.getTimeout())
+                    .build();
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "account-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::probeAll, 0,
+                    healthCheck.getInterval().toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.healthClient = null;
+            this.healthChecker = null;
+        }
+        log.info("Balancing account-service calls across {} with {}", this.endpoints, settings.getStrategy());
+    }
+
+    /**
+     * Pick the instance for the next call
+     *
+     * @return an available instance, or any instance if none is available
+     */
+    public AccountEndpoint choose() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        List<AccountEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (AccountEndpoint endpoint : endpoints) {
+            if (endpoint.isAvailable()) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            log.warn("No account-service instance is available, balancing across all of them");
+            candidates = endpoints;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        if (settings.getStrategy() == AccountServiceProperties.LoadBalancing.Strategy.LEAST_OUTSTANDING) {
+            return leastOutstanding(candidates);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        AccountEndpoint a = candidates.get(first);
+        AccountEndpoint b = candidates.get(second);
+        return a.cost() <= b.cost() ? a : b;
+    }
+
+    /**
+     * Account for an asynchronous call to an instance until it completes
+     *
+     * @param endpoint the instance returned by {@link #choose()}
+     * @param call the call, started against that instance
+     * @return the same call, for chaining
+     */
+    public <T> CompletableFuture<T> track(AccountEndpoint endpoint, CompletableFuture<T> call) {
+        long start = callStarted(endpoint);
+        return call.whenComplete((value, error) -> callFinished(endpoint, start, error));
+    }
+
+    /**
+     * Mark a call to an instance as started; must be followed by {@link #callFinished}
+     *
+     * @return the start time to pass to {@link #callFinished}
+     */
+    public long callStarted(AccountEndpoint endpoint) {
+        endpoint.callStarted();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the outcome of a call to an instance, ejecting it if it keeps failing
+     *
+     * @param error the failure, or null if the call succeeded
+     */
+    public void callFinished(AccountEndpoint endpoint, long start, Throwable error) {
+        AccountServiceProperties.OutlierEjection ejection = settings.getOutlierEjection();
+        boolean overLimit = endpoint.callFinished(System.nanoTime() - start, isEndpointFailure(error),
+                ejection.getConsecutiveFailures());
+        if (!overLimit) {
+            return;
+        }
+        // Serialized so that concurrent ejections cannot exceed the ejection budget together
+        synchronized (ejectionCounters) {
+            if (endpoint.isEjected() || !mayEject()) {
+                return;
+            }
+            long duration = endpoint.eject(ejection.getBaseEjectionTime().toNanos(),
+                    ejection.getMaxEjectionTime().toNanos());
+            ejectionCounters.get(endpoint).increment();
+            log.warn("Ejected account-service instance {} for {} ms after {} consecutive failures",
+                     endpoint, TimeUnit.NANOSECONDS.toMillis(duration), ejection.getConsecutiveFailures());
+        }
+    }
+
+    private boolean mayEject() {
+        int ejected = 0;
+        for (AccountEndpoint endpoint : endpoints) {
+            if (endpoint.isEjected()) {
+                ejected++;
+            }
+        }
+        return (ejected + 1) * 100 <= settings.getOutlierEjection().getMaxEjectionPercent() * endpoints.size();
+    }
+
+    private static AccountEndpoint leastOutstanding(List<AccountEndpoint> candidates) {
+        AccountEndpoint best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        double bestLatency = Double.MAX_VALUE;
+        for (AccountEndpoint endpoint : candidates) {
+            int outstanding = endpoint.getOutstanding();
+            double latency = endpoint.getLatencyNanos();
+            if (outstanding < bestOutstanding || (outstanding == bestOutstanding && latency < bestLatency)) {
+                best = endpoint;
+                bestOutstanding = outstanding;
+                bestLatency = latency;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Only server-side trouble counts against an instance; a 4xx answer is the caller's problem
+     */
+    private static boolean isEndpointFailure(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof RestClientResponseException e) {
+            return e.getStatusCode().is5xxServerError();
+        }
+        if (error instanceof WebClientResponseException e) {
+            return e.getStatusCode().is5xxServerError();
+        }
+        return error != null;
+    }
+
+    private void probeAll() {
+        AccountServiceProperties.HealthCheck healthCheck = settings.getHealthCheck();
+        for (AccountEndpoint endpoint : endpoints) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint.getUrl() + healthCheck.getPath()))
+                    .timeout(healthCheck.getTimeout())
+                    .GET()
+                    .build();
+            healthClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        boolean success = error == null && response.statusCode() / 100 == 2;
+                        if (endpoint.probed(success, healthCheck.getUnhealthyThreshold(), healthCheck.getHealthyThreshold())) {
+                            log.warn("account-service instance {} is now {}", endpoint,
+                                     endpoint.isHealthy() ? "healthy" : "unhealthy");
+                        }
+                    });
+        }
+    }
+
+    private void registerMeters(AccountEndpoint endpoint, MeterRegistry meterRegistry) {
+        Gauge.builder("account.endpoint.outstanding", endpoint, AccountEndpoint::getOutstanding)
+                .description("Calls in flight to an account-service instance")
+                .tag("endpoint", endpoint.getUrl())
+                .register(meterRegistry);
+        Gauge.builder("account.endpoint.latency", endpoint, e -> e.getLatencyNanos() / 1e9)
+                .description("Decaying peak-sensitive average latency of an account-service instance")
+                .tag("endpoint", endpoint.getUrl())
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("account.endpoint.available", endpoint, e -> e.isAvailable() ? 1 : 0)
+                .description("1 if calls are routed to an account-service instance, 0 if unhealthy or ejected")
+                .tag("endpoint", endpoint.getUrl())
+                .register(meterRegistry);
+        ejectionCounters.put(endpoint, Counter.builder("account.endpoint.ejections")
+                .description("Times an account-service instance was ejected as an outlier")
+                .tag("endpoint", endpoint.getUrl())
+                .register(meterRegistry));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounded cache of account IDs per user in front of {@link AccountIdsLoader}.
+ * <p>
+ * Backed by a Caffeine async cache: entries are evicted by W-TinyLFU once the size bound is hit,
+ * expire after the TTL and are reloaded in the background once older than the refresh interval.
+ * Concurrent misses for the same user share the in-flight load, and failed loads are not cached.
+ * Hit, miss, eviction and load-duration metrics are published under the {@code userAccounts} cache name.
+ * <p>
+ * While the {@link AccountReplica} is fresh it answers every lookup, and the cache and
+ * account-service are only consulted when it is disabled, still loading or stale. Every change the
+ * replica applies drops the entries of the users it touched, and a new replica snapshot drops them
+ * all, so the cache never answers with data the feed has already replaced once the replica goes stale.
+ */
+@Component
+@Slf4j
+public class AccountIdsCache {
+
+    private static final String CACHE_NAME = "userAccounts";
+
+    private final AccountIdsLoader accountIdsLoader;
+    private final AccountReplica accountReplica;
+    private final AsyncLoadingCache<String, List<String>> cache;
+
+    public AccountIdsCache(AccountIdsLoader accountIdsLoader,
+                           AccountReplica accountReplica,
+                           AccountServiceProperties properties,
+                           MeterRegistry meterRegistry) {
+        this.accountIdsLoader = accountIdsLoader;
+        this.accountReplica = accountReplica;
+
+        AccountServiceProperties.Cache settings = properties.getCache();
+        if (settings.isEnabled()) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .maximumSize(settings.getMaximumSize())
+                    .expireAfterWrite(settings.getTtl())
+                    .recordStats();
+            if (settings.getRefreshAfter().compareTo(settings.getTtl()) < 0) {
+                builder.refreshAfterWrite(settings.getRefreshAfter());
+            }
+            this.cache = builder.buildAsync((userId, executor) -> accountIdsLoader.load(userId));
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+            accountReplica.addListener(new AccountReplica.Listener() {
+                @Override
+                public void accountsChanged(String userId) {
+                    invalidate(userId);
+                }
+
+                @Override
+                public void reloaded() {
+                    log.debug("Account replica reloaded, invalidating all cached accounts");
+                    cache.synchronous().invalidateAll();
+                }
+            });
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Get the account IDs of a user, loading them from account-service on a miss
+     *
+     * @param userId the user ID
+     * @return a future completed with the user's account IDs
+     */
+    public CompletableFuture<List<String>> get(String userId) {
+        List<String> replicated = accountReplica.find(userId);
+        if (replicated != null) {
+            return CompletableFuture.completedFuture(replicated);
+        }
+        return cache != null ? cache.get(userId) : accountIdsLoader.load(userId);
+    }
+
+    /**
+     * @param userId the user ID
+     * @return true if the user's account IDs are answered locally: replicated, cached or being loaded
+     */
+    public boolean contains(String userId) {
+        return accountReplica.find(userId) != null || (cache != null && cache.asMap().containsKey(userId));
+    }
+
+    /**
+     * Drop the cached account IDs of a user so the next read goes to account-service.
+     * Account changes that reach the replica already do this; a manual call is only needed
+     * for writes the change feed does not carry, or has not delivered yet.
+     *
+     * @param userId the user ID
+     */
+    public void invalidate(String userId) {
+        if (cache != null) {
+            log.debug("Invalidating cached accounts for user {}", userId);
+            cache.synchronous().invalidate(userId);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the account IDs of a user from account-service, wrapping each load in a
+ * {@code FetchAccounts} span that is a child of the caller's current context.
+ * <p>
+ * The transport follows the configuration: the coalescing {@link AccountBatchClient} when
+ * batching is on, which guards each batch call itself, otherwise {@link ReactiveAccountClient}
+ * in reactive mode or a single RestTemplate call on a dedicated fetch pool, under
+ * {@link AccountCallGuard}. Each call goes to the instance picked by {@link AccountEndpointBalancer}. Every load is asynchronous so that it
+ * can sit behind the cache without holding cache locks.
+ */
+@Component
+@Slf4j
+public class AccountIdsLoader {
+
+    private final RestTemplate restTemplate;
+    private final AccountIdsReader accountIdsReader;
+    private final AccountBatchClient accountBatchClient;
+    private final ReactiveAccountClient reactiveAccountClient;
+    private final AccountCallGuard accountCallGuard;
+    private final AccountEndpointBalancer accountEndpointBalancer;
+    private final AccountServiceProperties properties;
+    private final Tracer tracer;
+    private final ExecutorService fetchExecutor;
+
+    public AccountIdsLoader(RestTemplate restTemplate,
+                            AccountIdsReader accountIdsReader,
+                            AccountBatchClient accountBatchClient,
+                            ReactiveAccountClient reactiveAccountClient,
+                            AccountCallGuard accountCallGuard,
+                            AccountEndpointBalancer accountEndpointBalancer,
+                            AccountServiceProperties properties,
+                            Tracer tracer) {
+        this.restTemplate = restTemplate;
+        this.accountIdsReader = accountIdsReader;
+        this.accountBatchClient = accountBatchClient;
+        this.reactiveAccountClient = reactiveAccountClient;
+        this.accountCallGuard = accountCallGuard;
+        this.accountEndpointBalancer = accountEndpointBalancer;
+        this.properties = properties;
+        this.tracer = tracer;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(properties.getFetchThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "account-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start loading the account IDs of a user
+     *
+     * @param userId the user ID
+     * @return a future completed with the user's account IDs, or exceptionally on failure or timeout
+     */
+    public CompletableFuture<List<String>> load(String userId) {
+        Context parentContext = Context.current();
+        Span accountServiceSpan = tracer.spanBuilder("FetchAccounts")
+                .setParent(parentContext)
+                .startSpan();
+        Context fetchContext = parentContext.with(accountServiceSpan);
+
+        CompletableFuture<List<String>> accountIds;
+        if (properties.getBatch().isEnabled()) {
+            // Concurrent lookups share one batch call to account-service, guarded and hedged as a whole
+            accountServiceSpan.setAttribute("http.method", "POST");
+            accountServiceSpan.setAttribute("account.batch", true);
+
+            log.info("Fetching accounts for user {} through batch client", userId);
+            accountIds = accountBatchClient.submit(userId);
+        } else {
+            // Hedges call the transport again, under the same span
+            accountIds = accountCallGuard.call(() -> startFetch(userId, fetchContext, accountServiceSpan),
+                    accountServiceSpan);
+        }
+
+        return accountIds
+                .orTimeout(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .thenApply(ids -> ids != null ? List.copyOf(ids) : List.<String>of())
+                .whenComplete((ids, error) -> {
+                    if (error == null) {
+                        accountServiceSpan.setAttribute("accounts.count", ids.size());
+                        accountServiceSpan.setStatus(StatusCode.OK);
+                    } else {
+                        accountServiceSpan.recordException(error);
+                        accountServiceSpan.setStatus(StatusCode.ERROR, "Failed to fetch accounts: " + error.getMessage());
+                    }
+                    accountServiceSpan.end();
+                });
+    }
+
+    /**
+     * Start one unbatched call to account-service through the configured transport
+     */
+    private CompletableFuture<List<String>> startFetch(String userId, Context fetchContext, Span accountServiceSpan) {
+        AccountEndpoint endpoint = accountEndpointBalancer.choose();
+        if (properties.getClientMode() == AccountServiceProperties.ClientMode.REACTIVE) {
+            return accountEndpointBalancer.track(endpoint, reactiveAccountClient
+                    .fetchAccountIds(endpoint.getUrl(), userId, fetchContext, accountServiceSpan).toFuture());
+        }
+        return accountEndpointBalancer.track(endpoint, CompletableFuture.supplyAsync(
+                fetchContext.wrapSupplier(() -> fetchAccountIds(endpoint.getUrl(), userId, accountServiceSpan)),
+                fetchExecutor));
+    }
+
+    /**
+     * Fetch the account IDs of a single user with a dedicated call to account-service
+     *
+     * @param baseUrl the account-service instance to call
+     * @param userId the user ID
+     * @param accountServiceSpan the span describing the downstream call
+     * @return the account IDs, or null if account-service returned no body
+     */
+    private List<String> fetchAccountIds(String baseUrl, String userId, Span accountServiceSpan) {
+        // Call account-service to get accounts for this user
+        String accountServiceUrl = baseUrl + "/api/accounts/user/" + userId;
+        accountServiceSpan.setAttribute("http.url", accountServiceUrl);
+        accountServiceSpan.setAttribute("http.method", "GET");
+
+        log.info("Calling account-service at URL: {}", accountServiceUrl);
+
+        // Blocks this fetch thread; AccountCallGuard bounds, hedges and short-circuits it
+        return restTemplate.execute(accountServiceUrl, HttpMethod.GET,
+                request -> accountIdsReader.accept(request.getHeaders()),
+                response -> accountIdsReader.readAccountIds(response.getBody(), response.getHeaders().getContentType()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams account-service responses and keeps only the account IDs.
+ * <p>
+ * user-service only needs {@code id} from each account, so instead of binding every element
+ * to a {@code Map} the parser walks the tokens, copies the {@code id} value and skips
+ * every other field, nested values included, without materializing them.
+ * <p>
+ * Responses come as Smile or JSON depending on what was negotiated: the reader supplies the
+ * {@code Accept} header for the configured wire format and picks the parser from the
+ * response's {@code Content-Type}. Both produce the same token stream, so the walk is shared.
+ */
+@Component
+public class AccountIdsReader {
+
+    private static final String ID_FIELD = "id";
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final JsonFactory jsonFactory;
+    private final JsonFactory smileFactory = new SmileFactory();
+    private final List<MediaType> acceptedMediaTypes;
+
+    public AccountIdsReader(ObjectMapper objectMapper, AccountServiceProperties properties) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.acceptedMediaTypes = properties.getWireFormat() == AccountServiceProperties.WireFormat.SMILE
+                ? List.of(SMILE, MediaType.parseMediaType("application/json;q=0.9"))
+                : List.of(MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Set the {@code Accept} header of an account-service request to the configured wire format
+     *
+     * @param headers the request headers
+     */
+    public void accept(HttpHeaders headers) {
+        headers.setAccept(acceptedMediaTypes);
+    }
+
+    /**
+     * Read the IDs from an array of accounts, as returned by {@code GET /api/accounts/user/{userId}}
+     *
+     * @param body the response body, closed by the caller
+     * @param contentType the response content type, JSON if null
+     * @return the account IDs in response order, or null if the body is empty or null
+     */
+    public List<String> readAccountIds(InputStream body, MediaType contentType) throws IOException {
+        try (JsonParser parser = createParser(body, contentType)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return null;
+            }
+            return readIdArray(parser);
+        }
+    }
+
+    /**
+     * Read the IDs from an object of user ID to account array, as returned by {@code POST /api/accounts/users}
+     *
+     * @param body the response body, closed by the caller
+     * @param contentType the response content type, JSON if null
+     * @return account IDs grouped by user ID, empty if the body is empty or null
+     */
+    public Map<String, List<String>> readAccountIdsByUser(InputStream body, MediaType contentType) throws IOException {
+        try (JsonParser parser = createParser(body, contentType)) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return Map.of();
+            }
+            expect(parser, token, JsonToken.START_OBJECT);
+
+            Map<String, List<String>> accountIdsByUser = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String userId = parser.currentName();
+                JsonToken value = parser.nextToken();
+                accountIdsByUser.put(userId, value == JsonToken.VALUE_NULL ? List.of() : readIdArray(parser));
+            }
+            return accountIdsByUser;
+        }
+    }
+
+    private JsonParser createParser(InputStream body, MediaType contentType) throws IOException {
+        boolean smile = contentType != null && SMILE.includes(contentType);
+        return (smile ? smileFactory : jsonFactory).createParser(body);
+    }
+
+    private static List<String> readIdArray(JsonParser parser) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+
+        List<String> accountIds = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (ID_FIELD.equals(field) && value != JsonToken.VALUE_NULL) {
+                    accountIds.add(parser.getValueAsString());
+                } else {
+                    // No-op for scalars, skips to the matching end token for objects and arrays
+                    parser.skipChildren();
+                }
+            }
+        }
+        return accountIds;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected token " + actual + " in account-service response, expected "
+                    + expected + " at " + parser.currentLocation());
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local copy of which accounts each user owns, kept up to date from the account-service change feed.
+ * <p>
+ * A background thread bootstraps from {@code /api/accounts/changes/snapshot}, then follows
+ * {@code /api/accounts/changes} from the snapshot's sequence, reconnecting from the last applied
+ * sequence whenever a stream ends or breaks. If the feed no longer has that sequence, or the
+ * instance restarted, it takes a new snapshot. Changes are applied by that single thread;
+ * lookups read immutable per-user lists without locking.
+ * <p>
+ * Lookups are only answered while the feed has been heard from within {@code max-staleness};
+ * heartbeats keep an idle feed fresh. Replica lag is published under {@code account.replica.*}.
+ * <p>
+ * {@link Listener}s hear about every user whose accounts changed and every new snapshot, so caches
+ * used while the replica is stale do not keep answers the feed has already replaced.
+ */
+@Component
+@Slf4j
+public class AccountReplica {
+
+    private final RestTemplate restTemplate;
+    private final AccountEndpointBalancer accountEndpointBalancer;
+    private final AccountServiceProperties.Replica settings;
+    private final ObjectReader changeReader;
+    private final Thread follower;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Counter bootstraps;
+    private final Counter reconnects;
+    private final Timer propagationDelay;
+
+    private volatile State state;
+    private volatile long lastHeardAt;
+    private volatile long headSequence;
+    private volatile boolean stopped;
+
+    public AccountReplica(RestTemplate restTemplate,
+                          AccountEndpointBalancer accountEndpointBalancer,
+                          AccountServiceProperties properties,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.accountEndpointBalancer = accountEndpointBalancer;
+        this.settings = properties.getReplica();
+        this.changeReader = objectMapper.readerFor(ChangeLine.class);
+
+        this.bootstraps = Counter.builder("account.replica.bootstraps")
+                .description("Snapshots loaded into the account replica")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("account.replica.reconnects")
+                .description("Change feed connections that failed and were retried")
+                .register(meterRegistry);
+        this.propagationDelay = Timer.builder("account.replica.propagation")
+                .description("Time from a change in account-service to its application in the replica")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("account.replica.lag", this, replica -> replica.getLagSequences())
+                .description("Changes published by account-service and not yet applied to the replica")
+                .register(meterRegistry);
+        Gauge.builder("account.replica.staleness", this, replica -> replica.getStalenessNanos() / 1e9)
+                .description("Time since the replica last heard from the change feed")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("account.replica.users", this, replica -> {
+                    State current = replica.state;
+                    return current != null ? current.accountIdsByUser.size() : 0;
+                })
+                .description("Users with accounts in the replica")
+                .register(meterRegistry);
+
+        if (settings.isEnabled()) {
+            this.follower = new Thread(this::follow, "account-replica");
+            follower.setDaemon(true);
+            follower.start();
+        } else {
+            this.follower = null;
+        }
+    }
+
+    /**
+     * Look up the account IDs of a user in the replica
+     *
+     * @param userId the user ID
+     * @return the user's account IDs, or null if the replica is disabled, not loaded yet or stale
+     */
+    public List<String> find(String userId) {
+        State current = state;
+        if (current == null || getStalenessNanos() > settings.getMaxStaleness().toNanos()) {
+            return null;
+        }
+        return current.accountIdsByUser.getOrDefault(userId, List.of());
+    }
+
+    /**
+     * Register a listener for applied changes; it is called on the follower thread and must not block
+     *
+     * @param listener the listener
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    private long getLagSequences() {
+        State current = state;
+        return current != null ? Math.max(0, headSequence - current.sequence) : 0;
+    }
+
+    private long getStalenessNanos() {
+        return state != null ? System.nanoTime() - lastHeardAt : Long.MAX_VALUE;
+    }
+
+    private void follow() {
+        long backoff = settings.getReconnectBackoff().toMillis();
+        String sourceUrl = null;
+        while (!stopped) {
+            try {
+                if (sourceUrl == null) {
+                    sourceUrl = accountEndpointBalancer.choose().getUrl();
+                }
+                State current = state;
+                if (current == null || !current.sourceUrl.equals(sourceUrl)) {
+                    bootstrap(sourceUrl);
+                } else {
+                    stream(current);
+                }
+                backoff = settings.getReconnectBackoff().toMillis();
+            } catch (HttpClientErrorException.Gone e) {
+                log.info("Change feed of {} cannot resume from sequence {}, taking a new snapshot",
+                         sourceUrl, state.sequence);
+                state = null;
+            } catch (Exception e) {
+                if (stopped) {
+                    return;
+                }
+                reconnects.increment();
+                log.warn("Account change feed from {} failed, reconnecting in {} ms: {}", sourceUrl, backoff, e.getMessage());
+                // Another instance may be healthier; switching means a new snapshot
+                sourceUrl = null;
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, settings.getMaxReconnectBackoff().toMillis());
+            }
+        }
+    }
+
+    private void bootstrap(String sourceUrl) {
+        restTemplate.execute(sourceUrl + "/api/accounts/changes/snapshot", HttpMethod.GET, null, response -> {
+            State loaded = new State(sourceUrl);
+            try (MappingIterator<ChangeLine> lines = changeReader.readValues(response.getBody())) {
+                while (lines.hasNextValue()) {
+                    ChangeLine line = lines.nextValue();
+                    if ("SNAPSHOT".equals(line.getType())) {
+                        loaded.put(line.getAccountId(), line.getUserId());
+                    } else if ("SNAPSHOT_END".equals(line.getType())) {
+                        loaded.epoch = line.getEpoch();
+                        loaded.sequence = line.getSequence();
+                        headSequence = line.getSequence();
+                        lastHeardAt = System.nanoTime();
+                        state = loaded;
+                        bootstraps.increment();
+                        // Changes between the last applied sequence and the snapshot were never seen
+                        listeners.forEach(Listener::reloaded);
+                        log.info("Account replica loaded {} users from {} at sequence {}",
+                                 loaded.accountIdsByUser.size(), sourceUrl, loaded.sequence);
+                        return null;
+                    }
+                }
+            }
+            throw new IOException("Snapshot from " + sourceUrl + " ended without an end marker");
+        });
+    }
+
+    private void stream(State current) {
+        String url = current.sourceUrl + "/api/accounts/changes?epoch={epoch}&after={after}";
+        restTemplate.execute(url, HttpMethod.GET, null, response -> {
+            apply(current, response.getBody());
+            return null;
+        }, current.epoch, current.sequence);
+    }
+
+    private void apply(State current, InputStream body) throws IOException {
+        try (MappingIterator<ChangeLine> lines = changeReader.readValues(body)) {
+            while (lines.hasNextValue()) {
+                ChangeLine line = lines.nextValue();
+                lastHeardAt = System.nanoTime();
+                switch (line.getType()) {
+                    case "HEARTBEAT" -> headSequence = Math.max(headSequence, line.getSequence());
+                    case "CREATED", "UPDATED" -> changed(current.put(line.getAccountId(), line.getUserId()));
+                    case "DELETED" -> changed(current.remove(line.getAccountId(), line.getUserId()));
+                    default -> log.debug("Ignoring change feed line of type {}", line.getType());
+                }
+                if (line.getSequence() > current.sequence && !"HEARTBEAT".equals(line.getType())) {
+                    current.sequence = line.getSequence();
+                    headSequence = Math.max(headSequence, line.getSequence());
+                    propagationDelay.record(Math.max(0, System.currentTimeMillis() - line.getTimestamp()),
+                            TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void changed(List<String> userIds) {
+        for (String userId : userIds) {
+            listeners.forEach(listener -> listener.accountsChanged(userId));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (follower != null) {
+            follower.interrupt();
+        }
+    }
+
+    /**
+     * Replica contents for one feed source. Only the follower thread writes; the per-user lists
+     * are immutable and replaced on every change, so readers never see a partial update.
+     */
+    private static final class State {
+
+        private final String sourceUrl;
+        private final Map<String, List<String>> accountIdsByUser = new ConcurrentHashMap<>();
+        private final Map<String, String> ownerByAccount = new HashMap<>();
+        private volatile long sequence;
+        private String epoch;
+
+        private State(String sourceUrl) {
+            this.sourceUrl = sourceUrl;
+        }
+
+        /**
+         * @return the users whose account IDs changed
+         */
+        private List<String> put(String accountId, String userId) {
+            String previousOwner = userId != null ? ownerByAccount.put(accountId, userId) : ownerByAccount.remove(accountId);
+            if (Objects.equals(previousOwner, userId)) {
+                return List.of();
+            }
+            List<String> changed = new ArrayList<>(2);
+            if (previousOwner != null) {
+                removeFromUser(previousOwner, accountId);
+                changed.add(previousOwner);
+            }
+            if (userId != null) {
+                accountIdsByUser.compute(userId, (id, accountIds) -> {
+                    List<String> updated = accountIds == null ? new ArrayList<>(1) : new ArrayList<>(accountIds);
+                    updated.add(accountId);
+                    return List.copyOf(updated);
+                });
+                changed.add(userId);
+            }
+            return changed;
+        }
+
+        /**
+         * @return the users whose account IDs changed
+         */
+        private List<String> remove(String accountId, String userId) {
+            if (userId == null) {
+                return List.of();
+            }
+            if (userId.equals(ownerByAccount.get(accountId))) {
+                ownerByAccount.remove(accountId);
+            }
+            removeFromUser(userId, accountId);
+            return List.of(userId);
+        }
+
+        private void removeFromUser(String userId, String accountId) {
+            accountIdsByUser.computeIfPresent(userId, (id, accountIds) -> {
+                List<String> updated = new ArrayList<>(accountIds);
+                updated.remove(accountId);
+                // Returning null from computeIfPresent drops the user entry entirely
+                return updated.isEmpty() ? null : List.copyOf(updated);
+            });
+        }
+    }
+
+    /**
+     * Hears about replica changes, on the follower thread
+     */
+    public interface Listener {
+
+        /**
+         * @param userId a user who gained or lost an account
+         */
+        void accountsChanged(String userId);
+
+        /**
+         * A new snapshot replaced the replica; changes before it may have been missed
+         */
+        void reloaded();
+    }
+
+    /**
+     * The fields of a change feed line the replica needs; the full account payload is skipped
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class ChangeLine {
+        private long sequence;
+        private String type;
+        private long timestamp;
+        private String accountId;
+        private String userId;
+        private String epoch;
+    }
+}
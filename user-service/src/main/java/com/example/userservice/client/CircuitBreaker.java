@@ -0,0 +1,152 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Count-based circuit breaker over the most recent downstream calls.
+ * <p>
+ * While closed, every call is let through and its outcome recorded in a ring of the last
+ * {@code slidingWindowSize} calls. Once at least {@code minimumCalls} are recorded and the
+ * failure rate reaches the threshold, the circuit opens and calls are refused for
+ * {@code openDuration}. It then turns half-open and lets {@code halfOpenCalls} trial calls
+ * through: a single failure reopens it, all of them succeeding closes it with a fresh window.
+ * <p>
+ * Each permission carries the state period that granted it, and an outcome only counts towards
+ * that period: a slow call let through while closed that finishes once the circuit is half-open
+ * is neither a trial nor a vote in the next closed window.
+ * <p>
+ * State changes are rare and the critical sections tiny, so all state is guarded by the instance lock.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(String name, AccountServiceProperties.CircuitBreaker settings) {
+        this.name = name;
+        this.failureRateThreshold = settings.getFailureRateThreshold();
+        this.minimumCalls = Math.min(settings.getMinimumCalls(), settings.getSlidingWindowSize());
+        this.openDurationNanos = settings.getOpenDuration().toNanos();
+        this.halfOpenCalls = Math.max(1, settings.getHalfOpenCalls());
+        this.window = new boolean[settings.getSlidingWindowSize()];
+    }
+
+    /**
+     * Ask to make a call. Every granted permission must be followed by exactly one
+     * {@link #onSuccess(Permit)} or {@link #onFailure(Permit)}.
+     *
+     * @return the permission for the call, or null if the circuit refuses it
+     */
+    public synchronized Permit tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDurationNanos) {
+                return null;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return null;
+            }
+            trialsStarted++;
+        }
+        return new Permit(state, generation);
+    }
+
+    public synchronized void onSuccess(Permit permit) {
+        if (permit.generation() != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure(Permit permit) {
+        if (permit.generation() != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+                transitionTo(State.OPEN);
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            // Full ring: the oldest outcome drops out
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State next) {
+        log.warn("Circuit breaker {} changed from {} to {} (failures {} of last {} calls)",
+                 name, state, next, windowFailures, windowCalls);
+        state = next;
+        generation++;
+        switch (next) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowCalls = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+
+    /**
+     * Permission for one call, tagged with the state period that granted it
+     *
+     * @param state the state the circuit was in when the call was let through
+     * @param generation the state period, bumped on every transition
+     */
+    public record Permit(State state, long generation) {
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.userservice.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every RestTemplate exchange per target host as {@code http.client.host.requests}, from
+ * sending the request until the response status and headers are in; the body is streamed
+ * afterwards by the caller. Tagged with host and port (the scheme's default when the URI has
+ * none), method and outcome (status class, or {@code IO_ERROR} when no response arrived),
+ * independent of the underlying HTTP client. Timers are registered once per tag combination.
+ */
+public class HostLatencyInterceptor implements ClientHttpRequestInterceptor {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    public HostLatencyInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        long start = System.nanoTime();
+        String outcome = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            outcome = (response.getStatusCode().value() / 100) + "xx";
+            return response;
+        } finally {
+            TimerKey key = new TimerKey(hostTag(request.getURI()), request.getMethod().name(), outcome);
+            timers.computeIfAbsent(key, this::register)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer register(TimerKey key) {
+        return Timer.builder("http.client.host.requests")
+                .description("Latency of RestTemplate requests per target host")
+                .tag("host", key.host())
+                .tag("method", key.method())
+                .tag("outcome", key.outcome())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static String hostTag(URI uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getHost() + ":" + port;
+    }
+
+    private record TimerKey(String host, String method, String outcome) {
+    }
+}
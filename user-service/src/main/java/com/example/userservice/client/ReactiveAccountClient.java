@@ -0,0 +1,89 @@
+package com.example.userservice.client;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Non-blocking account-service client built on {@link WebClient}.
+ * The response is collected into pooled buffers and streamed through {@link AccountIdsReader}.
+ * <p>
+ * Reactor may run the exchange on any event-loop thread, so the trace context is passed in
+ * explicitly and injected into the outgoing headers rather than read from the current thread.
+ */
+@Component
+@Slf4j
+public class ReactiveAccountClient {
+
+    private static final TextMapSetter<HttpHeaders> HEADER_SETTER = HttpHeaders::set;
+
+    private final WebClient accountWebClient;
+    private final AccountIdsReader accountIdsReader;
+    private final OpenTelemetry openTelemetry;
+
+    public ReactiveAccountClient(WebClient accountWebClient,
+                                 AccountIdsReader accountIdsReader,
+                                 OpenTelemetry openTelemetry) {
+        this.accountWebClient = accountWebClient;
+        this.accountIdsReader = accountIdsReader;
+        this.openTelemetry = openTelemetry;
+    }
+
+    /**
+     * Fetch the account IDs of a user without blocking the calling thread
+     *
+     * @param baseUrl the account-service instance to call
+     * @param userId the user ID
+     * @param traceContext the context whose span becomes the parent of the downstream server span
+     * @param clientSpan the span describing this call, annotated with the request details
+     * @return the user's account IDs, empty if account-service returned no body
+     */
+    public Mono<List<String>> fetchAccountIds(String baseUrl, String userId, Context traceContext, Span clientSpan) {
+        String accountServiceUrl = baseUrl + "/api/accounts/user/" + userId;
+        clientSpan.setAttribute("http.url", accountServiceUrl);
+        clientSpan.setAttribute("http.method", "GET");
+
+        log.info("Calling account-service reactively at URL: {}", accountServiceUrl);
+
+        return accountWebClient.get()
+                .uri(accountServiceUrl)
+                .headers(headers -> {
+                    accountIdsReader.accept(headers);
+                    openTelemetry.getPropagators().getTextMapPropagator().inject(traceContext, headers, HEADER_SETTER);
+                })
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createError();
+                    }
+                    MediaType contentType = response.headers().contentType().orElse(null);
+                    return response.bodyToFlux(DataBuffer.class)
+                            .as(DataBufferUtils::join)
+                            .map(buffer -> readAccountIds(buffer, contentType));
+                })
+                .defaultIfEmpty(List.of());
+    }
+
+    private List<String> readAccountIds(DataBuffer buffer, MediaType contentType) {
+        // Releases the pooled buffer when the stream is closed
+        try (InputStream body = buffer.asInputStream(true)) {
+            List<String> accountIds = accountIdsReader.readAccountIds(body, contentType);
+            return accountIds != null ? accountIds : List.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read account-service response", e);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.example.userservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for calls from user-service to account-service, bound from {@code account-service.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "account-service")
+public class AccountServiceProperties {
+
+    /**
+     * Base URL of account-service, used when {@code urls} is empty.
+     */
+    private String url = "http://localhost:8080";
+
+    /**
+     * Base URLs of the account-service instances to balance calls across.
+     */
+    private List<String> urls = new ArrayList<>();
+
+    /**
+     * How {@code /api/users/{id}/accounts} waits for account-service.
+     */
+    private ClientMode clientMode = ClientMode.BLOCKING;
+
+    /**
+     * Maximum time a request waits for the accounts of a user.
+     */
+    private Duration timeout = Duration.ofSeconds(5);
+
+    /**
+     * Threads that run single blocking RestTemplate lookups off the request thread.
+     */
+    private int fetchThreads = 32;
+
+    /**
+     * Encoding asked of account-service for account lists. SMILE prefers the binary Jackson
+     * encoding and still accepts JSON from instances that do not offer it.
+     */
+    private WireFormat wireFormat = WireFormat.SMILE;
+
+    private final Http http = new Http();
+
+    private final Batch batch = new Batch();
+
+    private final Cache cache = new Cache();
+
+    private final Enrichment enrichment = new Enrichment();
+
+    private final Resilience resilience = new Resilience();
+
+    private final LoadBalancing loadBalancing = new LoadBalancing();
+
+    private final Replica replica = new Replica();
+
+    /**
+     * @return the configured instance base URLs, or the single {@code url} when none are listed
+     */
+    public List<String> endpointUrls() {
+        return urls.isEmpty() ? List.of(url) : List.copyOf(urls);
+    }
+
+    public enum WireFormat {
+        /**
+         * Ask for JSON only.
+         */
+        JSON,
+        /**
+         * Ask for Smile, with JSON as a lower-quality alternative.
+         */
+        SMILE
+    }
+
+    public enum ClientMode {
+        /**
+         * The request thread blocks on RestTemplate for the whole downstream call.
+         */
+        BLOCKING,
+        /**
+         * The downstream call runs on WebClient and the request thread is released while it is in flight.
+         */
+        REACTIVE
+    }
+
+    @Data
+    public static class Http {
+
+        /**
+         * Protocol of the RestTemplate client. HTTP/1.1 uses a pooled Apache HttpClient, HTTP/2
+         * the JDK client multiplexing over one connection per host (h2c, falling back to HTTP/1.1).
+         */
+        private Version version = Version.HTTP_1_1;
+
+        /**
+         * Maximum time to establish a TCP connection.
+         */
+        private Duration connectTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Maximum time to wait for response data once the request is sent.
+         */
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Maximum time to wait for a pooled connection when all connections to a host are leased.
+         */
+        private Duration leaseTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Pooled connections across all hosts.
+         */
+        private int maxConnections = 200;
+
+        /**
+         * Pooled connections to a single host.
+         */
+        private int maxConnectionsPerRoute = 50;
+
+        /**
+         * How long an idle connection is kept for reuse when the server does not say. Keep it
+         * below the server's own keep-alive timeout (20s for Tomcat by default).
+         */
+        private Duration keepAlive = Duration.ofSeconds(15);
+
+        /**
+         * Idle connections are checked for staleness before reuse after this long.
+         */
+        private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+        public enum Version {
+            HTTP_1_1,
+            HTTP_2
+        }
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Coalesce concurrent per-user lookups into a single batch call.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How long the first request of a batch waits for others to join it.
+         */
+        private Duration window = Duration.ofMillis(5);
+
+        /**
+         * Number of distinct users that triggers an immediate flush, at most 1000, the largest
+         * batch account-service accepts.
+         */
+        private int maxSize = 50;
+
+        /**
+         * Number of batch calls that may be in flight at once.
+         */
+        private int concurrency = 4;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Cache account IDs per user in front of account-service.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of users held, evicted by W-TinyLFU beyond that.
+         */
+        private long maximumSize = 100_000;
+
+        /**
+         * Entries older than this are dropped and reloaded on the next read.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * Entries older than this are reloaded in the background on the next read, while the
+         * current value is still served. Must be shorter than the TTL to take effect.
+         */
+        private Duration refreshAfter = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Enrichment {
+
+        /**
+         * Maximum account lookups in flight for one {@code GET /api/users?include=accounts} request.
+         */
+        private int parallelism = 16;
+
+        /**
+         * Overall time budget for enriching a page; users not loaded by then are marked degraded.
+         */
+        private Duration deadline = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Resilience {
+
+        private final Hedge hedge = new Hedge();
+
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        private final Bulkhead bulkhead = new Bulkhead();
+    }
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * Send a second request when the first is still outstanding after the hedge delay.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Percentile of recent successful call latencies used as the hedge delay.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Lower bound on the hedge delay, so a fast downstream is not hit twice for every call.
+         */
+        private Duration minDelay = Duration.ofMillis(10);
+
+        /**
+         * Upper bound on the hedge delay, also used until any latency has been observed.
+         */
+        private Duration maxDelay = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        /**
+         * Fail calls fast while account-service is failing.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Failure rate, in percent of the sliding window, at which the circuit opens.
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * Number of most recent calls the failure rate is computed over.
+         */
+        private int slidingWindowSize = 20;
+
+        /**
+         * Calls that must be recorded before the failure rate is evaluated.
+         */
+        private int minimumCalls = 10;
+
+        /**
+         * How long the circuit stays open before trial calls are let through.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /**
+         * Trial calls in the half-open state; all must succeed to close the circuit again.
+         */
+        private int halfOpenCalls = 3;
+    }
+
+    @Data
+    public static class Bulkhead {
+
+        /**
+         * Cap the number of calls to account-service in flight at once, hedges included.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum concurrent calls; further calls are rejected immediately.
+         */
+        private int maxConcurrentCalls = 64;
+    }
+
+    @Data
+    public static class LoadBalancing {
+
+        /**
+         * How an instance is picked for each call.
+         */
+        private Strategy strategy = Strategy.POWER_OF_TWO_CHOICES;
+
+        /**
+         * Time constant of the per-instance latency average; older samples fade out over roughly this long.
+         */
+        private Duration latencyDecay = Duration.ofSeconds(10);
+
+        private final HealthCheck healthCheck = new HealthCheck();
+
+        private final OutlierEjection outlierEjection = new OutlierEjection();
+
+        public enum Strategy {
+            /**
+             * Compare two random instances and take the one with the lower latency times outstanding calls.
+             */
+            POWER_OF_TWO_CHOICES,
+            /**
+             * Take the instance with the fewest outstanding calls, the lower latency breaking ties.
+             */
+            LEAST_OUTSTANDING
+        }
+    }
+
+    @Data
+    public static class HealthCheck {
+
+        /**
+         * Probe every instance in the background and stop routing to those that fail.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Path probed on each instance; any 2xx answer counts as healthy.
+         */
+        private String path = "/actuator/health";
+
+        private Duration interval = Duration.ofSeconds(5);
+
+        private Duration timeout = Duration.ofSeconds(1);
+
+        /**
+         * Consecutive failed probes that mark an instance unhealthy.
+         */
+        private int unhealthyThreshold = 2;
+
+        /**
+         * Consecutive successful probes that mark an unhealthy instance healthy again.
+         */
+        private int healthyThreshold = 1;
+    }
+
+    @Data
+    public static class OutlierEjection {
+
+        /**
+         * Consecutive failed calls after which an instance is ejected, 0 to disable ejection.
+         */
+        private int consecutiveFailures = 5;
+
+        /**
+         * Ejection time for a first ejection, multiplied by the number of recent ejections of the instance;
+         * each base ejection time spent back in rotation forgets one of them.
+         */
+        private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+        /**
+         * Upper bound on the ejection time.
+         */
+        private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+        /**
+         * Largest share of instances, in percent, that may be ejected at once.
+         */
+        private int maxEjectionPercent = 50;
+    }
+
+    @Data
+    public static class Replica {
+
+        /**
+         * Follow the account-service change feed into a local copy of account ownership and
+         * answer account lookups from it while it is fresh.
+         */
+        private boolean enabled = true;
+
+        /**
+         * The replica answers lookups only if it heard from the feed this recently; otherwise
+         * lookups go to account-service as usual.
+         */
+        private Duration maxStaleness = Duration.ofSeconds(5);
+
+        /**
+         * First wait before reconnecting to a failed feed, doubled on each further failure.
+         */
+        private Duration reconnectBackoff = Duration.ofSeconds(1);
+
+        /**
+         * Upper bound on the reconnect wait.
+         */
+        private Duration maxReconnectBackoff = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.userservice.config;
+
+import com.example.userservice.client.HostLatencyInterceptor;
+import com.example.userservice.client.LeaseTimingConnectionManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+
+/**
+ * HTTP client behind the RestTemplate used for account-service calls, configured from
+ * {@code account-service.http.*}.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean
+    public ClientHttpRequestFactory accountRequestFactory(AccountServiceProperties properties, MeterRegistry meterRegistry) {
+        AccountServiceProperties.Http http = properties.getHttp();
+        if (http.getVersion() == AccountServiceProperties.Http.Version.HTTP_2) {
+            // The JDK client multiplexes requests over one connection per host, so there is no pool to size
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(http.getConnectTimeout())
+                    .build());
+            requestFactory.setReadTimeout(http.getResponseTimeout());
+            return requestFactory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(http.getMaxConnections())
+                .setMaxConnPerRoute(http.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(http.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(http.getResponseTimeout()))
+                        .setValidateAfterInactivity(TimeValue.of(http.getValidateAfterInactivity()))
+                        .build())
+                .build();
+        // Pool size, leased, available and pending connections
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "account-service").bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(new LeaseTimingConnectionManager(connectionManager, meterRegistry))
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(http.getLeaseTimeout()))
+                        .setResponseTimeout(Timeout.of(http.getResponseTimeout()))
+                        // Used when the server sends no Keep-Alive header
+                        .setConnectionKeepAlive(TimeValue.of(http.getKeepAlive()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(http.getKeepAlive()))
+                // The default strategy silently retries 503s; AccountCallGuard hedges and counts failures instead
+                .disableAutomaticRetries()
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    @Bean
+    public RestTemplate restTemplate(ClientHttpRequestFactory accountRequestFactory, MeterRegistry meterRegistry) {
+        RestTemplate restTemplate = new RestTemplate(accountRequestFactory);
+        restTemplate.getInterceptors().add(new HostLatencyInterceptor(meterRegistry));
+        return restTemplate;
+    }
+}
@@ -1,31 +1,107 @@
 package com.example.userservice.config;
 
+import com.example.observability.logging.LoggingPipelineMetrics;
+import com.example.observability.tracing.DeferredSpanProcessor;
+import com.example.observability.tracing.DiskBufferedSpanExporter;
+import com.example.observability.tracing.RateLimitingSampler;
+import com.example.observability.tracing.RecordingSampler;
+import com.example.observability.tracing.RuleBasedSampler;
+import com.example.observability.tracing.SamplingContextFilter;
+import com.example.observability.tracing.SpanMetricsProcessor;
+import com.example.observability.tracing.SpanPipelineMetrics;
+import com.example.observability.tracing.SpanSegmentLog;
+import com.example.observability.tracing.TailSamplingSpanProcessor;
+import com.example.observability.tracing.TracingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
 import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.exporter.logging.LoggingSpanExporter;
 import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporterBuilder;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.SpanProcessor;
 import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.semconv.ResourceAttributes;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.core.Ordered;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 @Configuration
+@EnableConfigurationProperties(TracingProperties.class)
 public class ObservabilityConfig {
 
     @Value("${spring.application.name}")
     private String applicationName;
 
     @Bean
-    public OpenTelemetry openTelemetry() {
+    public SdkMeterProvider spanPipelineMeterProvider(TracingProperties tracingProperties, MeterRegistry meterRegistry) {
+        // Private meter provider for the SDK's own span pipeline metrics, bridged to Micrometer
+        return SdkMeterProvider.builder()
+                .registerMetricReader(PeriodicMetricReader
+                        .builder(new SpanPipelineMetrics(meterRegistry, "otlp"))
+                        .setInterval(tracingProperties.getExport().getMetricsInterval())
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public SpanMetricsProcessor spanMetricsProcessor(TracingProperties tracingProperties,
+                                                     ObjectProvider<PrometheusRegistry> prometheusRegistry) {
+        // Span-derived RED metrics, scraped straight from the processor so exemplars carry the span's own IDs
+        TracingProperties.SpanMetrics spanMetrics = tracingProperties.getSpanMetrics();
+        SpanMetricsProcessor processor = new SpanMetricsProcessor(spanMetrics.getMaxSpanNames(), spanMetrics.getScope());
+        prometheusRegistry.ifAvailable(registry -> registry.register(processor));
+        return processor;
+    }
+
+    @Bean
+    public DeferredSpanProcessor exportSpanProcessor(TracingProperties tracingProperties,
+                                                     SdkMeterProvider spanPipelineMeterProvider,
+                                                     MeterRegistry meterRegistry) {
+        TracingProperties.Export export = tracingProperties.getExport();
+        DeferredSpanProcessor processor = new DeferredSpanProcessor(
+                () -> exportProcessor(tracingProperties, spanPipelineMeterProvider, meterRegistry),
+                export.getMaxDeferredSpans(),
+                meterRegistry);
+        if (!export.isDeferred()) {
+            processor.initialize();
+        }
+        return processor;
+    }
+
+    @Bean
+    public ApplicationListener<ApplicationReadyEvent> spanExportInitializer(DeferredSpanProcessor exportSpanProcessor) {
+        // Exporters, batch processors and the disk buffer replay are built once the application serves traffic
+        return event -> exportSpanProcessor.initializeInBackground();
+    }
+
+    @Bean
+    public OpenTelemetry openTelemetry(TracingProperties tracingProperties,
+                                       SpanMetricsProcessor spanMetricsProcessor,
+                                       DeferredSpanProcessor exportSpanProcessor,
+                                       MeterRegistry meterRegistry) {
         // Create resource with service information
         Resource resource = Resource.getDefault()
                 .merge(Resource.create(Attributes.of(
@@ -33,38 +109,152 @@ public class ObservabilityConfig {
                         ResourceAttributes.SERVICE_VERSION, "1.0.0"
                 )));
 
-        // Create console exporter for development (logs spans to console)
-        SpanExporter loggingExporter = new LoggingSpanExporter();
+        TracingProperties.Export export = tracingProperties.getExport();
+        TracingProperties.TailSampling tailSampling = tracingProperties.getTailSampling();
 
-        // Create OTLP exporter for production
-        SpanExporter otlpExporter = OtlpHttpSpanExporter.builder()
-                // Configure endpoint for backend (e.g., Jaeger, Zipkin, etc.)
-                .setEndpoint("http://localhost:4318/v1/traces")
-                .build();
+        // Set up the tracer provider with the configured sampler and exporters
+        SdkTracerProviderBuilder tracerProviderBuilder = SdkTracerProvider.builder()
+                .setResource(resource);
 
-        // Set up the tracer provider with desired exporters and sampler
-        SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
-                .setResource(resource)
-                .setSampler(Sampler.alwaysOn()) // Or use parentBased, traceIdRatioBased, etc.
-                .addSpanProcessor(BatchSpanProcessor.builder(loggingExporter).build())
-                .addSpanProcessor(BatchSpanProcessor.builder(otlpExporter).build())
-                .build();
+        TracingProperties.SpanMetrics spanMetrics = tracingProperties.getSpanMetrics();
+        Sampler sampler = sampler(tracingProperties.getSampling());
+        if (tailSampling.isEnabled()
+                || spanMetrics.isEnabled() && spanMetrics.getScope() == SpanMetricsProcessor.Scope.ALL) {
+            // Every span reaches the processors; unless tail sampling decides, only sampled ones are exported
+            sampler = new RecordingSampler(sampler, false);
+        } else if (spanMetrics.isEnabled()) {
+            // Unsampled requests record only their server span, for the span metrics
+            sampler = new RecordingSampler(sampler, true);
+        }
+        tracerProviderBuilder.setSampler(sampler);
+        if (spanMetrics.isEnabled()) {
+            tracerProviderBuilder.addSpanProcessor(spanMetricsProcessor);
+        }
+
+        boolean exporting = export.getLogging().isEnabled() || export.getOtlp().isEnabled();
+        if (exporting && tailSampling.isEnabled()) {
+            // Hold each trace until its local root ends and hand only the kept ones to the exporters
+            tracerProviderBuilder.addSpanProcessor(new TailSamplingSpanProcessor(
+                    exportSpanProcessor,
+                    tailSampling.getLatencyThreshold(),
+                    Set.copyOf(tailSampling.getSpanNames()),
+                    tailSampling.isKeepErrors(),
+                    tailSampling.getMaxBufferedSpans(),
+                    tailSampling.getMaxSpansPerTrace(),
+                    tailSampling.getMaxDecidedTraces(),
+                    tailSampling.getDecisionWait(),
+                    meterRegistry));
+        } else if (exporting) {
+            tracerProviderBuilder.addSpanProcessor(exportSpanProcessor);
+        }
 
         // Create the OpenTelemetry instance
         return OpenTelemetrySdk.builder()
-                .setTracerProvider(tracerProvider)
+                .setTracerProvider(tracerProviderBuilder.build())
                 .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
                 .build();
     }
 
+    /**
+     * Build the export pipeline from {@code tracing.export.*}: a batch processor per enabled
+     * exporter, with the OTLP exporter behind the disk buffer if configured.
+     */
+    private SpanProcessor exportProcessor(TracingProperties tracingProperties,
+                                          SdkMeterProvider spanPipelineMeterProvider,
+                                          MeterRegistry meterRegistry) throws IOException {
+        TracingProperties.Export export = tracingProperties.getExport();
+        // Under tail sampling, unsampled spans of kept traces are exported too
+        boolean exportUnsampled = tracingProperties.getTailSampling().isEnabled();
+
+        List<SpanProcessor> exportProcessors = new ArrayList<>();
+        if (export.getLogging().isEnabled()) {
+            // Console exporter for development (logs spans to console), enabled by the dev profile
+            exportProcessors.add(BatchSpanProcessor.builder(new LoggingSpanExporter())
+                    .setExportUnsampledSpans(exportUnsampled)
+                    .build());
+        }
+
+        if (export.getOtlp().isEnabled()) {
+            // Create OTLP exporter for production
+            OtlpHttpSpanExporterBuilder otlpExporterBuilder = OtlpHttpSpanExporter.builder()
+                    // Configure endpoint for backend (e.g., Jaeger, Zipkin, etc.)
+                    .setEndpoint(export.getOtlp().getEndpoint())
+                    .setTimeout(export.getOtlp().getTimeout());
+
+            TracingProperties.DiskBuffer diskBuffer = export.getDiskBuffer();
+            if (diskBuffer.isEnabled()) {
+                // Fail fast and let the disk buffer retry, rather than stalling the processor in backoff
+                otlpExporterBuilder.setRetryPolicy(null);
+            }
+            SpanExporter otlpExporter = otlpExporterBuilder.build();
+
+            if (diskBuffer.isEnabled()) {
+                // Spill to disk instead of dropping spans while the collector is unreachable
+                otlpExporter = new DiskBufferedSpanExporter(otlpExporter,
+                        new SpanSegmentLog(diskBuffer.getDirectory(),
+                                (int) diskBuffer.getSegmentSize().toBytes(),
+                                diskBuffer.getMaxSize().toBytes()),
+                        export.getOtlp().getEndpoint(),
+                        export.getOtlp().getTimeout(),
+                        diskBuffer.getReplayInterval(),
+                        meterRegistry);
+            }
+
+            TracingProperties.Batch batch = export.getBatch();
+            exportProcessors.add(BatchSpanProcessor.builder(otlpExporter)
+                    .setMaxQueueSize(batch.getMaxQueueSize())
+                    .setMaxExportBatchSize(batch.getMaxExportBatchSize())
+                    .setScheduleDelay(batch.getScheduleDelay())
+                    .setExporterTimeout(batch.getExporterTimeout())
+                    .setMeterProvider(spanPipelineMeterProvider)
+                    .setExportUnsampledSpans(exportUnsampled)
+                    .build());
+        }
+        return SpanProcessor.composite(exportProcessors);
+    }
+
+    /**
+     * Build the head sampler from {@code tracing.sampling.*}: per-endpoint rules over a default ratio,
+     * optionally rate limited, and by default only consulted for root spans.
+     */
+    private Sampler sampler(TracingProperties.Sampling sampling) {
+        Sampler root = Sampler.traceIdRatioBased(sampling.getRatio());
+        if (!sampling.getRules().isEmpty()) {
+            RuleBasedSampler rules = new RuleBasedSampler(root);
+            for (TracingProperties.Rule rule : sampling.getRules()) {
+                rules.addRule(rule.getSpanName(), rule.getPath(), Sampler.traceIdRatioBased(rule.getRatio()));
+            }
+            root = rules;
+        }
+        if (sampling.getMaxTracesPerSecond() > 0) {
+            root = new RateLimitingSampler(root, sampling.getMaxTracesPerSecond());
+        }
+        return sampling.isParentBased() ? Sampler.parentBased(root) : root;
+    }
+
+    @Bean
+    public FilterRegistrationBean<SamplingContextFilter> samplingContextFilter() {
+        // Must run before the HTTP server observation filter starts the server span
+        FilterRegistrationBean<SamplingContextFilter> registration =
+                new FilterRegistrationBean<>(new SamplingContextFilter());
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public LoggingPipelineMetrics loggingPipelineMetrics(MeterRegistry meterRegistry) {
+        // Queue depth and drops of the appenders and filters configured in logback-spring.xml
+        return new LoggingPipelineMetrics(meterRegistry);
+    }
+
     @Bean
     public io.opentelemetry.api.trace.Tracer otelTracer(OpenTelemetry openTelemetry) {
         return openTelemetry.getTracer(applicationName);
     }
     
     @Bean
-    public RestTemplate restTemplate() {
-        // Configure RestTemplate with tracing interceptors
-        return new RestTemplate();
+    public WebClient accountWebClient() {
+        // Plain builder on purpose: trace headers are injected by ReactiveAccountClient from an explicit context
+        return WebClient.builder().build();
     }
 }
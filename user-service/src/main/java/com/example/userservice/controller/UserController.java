@@ -1,15 +1,29 @@
 package com.example.userservice.controller;
 
+import com.example.observability.admission.ConcurrencyLimited;
+import com.example.observability.admission.Priority;
+import com.example.userservice.model.CursorPage;
 import com.example.userservice.model.User;
 import com.example.userservice.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -18,24 +32,119 @@ import java.util.List;
 @Slf4j
 public class UserController {
     
+    private static final String INCLUDE_ACCOUNTS = "accounts";
+    
+    // Number of users in the response whose accounts could not be loaded in time
+    private static final String DEGRADED_HEADER = "X-Accounts-Degraded";
+    
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final String NDJSON = "application/x-ndjson";
+    
     private final UserService userService;
+    private final ObjectWriter ndjsonWriter;
     
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper) {
         this.userService = userService;
+        // One JSON document per line; the stream itself is closed by the servlet container
+        this.ndjsonWriter = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
     
+    // The original unpaged array, kept for existing clients; /page and /export bound memory
     @GetMapping
     @WithSpan("UserController.getAllUsers")
-    public List<User> getAllUsers() {
+    @ConcurrencyLimited(Priority.SHEDDABLE)
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) String include) {
         log.info("GET request received for all users");
+        if (INCLUDE_ACCOUNTS.equals(include)) {
+            List<User> users = userService.getAllUsersWithAccounts();
+            long degraded = users.stream().filter(User::isAccountsDegraded).count();
+            log.info("Returning {} users with accounts, {} degraded", users.size(), degraded);
+            return withDegradedHeader(users, degraded);
+        }
         List<User> users = userService.getAllUsers();
         log.info("Returning {} users", users.size());
-        return users;
+        return ResponseEntity.ok(users);
+    }
+    
+    @GetMapping("/page")
+    @WithSpan("UserController.getUsersPage")
+    @ConcurrencyLimited(Priority.SHEDDABLE)
+    public ResponseEntity<CursorPage<User>> getUsersPage(
+            @RequestParam(required = false) String include,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        log.info("GET request received for users page, limit: {}", limit);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            if (INCLUDE_ACCOUNTS.equals(include)) {
+                CursorPage<User> page = userService.getUsersPageWithAccounts(cursor, limit);
+                long degraded = page.getItems().stream().filter(User::isAccountsDegraded).count();
+                log.info("Returning {} users with accounts, {} degraded", page.getItems().size(), degraded);
+                return withDegradedHeader(page, degraded);
+            }
+            CursorPage<User> page = userService.getUsersPage(cursor, limit);
+            log.info("Returning {} users", page.getItems().size());
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejecting malformed users cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    private static <T> ResponseEntity<T> withDegradedHeader(T body, long degraded) {
+        if (degraded > 0) {
+            return ResponseEntity.ok()
+                    .header(DEGRADED_HEADER, String.valueOf(degraded))
+                    .body(body);
+        }
+        return ResponseEntity.ok(body);
+    }
+    
+    @GetMapping(value = "/export", produces = NDJSON)
+    @WithSpan("UserController.exportUsers")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        log.info("GET request received for users export");
+        // The body is written on an MVC async thread, so carry the request's trace context over
+        Context context = Context.current();
+        StreamingResponseBody body = outputStream -> {
+            try (Scope ignored = context.makeCurrent();
+                 SequenceWriter writer = ndjsonWriter.writeValues(outputStream)) {
+                userService.exportUsers(writer);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+    
+    @GetMapping("/search")
+    @WithSpan("UserController.searchUsers")
+    @ConcurrencyLimited(Priority.NORMAL)
+    public ResponseEntity<List<User>> searchUsers(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "true") boolean fuzzy,
+            @RequestParam(defaultValue = "" + DEFAULT_SEARCH_LIMIT) int limit) {
+        // The query itself is not logged, it is usually personal data
+        log.info("GET request received for user search, limit: {}", limit);
+        if (q.isBlank() || limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<User> users = userService.searchUsers(q, limit, fuzzy);
+        log.info("Returning {} users from search", users.size());
+        return ResponseEntity.ok(users);
     }
     
     @GetMapping("/{id}")
     @WithSpan("UserController.getUserById")
+    @ConcurrencyLimited(Priority.CRITICAL)
     public ResponseEntity<User> getUserById(@PathVariable String id) {
         log.info("GET request received for user with ID: {}", id);
         return userService.getUserById(id)
@@ -51,18 +160,28 @@ public class UserController {
     
     @GetMapping("/{id}/accounts")
     @WithSpan("UserController.getUserWithAccounts")
-    public ResponseEntity<User> getUserWithAccounts(@PathVariable String id) {
+    @ConcurrencyLimited(Priority.NORMAL)
+    public Mono<ResponseEntity<User>> getUserWithAccounts(@PathVariable String id) {
         log.info("GET request received for user with accounts, ID: {}", id);
-        return userService.getUserWithAccounts(id)
-                .map(user -> {
-                    log.info("Returning user with {} accounts: {}", 
-                             user.getAccountIds().size(), 
-                             user.getUsername());
-                    return ResponseEntity.ok(user);
-                })
-                .orElseGet(() -> {
-                    log.warn("User not found with ID: {}", id);
-                    return ResponseEntity.notFound().build();
-                });
+        return userService.getUserWithAccountsAsync(id)
+                .map(userOpt -> userOpt
+                        .map(user -> {
+                            log.info("Returning user with {} accounts: {}", 
+                                     user.getAccountIds().size(), 
+                                     user.getUsername());
+                            return ResponseEntity.ok(user);
+                        })
+                        .orElseGet(() -> {
+                            log.warn("User not found with ID: {}", id);
+                            return ResponseEntity.notFound().build();
+                        }));
+    }
+    
+    @DeleteMapping("/{id}/accounts/cache")
+    @WithSpan("UserController.invalidateAccounts")
+    public ResponseEntity<Void> invalidateAccounts(@PathVariable String id) {
+        log.info("DELETE request received for cached accounts of user ID: {}", id);
+        userService.invalidateAccounts(id);
+        return ResponseEntity.noContent().build();
     }
 }
@@ -1,5 +1,6 @@
 package com.example.userservice.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,6 +19,10 @@ public class User {
     private String username;
     private List<String> accountIds = new ArrayList<>();
     
+    // Set when accounts were requested but could not be loaded in time; omitted from JSON otherwise
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean accountsDegraded;
+    
     // Constructor without accountIds for backward compatibility
     public User(String id, String firstName, String lastName, String email, String username) {
         this.id = id;
@@ -26,4 +31,11 @@ public class User {
         this.email = email;
         this.username = username;
     }
+    
+    /**
+     * @return a copy of this user without account data, safe to enrich per request
+     */
+    public User withoutAccounts() {
+        return new User(id, firstName, lastName, email, username);
+    }
 }
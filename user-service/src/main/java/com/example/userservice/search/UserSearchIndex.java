@@ -0,0 +1,479 @@
+package com.example.userservice.search;
+
+import com.example.userservice.model.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory search over users: exact lookups by username and email, and prefix and
+ * typo-tolerant matches on first and last names.
+ * <p>
+ * Usernames and emails are hash-indexed, ignoring case. Names are split into lower-case terms,
+ * each listing the users that carry it, kept both hashed and in a sorted term dictionary for
+ * range scans. A prefix query
+ * is a range scan of the dictionary. A fuzzy query walks the dictionary in order as an implicit
+ * trie: neighbouring terms share the edit-distance rows of their common prefix, and every term
+ * under a prefix that is already too far from the query is skipped. Both costs depend on the
+ * number of distinct names rather than the number of users.
+ * <p>
+ * Writes are serialized and applied in place, so the index follows every change without a
+ * rebuild; searches take no locks and may or may not see a user being written concurrently.
+ * The names, username and email of an indexed user must not be changed in place; index a new
+ * instance instead.
+ */
+@Component
+public class UserSearchIndex {
+
+    // Upper bound on the edits allowed for a fuzzy word; short words get fewer (see maxEdits)
+    private static final int MAX_EDITS = 2;
+
+    // Users examined per search when several words must match, bounding broad queries
+    private static final int MAX_CANDIDATES = 10_000;
+
+    // Terms under a pruned prefix stepped over one by one before seeking past the rest
+    private static final int SEEK_AFTER_SKIPPED = 8;
+
+    private final Map<String, User> byUsername = new ConcurrentHashMap<>();
+    private final Map<String, User> byEmail = new ConcurrentHashMap<>();
+    private final Map<String, Postings> postingsByTerm = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Postings> nameTerms = new ConcurrentSkipListMap<>();
+    private final AtomicInteger indexedUsers = new AtomicInteger();
+
+    public UserSearchIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("users.search.indexed", indexedUsers, AtomicInteger::get)
+                .description("Users in the search index")
+                .register(meterRegistry);
+        Gauge.builder("users.search.terms", postingsByTerm, Map::size)
+                .description("Distinct name terms in the search index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Index a user, replacing the entries of the version it supersedes
+     *
+     * @param previous the indexed version of the same user, or null for a new user
+     * @param current the user to index
+     */
+    public synchronized void update(User previous, User current) {
+        if (previous != null) {
+            remove(previous);
+        }
+        indexedUsers.incrementAndGet();
+        putExact(byUsername, current.getUsername(), current);
+        putExact(byEmail, current.getEmail(), current);
+        for (String term : nameTerms(current)) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTerm.put(term, postings);
+                nameTerms.put(term, postings);
+            }
+            postings.add(current);
+        }
+    }
+
+    /**
+     * @param user an indexed user
+     */
+    public synchronized void remove(User user) {
+        indexedUsers.decrementAndGet();
+        removeExact(byUsername, user.getUsername(), user);
+        removeExact(byEmail, user.getEmail(), user);
+        for (String term : nameTerms(user)) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings != null && postings.remove(user) && postings.isEmpty()) {
+                postingsByTerm.remove(term);
+                nameTerms.remove(term);
+            }
+        }
+    }
+
+    /**
+     * @return the user with this username, ignoring case, or null
+     */
+    public User findByUsername(String username) {
+        return username == null ? null : byUsername.get(normalize(username));
+    }
+
+    /**
+     * @return the user with this email, ignoring case, or null
+     */
+    public User findByEmail(String email) {
+        return email == null ? null : byEmail.get(normalize(email));
+    }
+
+    /**
+     * Find users by username, email or name.
+     * <p>
+     * Every word of the query must start a term of the user's first or last name, or with
+     * {@code fuzzy}, be within a few edits of one: none below 3 characters, 1 below 6, else 2.
+     * The word carried by the fewest users selects the candidates, which the other words
+     * filter, and at most {@value #MAX_CANDIDATES} candidates are examined. Typos are only
+     * looked for when neither the username nor the email matched exactly.
+     *
+     * @param query a username, an email, or words of a name
+     * @param limit maximum number of users returned
+     * @param fuzzy also match names within a few typos of the query
+     * @return matching users, best first: exact username or email, exact and prefix name
+     *         matches, then fuzzy name matches by increasing distance
+     */
+    public List<User> search(String query, int limit, boolean fuzzy) {
+        Map<String, User> results = new LinkedHashMap<>();
+        String normalized = normalize(query);
+        addMatch(results, byUsername.get(normalized), limit);
+        addMatch(results, byEmail.get(normalized), limit);
+        boolean exactMatch = !results.isEmpty();
+
+        List<String> words = words(normalized);
+        if (words.isEmpty() || results.size() >= limit) {
+            return new ArrayList<>(results.values());
+        }
+        String lead = mostSelective(words);
+        List<String> others = new ArrayList<>(words);
+        others.remove(lead);
+
+        Candidates candidates = new Candidates(results, others, limit, fuzzy);
+        for (Postings postings : prefixRange(lead).values()) {
+            if (!candidates.offer(postings)) {
+                return new ArrayList<>(results.values());
+            }
+        }
+        int maxEdits = fuzzy && !exactMatch ? maxEdits(lead.length()) : 0;
+        if (maxEdits > 0) {
+            for (String term : fuzzyTerms(lead, maxEdits)) {
+                Postings postings = postingsByTerm.get(term);
+                if (postings != null && !candidates.offer(postings)) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * The word whose prefix range holds the fewest users, counting each only as far as needed
+     */
+    private String mostSelective(List<String> words) {
+        String best = words.get(0);
+        if (words.size() == 1) {
+            return best;
+        }
+        long bestCount = Long.MAX_VALUE;
+        for (String word : words) {
+            long count = 0;
+            for (Postings postings : prefixRange(word).values()) {
+                count += postings.size;
+                if (count >= bestCount) {
+                    break;
+                }
+            }
+            if (count < bestCount) {
+                best = word;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    private Map<String, Postings> prefixRange(String prefix) {
+        return nameTerms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Terms within {@code maxEdits} of the word that do not start with it, nearest first, then in
+     * term order
+     */
+    List<String> fuzzyTerms(String word, int maxEdits) {
+        int length = word.length();
+        // Row d holds the distances between the first d characters of the current term and each
+        // prefix of the word; deeper rows than this are always pruned
+        int[][] rows = new int[length + maxEdits + 2][length + 1];
+        for (int j = 0; j <= length; j++) {
+            rows[0][j] = j;
+        }
+        List<List<String>> byDistance = new ArrayList<>();
+        for (int i = 0; i <= maxEdits; i++) {
+            byDistance.add(new ArrayList<>());
+        }
+
+        String previous = "";
+        String prunedPrefix = null;
+        int skipped = 0;
+        Iterator<String> terms = nameTerms.keySet().iterator();
+        while (terms.hasNext()) {
+            String term = terms.next();
+            if (prunedPrefix != null) {
+                if (!term.startsWith(prunedPrefix)) {
+                    prunedPrefix = null;
+                } else {
+                    // Seeking costs a descent of the dictionary, only worth it past a long run
+                    if (++skipped == SEEK_AFTER_SKIPPED) {
+                        terms = nameTerms.tailMap(prunedPrefix + Character.MAX_VALUE, false).keySet().iterator();
+                        prunedPrefix = null;
+                    }
+                    continue;
+                }
+            }
+            // Rows up to the prefix shared with the previous term are still valid
+            int depth = commonPrefixLength(previous, term);
+            boolean pruned = false;
+            while (depth < term.length()) {
+                depth++;
+                if (computeRow(rows, depth, term, word) > maxEdits) {
+                    pruned = true;
+                    break;
+                }
+            }
+            if (pruned) {
+                // No term under this prefix can come back within maxEdits
+                previous = term.substring(0, depth);
+                prunedPrefix = previous;
+                skipped = 0;
+                continue;
+            }
+            int distance = rows[depth][length];
+            if (distance <= maxEdits && !term.startsWith(word)) {
+                byDistance.get(distance).add(term);
+            }
+            previous = term;
+        }
+
+        List<String> nearest = new ArrayList<>();
+        byDistance.forEach(nearest::addAll);
+        return nearest;
+    }
+
+    /**
+     * Fill row {@code depth} from the rows above it, with adjacent transpositions counted as one edit
+     *
+     * @return the smallest distance in the row, which no longer term with this prefix can beat
+     */
+    private static int computeRow(int[][] rows, int depth, String term, String word) {
+        int[] row = rows[depth];
+        int[] above = rows[depth - 1];
+        char c = term.charAt(depth - 1);
+        row[0] = depth;
+        int min = depth;
+        for (int j = 1; j <= word.length(); j++) {
+            int cost = c == word.charAt(j - 1) ? 0 : 1;
+            int distance = Math.min(Math.min(above[j] + 1, row[j - 1] + 1), above[j - 1] + cost);
+            if (depth > 1 && j > 1 && c == word.charAt(j - 2) && term.charAt(depth - 2) == word.charAt(j - 1)) {
+                distance = Math.min(distance, rows[depth - 2][j - 2] + 1);
+            }
+            row[j] = distance;
+            min = Math.min(min, distance);
+        }
+        return min;
+    }
+
+    private static int editDistance(String a, String b) {
+        int[][] rows = new int[a.length() + 1][b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            rows[0][j] = j;
+        }
+        for (int depth = 1; depth <= a.length(); depth++) {
+            computeRow(rows, depth, a, b);
+        }
+        return rows[a.length()][b.length()];
+    }
+
+    private static int maxEdits(int wordLength) {
+        return Math.min(MAX_EDITS, wordLength < 3 ? 0 : wordLength < 6 ? 1 : 2);
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void addMatch(Map<String, User> results, User user, int limit) {
+        if (user != null && results.size() < limit) {
+            results.putIfAbsent(user.getId(), user);
+        }
+    }
+
+    private static void putExact(Map<String, User> index, String key, User user) {
+        if (key != null) {
+            index.put(normalize(key), user);
+        }
+    }
+
+    private static void removeExact(Map<String, User> index, String key, User user) {
+        if (key != null) {
+            index.remove(normalize(key), user);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Split on anything but letters and digits
+     */
+    private static List<String> words(String normalized) {
+        List<String> words = new ArrayList<>(2);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static List<String> nameTerms(User user) {
+        List<String> terms = user.getFirstName() != null ? words(normalize(user.getFirstName())) : new ArrayList<>(2);
+        if (user.getLastName() != null) {
+            for (String term : words(normalize(user.getLastName()))) {
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Collects the users of candidate terms that also match the remaining query words
+     */
+    private static final class Candidates {
+
+        private final Map<String, User> results;
+        private final List<String> others;
+        private final int limit;
+        private final boolean fuzzy;
+        private int examined;
+
+        Candidates(Map<String, User> results, List<String> others, int limit, boolean fuzzy) {
+            this.results = results;
+            this.others = others;
+            this.limit = limit;
+            this.fuzzy = fuzzy;
+        }
+
+        /**
+         * @return false once the search is complete
+         */
+        boolean offer(Postings postings) {
+            int size = postings.size;
+            User[] users = postings.users;
+            for (int i = 0; i < size && i < users.length; i++) {
+                User user = users[i];
+                if (user == null) {
+                    continue;
+                }
+                if (++examined > MAX_CANDIDATES) {
+                    return false;
+                }
+                if (matchesOthers(user)) {
+                    results.putIfAbsent(user.getId(), user);
+                    if (results.size() >= limit) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesOthers(User user) {
+            if (others.isEmpty()) {
+                return true;
+            }
+            List<String> terms = nameTerms(user);
+            for (String word : others) {
+                if (!matchesAny(terms, word)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matchesAny(List<String> terms, String word) {
+            for (String term : terms) {
+                if (term.startsWith(word)) {
+                    return true;
+                }
+            }
+            int maxEdits = fuzzy ? maxEdits(word.length()) : 0;
+            if (maxEdits > 0) {
+                for (String term : terms) {
+                    if (Math.abs(term.length() - word.length()) <= maxEdits && editDistance(term, word) <= maxEdits) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The users carrying one name term, appended and removed by the single writer. Readers take
+     * the size before the array, so every slot below that size is filled in the array they see,
+     * except the last one after a concurrent removal, which reads as null. A removal replaces the
+     * array instead of moving users within it, so a reader part way through the old array still
+     * sees every user that stays.
+     */
+    private static final class Postings {
+
+        private volatile User[] users = new User[1];
+        private volatile int size;
+
+        void add(User user) {
+            User[] current = users;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                users = current;
+            }
+            current[size] = user;
+            size = size + 1;
+        }
+
+        /**
+         * Remove a user by copying the others into a new array. Linear in the number of users
+         * with the term, which is fine for the rare removals and updates.
+         *
+         * @return true if the user was found
+         */
+        boolean remove(User user) {
+            User[] current = users;
+            int last = size - 1;
+            for (int i = 0; i <= last; i++) {
+                if (current[i] == user) {
+                    User[] remaining = new User[current.length];
+                    System.arraycopy(current, 0, remaining, 0, i);
+                    System.arraycopy(current, i + 1, remaining, i, last - i);
+                    // The array before the size, so a reader that sees the new size sees the new array
+                    users = remaining;
+                    size = last;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -1,31 +1,56 @@
 package com.example.userservice.service;
 
+import com.example.userservice.client.AccountIdsCache;
+import com.example.userservice.config.AccountServiceProperties;
+import com.example.userservice.model.CursorPage;
 import com.example.userservice.model.User;
+import com.example.userservice.search.UserSearchIndex;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Service
 @Slf4j
 public class UserService {
     
-    private final List<User> users = new ArrayList<>();
-    private final RestTemplate restTemplate;
+    private static final int EXPORT_FLUSH_INTERVAL = 1000;
+    
+    private final NavigableMap<String, User> users = new ConcurrentSkipListMap<>();
+    private final UserSearchIndex searchIndex;
+    private final AccountIdsCache accountIdsCache;
+    private final AccountServiceProperties accountServiceProperties;
     private final Tracer tracer;
     
     @Autowired
-    public UserService(RestTemplate restTemplate, Tracer tracer) {
-        this.restTemplate = restTemplate;
+    public UserService(UserSearchIndex searchIndex,
+                       AccountIdsCache accountIdsCache,
+                       AccountServiceProperties accountServiceProperties,
+                       Tracer tracer) {
+        this.searchIndex = searchIndex;
+        this.accountIdsCache = accountIdsCache;
+        this.accountServiceProperties = accountServiceProperties;
         this.tracer = tracer;
         
         // Initialize with some sample user data with predefined IDs to match AccountService
@@ -35,39 +60,223 @@ public class UserService {
         User user4 = new User("user4", "Sarah", "Williams", "sarah.williams@example.com", "swilliams");
         User user5 = new User("user5", "Robert", "Brown", "robert.brown@example.com", "rbrown");
         
-        // Adding these users to our list
-        users.add(user1);
-        users.add(user2);
-        users.add(user3);
-        users.add(user4);
-        users.add(user5);
+        // Adding these users to our store, keyed and ordered by ID
+        saveUser(user1);
+        saveUser(user2);
+        saveUser(user3);
+        saveUser(user4);
+        saveUser(user5);
         
         log.info("UserService initialized with {} users", users.size());
     }
     
+    /**
+     * Add or replace a user, updating the search index in step
+     * 
+     * @param user the user, replacing any stored user with the same ID; its searchable fields are not to be changed afterwards
+     */
+    public synchronized void saveUser(User user) {
+        User previous = users.put(user.getId(), user);
+        searchIndex.update(previous, user);
+    }
+    
+    /**
+     * Search users by username, email or name
+     * 
+     * @param query a username, an email, or the beginning of first and last name words
+     * @param limit maximum number of users returned
+     * @param fuzzy also match names within a few typos of the query
+     * @return matching users, best first
+     * @see UserSearchIndex#search(String, int, boolean)
+     */
+    @WithSpan("UserService.searchUsers")
+    public List<User> searchUsers(String query, int limit, boolean fuzzy) {
+        log.debug("Searching users, limit: {}, fuzzy: {}", limit, fuzzy);
+        Span span = Span.current();
+        span.setAttribute("search.fuzzy", fuzzy);
+        
+        List<User> found = searchIndex.search(query, limit, fuzzy);
+        span.setAttribute("users.count", found.size());
+        return found;
+    }
+    
+    /**
+     * Get every user at once, ordered by ID, for the original unpaged listing
+     * 
+     * @return all users; large stores should be read with {@link #getUsersPage} or {@link #exportUsers}
+     */
     @WithSpan("UserService.getAllUsers")
     public List<User> getAllUsers() {
-        log.info("Retrieving all users");
+        log.debug("Retrieving all users");
+        List<User> all = findPage(null, Integer.MAX_VALUE);
+        Span.current().setAttribute("users.count", all.size());
+        return all;
+    }
+    
+    /**
+     * Get every user with their account IDs, loading accounts concurrently within one deadline
+     * 
+     * @return copies of all users; those whose accounts were not loaded in time are marked as degraded
+     */
+    @WithSpan("UserService.getAllUsersWithAccounts")
+    public List<User> getAllUsersWithAccounts() {
+        log.debug("Retrieving all users with accounts");
+        Span span = Span.current();
+        List<User> all = findPage(null, Integer.MAX_VALUE);
+        span.setAttribute("users.count", all.size());
+        return enrichWithAccounts(all, span);
+    }
+    
+    /**
+     * Get one keyset page of all users, ordered by ID
+     * 
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @param limit maximum number of users on the page
+     * @return the page, with a cursor for the next one if more users may follow
+     */
+    @WithSpan("UserService.getUsersPage")
+    public CursorPage<User> getUsersPage(String cursor, int limit) {
+        log.debug("Retrieving users page, limit: {}", limit);
+        Span span = Span.current();
+        
+        List<User> page = findPage(CursorPage.decodeCursor(cursor), limit);
+        span.setAttribute("users.count", page.size());
+        
+        return toCursorPage(page, limit);
+    }
+    
+    /**
+     * Get one keyset page of users with their account IDs, loading accounts concurrently within a deadline
+     * 
+     * @param cursor the nextCursor of the previous page, or null for the first page
+     * @param limit maximum number of users on the page
+     * @return copies of the page's users; users whose accounts were not loaded before the deadline
+     *         or failed to load are marked as degraded
+     */
+    @WithSpan("UserService.getUsersPageWithAccounts")
+    public CursorPage<User> getUsersPageWithAccounts(String cursor, int limit) {
+        log.debug("Retrieving users page with accounts, limit: {}", limit);
+        Span span = Span.current();
+        
+        List<User> page = findPage(CursorPage.decodeCursor(cursor), limit);
+        span.setAttribute("users.count", page.size());
+        
+        return toCursorPage(enrichWithAccounts(page, span), limit);
+    }
+    
+    /**
+     * Write every user, in ID order, to a streaming sequence writer
+     * 
+     * @param writer the destination, typically an NDJSON response body
+     * @return the number of users written
+     */
+    @WithSpan("UserService.exportUsers")
+    public long exportUsers(SequenceWriter writer) throws IOException {
+        log.info("Exporting all users");
         Span span = Span.current();
-        span.setAttribute("users.count", users.size());
         
-        return users;
+        // Skip-list iteration is lazy, so nothing beyond the current user is held in memory
+        long exported = 0;
+        for (User user : users.values()) {
+            writer.write(user);
+            if (++exported % EXPORT_FLUSH_INTERVAL == 0) {
+                writer.flush();
+            }
+        }
+        
+        span.setAttribute("users.exported", exported);
+        log.info("Exported {} users", exported);
+        return exported;
+    }
+    
+    private List<User> findPage(String afterId, int limit) {
+        NavigableMap<String, User> remaining = afterId == null ? users : users.tailMap(afterId, false);
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        for (User user : remaining.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(user);
+        }
+        return page;
+    }
+    
+    private static CursorPage<User> toCursorPage(List<User> page, int limit) {
+        String nextCursor = page.size() < limit ? null
+                : CursorPage.encodeCursor(page.get(page.size() - 1).getId());
+        return new CursorPage<>(page, nextCursor);
+    }
+    
+    /**
+     * Load account IDs for a page of users concurrently, bounded by the enrichment parallelism and deadline
+     */
+    private List<User> enrichWithAccounts(List<User> page, Span span) {
+        AccountServiceProperties.Enrichment settings = accountServiceProperties.getEnrichment();
+        long deadline = System.nanoTime() + settings.getDeadline().toNanos();
+        Semaphore permits = new Semaphore(settings.getParallelism());
+        
+        // Loads that finish after the deadline only write here, never into the returned users
+        AtomicReferenceArray<List<String>> loaded = new AtomicReferenceArray<>(page.size());
+        List<CompletableFuture<Void>> loads = new ArrayList<>(page.size());
+        
+        try {
+            for (int i = 0; i < page.size(); i++) {
+                if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+                int index = i;
+                String userId = page.get(i).getId();
+                // Each miss starts a FetchAccounts span as a child of the current span
+                loads.add(accountIdsCache.get(userId)
+                        .thenAccept(accountIds -> loaded.set(index, accountIds))
+                        .exceptionally(e -> {
+                            log.warn("Error fetching accounts for user {}: {}", userId, e.getMessage());
+                            return null;
+                        })
+                        .whenComplete((ignored, e) -> permits.release()));
+            }
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Whatever has not loaded by now is reported as degraded
+        }
+        
+        List<User> enriched = new ArrayList<>(page.size());
+        int degraded = 0;
+        for (int i = 0; i < page.size(); i++) {
+            User user = page.get(i).withoutAccounts();
+            List<String> accountIds = loaded.get(i);
+            if (accountIds != null) {
+                user.setAccountIds(accountIds);
+            } else {
+                user.setAccountsDegraded(true);
+                degraded++;
+            }
+            enriched.add(user);
+        }
+        
+        span.setAttribute("accounts.degraded", degraded);
+        if (degraded > 0) {
+            log.warn("Accounts missing for {} of {} users after {} ms deadline",
+                     degraded, page.size(), settings.getDeadline().toMillis());
+        }
+        return enriched;
     }
     
     @WithSpan("UserService.getUserById")
     public Optional<User> getUserById(String id) {
-        log.info("Finding user by ID: {}", id);
+        log.debug("Finding user by ID: {}", id);
         Span span = Span.current();
         span.setAttribute("user.id", id);
         
         try {
-            Optional<User> userOpt = users.stream()
-                    .filter(user -> user.getId().equals(id))
-                    .findFirst();
+            Optional<User> userOpt = Optional.ofNullable(users.get(id));
             
             if (userOpt.isPresent()) {
                 span.setAttribute("user.found", true);
-                log.info("User found: {}", userOpt.get().getUsername());
+                log.debug("User found: {}", userOpt.get().getUsername());
             } else {
                 span.setAttribute("user.found", false);
                 log.warn("User not found with ID: {}", id);
@@ -90,69 +299,28 @@ public class UserService {
      */
     @WithSpan("UserService.getUserWithAccounts")
     public Optional<User> getUserWithAccounts(String userId) {
-        log.info("Getting user with accounts, ID: {}", userId);
+        log.debug("Getting user with accounts, ID: {}", userId);
         Span span = Span.current();
         span.setAttribute("user.id", userId);
         
         Optional<User> userOpt = getUserById(userId);
         
         if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            
-            Span accountServiceSpan = tracer.spanBuilder("FetchAccounts")
-                    .setParent(Context.current().with(Span.current()))
-                    .startSpan();
+            // A per-request copy: the stored user is shared by concurrent requests and other endpoints
+            User user = userOpt.get().withoutAccounts();
+            span.setAttribute("accounts.cached", accountIdsCache.contains(userId));
             
             try {
-                // Call account-service to get accounts for this user
-                // In a production environment, you would use a more robust service discovery mechanism
-                String accountServiceUrl = "http://localhost:8080/api/accounts/user/" + userId;
-                accountServiceSpan.setAttribute("http.url", accountServiceUrl);
-                accountServiceSpan.setAttribute("http.method", "GET");
-                
-                log.info("Calling account-service at URL: {}", accountServiceUrl);
-                
-                // This is a synchronous call. In production, consider using async communication
-                // or circuit breakers to handle failures gracefully
-                Object[] accounts = restTemplate.getForObject(accountServiceUrl, Object[].class);
-                
-                if (accounts != null) {
-                    // Extract account IDs and set them in the user object
-                    List<String> accountIds = new ArrayList<>();
-                    for (Object account : accounts) {
-                        if (account instanceof java.util.Map) {
-                            @SuppressWarnings("unchecked")
-                            java.util.Map<String, Object> accountMap = (java.util.Map<String, Object>) account;
-                            if (accountMap.containsKey("id")) {
-                                accountIds.add(accountMap.get("id").toString());
-                            }
-                        }
-                    }
-                    user.setAccountIds(accountIds);
-                    
-                    span.setAttribute("accounts.count", accountIds.size());
-                    accountServiceSpan.setAttribute("accounts.count", accountIds.size());
-                    
-                    log.info("Retrieved {} accounts for user {}", accountIds.size(), userId);
-                } else {
-                    log.warn("No accounts returned from account-service for user: {}", userId);
-                    span.setAttribute("accounts.count", 0);
-                    accountServiceSpan.setAttribute("accounts.count", 0);
-                }
-                
-                accountServiceSpan.setStatus(StatusCode.OK);
-            } catch (Exception e) {
-                // Log the error but continue - this provides resilience if the account-service is down
-                log.error("Error fetching accounts for user {}: {}", userId, e.getMessage(), e);
-                
-                // Record the error in the span
-                accountServiceSpan.recordException(e);
-                accountServiceSpan.setStatus(StatusCode.ERROR, "Failed to fetch accounts: " + e.getMessage());
-                
-                span.setAttribute("error", true);
-                span.setAttribute("error.message", e.getMessage());
-            } finally {
-                accountServiceSpan.end();
+                List<String> accountIds = accountIdsCache.get(userId)
+                        .get(accountServiceProperties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                recordAccounts(user, accountIds, span);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                recordAccountFailure(userId, e, span);
+            } catch (ExecutionException e) {
+                recordAccountFailure(userId, e.getCause(), span);
+            } catch (TimeoutException e) {
+                recordAccountFailure(userId, e, span);
             }
             
             return Optional.of(user);
@@ -160,4 +328,90 @@ public class UserService {
         
         return Optional.empty();
     }
+    
+    /**
+     * Get user with their accounts data, in the execution mode selected by
+     * {@code account-service.client-mode}
+     * 
+     * @param userId the user ID to retrieve
+     * @return a Mono of an Optional containing the user with accounts data, or empty if user not found
+     */
+    public Mono<Optional<User>> getUserWithAccountsAsync(String userId) {
+        if (accountServiceProperties.getClientMode() == AccountServiceProperties.ClientMode.REACTIVE) {
+            return getUserWithAccountsReactive(userId);
+        }
+        // Runs on the subscribing (request) thread, exactly like the blocking endpoint always has
+        return Mono.fromCallable(() -> getUserWithAccounts(userId));
+    }
+    
+    /**
+     * Get user with their accounts data without blocking the calling thread on account-service
+     * 
+     * @param userId the user ID to retrieve
+     * @return a Mono of an Optional containing the user with accounts data, or empty if user not found
+     */
+    @WithSpan("UserService.getUserWithAccountsReactive")
+    public Mono<Optional<User>> getUserWithAccountsReactive(String userId) {
+        log.debug("Getting user with accounts reactively, ID: {}", userId);
+        Span span = Span.current();
+        span.setAttribute("user.id", userId);
+        
+        Optional<User> userOpt = getUserById(userId);
+        if (userOpt.isEmpty()) {
+            return Mono.just(Optional.empty());
+        }
+        
+        // A per-request copy: the stored user is shared by concurrent requests and other endpoints
+        User user = userOpt.get().withoutAccounts();
+        span.setAttribute("accounts.cached", accountIdsCache.contains(userId));
+        // Captured now: the rest of the pipeline runs on Reactor threads with no current context
+        Context parentContext = Context.current();
+        
+        return Mono.fromFuture(() -> {
+                    // A cache miss starts the FetchAccounts span from the current context
+                    try (Scope ignored = parentContext.makeCurrent()) {
+                        return accountIdsCache.get(userId);
+                    }
+                })
+                .map(accountIds -> {
+                    recordAccounts(user, accountIds, span);
+                    return Optional.of(user);
+                })
+                .onErrorResume(e -> {
+                    recordAccountFailure(userId, e, span);
+                    return Mono.just(Optional.of(user));
+                });
+    }
+    
+    /**
+     * Drop any cached account data for a user, so that account changes show up on the next read.
+     * Changes from the account change feed invalidate the cache on their own, and while the
+     * replica is fresh reads bypass the cache entirely; this only matters when the replica is
+     * disabled or stale.
+     * 
+     * @param userId the user ID
+     */
+    @WithSpan("UserService.invalidateAccounts")
+    public void invalidateAccounts(String userId) {
+        log.info("Invalidating cached accounts for user ID: {}", userId);
+        Span.current().setAttribute("user.id", userId);
+        accountIdsCache.invalidate(userId);
+    }
+    
+    private void recordAccounts(User user, List<String> accountIds, Span span) {
+        user.setAccountIds(accountIds);
+        span.setAttribute("accounts.count", accountIds.size());
+        log.debug("Retrieved {} accounts for user {}", accountIds.size(), user.getId());
+    }
+    
+    private void recordAccountFailure(String userId, Throwable e, Span span) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+        // Log the error but continue - this provides resilience if the account-service is down
+        log.error("Error fetching accounts for user {}: {}", userId, e.getMessage(), e);
+        
+        span.setAttribute("error", true);
+        span.setAttribute("error.message", String.valueOf(e.getMessage()));
+    }
 }
@@ -0,0 +1,265 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the client against a fake {@code POST /api/accounts/users} that records every batch it
+ * receives and answers each user with one account, {@code <userId>-account}.
+ */
+class AccountBatchClientTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Tracer TRACER = OpenTelemetry.noop().getTracer("test");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<String>> batchesReceived = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch releaseSlowCall = new CountDownLatch(1);
+    private HttpServer server;
+    private AccountEndpointBalancer balancer;
+    private AccountCallGuard guard;
+    private AccountBatchClient client;
+
+    @AfterEach
+    void stop() {
+        releaseSlowCall.countDown();
+        if (client != null) {
+            client.shutdown();
+        }
+        if (guard != null) {
+            guard.shutdown();
+        }
+        if (balancer != null) {
+            balancer.shutdown();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Users named {@code bad*} fail their batch with a 500; the first call carrying a user named
+     * {@code slow*} waits until the test ends, later ones answer at once.
+     */
+    private AccountServiceProperties startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/api/accounts/users", exchange -> {
+            List<String> userIds = OBJECT_MAPPER.readValue(exchange.getRequestBody(), new TypeReference<>() {
+            });
+            batchesReceived.add(userIds);
+            int call = calls.incrementAndGet();
+            if (userIds.stream().anyMatch(id -> id.startsWith("bad"))) {
+                respond(exchange, 500, Map.of());
+                return;
+            }
+            if (call == 1 && userIds.stream().anyMatch(id -> id.startsWith("slow"))) {
+                awaitRelease(releaseSlowCall);
+            }
+            Map<String, List<Map<String, String>>> accountIds = new LinkedHashMap<>();
+            userIds.forEach(id -> accountIds.put(id, List.of(Map.of("id", id + "-account"))));
+            respond(exchange, 200, accountIds);
+        });
+        server.start();
+
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.setWireFormat(AccountServiceProperties.WireFormat.JSON);
+        properties.setTimeout(Duration.ofSeconds(5));
+        properties.getLoadBalancing().getHealthCheck().setEnabled(false);
+        properties.getResilience().getHedge().setEnabled(false);
+        return properties;
+    }
+
+    private void startClient(AccountServiceProperties properties) {
+        balancer = new AccountEndpointBalancer(properties, meterRegistry);
+        guard = new AccountCallGuard(properties, meterRegistry);
+        client = new AccountBatchClient(new RestTemplate(), new AccountIdsReader(OBJECT_MAPPER, properties), TRACER,
+                balancer, guard, properties, meterRegistry);
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void awaitRelease(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<String> join(CompletableFuture<List<String>> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private double flushes(String trigger) {
+        return meterRegistry.get("account.batch.flushes").tag("trigger", trigger).counter().count();
+    }
+
+    @Test
+    void coalescesCallersWithinTheWindowAndHandsEachItsOwnUser() throws Exception {
+        AccountServiceProperties properties = startServer();
+        properties.getBatch().setWindow(Duration.ofMillis(200));
+        startClient(properties);
+
+        CompletableFuture<List<String>> first = client.submit("user1");
+        CompletableFuture<List<String>> second = client.submit("user2");
+        CompletableFuture<List<String>> sameUser = client.submit("user1");
+
+        assertThat(join(first)).containsExactly("user1-account");
+        assertThat(join(second)).containsExactly("user2-account");
+        assertThat(join(sameUser)).containsExactly("user1-account");
+        assertThat(batchesReceived).containsExactly(List.of("user1", "user2"));
+        assertThat(flushes("window")).isEqualTo(1);
+        assertThat(meterRegistry.get("account.batch.requests").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void flushesAsSoonAsTheBatchIsFull() throws Exception {
+        AccountServiceProperties properties = startServer();
+        properties.getBatch().setWindow(Duration.ofMinutes(1));
+        properties.getBatch().setMaxSize(2);
+        startClient(properties);
+
+        CompletableFuture<List<String>> first = client.submit("user1");
+        CompletableFuture<List<String>> second = client.submit("user2");
+        CompletableFuture<List<String>> third = client.submit("user3");
+
+        assertThat(join(first)).containsExactly("user1-account");
+        assertThat(join(second)).containsExactly("user2-account");
+        assertThat(flushes("size")).isEqualTo(1);
+        // The next batch waits for its own window or for a second user
+        assertThat(third).isNotDone();
+        assertThat(batchesReceived).containsExactly(List.of("user1", "user2"));
+    }
+
+    @Test
+    void slowBatchDoesNotHoldUpTheNextWindow() throws Exception {
+        AccountServiceProperties properties = startServer();
+        properties.getBatch().setWindow(Duration.ofMillis(20));
+        properties.getBatch().setConcurrency(2);
+        startClient(properties);
+
+        CompletableFuture<List<String>> slow = client.submit("slow1");
+        await().atMost(Duration.ofSeconds(5)).until(() -> calls.get() == 1);
+        CompletableFuture<List<String>> next = client.submit("user2");
+
+        assertThat(join(next)).containsExactly("user2-account");
+        assertThat(slow).isNotDone();
+        releaseSlowCall.countDown();
+        assertThat(join(slow)).containsExactly("slow1-account");
+    }
+
+    @Test
+    void failedBatchFailsOnlyItsOwnCallersAndCountsOnceInTheCircuitBreaker() throws Exception {
+        AccountServiceProperties properties = startServer();
+        properties.getBatch().setWindow(Duration.ofMinutes(1));
+        properties.getBatch().setMaxSize(3);
+        AccountServiceProperties.CircuitBreaker circuitBreaker =
+                properties.getResilience().getCircuitBreaker();
+        // Three failed callers would open it; a single failed batch call does not
+        circuitBreaker.setSlidingWindowSize(3);
+        circuitBreaker.setMinimumCalls(3);
+        circuitBreaker.setFailureRateThreshold(100);
+        startClient(properties);
+
+        List<CompletableFuture<List<String>>> failed =
+                List.of(client.submit("bad1"), client.submit("user1"), client.submit("user2"));
+        for (CompletableFuture<List<String>> caller : failed) {
+            assertThatThrownBy(() -> join(caller)).hasMessageContaining("500");
+        }
+        List<CompletableFuture<List<String>>> next =
+                List.of(client.submit("user3"), client.submit("user4"), client.submit("user5"));
+
+        assertThat(join(next.get(0))).containsExactly("user3-account");
+        assertThat(join(next.get(2))).containsExactly("user5-account");
+        assertThat(meterRegistry.get("account.fetch.circuit.state").gauge().value()).isZero();
+        assertThat(batchesReceived).hasSize(2);
+    }
+
+    @Test
+    void hedgeResendsTheSameBatchInsteadOfQueueingItsUsersAgain() throws Exception {
+        AccountServiceProperties properties = startServer();
+        properties.getBatch().setWindow(Duration.ofMinutes(1));
+        properties.getBatch().setMaxSize(2);
+        AccountServiceProperties.Hedge hedge = properties.getResilience().getHedge();
+        hedge.setEnabled(true);
+        hedge.setMinDelay(Duration.ofMillis(50));
+        hedge.setMaxDelay(Duration.ofMillis(50));
+        startClient(properties);
+
+        CompletableFuture<List<String>> first = client.submit("slow1");
+        CompletableFuture<List<String>> second = client.submit("user2");
+
+        assertThat(join(first)).containsExactly("slow1-account");
+        assertThat(join(second)).containsExactly("user2-account");
+        assertThat(batchesReceived).containsExactly(List.of("slow1", "user2"), List.of("slow1", "user2"));
+        assertThat(meterRegistry.get("account.fetch.hedges").tag("outcome", "won").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("account.batch.requests").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBatchSizeAboveWhatAccountServiceAccepts() {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.getBatch().setMaxSize(AccountBatchClient.SERVER_MAX_BATCH_USERS + 1);
+
+        assertThatThrownBy(() -> newClient(properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("account-service.batch.max-size");
+    }
+
+    @Test
+    void acceptsBatchSizeAtTheServerLimit() {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.getBatch().setMaxSize(AccountBatchClient.SERVER_MAX_BATCH_USERS);
+
+        assertThatCode(() -> newClient(properties).shutdown()).doesNotThrowAnyException();
+    }
+
+    private static AccountBatchClient newClient(AccountServiceProperties properties) {
+        return new AccountBatchClient(mock(RestTemplate.class), mock(AccountIdsReader.class), mock(Tracer.class),
+                mock(AccountEndpointBalancer.class), mock(AccountCallGuard.class), properties,
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Span;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Injects slow, failing and hung downstream calls through the attempt supplier
+ */
+class AccountCallGuardTest {
+
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(50);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AccountCallGuard guard;
+
+    @AfterEach
+    void shutdown() {
+        if (guard != null) {
+            guard.shutdown();
+        }
+    }
+
+    private static AccountServiceProperties properties() {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setTimeout(Duration.ofSeconds(2));
+        AccountServiceProperties.Resilience resilience = properties.getResilience();
+        resilience.getHedge().setMinDelay(HEDGE_DELAY);
+        resilience.getHedge().setMaxDelay(HEDGE_DELAY);
+        resilience.getCircuitBreaker().setSlidingWindowSize(4);
+        resilience.getCircuitBreaker().setMinimumCalls(4);
+        resilience.getCircuitBreaker().setOpenDuration(Duration.ofMinutes(1));
+        return properties;
+    }
+
+    /**
+     * Hands out the given futures, one per attempt, and counts the attempts
+     */
+    private static Supplier<CompletableFuture<String>> attempts(AtomicInteger count, List<CompletableFuture<String>> futures) {
+        return () -> futures.get(count.getAndIncrement());
+    }
+
+    private double hedges(String outcome) {
+        return meterRegistry.get("account.fetch.hedges").tag("outcome", outcome).counter().count();
+    }
+
+    @Test
+    void hedgeWinsOverASlowPrimaryAndIsRecordedBeforeTheSpanEnds() throws Exception {
+        guard = new AccountCallGuard(properties(), meterRegistry);
+        Span span = mock(Span.class);
+        CompletableFuture<String> slowPrimary = new CompletableFuture<>();
+        AtomicInteger count = new AtomicInteger();
+
+        CompletableFuture<String> result = guard.call(
+                attempts(count, List.of(slowPrimary, CompletableFuture.completedFuture("hedged"))), span);
+        // Like AccountIdsLoader, end the span as soon as the result completes
+        result.whenComplete((value, error) -> span.end());
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("hedged");
+        assertThat(count).hasValue(2);
+        assertThat(hedges("won")).isEqualTo(1);
+        InOrder order = inOrder(span);
+        order.verify(span).addEvent("hedge.won");
+        order.verify(span).end();
+
+        // The primary finishing late changes nothing
+        slowPrimary.complete("primary");
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws Exception {
+        guard = new AccountCallGuard(properties(), meterRegistry);
+        Span span = mock(Span.class);
+        AtomicInteger count = new AtomicInteger();
+
+        CompletableFuture<String> result = guard.call(
+                attempts(count, List.of(CompletableFuture.completedFuture("primary"))), span);
+
+        assertThat(result.get(1, TimeUnit.SECONDS)).isEqualTo("primary");
+        Thread.sleep(HEDGE_DELAY.toMillis() * 3);
+        assertThat(count).hasValue(1);
+        assertThat(hedges("sent")).isZero();
+        verify(span, never()).addEvent(anyString());
+    }
+
+    @Test
+    void failsOnlyOnceEveryAttemptHasFailed() {
+        guard = new AccountCallGuard(properties(), meterRegistry);
+        CompletableFuture<String> primary = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        AtomicInteger count = new AtomicInteger();
+
+        CompletableFuture<String> result = guard.call(attempts(count, List.of(primary, hedge)), mock(Span.class));
+        await().atMost(Duration.ofSeconds(2)).until(() -> count.get() == 2);
+
+        primary.completeExceptionally(new UncheckedIOException(new IOException("connection reset")));
+        assertThat(result).isNotDone();
+        hedge.completeExceptionally(new UncheckedIOException(new IOException("503")));
+
+        assertThatThrownBy(() -> result.get(1, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("503");
+    }
+
+    @Test
+    void repeatedFailuresOpenTheCircuitAndLaterCallsAreNotSent() {
+        AccountServiceProperties properties = properties();
+        properties.getResilience().getHedge().setEnabled(false);
+        guard = new AccountCallGuard(properties, meterRegistry);
+        AtomicInteger sent = new AtomicInteger();
+        Supplier<CompletableFuture<String>> failing = () -> {
+            sent.incrementAndGet();
+            return CompletableFuture.failedFuture(new UncheckedIOException(new IOException("refused")));
+        };
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(guard.call(failing, mock(Span.class))).isCompletedExceptionally();
+        }
+        Span span = mock(Span.class);
+        CompletableFuture<String> rejected = guard.call(failing, span);
+
+        assertThat(sent).hasValue(4);
+        assertThatThrownBy(rejected::join).hasCauseInstanceOf(AccountCallGuard.CallRejectedException.class);
+        verify(span).addEvent("circuit_breaker.rejected");
+        assertThat(meterRegistry.get("account.fetch.circuit.state").gauge().value())
+                .isEqualTo(CircuitBreaker.State.OPEN.ordinal());
+    }
+
+    @Test
+    void fullBulkheadRejectsCallsAndSkipsHedges() throws Exception {
+        AccountServiceProperties properties = properties();
+        properties.getResilience().getBulkhead().setMaxConcurrentCalls(1);
+        guard = new AccountCallGuard(properties, meterRegistry);
+        CompletableFuture<String> hung = new CompletableFuture<>();
+        Span span = mock(Span.class);
+
+        CompletableFuture<String> first = guard.call(() -> hung, span);
+        await().atMost(Duration.ofSeconds(2)).until(() -> hedges("skipped") == 1);
+        verify(span).addEvent("hedge.skipped");
+
+        Span rejectedSpan = mock(Span.class);
+        assertThatThrownBy(guard.call(() -> CompletableFuture.completedFuture("x"), rejectedSpan)::join)
+                .hasCauseInstanceOf(AccountCallGuard.CallRejectedException.class);
+        verify(rejectedSpan).addEvent("bulkhead.rejected");
+
+        hung.complete("done");
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(guard.call(() -> CompletableFuture.completedFuture("x"), mock(Span.class)).get(1, TimeUnit.SECONDS))
+                .as("the permit is released once the call completes").isEqualTo("x");
+    }
+
+    @Test
+    void hungAttemptTimesOutAndGivesBackItsPermit() throws Exception {
+        AccountServiceProperties properties = properties();
+        properties.setTimeout(Duration.ofMillis(100));
+        properties.getResilience().getHedge().setEnabled(false);
+        properties.getResilience().getBulkhead().setMaxConcurrentCalls(1);
+        guard = new AccountCallGuard(properties, meterRegistry);
+
+        CompletableFuture<String> hung = guard.call(CompletableFuture::new, mock(Span.class));
+
+        assertThatThrownBy(() -> hung.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(guard.call(() -> CompletableFuture.completedFuture("x"), mock(Span.class)).get(1, TimeUnit.SECONDS))
+                .isEqualTo("x");
+    }
+
+    @Test
+    void concurrentSlowCallsEachCompleteExactlyOnce() throws Exception {
+        guard = new AccountCallGuard(properties(), meterRegistry);
+        List<CompletableFuture<String>> pending = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<String>> results = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            String value = "call-" + i;
+            results.add(guard.call(() -> {
+                CompletableFuture<String> attempt = new CompletableFuture<>();
+                pending.add(attempt);
+                // Every attempt, primary or hedge, finishes on its own thread with the same value
+                CompletableFuture.delayedExecutor(HEDGE_DELAY.toMillis() + 20, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt.complete(value));
+                return attempt;
+            }, mock(Span.class)));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(2, TimeUnit.SECONDS)).isEqualTo("call-" + i);
+        }
+        await().atMost(Duration.ofSeconds(2)).until(() -> pending.stream().allMatch(CompletableFuture::isDone));
+        assertThat(hedges("won")).isLessThanOrEqualTo(hedges("sent"));
+        assertThat(meterRegistry.get("account.fetch.inflight").gauge().value()).isZero();
+    }
+
+}
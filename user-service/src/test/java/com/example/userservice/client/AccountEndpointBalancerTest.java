@@ -0,0 +1,154 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Balances real HTTP calls across several fake account-service instances: a fast one, a slow one,
+ * one answering 500 and one failing its health probe
+ */
+class AccountEndpointBalancerTest {
+
+    private final List<FakeInstance> instances = new ArrayList<>();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AccountEndpointBalancer balancer;
+
+    @AfterEach
+    void stop() {
+        if (balancer != null) {
+            balancer.shutdown();
+        }
+        instances.forEach(instance -> instance.server.stop(0));
+    }
+
+    @Test
+    void routesAroundSlowFailingAndUnhealthyInstances() throws Exception {
+        FakeInstance fast = start(0, 200, 200);
+        FakeInstance slow = start(40, 200, 200);
+        FakeInstance failing = start(0, 500, 200);
+        FakeInstance down = start(0, 200, 503);
+
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setUrls(instances.stream().map(FakeInstance::url).toList());
+        AccountServiceProperties.LoadBalancing loadBalancing = properties.getLoadBalancing();
+        // Short enough for the first calls, slowed down by connection setup, to fade out during the test
+        loadBalancing.setLatencyDecay(Duration.ofMillis(200));
+        loadBalancing.getHealthCheck().setInterval(Duration.ofMillis(50));
+        loadBalancing.getHealthCheck().setUnhealthyThreshold(1);
+        loadBalancing.getOutlierEjection().setConsecutiveFailures(3);
+        loadBalancing.getOutlierEjection().setBaseEjectionTime(Duration.ofMinutes(1));
+        balancer = new AccountEndpointBalancer(properties, meterRegistry);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> !gauge("account.endpoint.available", down));
+        int downCallsBefore = down.calls.get();
+
+        for (int i = 0; i < 200; i++) {
+            call().exceptionally(error -> null).join();
+        }
+
+        assertThat(down.calls.get()).as("unhealthy instance gets no calls").isEqualTo(downCallsBefore);
+        assertThat(failing.calls).as("ejected after three consecutive failures").hasValue(3);
+        assertThat(meterRegistry.get("account.endpoint.ejections").tag("endpoint", failing.url()).counter().count())
+                .isEqualTo(1);
+        assertThat(slow.calls.get()).as("slow instance is avoided").isLessThan(fast.calls.get() / 10);
+        assertThat(fast.calls.get() + slow.calls.get() + failing.calls.get()).isEqualTo(200);
+    }
+
+    @Test
+    void ejectionBudgetKeepsAnInstanceInRotation() throws Exception {
+        FakeInstance first = start(0, 500, 200);
+        FakeInstance second = start(0, 500, 200);
+
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setUrls(List.of(first.url(), second.url()));
+        properties.getLoadBalancing().getHealthCheck().setEnabled(false);
+        properties.getLoadBalancing().getOutlierEjection().setConsecutiveFailures(2);
+        balancer = new AccountEndpointBalancer(properties, meterRegistry);
+
+        for (int i = 0; i < 50; i++) {
+            call().exceptionally(error -> null).join();
+        }
+
+        // At most half of two instances may be out at once, so calls keep reaching one of them
+        double ejections = meterRegistry.find("account.endpoint.ejections").counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+        assertThat(ejections).isEqualTo(1);
+        assertThat(first.calls.get() + second.calls.get()).isEqualTo(50);
+    }
+
+    private CompletableFuture<Integer> call() {
+        AccountEndpoint endpoint = balancer.choose();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint.getUrl() + "/api/accounts/user/user1")).build();
+        return balancer.track(endpoint, client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() >= 500) {
+                        throw new IllegalStateException("HTTP " + response.statusCode());
+                    }
+                    return response.statusCode();
+                }));
+    }
+
+    private boolean gauge(String name, FakeInstance instance) {
+        return meterRegistry.get(name).tag("endpoint", instance.url()).gauge().value() == 1;
+    }
+
+    private FakeInstance start(long delayMillis, int callStatus, int healthStatus) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        FakeInstance instance = new FakeInstance(server, new AtomicInteger());
+        server.createContext("/api/accounts", exchange -> {
+            instance.calls.incrementAndGet();
+            sleep(delayMillis);
+            respond(exchange, callStatus);
+        });
+        server.createContext("/actuator/health", exchange -> respond(exchange, healthStatus));
+        server.start();
+        instances.add(instance);
+        return instance;
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record FakeInstance(HttpServer server, AtomicInteger calls) {
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.userservice.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AccountEndpointTest {
+
+    private static final long DECAY = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static void finish(AccountEndpoint endpoint, long latencyMillis, boolean failed) {
+        endpoint.callStarted();
+        endpoint.callFinished(TimeUnit.MILLISECONDS.toNanos(latencyMillis), failed, 3);
+    }
+
+    @Test
+    void slowSampleReplacesTheAverageTheBalancerSees() throws Exception {
+        AccountEndpoint endpoint = new AccountEndpoint("http://a", DECAY);
+        finish(endpoint, 100, false);
+
+        Thread.sleep(300);
+        double decayed = endpoint.getLatencyNanos();
+        assertThat(decayed).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+
+        // Above the decayed average, though below the raw one: a peak the balancer must see at once
+        finish(endpoint, 60, false);
+        assertThat(endpoint.getLatencyNanos()).isCloseTo(TimeUnit.MILLISECONDS.toNanos(60), within(1e6));
+    }
+
+    @Test
+    void repeatedEjectionsBackOffAndAreForgivenAfterAHealthyPeriod() throws Exception {
+        AccountEndpoint endpoint = new AccountEndpoint("http://a", DECAY);
+        long base = TimeUnit.MILLISECONDS.toNanos(50);
+        long max = TimeUnit.SECONDS.toNanos(10);
+
+        assertThat(endpoint.eject(base, max)).isEqualTo(base);
+        assertThat(endpoint.eject(base, max)).isEqualTo(2 * base);
+        assertThat(endpoint.isEjected()).isTrue();
+
+        // Back in rotation for well over two base ejection times: both earlier ejections are forgotten
+        Thread.sleep(100 + 150);
+        assertThat(endpoint.isEjected()).isFalse();
+        assertThat(endpoint.eject(base, max)).isEqualTo(base);
+        assertThat(endpoint.getEjections()).isEqualTo(1);
+    }
+
+    @Test
+    void consecutiveFailuresReachTheLimitOnlyWithoutSuccessInBetween() {
+        AccountEndpoint endpoint = new AccountEndpoint("http://a", DECAY);
+        endpoint.callStarted();
+        assertThat(endpoint.callFinished(1, true, 3)).isFalse();
+        endpoint.callStarted();
+        assertThat(endpoint.callFinished(1, true, 3)).isFalse();
+        finish(endpoint, 1, false);
+        endpoint.callStarted();
+        assertThat(endpoint.callFinished(1, true, 3)).isFalse();
+        endpoint.callStarted();
+        assertThat(endpoint.callFinished(1, true, 3)).isFalse();
+        endpoint.callStarted();
+        assertThat(endpoint.callFinished(1, true, 3)).isTrue();
+        assertThat(endpoint.getOutstanding()).isZero();
+    }
+}
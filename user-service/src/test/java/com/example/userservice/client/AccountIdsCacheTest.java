@@ -0,0 +1,129 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountIdsCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AccountIdsLoader loader = mock(AccountIdsLoader.class);
+    private final AccountReplica replica = mock(AccountReplica.class);
+    private AccountIdsCache cache;
+    private AccountReplica.Listener replicaListener;
+
+    @BeforeEach
+    void start() {
+        // A stale or disabled replica, so every read reaches the cache
+        when(replica.find(any())).thenReturn(null);
+        when(loader.load("user1")).thenAnswer(invocation -> CompletableFuture.completedFuture(List.of("acc1")));
+        when(loader.load("user2")).thenAnswer(invocation -> CompletableFuture.completedFuture(List.of("acc2")));
+        cache = new AccountIdsCache(loader, replica, new AccountServiceProperties(), meterRegistry);
+
+        ArgumentCaptor<AccountReplica.Listener> listener = ArgumentCaptor.forClass(AccountReplica.Listener.class);
+        verify(replica).addListener(listener.capture());
+        replicaListener = listener.getValue();
+    }
+
+    private static List<String> join(CompletableFuture<List<String>> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "userAccounts").tag("result", result)
+                .functionCounter().count();
+    }
+
+    @Test
+    void missLoadsOnceAndLaterReadsHit() throws Exception {
+        assertThat(join(cache.get("user1"))).containsExactly("acc1");
+        assertThat(join(cache.get("user1"))).containsExactly("acc1");
+
+        verify(loader, times(1)).load("user1");
+        assertThat(cache.contains("user1")).isTrue();
+        assertThat(gets("miss")).isEqualTo(1);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CompletableFuture<List<String>> pending = new CompletableFuture<>();
+        when(loader.load("user1")).thenReturn(pending);
+
+        CompletableFuture<List<String>> first = cache.get("user1");
+        CompletableFuture<List<String>> second = cache.get("user1");
+        pending.complete(List.of("acc1"));
+
+        assertThat(join(first)).containsExactly("acc1");
+        assertThat(join(second)).containsExactly("acc1");
+        verify(loader, times(1)).load("user1");
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        when(loader.load("user1"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("account-service down")))
+                .thenReturn(CompletableFuture.completedFuture(List.of("acc1")));
+
+        assertThat(cache.get("user1")).isCompletedExceptionally();
+        assertThat(join(cache.get("user1"))).containsExactly("acc1");
+        verify(loader, times(2)).load("user1");
+    }
+
+    @Test
+    void invalidatedUserIsLoadedAgain() throws Exception {
+        join(cache.get("user1"));
+        join(cache.get("user2"));
+
+        cache.invalidate("user1");
+
+        assertThat(cache.contains("user1")).isFalse();
+        assertThat(cache.contains("user2")).isTrue();
+        join(cache.get("user1"));
+        verify(loader, times(2)).load("user1");
+    }
+
+    @Test
+    void replicaChangesInvalidateTheUsersTheyTouch() throws Exception {
+        join(cache.get("user1"));
+        join(cache.get("user2"));
+
+        replicaListener.accountsChanged("user1");
+
+        assertThat(cache.contains("user1")).isFalse();
+        assertThat(cache.contains("user2")).isTrue();
+    }
+
+    @Test
+    void replicaReloadInvalidatesEveryUser() throws Exception {
+        join(cache.get("user1"));
+        join(cache.get("user2"));
+
+        replicaListener.reloaded();
+
+        assertThat(cache.contains("user1")).isFalse();
+        assertThat(cache.contains("user2")).isFalse();
+    }
+
+    @Test
+    void freshReplicaAnswersWithoutTheCache() throws Exception {
+        when(replica.find("user1")).thenReturn(List.of("acc9"));
+
+        assertThat(join(cache.get("user1"))).containsExactly("acc9");
+        verify(loader, never()).load(any());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+class AccountIdsReaderTest {
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final AccountIdsReader reader = new AccountIdsReader(new ObjectMapper(), new AccountServiceProperties());
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void keepsOnlyTheIdOfEachAccount() throws IOException {
+        String body = """
+                [
+                  {"name": "Checking", "id": "acc1", "balance": 10.5, "userId": "user1"},
+                  {"tags": ["a", {"id": "nested"}], "owner": {"id": "user1"}, "id": "acc2"},
+                  {"id": null, "name": "No ID"},
+                  {}
+                ]
+                """;
+
+        assertThat(reader.readAccountIds(json(body), MediaType.APPLICATION_JSON)).containsExactly("acc1", "acc2");
+    }
+
+    @Test
+    void emptyOrNullBodyHasNoAccounts() throws IOException {
+        assertThat(reader.readAccountIds(json(""), null)).isNull();
+        assertThat(reader.readAccountIds(json("null"), null)).isNull();
+        assertThat(reader.readAccountIds(json("[]"), null)).isEmpty();
+    }
+
+    @Test
+    void groupsIdsByUserInResponseOrder() throws IOException {
+        String body = """
+                {"user2": [{"id": "acc3"}], "user1": [{"id": "acc1", "name": "x"}, {"id": "acc2"}], "user3": null}
+                """;
+
+        assertThat(reader.readAccountIdsByUser(json(body), MediaType.APPLICATION_JSON)).containsExactly(
+                entry("user2", List.of("acc3")),
+                entry("user1", List.of("acc1", "acc2")),
+                entry("user3", List.of()));
+        assertThat(reader.readAccountIdsByUser(json(""), null)).isEmpty();
+    }
+
+    @Test
+    void rejectsAResponseThatIsNotAnAccountArray() {
+        assertThatThrownBy(() -> reader.readAccountIds(json("{\"id\": \"acc1\"}"), null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("expected START_ARRAY");
+        assertThatThrownBy(() -> reader.readAccountIds(json("[\"acc1\"]"), null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("expected START_OBJECT");
+    }
+
+    @Test
+    void readsSmileWhenTheResponseSaysSo() throws IOException {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        byte[] accounts = smileMapper.writeValueAsBytes(List.of(
+                Map.of("id", "acc1", "name", "Checking", "balance", 10.5),
+                Map.of("id", "acc2", "owner", Map.of("id", "user1"))));
+        byte[] byUser = smileMapper.writeValueAsBytes(Map.of("user1", List.of(Map.of("id", "acc1"))));
+
+        assertThat(reader.readAccountIds(new ByteArrayInputStream(accounts), SMILE)).containsExactly("acc1", "acc2");
+        assertThat(reader.readAccountIdsByUser(new ByteArrayInputStream(byUser), SMILE))
+                .containsExactly(entry("user1", List.of("acc1")));
+    }
+
+    @Test
+    void acceptsSmileFirstWithJsonAsTheFallback() {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setWireFormat(AccountServiceProperties.WireFormat.SMILE);
+        HttpHeaders headers = new HttpHeaders();
+
+        new AccountIdsReader(new ObjectMapper(), properties).accept(headers);
+
+        assertThat(headers.getAccept()).containsExactly(SMILE, MediaType.parseMediaType("application/json;q=0.9"));
+    }
+
+    @Test
+    void acceptsOnlyJsonWhenConfiguredTo() {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setWireFormat(AccountServiceProperties.WireFormat.JSON);
+        HttpHeaders headers = new HttpHeaders();
+
+        new AccountIdsReader(new ObjectMapper(), properties).accept(headers);
+
+        assertThat(headers.getAccept()).containsExactly(MediaType.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Follows a fake account-service change feed whose snapshot and stream responses are scripted per test
+ */
+class AccountReplicaTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> snapshot = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<Stream> streams = new LinkedBlockingQueue<>();
+    private final List<String> resumedAfter = new CopyOnWriteArrayList<>();
+    private final AtomicInteger snapshotsServed = new AtomicInteger();
+
+    private HttpServer server;
+    private AccountEndpointBalancer balancer;
+    private AccountReplica replica;
+
+    /**
+     * One scripted response of the change stream
+     */
+    private record Stream(int status, List<String> lines) {
+    }
+
+    @BeforeEach
+    void startFeed() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/accounts/changes/snapshot", exchange -> {
+            snapshotsServed.incrementAndGet();
+            respond(exchange, 200, List.copyOf(snapshot));
+        });
+        server.createContext("/api/accounts/changes", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            resumedAfter.add(query.substring(query.indexOf("after=") + "after=".length()));
+            Stream next;
+            try {
+                next = streams.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Nothing scripted: an idle feed that only sends a heartbeat before the connection ends
+            respond(exchange, next != null ? next.status() : 200,
+                    next != null ? next.lines() : List.of(heartbeat(0)));
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (replica != null) {
+            replica.shutdown();
+        }
+        if (balancer != null) {
+            balancer.shutdown();
+        }
+        server.stop(0);
+    }
+
+    private void startReplica(Duration maxStaleness) {
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        properties.getLoadBalancing().getHealthCheck().setEnabled(false);
+        properties.getReplica().setMaxStaleness(maxStaleness);
+        properties.getReplica().setReconnectBackoff(Duration.ofMillis(20));
+        properties.getReplica().setMaxReconnectBackoff(Duration.ofMillis(100));
+        balancer = new AccountEndpointBalancer(properties, meterRegistry);
+        replica = new AccountReplica(new RestTemplate(), balancer, properties, new ObjectMapper(), meterRegistry);
+    }
+
+    @Test
+    void bootstrapsFromTheSnapshotThenAppliesTheStream() {
+        snapshot.addAll(List.of(
+                change(0, "SNAPSHOT", "acc1", "user1"),
+                change(0, "SNAPSHOT", "acc2", "user1"),
+                change(0, "SNAPSHOT", "acc3", "user2"),
+                marker(5, "SNAPSHOT_END")));
+        streams.add(new Stream(200, List.of(
+                change(6, "CREATED", "acc4", "user2"),
+                // acc1 moves from user1 to user3
+                change(7, "UPDATED", "acc1", "user3"),
+                change(8, "DELETED", "acc3", "user2"))));
+        startReplica(WAIT);
+
+        await().atMost(WAIT).until(() -> replica.find("user3") != null && !replica.find("user3").isEmpty());
+        assertThat(replica.find("user1")).containsExactly("acc2");
+        assertThat(replica.find("user2")).containsExactly("acc4");
+        assertThat(replica.find("user3")).containsExactly("acc1");
+        assertThat(replica.find("nobody")).isEmpty();
+        assertThat(resumedAfter.get(0)).isEqualTo("5");
+        await().atMost(WAIT).until(() -> resumedAfter.size() > 1);
+        assertThat(resumedAfter.get(1)).as("reconnects from the last applied sequence").isEqualTo("8");
+        assertThat(meterRegistry.get("account.replica.users").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void takesANewSnapshotWhenTheFeedCannotResume() {
+        snapshot.addAll(List.of(change(0, "SNAPSHOT", "acc1", "user1"), marker(5, "SNAPSHOT_END")));
+        startReplica(WAIT);
+        await().atMost(WAIT).until(() -> replica.find("user1") != null);
+
+        // The feed moved on and dropped sequence 5; the new snapshot has the current state
+        snapshot.clear();
+        snapshot.addAll(List.of(change(0, "SNAPSHOT", "acc1", "user2"), marker(20, "SNAPSHOT_END")));
+        streams.add(new Stream(410, List.of()));
+
+        await().atMost(WAIT).until(() -> snapshotsServed.get() == 2);
+        await().atMost(WAIT).until(() -> replica.find("user2") != null && !replica.find("user2").isEmpty());
+        assertThat(replica.find("user1")).isEmpty();
+        assertThat(meterRegistry.get("account.replica.bootstraps").counter().count()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void brokenStreamReconnectsWithoutLosingOrRepeatingChanges() {
+        snapshot.addAll(List.of(marker(0, "SNAPSHOT_END")));
+        streams.add(new Stream(200, List.of(change(1, "CREATED", "acc1", "user1"))));
+        streams.add(new Stream(500, List.of()));
+        // The same instance again: the replica resumes after the change it applied, no new snapshot
+        streams.add(new Stream(200, List.of(change(1, "CREATED", "acc1", "user1"), change(2, "CREATED", "acc2", "user1"))));
+        startReplica(WAIT);
+
+        await().atMost(WAIT).until(() -> replica.find("user1") != null && replica.find("user1").contains("acc2"));
+        assertThat(replica.find("user1")).containsExactly("acc1", "acc2");
+        assertThat(resumedAfter.subList(0, 3)).containsExactly("0", "1", "1");
+        assertThat(snapshotsServed).hasValue(1);
+        assertThat(meterRegistry.get("account.replica.reconnects").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void tellsListenersWhichUsersChangedAndWhenTheReplicaReloads() {
+        snapshot.addAll(List.of(change(0, "SNAPSHOT", "acc1", "user1"), marker(5, "SNAPSHOT_END")));
+        List<String> changed = new CopyOnWriteArrayList<>();
+        AtomicInteger reloads = new AtomicInteger();
+        startReplica(WAIT);
+        replica.addListener(new AccountReplica.Listener() {
+            @Override
+            public void accountsChanged(String userId) {
+                changed.add(userId);
+            }
+
+            @Override
+            public void reloaded() {
+                reloads.incrementAndGet();
+            }
+        });
+        streams.add(new Stream(200, List.of(
+                change(6, "CREATED", "acc2", "user2"),
+                // acc1 moves from user1 to user3; a repeated update of acc2 changes nobody
+                change(7, "UPDATED", "acc1", "user3"),
+                change(8, "UPDATED", "acc2", "user2"),
+                change(9, "DELETED", "acc2", "user2"))));
+
+        await().atMost(WAIT).until(() -> changed.size() == 4);
+        assertThat(changed).containsExactly("user2", "user1", "user3", "user2");
+        // The first snapshot may have landed before the listener was added
+        int reloadsBefore = reloads.get();
+
+        streams.add(new Stream(410, List.of()));
+        await().atMost(WAIT).until(() -> reloads.get() == reloadsBefore + 1);
+    }
+
+    @Test
+    void stopsAnsweringOnceTheFeedGoesQuiet() {
+        snapshot.addAll(List.of(change(0, "SNAPSHOT", "acc1", "user1"), marker(1, "SNAPSHOT_END")));
+        startReplica(Duration.ofMillis(300));
+
+        await().atMost(WAIT).until(() -> replica.find("user1") != null);
+        assertThat(replica.find("user1")).containsExactly("acc1");
+
+        // account-service goes away; the last state must not be served past max-staleness
+        server.stop(0);
+        await().atMost(WAIT).until(() -> replica.find("user1") == null);
+    }
+
+    private static String change(long sequence, String type, String accountId, String userId) {
+        return "{\"sequence\":" + sequence + ",\"type\":\"" + type + "\",\"timestamp\":" + System.currentTimeMillis()
+                + ",\"accountId\":\"" + accountId + "\",\"userId\":\"" + userId
+                + "\",\"account\":{\"id\":\"" + accountId + "\"}}";
+    }
+
+    private static String marker(long sequence, String type) {
+        return "{\"sequence\":" + sequence + ",\"type\":\"" + type + "\",\"timestamp\":" + System.currentTimeMillis()
+                + ",\"epoch\":\"epoch-1\"}";
+    }
+
+    private static String heartbeat(long sequence) {
+        return marker(sequence, "HEARTBEAT");
+    }
+
+    private static void respond(HttpExchange exchange, int status, List<String> lines) throws IOException {
+        byte[] body = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.userservice.client;
+
+import com.example.userservice.config.AccountServiceProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static AccountServiceProperties.CircuitBreaker settings(Duration openDuration) {
+        AccountServiceProperties.CircuitBreaker settings = new AccountServiceProperties.CircuitBreaker();
+        settings.setSlidingWindowSize(4);
+        settings.setMinimumCalls(4);
+        settings.setFailureRateThreshold(50);
+        settings.setOpenDuration(openDuration);
+        settings.setHalfOpenCalls(2);
+        return settings;
+    }
+
+    private static void fail(CircuitBreaker breaker, int calls) {
+        for (int i = 0; i < calls; i++) {
+            breaker.onFailure(breaker.tryAcquirePermission());
+        }
+    }
+
+    @Test
+    void opensOnceTheFailureRateIsReachedAndRefusesCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("test", settings(Duration.ofMinutes(1)));
+
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(breaker, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isNull();
+    }
+
+    @Test
+    void halfOpenTrialsCloseTheCircuitWhenAllSucceed() {
+        CircuitBreaker breaker = new CircuitBreaker("test", settings(Duration.ZERO));
+        fail(breaker, 4);
+
+        CircuitBreaker.Permit first = breaker.tryAcquirePermission();
+        CircuitBreaker.Permit second = breaker.tryAcquirePermission();
+        assertThat(first.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).as("only two trials are let through").isNull();
+
+        breaker.onSuccess(first);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess(second);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void aFailedTrialReopensTheCircuit() {
+        CircuitBreaker breaker = new CircuitBreaker("test", settings(Duration.ZERO));
+        fail(breaker, 4);
+
+        breaker.onFailure(breaker.tryAcquirePermission());
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void callsAdmittedWhileClosedDoNotCountAsTrials() {
+        CircuitBreaker breaker = new CircuitBreaker("test", settings(Duration.ZERO));
+        CircuitBreaker.Permit slowSuccess = breaker.tryAcquirePermission();
+        CircuitBreaker.Permit slowFailure = breaker.tryAcquirePermission();
+        fail(breaker, 4);
+
+        CircuitBreaker.Permit trial = breaker.tryAcquirePermission();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        // Late outcomes from the closed period must neither close nor reopen the circuit
+        breaker.onFailure(slowFailure);
+        breaker.onSuccess(slowSuccess);
+        breaker.onSuccess(slowSuccess);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        breaker.onSuccess(trial);
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void lateOutcomesDoNotVoteInTheNextClosedWindow() {
+        CircuitBreaker breaker = new CircuitBreaker("test", settings(Duration.ZERO));
+        CircuitBreaker.Permit stale = breaker.tryAcquirePermission();
+        fail(breaker, 4);
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure(stale);
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        breaker.onSuccess(breaker.tryAcquirePermission());
+        fail(breaker, 1);
+
+        // Counting the stale failure would make this two of four and open the circuit
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
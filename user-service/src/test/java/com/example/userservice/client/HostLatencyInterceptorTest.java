@@ -0,0 +1,41 @@
+package com.example.userservice.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HostLatencyInterceptorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HostLatencyInterceptor interceptor = new HostLatencyInterceptor(meterRegistry);
+
+    @Test
+    void tagsHostWithTheSchemesDefaultPort() {
+        assertThat(HostLatencyInterceptor.hostTag(URI.create("http://accounts.internal/api"))).isEqualTo("accounts.internal:80");
+        assertThat(HostLatencyInterceptor.hostTag(URI.create("https://accounts.internal/api"))).isEqualTo("accounts.internal:443");
+        assertThat(HostLatencyInterceptor.hostTag(URI.create("http://localhost:8080/api"))).isEqualTo("localhost:8080");
+    }
+
+    @Test
+    void recordsRepeatedRequestsOnOneTimer() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("http://localhost/api/accounts"));
+            interceptor.intercept(request, new byte[0],
+                    (req, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+        }
+
+        assertThat(meterRegistry.find("http.client.host.requests").timers()).hasSize(1);
+        assertThat(meterRegistry.get("http.client.host.requests")
+                .tag("host", "localhost:80")
+                .tag("outcome", "2xx")
+                .timer().count()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.userservice.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second of the account-service RestTemplate, run by
+ * {@code scripts/account-client-benchmark.sh}.
+ * <p>
+ * {@code callers} threads call {@code GET /api/accounts/user/{userId}} on a local fake
+ * account-service that answers after {@code delayMillis} with a three-account list. Compares a
+ * bare {@code new RestTemplate()}, which user-service used to have, with the client built by
+ * {@link HttpClientConfig} from the default {@code account-service.http.*} settings, over
+ * HTTP/1.1 and HTTP/2. The fake server speaks HTTP/1.1 only, so the HTTP/2 client falls back to
+ * it.
+ * <pre>
+ * AccountClientBenchmark seconds callers delayMillis
+ * </pre>
+ */
+public final class AccountClientBenchmark {
+
+    private static final byte[] ACCOUNTS = ("[{\"id\":\"acc-1\",\"userId\":\"u\",\"balance\":100.00},"
+            + "{\"id\":\"acc-2\",\"userId\":\"u\",\"balance\":250.50},"
+            + "{\"id\":\"acc-3\",\"userId\":\"u\",\"balance\":0.00}]").getBytes(StandardCharsets.UTF_8);
+
+    private static volatile Object sink;
+
+    private AccountClientBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.parseInt(args[0]);
+        int callers = Integer.parseInt(args[1]);
+        int delayMillis = Integer.parseInt(args[2]);
+
+        // Headers and body are separate writes; without this, delayed ACKs add ~40 ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(callers, runnable -> {
+            Thread thread = new Thread(runnable, "account-service");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/api/accounts/user/", exchange -> {
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, ACCOUNTS.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(ACCOUNTS);
+            }
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/accounts/user/";
+
+        try {
+            for (String client : new String[] {"SIMPLE", "HTTP_1_1", "HTTP_2"}) {
+                RestTemplate restTemplate = restTemplate(client);
+                run(restTemplate, url, callers, 1);
+                long[] result = run(restTemplate, url, callers, seconds);
+                System.out.printf("%-9s %,9.0f requests/s  %,7d us/request  (%,d requests, %,d failed, %d callers)%n",
+                        client, result[0] * 1e9 / result[2], result[2] / 1000 * callers / Math.max(1, result[0]),
+                        result[0], result[1], callers);
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static RestTemplate restTemplate(String client) {
+        if (client.equals("SIMPLE")) {
+            return new RestTemplate();
+        }
+        AccountServiceProperties properties = new AccountServiceProperties();
+        properties.getHttp().setVersion(AccountServiceProperties.Http.Version.valueOf(client));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HttpClientConfig config = new HttpClientConfig();
+        ClientHttpRequestFactory requestFactory = config.accountRequestFactory(properties, meterRegistry);
+        return config.restTemplate(requestFactory, meterRegistry);
+    }
+
+    /**
+     * @return the number of successful and failed requests, and the nanoseconds they took
+     */
+    private static long[] run(RestTemplate restTemplate, String url, int callers, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch go = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        try {
+            List<Future<long[]>> workers = new ArrayList<>();
+            for (int t = 0; t < callers; t++) {
+                int caller = t;
+                workers.add(executor.submit(() -> {
+                    go.await();
+                    long succeeded = 0;
+                    long failed = 0;
+                    while (System.nanoTime() < end) {
+                        try {
+                            sink = restTemplate.getForObject(url + "user" + caller, String.class);
+                            succeeded++;
+                        } catch (RuntimeException e) {
+                            failed++;
+                        }
+                    }
+                    return new long[] {succeeded, failed};
+                }));
+            }
+            go.countDown();
+            long succeeded = 0;
+            long failed = 0;
+            for (Future<long[]> worker : workers) {
+                long[] counts = worker.get();
+                succeeded += counts[0];
+                failed += counts[1];
+            }
+            return new long[] {succeeded, failed, System.nanoTime() - start};
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.userservice.controller;
+
+import com.example.userservice.client.AccountIdsCache;
+import com.example.userservice.config.AccountServiceProperties;
+import com.example.userservice.search.UserSearchIndex;
+import com.example.userservice.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class UserControllerTest {
+
+    private final UserService userService = new UserService(new UserSearchIndex(new SimpleMeterRegistry()),
+            mock(AccountIdsCache.class), new AccountServiceProperties(), mock(Tracer.class));
+    private final MockMvc mockMvc = MockMvcBuilders
+            .standaloneSetup(new UserController(userService, new ObjectMapper()))
+            .build();
+
+    @Test
+    void listingStaysAnUnpagedArray() throws Exception {
+        mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isArray())
+                .andExpect(jsonPath("$", hasSize(5)));
+    }
+
+    @Test
+    void pagesAreServedFromTheirOwnPath() throws Exception {
+        mockMvc.perform(get("/api/users/page").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].id").value("user1"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty());
+    }
+
+    @Test
+    void pageRejectsOutOfRangeLimit() throws Exception {
+        mockMvc.perform(get("/api/users/page").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.userservice.search;
+
+import com.example.userservice.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSearchIndexTest {
+
+    private final UserSearchIndex index = new UserSearchIndex(new SimpleMeterRegistry());
+
+    private static User user(String id, String firstName, String lastName) {
+        return new User(id, firstName, lastName, id + "@example.com", "user-" + id);
+    }
+
+    private List<String> ids(String query, boolean fuzzy) {
+        return index.search(query, 100, fuzzy).stream().map(User::getId).toList();
+    }
+
+    @Test
+    void findsUsersByExactUsernameEmailAndNamePrefix() {
+        index.update(null, user("1", "John", "Smith"));
+        index.update(null, user("2", "Joanna", "Smithers"));
+        index.update(null, user("3", "Mary", "Jones"));
+
+        assertThat(index.findByUsername("USER-1").getId()).isEqualTo("1");
+        assertThat(ids("2@example.com", false)).containsExactly("2");
+        assertThat(ids("smith", false)).containsExactlyInAnyOrder("1", "2");
+        assertThat(ids("jo smith", false)).containsExactlyInAnyOrder("1", "2");
+        assertThat(ids("mary jo", false)).containsExactly("3");
+    }
+
+    @Test
+    void fuzzySearchToleratesTypos() {
+        index.update(null, user("1", "Jonathan", "Smith"));
+
+        assertThat(ids("smiht", false)).isEmpty();
+        assertThat(ids("smiht", true)).containsExactly("1");
+        assertThat(ids("jonahtan smith", true)).containsExactly("1");
+    }
+
+    @Test
+    void updateAndRemoveReplaceTheIndexedVersion() {
+        User original = user("1", "John", "Smith");
+        index.update(null, original);
+        User renamed = user("1", "John", "Baker");
+        index.update(original, renamed);
+
+        assertThat(ids("smith", false)).isEmpty();
+        assertThat(ids("baker", false)).containsExactly("1");
+
+        index.remove(renamed);
+        assertThat(ids("john", false)).isEmpty();
+        assertThat(index.findByUsername("user-1")).isNull();
+    }
+
+    @Test
+    void removalDuringASearchDoesNotHideUsersThatStay() {
+        User removed = user("removed", "Removed", "Smith");
+        // The search reads each match's ID, which gives this user a hook into the middle of the scan
+        User trigger = new User("trigger", "Trigger", "Smith", "trigger@example.com", "user-trigger") {
+            private boolean fired;
+
+            @Override
+            public String getId() {
+                if (!fired) {
+                    fired = true;
+                    index.remove(removed);
+                }
+                return super.getId();
+            }
+        };
+        User stable = user("stable", "Stable", "Smith");
+        index.update(null, removed);
+        index.update(null, trigger);
+        index.update(null, stable);
+
+        assertThat(ids("smith", false)).contains("trigger", "stable");
+        assertThat(ids("smith", false)).containsExactly("trigger", "stable");
+    }
+
+    @Test
+    void prunedFuzzyWalkFindsTheSameTermsAsComparingEveryTerm() {
+        // A small alphabet gives long runs of terms under shared prefixes, which the walk prunes and seeks past
+        Random random = new Random(3);
+        TreeSet<String> terms = new TreeSet<>();
+        for (int i = 0; i < 2_000; i++) {
+            String first = randomWord(random);
+            String last = randomWord(random);
+            terms.add(first);
+            terms.add(last);
+            index.update(null, user(String.valueOf(i), first, last));
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String word = randomWord(random);
+            for (int maxEdits = 1; maxEdits <= 2; maxEdits++) {
+                assertThat(index.fuzzyTerms(word, maxEdits)).as("%s within %d", word, maxEdits)
+                        .isEqualTo(bruteForceFuzzyTerms(terms, word, maxEdits));
+            }
+        }
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[3 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(word);
+    }
+
+    private static List<String> bruteForceFuzzyTerms(TreeSet<String> terms, String word, int maxEdits) {
+        List<String> matches = new ArrayList<>();
+        for (String term : terms) {
+            if (!term.startsWith(word) && distance(term, word) <= maxEdits) {
+                matches.add(term);
+            }
+        }
+        // Stable, so terms at the same distance stay in term order
+        matches.sort(Comparator.comparingInt(term -> distance(term, word)));
+        return matches;
+    }
+
+    /**
+     * Edit distance with adjacent transpositions, computed over the whole matrix
+     */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
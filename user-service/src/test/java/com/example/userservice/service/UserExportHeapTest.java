@@ -0,0 +1,67 @@
+package com.example.userservice.service;
+
+import com.example.userservice.config.AccountServiceProperties;
+import com.example.userservice.model.User;
+import com.example.userservice.search.UserSearchIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports a store in a separate JVM with a fixed heap ceiling that holds the users but leaves
+ * little room beside them, so the export has to stream rather than build its body in memory.
+ */
+class UserExportHeapTest {
+
+    private static final int USERS = 200_000;
+    private static final String HEAP_CEILING = "-Xmx144m";
+
+    @Test
+    void streamingExportFitsUnderHeapCeiling() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, HEAP_CEILING, "-XX:+UseSerialGC",
+                "-cp", System.getProperty("java.class.path"), Exporter.class.getName(), String.valueOf(USERS))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(2, TimeUnit.MINUTES)).isTrue();
+
+        assertThat(process.exitValue()).as(output).isZero();
+        // Plus the sample users every UserService starts with
+        assertThat(output).contains("exported " + (USERS + 5));
+    }
+
+    static class Exporter {
+
+        public static void main(String[] args) throws IOException {
+            UserService userService = new UserService(new UserSearchIndex(new SimpleMeterRegistry()),
+                    null, new AccountServiceProperties(), null);
+            int users = Integer.parseInt(args[0]);
+            for (int i = 0; i < users; i++) {
+                String username = "user" + i;
+                userService.saveUser(new User("id" + i, "First" + (i % 1000), "Last" + (i % 5000),
+                        username + "@example.com", username));
+            }
+            ObjectWriter ndjsonWriter = new ObjectMapper().writer()
+                    .withRootValueSeparator("\n")
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+            long exported;
+            try (SequenceWriter writer = ndjsonWriter.writeValues(OutputStream.nullOutputStream())) {
+                exported = userService.exportUsers(writer);
+            }
+            System.out.println("exported " + exported);
+        }
+    }
+}
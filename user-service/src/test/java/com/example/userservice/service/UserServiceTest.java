@@ -0,0 +1,56 @@
+package com.example.userservice.service;
+
+import com.example.userservice.client.AccountIdsCache;
+import com.example.userservice.config.AccountServiceProperties;
+import com.example.userservice.model.User;
+import com.example.userservice.search.UserSearchIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private final AccountIdsCache accountIdsCache = mock(AccountIdsCache.class);
+    private final UserService userService = new UserService(new UserSearchIndex(new SimpleMeterRegistry()),
+            accountIdsCache, new AccountServiceProperties(), mock(Tracer.class));
+
+    @Test
+    void blockingLookupLeavesStoredUserUntouched() {
+        when(accountIdsCache.get("user1")).thenReturn(CompletableFuture.completedFuture(List.of("acc1")));
+
+        User withAccounts = userService.getUserWithAccounts("user1").orElseThrow();
+
+        assertThat(withAccounts.getAccountIds()).containsExactly("acc1");
+        assertThat(userService.getUserById("user1").orElseThrow().getAccountIds()).isEmpty();
+    }
+
+    @Test
+    void concurrentLookupsDoNotSeeEachOthersAccounts() {
+        when(accountIdsCache.get("user1"))
+                .thenReturn(CompletableFuture.completedFuture(List.of("acc1")))
+                .thenReturn(CompletableFuture.completedFuture(List.of("acc2")));
+
+        User first = userService.getUserWithAccounts("user1").orElseThrow();
+        User second = userService.getUserWithAccounts("user1").orElseThrow();
+
+        assertThat(first.getAccountIds()).containsExactly("acc1");
+        assertThat(second.getAccountIds()).containsExactly("acc2");
+    }
+
+    @Test
+    void reactiveLookupLeavesStoredUserUntouched() {
+        when(accountIdsCache.get("user1")).thenReturn(CompletableFuture.completedFuture(List.of("acc1")));
+
+        User withAccounts = userService.getUserWithAccountsReactive("user1").block().orElseThrow();
+
+        assertThat(withAccounts.getAccountIds()).containsExactly("acc1");
+        assertThat(userService.getUserById("user1").orElseThrow().getAccountIds()).isEmpty();
+    }
+}